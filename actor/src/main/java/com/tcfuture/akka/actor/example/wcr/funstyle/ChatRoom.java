@@ -8,8 +8,7 @@ import akka.actor.typed.javadsl.Behaviors;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author liulv
@@ -91,7 +90,7 @@ public class ChatRoom {
 
     public static Behavior<RoomCommand> create() {
         return Behaviors.setup(
-                ctx -> new ChatRoom(ctx).chatRoom(new ArrayList<ActorRef<SessionCommand>>()));
+                ctx -> new ChatRoom(ctx).chatRoom(Sessions.EMPTY));
     }
 
     private final ActorContext<RoomCommand> context;
@@ -100,7 +99,7 @@ public class ChatRoom {
         this.context = context;
     }
 
-    private Behavior<RoomCommand> chatRoom(List<ActorRef<SessionCommand>> sessions) {
+    private Behavior<RoomCommand> chatRoom(Sessions sessions) {
         return Behaviors.receive(RoomCommand.class)
                 .onMessage(GetSession.class, getSession -> onGetSession(sessions, getSession))
                 .onMessage(PublishSessionMessage.class, pub -> onPublishSessionMessage(sessions, pub))
@@ -108,7 +107,7 @@ public class ChatRoom {
     }
 
     private Behavior<RoomCommand> onGetSession(
-            List<ActorRef<SessionCommand>> sessions, GetSession getSession)
+            Sessions sessions, GetSession getSession)
             throws UnsupportedEncodingException {
         ActorRef<SessionEvent> client = getSession.replyTo;
         ActorRef<SessionCommand> ses =
@@ -117,19 +116,42 @@ public class ChatRoom {
                         URLEncoder.encode(getSession.screenName, StandardCharsets.UTF_8.name()));
         // narrow to only expose PostMessage
         client.tell(new SessionGranted(ses.narrow()));
-        List<ActorRef<SessionCommand>> newSessions = new ArrayList<>(sessions);
-        newSessions.add(ses);
-        return chatRoom(newSessions);
+        return chatRoom(sessions.prepend(ses));
     }
 
     private Behavior<RoomCommand> onPublishSessionMessage(
-            List<ActorRef<SessionCommand>> sessions, PublishSessionMessage pub) {
+            Sessions sessions, PublishSessionMessage pub) {
         NotifyClient notification =
                 new NotifyClient((new MessagePosted(pub.screenName, pub.message)));
         sessions.forEach(s -> s.tell(notification));
         return Behaviors.same();
     }
 
+    /**
+     * 不可变的会话链表：加入会话时只在表头新建一个节点，其余节点与旧状态共享，不再每次复制整个列表
+     */
+    private static final class Sessions {
+        static final Sessions EMPTY = new Sessions(null, null);
+
+        final ActorRef<SessionCommand> head;
+        final Sessions tail;
+
+        private Sessions(ActorRef<SessionCommand> head, Sessions tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        Sessions prepend(ActorRef<SessionCommand> session) {
+            return new Sessions(session, this);
+        }
+
+        void forEach(Consumer<ActorRef<SessionCommand>> action) {
+            for (Sessions s = this; s != EMPTY; s = s.tail) {
+                action.accept(s.head);
+            }
+        }
+    }
+
     static class Session {
         static Behavior<ChatRoom.SessionCommand> create(
                 ActorRef<RoomCommand> room, String screenName, ActorRef<SessionEvent> client) {
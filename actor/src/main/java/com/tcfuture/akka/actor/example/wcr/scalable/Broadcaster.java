@@ -0,0 +1,123 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Terminated;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 聊天室的一个分片，创建并持有一部分会话，把聊天室发来的每批帖子转发给自己的会话。
+ *
+ * 会话放在数组中顺序遍历，另用 Map 记录下标；会话终止（包括因客户端过慢被断开）时用最后一个元素填补空位，
+ * 加入和移除都是 O(1)。
+ */
+final class Broadcaster extends AbstractBehavior<Broadcaster.Command> {
+
+    interface Command {}
+
+    static final class Join implements Command {
+        final ChatRoom.GetSession request;
+        // 随 SessionGranted 发给客户端的最近帖子
+        final List<ChatRoom.MessagePosted> history;
+
+        Join(ChatRoom.GetSession request, List<ChatRoom.MessagePosted> history) {
+            this.request = request;
+            this.history = history;
+        }
+    }
+
+    static final class Broadcast implements Command {
+        final ChatRoom.NotifyClients notification;
+
+        Broadcast(ChatRoom.NotifyClients notification) {
+            this.notification = notification;
+        }
+    }
+
+    /**
+     * @param metrics 本分片独占的会话指标，按会话 ActorRef 区分，由创建分片的聊天室持有并读取。
+     *                同名用户离开后重新加入时，旧会话迟到的终止不会移除新会话的指标
+     */
+    static Behavior<Command> create(ActorRef<ChatRoom.RoomCommand> room, ChatRoom.Settings settings,
+                                    Map<ActorRef<?>, Session.Metrics> metrics) {
+        return Behaviors.setup(context -> new Broadcaster(context, room, settings, metrics));
+    }
+
+    private final ActorRef<ChatRoom.RoomCommand> room;
+    private final ChatRoom.Settings settings;
+    private final Map<ActorRef<?>, Session.Metrics> metrics;
+    private final List<ActorRef<ChatRoom.SessionCommand>> sessions = new ArrayList<>();
+    private final Map<ActorRef<?>, Integer> indexes = new HashMap<>();
+
+    private Broadcaster(ActorContext<Command> context, ActorRef<ChatRoom.RoomCommand> room,
+                        ChatRoom.Settings settings, Map<ActorRef<?>, Session.Metrics> metrics) {
+        super(context);
+        this.room = room;
+        this.settings = settings;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Receive<Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(Join.class, this::onJoin)
+                .onMessage(Broadcast.class, this::onBroadcast)
+                .onSignal(Terminated.class, this::onTerminated)
+                .build();
+    }
+
+    private Behavior<Command> onJoin(Join join) throws UnsupportedEncodingException {
+        ChatRoom.GetSession getSession = join.request;
+        String name = URLEncoder.encode(getSession.screenName, StandardCharsets.UTF_8.name());
+        if (getContext().getChild(name).isPresent()) {
+            getSession.replyTo.tell(new ChatRoom.SessionDenied(
+                    "screen name '" + getSession.screenName + "' is already in use"));
+            return this;
+        }
+        Session.Metrics sessionMetrics = new Session.Metrics(getSession.screenName);
+        ActorRef<ChatRoom.SessionCommand> session = getContext().spawn(
+                Session.create(room, getSession.screenName, getSession.replyTo, settings.delivery,
+                        settings.maxBatch, sessionMetrics), name);
+        getContext().watch(session);
+        metrics.put(session, sessionMetrics);
+        indexes.put(session, sessions.size());
+        sessions.add(session);
+        getSession.replyTo.tell(new ChatRoom.SessionGranted(session.narrow(), join.history));
+        return this;
+    }
+
+    private Behavior<Command> onBroadcast(Broadcast broadcast) {
+        ChatRoom.NotifyClients notification = broadcast.notification;
+        for (int i = 0, n = sessions.size(); i < n; i++) {
+            sessions.get(i).tell(notification);
+        }
+        return this;
+    }
+
+    private Behavior<Command> onTerminated(Terminated terminated) {
+        Integer index = indexes.remove(terminated.getRef());
+        if (index != null) {
+            metrics.remove(terminated.getRef());
+            ActorRef<ChatRoom.SessionCommand> last = sessions.remove(sessions.size() - 1);
+            if (index < sessions.size()) {
+                sessions.set(index, last);
+                indexes.put(last, index);
+            }
+        }
+        return this;
+    }
+}
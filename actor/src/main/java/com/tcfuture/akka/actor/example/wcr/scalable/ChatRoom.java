@@ -0,0 +1,483 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
+import akka.actor.typed.pubsub.Topic;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.tcfuture.akka.serialization.CborSerializable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 可扩展的聊天室，协议与 funstyle/objstyle 的 ChatRoom 相同，区别在于广播方式：
+ *
+ * 1. 分片：会话按屏幕名称的哈希分给 shards 个 Broadcaster 子 Actor，由 Broadcaster 创建并持有各自的会话，
+ *    聊天室本身不保存会话列表，加入会话只修改一个分片，O(1)。
+ * 2. 批量：聊天室把收到的帖子攒成批，攒够 maxBatch 条或距第一条超过 flushInterval 时发出一批。
+ *    一批只创建一个不可变的 MessagesPosted，所有分片、所有会话、所有客户端共享同一个对象，
+ *    每个会话每批只收到一条消息，而不是每条帖子一条。
+ * 3. 流控：会话按客户端的信用投递，超出信用的帖子放入会话的有界缓冲区，缓冲区满时按 OverflowPolicy 处理，
+ *    见 Session。GetLaggingSessions 查询积压最多的会话。
+ * 4. 集群：createClustered 创建的聊天室在每个节点各有一个实例，通过名为 chat-room-{roomName} 的 Topic 互相订阅。
+ *    一批帖子发布到 Topic 后，每个有该聊天室的节点只收到一次 RoomBatch，再由本节点的分片投递给本地会话，
+ *    不会为每个远程会话各发一次。同一节点发出的帖子保持顺序，不同节点之间不保证全局顺序。
+ * 5. 历史：聊天室在 MessageHistory 中保留最近的帖子（按条数和字节数限制），新会话的 SessionGranted 中带有
+ *    最近 catchUp 条帖子，之后的帖子照常投递，二者之间不重复也不遗漏。
+ */
+public class ChatRoom {
+
+    /**
+     * 会话缓冲区满时的处理方式
+     */
+    public enum OverflowPolicy {
+        // 丢弃最早的帖子
+        DROP_OLDEST,
+        // 丢弃缓冲区中的全部帖子，只保留最新的一条
+        CONFLATE,
+        // 通知客户端 SessionClosed 并关闭会话
+        DISCONNECT
+    }
+
+    /**
+     * 会话向客户端投递的配置
+     */
+    public static final class DeliverySettings {
+        // 会话缓冲的最多帖子数
+        public final int bufferSize;
+        public final OverflowPolicy overflow;
+        // 会话创建时客户端的初始信用（帖子数）
+        public final long initialCredit;
+
+        public DeliverySettings(int bufferSize, OverflowPolicy overflow, long initialCredit) {
+            if (bufferSize < 1 || initialCredit < 0) {
+                throw new IllegalArgumentException("bufferSize must be positive and initialCredit not negative");
+            }
+            this.bufferSize = bufferSize;
+            this.overflow = overflow;
+            this.initialCredit = initialCredit;
+        }
+
+        public static DeliverySettings defaults() {
+            return new DeliverySettings(1024, OverflowPolicy.DROP_OLDEST, 1024);
+        }
+    }
+
+    /**
+     * 聊天室历史的配置
+     */
+    public static final class HistorySettings {
+        // 最多保留的帖子数
+        public final int maxMessages;
+        // 所有帖子正文合计的最大 UTF-8 字节数
+        public final int maxBytes;
+        // 新会话收到的最近帖子数
+        public final int catchUp;
+
+        public HistorySettings(int maxMessages, int maxBytes, int catchUp) {
+            if (maxMessages < 0 || maxBytes < 0 || catchUp < 0) {
+                throw new IllegalArgumentException("history limits must not be negative");
+            }
+            this.maxMessages = maxMessages;
+            this.maxBytes = maxBytes;
+            this.catchUp = catchUp;
+        }
+
+        public static HistorySettings defaults() {
+            return new HistorySettings(1000, 1 << 20, 100);
+        }
+    }
+
+    /**
+     * 聊天室配置
+     */
+    public static final class Settings {
+        // Broadcaster 分片数
+        public final int shards;
+        // 每批最多的帖子数，即每个会话一条消息最多携带的帖子数
+        public final int maxBatch;
+        // 攒批的最长等待时间
+        public final Duration flushInterval;
+        public final DeliverySettings delivery;
+        public final HistorySettings history;
+
+        public Settings(int shards, int maxBatch, Duration flushInterval) {
+            this(shards, maxBatch, flushInterval, DeliverySettings.defaults());
+        }
+
+        public Settings(int shards, int maxBatch, Duration flushInterval, DeliverySettings delivery) {
+            this(shards, maxBatch, flushInterval, delivery, HistorySettings.defaults());
+        }
+
+        public Settings(int shards, int maxBatch, Duration flushInterval, DeliverySettings delivery,
+                        HistorySettings history) {
+            if (shards < 1 || maxBatch < 1) {
+                throw new IllegalArgumentException("shards and maxBatch must be positive");
+            }
+            this.shards = shards;
+            this.maxBatch = maxBatch;
+            this.flushInterval = flushInterval;
+            this.delivery = delivery;
+            this.history = history;
+        }
+
+        public static Settings defaults() {
+            return new Settings(16, 64, Duration.ofMillis(5));
+        }
+    }
+
+    public interface RoomCommand {}
+
+    public interface SessionEvent {}
+
+    public static final class GetSession implements RoomCommand {
+        public final String screenName;
+        public final ActorRef<SessionEvent> replyTo;
+
+        public GetSession(String screenName, ActorRef<SessionEvent> replyTo) {
+            this.screenName = screenName;
+            this.replyTo = replyTo;
+        }
+    }
+
+    public static final class SessionGranted implements SessionEvent {
+        public final ActorRef<ClientCommand> handle;
+        // 加入前最近的帖子，从早到晚，不占用信用
+        public final List<MessagePosted> history;
+
+        public SessionGranted(ActorRef<ClientCommand> handle, List<MessagePosted> history) {
+            this.handle = handle;
+            this.history = history;
+        }
+    }
+
+    public static final class SessionDenied implements SessionEvent {
+        public final String reason;
+
+        public SessionDenied(String reason) {
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * 客户端处理不过来，会话已关闭
+     */
+    public static final class SessionClosed implements SessionEvent {
+        public final String reason;
+
+        public SessionClosed(String reason) {
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * 一条帖子，跨节点时序列化为 [screenName, message] 数组，不重复字段名
+     */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"screenName", "message"})
+    public static final class MessagePosted {
+        public final String screenName;
+        public final String message;
+
+        @JsonCreator
+        public MessagePosted(@JsonProperty("screenName") String screenName, @JsonProperty("message") String message) {
+            this.screenName = screenName;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 一批帖子，按发布顺序排列，不可修改；没有丢弃时由所有会话共享
+     */
+    public static final class MessagesPosted implements SessionEvent {
+        public final List<MessagePosted> messages;
+        // 上一批之后因缓冲区溢出而丢弃、未投递给该客户端的帖子数
+        public final long skipped;
+
+        MessagesPosted(List<MessagePosted> messages, long skipped) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.skipped = skipped;
+        }
+    }
+
+    /**
+     * 会话的积压情况
+     */
+    public static final class Lag {
+        public final String screenName;
+        // 缓冲区中等待信用的帖子数
+        public final long buffered;
+        // 累计丢弃的帖子数
+        public final long dropped;
+        // 累计投递的帖子数
+        public final long delivered;
+        // 剩余信用
+        public final long credit;
+
+        Lag(String screenName, long buffered, long dropped, long delivered, long credit) {
+            this.screenName = screenName;
+            this.buffered = buffered;
+            this.dropped = dropped;
+            this.delivered = delivered;
+            this.credit = credit;
+        }
+    }
+
+    /**
+     * 查询积压最多的 limit 个会话，按缓冲的帖子数、丢弃数从多到少
+     */
+    public static final class GetLaggingSessions implements RoomCommand {
+        public final int limit;
+        public final ActorRef<List<Lag>> replyTo;
+
+        public GetLaggingSessions(int limit, ActorRef<List<Lag>> replyTo) {
+            this.limit = limit;
+            this.replyTo = replyTo;
+        }
+    }
+
+    /**
+     * 集群模式下经 Topic 在节点之间传递的一批帖子
+     */
+    public static final class RoomBatch implements RoomCommand, CborSerializable {
+        public final List<MessagePosted> messages;
+
+        @JsonCreator
+        RoomBatch(@JsonProperty("messages") List<MessagePosted> messages) {
+            this.messages = messages;
+        }
+    }
+
+    /**
+     * 聊天室发布和收到的批次数；单机模式下两者相等，集群模式下收到的包括其他节点发布的批次
+     */
+    public static final class RoomStats {
+        public final long published;
+        public final long received;
+
+        RoomStats(long published, long received) {
+            this.published = published;
+            this.received = received;
+        }
+    }
+
+    public static final class GetRoomStats implements RoomCommand {
+        public final ActorRef<RoomStats> replyTo;
+
+        public GetRoomStats(ActorRef<RoomStats> replyTo) {
+            this.replyTo = replyTo;
+        }
+    }
+
+    interface SessionCommand {}
+
+    /**
+     * 客户端可以发给会话的命令
+     */
+    public interface ClientCommand extends SessionCommand {}
+
+    public static final class PostMessage implements ClientCommand {
+        public final String message;
+
+        public PostMessage(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * 客户端归还 n 条帖子的信用
+     */
+    public static final class Request implements ClientCommand {
+        public final long n;
+
+        public Request(long n) {
+            if (n < 1) {
+                throw new IllegalArgumentException("n must be positive");
+            }
+            this.n = n;
+        }
+    }
+
+    static final class NotifyClients implements SessionCommand {
+        final MessagesPosted batch;
+
+        NotifyClients(MessagesPosted batch) {
+            this.batch = batch;
+        }
+    }
+
+    static final class PublishSessionMessage implements RoomCommand {
+        final String screenName;
+        final String message;
+
+        PublishSessionMessage(String screenName, String message) {
+            this.screenName = screenName;
+            this.message = message;
+        }
+    }
+
+    private enum Flush implements RoomCommand {
+        INSTANCE
+    }
+
+    public static Behavior<RoomCommand> create() {
+        return create(Settings.defaults());
+    }
+
+    public static Behavior<RoomCommand> create(Settings settings) {
+        return Behaviors.setup(context -> Behaviors.withTimers(
+                timers -> new ChatRoomBehavior(context, timers, settings, null)));
+    }
+
+    /**
+     * 集群范围的聊天室，每个节点上以相同的 roomName 各创建一个，会话只加入本节点的实例
+     */
+    public static Behavior<RoomCommand> createClustered(String roomName, Settings settings) {
+        return Behaviors.setup(context -> {
+            ActorRef<Topic.Command<RoomBatch>> topic =
+                    context.spawn(Topic.create(RoomBatch.class, "chat-room-" + roomName), "topic");
+            topic.tell(Topic.subscribe(context.getSelf().<RoomBatch>narrow()));
+            return Behaviors.withTimers(timers -> new ChatRoomBehavior(context, timers, settings, topic));
+        });
+    }
+
+    static class ChatRoomBehavior extends AbstractBehavior<RoomCommand> {
+        private final TimerScheduler<RoomCommand> timers;
+        private final Settings settings;
+        private final List<ActorRef<Broadcaster.Command>> shards;
+        // 本聊天室各分片的会话投递指标，每个分片一个 Map，只由该分片登记和移除，聊天室查询时读取；
+        // 随聊天室实例创建，不同聊天室之间不共享
+        private final List<Map<ActorRef<?>, Session.Metrics>> metrics;
+        // 集群模式下的 Topic，单机模式为 null
+        private final ActorRef<Topic.Command<RoomBatch>> topic;
+        private final MessageHistory history;
+        // 尚未发出的帖子
+        private List<MessagePosted> pending;
+        private long published;
+        private long received;
+
+        private ChatRoomBehavior(ActorContext<RoomCommand> context, TimerScheduler<RoomCommand> timers,
+                                 Settings settings, ActorRef<Topic.Command<RoomBatch>> topic) {
+            super(context);
+            this.timers = timers;
+            this.settings = settings;
+            this.topic = topic;
+            this.shards = new ArrayList<>(settings.shards);
+            this.metrics = new ArrayList<>(settings.shards);
+            for (int i = 0; i < settings.shards; i++) {
+                Map<ActorRef<?>, Session.Metrics> shardMetrics = new ConcurrentHashMap<>();
+                metrics.add(shardMetrics);
+                shards.add(context.spawn(Broadcaster.create(context.getSelf(), settings, shardMetrics),
+                        "shard-" + i));
+            }
+            this.history = new MessageHistory(settings.history.maxMessages, settings.history.maxBytes);
+            this.pending = new ArrayList<>(settings.maxBatch);
+        }
+
+        @Override
+        public Receive<RoomCommand> createReceive() {
+            return newReceiveBuilder()
+                    .onMessage(GetSession.class, this::onGetSession)
+                    .onMessage(PublishSessionMessage.class, this::onPublishSessionMessage)
+                    .onMessage(RoomBatch.class, this::onRoomBatch)
+                    .onMessage(GetLaggingSessions.class, this::onGetLaggingSessions)
+                    .onMessage(GetRoomStats.class, this::onGetRoomStats)
+                    .onMessageEquals(Flush.INSTANCE, this::onFlush)
+                    .build();
+        }
+
+        /**
+         * 同一屏幕名称总是落在同一分片，由分片判断名称是否已被占用。
+         * 历史中是已经发给分片的帖子，分片先处理 Join 再处理之后的 Broadcast，因此新会话不会重复或遗漏帖子。
+         */
+        private Behavior<RoomCommand> onGetSession(GetSession getSession) {
+            int shard = Math.floorMod(getSession.screenName.hashCode(), shards.size());
+            shards.get(shard).tell(new Broadcaster.Join(getSession, history.recent(settings.history.catchUp)));
+            return this;
+        }
+
+        private Behavior<RoomCommand> onPublishSessionMessage(PublishSessionMessage pub) {
+            pending.add(new MessagePosted(pub.screenName, pub.message));
+            if (pending.size() >= settings.maxBatch) {
+                flush();
+            } else if (pending.size() == 1) {
+                timers.startSingleTimer(Flush.INSTANCE, Flush.INSTANCE, settings.flushInterval);
+            }
+            return this;
+        }
+
+        private Behavior<RoomCommand> onGetLaggingSessions(GetLaggingSessions query) {
+            List<Lag> lagging = metrics.stream()
+                    .flatMap(shardMetrics -> shardMetrics.values().stream())
+                    .map(Session.Metrics::snapshot)
+                    .filter(lag -> lag.buffered > 0 || lag.dropped > 0)
+                    .sorted(Comparator.comparingLong((Lag lag) -> lag.buffered)
+                            .thenComparingLong(lag -> lag.dropped).reversed())
+                    .limit(query.limit)
+                    .collect(Collectors.toList());
+            query.replyTo.tell(lagging);
+            return this;
+        }
+
+        private Behavior<RoomCommand> onRoomBatch(RoomBatch batch) {
+            received++;
+            broadcast(batch.messages);
+            return this;
+        }
+
+        private Behavior<RoomCommand> onGetRoomStats(GetRoomStats query) {
+            query.replyTo.tell(new RoomStats(published, received));
+            return this;
+        }
+
+        private Behavior<RoomCommand> onFlush() {
+            flush();
+            return this;
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            timers.cancel(Flush.INSTANCE);
+            List<MessagePosted> batch = pending;
+            pending = new ArrayList<>(settings.maxBatch);
+            published++;
+            if (topic == null) {
+                received++;
+                broadcast(batch);
+            } else {
+                // 本节点的实例也订阅了 Topic，本地会话同样经 Topic 收到这一批
+                topic.tell(Topic.publish(new RoomBatch(batch)));
+            }
+        }
+
+        private void broadcast(List<MessagePosted> batch) {
+            for (MessagePosted posted : batch) {
+                history.add(posted);
+            }
+            Broadcaster.Broadcast broadcast =
+                    new Broadcaster.Broadcast(new NotifyClients(new MessagesPosted(batch, 0)));
+            for (ActorRef<Broadcaster.Command> shard : shards) {
+                shard.tell(broadcast);
+            }
+        }
+    }
+}
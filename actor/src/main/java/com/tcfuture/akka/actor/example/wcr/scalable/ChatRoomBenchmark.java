@@ -0,0 +1,109 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 可扩展聊天室在大量会话下的加入耗时和投递吞吐。
+ *
+ * 每种配置使用独立的 ActorSystem：先加入 sessions 个会话，等待全部 SessionGranted；再由一个会话连续发布
+ * posts 条帖子，等待每个会话都收到全部帖子。投递数 = sessions * posts，会话消息数为实际发给会话的消息条数。
+ * 分片数 1、每批 1 条相当于原来的逐条、逐会话广播。帖子数不超过默认的初始信用，客户端不需要归还信用。
+ * 参数：会话数（默认 100000）、帖子数（默认 100）。
+ */
+public class ChatRoomBenchmark {
+
+    // 客户端 Actor 个数，会话轮流使用，避免单个客户端成为瓶颈
+    private static final int CLIENTS = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int posts = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        System.out.printf(Locale.ROOT, "%-8s %-6s %12s %14s %16s %14s%n",
+                "shards", "batch", "join us/op", "deliver ms", "deliveries/s", "session msgs");
+        run(sessions, posts, new ChatRoom.Settings(1, 1, Duration.ofMillis(5)));
+        run(sessions, posts, new ChatRoom.Settings(16, 1, Duration.ofMillis(5)));
+        run(sessions, posts, new ChatRoom.Settings(16, 64, Duration.ofMillis(5)));
+    }
+
+    private static void run(int sessions, int posts, ChatRoom.Settings settings) throws InterruptedException {
+        Config config = ConfigFactory.parseString(
+                "akka.loglevel = INFO\nakka.actor.provider = local").withFallback(ConfigFactory.load());
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "ChatRoomBenchmark", config);
+        try {
+            LongAdder granted = new LongAdder();
+            LongAdder delivered = new LongAdder();
+            LongAdder batches = new LongAdder();
+            AtomicReference<ActorRef<ChatRoom.ClientCommand>> poster = new AtomicReference<>();
+            List<ActorRef<ChatRoom.SessionEvent>> clients = new ArrayList<>(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(system.systemActorOf(client(granted, delivered, batches, poster), "client-" + i,
+                        Props.empty()));
+            }
+            ActorRef<ChatRoom.RoomCommand> room = system.systemActorOf(ChatRoom.create(settings), "room",
+                    Props.empty());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                room.tell(new ChatRoom.GetSession("user-" + i, clients.get(i % CLIENTS)));
+            }
+            await(granted::sum, sessions);
+            long joinNanos = System.nanoTime() - start;
+
+            long expected = (long) sessions * posts;
+            start = System.nanoTime();
+            ActorRef<ChatRoom.ClientCommand> handle = poster.get();
+            for (int i = 0; i < posts; i++) {
+                handle.tell(new ChatRoom.PostMessage("message " + i));
+            }
+            await(delivered::sum, expected);
+            long deliverNanos = System.nanoTime() - start;
+
+            System.out.printf(Locale.ROOT, "%-8d %-6d %12.2f %14.1f %16.0f %14d%n",
+                    settings.shards, settings.maxBatch, joinNanos / 1000.0 / sessions, deliverNanos / 1e6,
+                    expected / (deliverNanos / 1e9), batches.sum());
+        } finally {
+            system.terminate();
+            system.getWhenTerminated().toCompletableFuture().join();
+        }
+    }
+
+    private static Behavior<ChatRoom.SessionEvent> client(LongAdder granted, LongAdder delivered, LongAdder batches,
+                                                          AtomicReference<ActorRef<ChatRoom.ClientCommand>> poster) {
+        return Behaviors.receive(ChatRoom.SessionEvent.class)
+                .onMessage(ChatRoom.SessionGranted.class, message -> {
+                    poster.compareAndSet(null, message.handle);
+                    granted.increment();
+                    return Behaviors.same();
+                })
+                .onMessage(ChatRoom.MessagesPosted.class, batch -> {
+                    delivered.add(batch.messages.size());
+                    batches.increment();
+                    return Behaviors.same();
+                })
+                .build();
+    }
+
+    private static void await(LongSupplier counter, long expected) throws InterruptedException {
+        while (counter.getAsLong() < expected) {
+            Thread.sleep(1);
+        }
+    }
+}
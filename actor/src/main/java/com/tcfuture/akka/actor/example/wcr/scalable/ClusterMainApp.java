@@ -0,0 +1,45 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.util.Collections;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 集群聊天室示例：按 akka-cluster.conf 的种子节点启动两个节点，每个节点创建同名聊天室 lobby 和一个 Gabbler，
+ * 一个节点上发布的帖子会投递到另一个节点的会话。
+ */
+public class ClusterMainApp {
+    public static Behavior<Void> create(String screenName) {
+        return Behaviors.setup(
+                context -> {
+                    ActorRef<ChatRoom.RoomCommand> chatRoom =
+                            context.spawn(ChatRoom.createClustered("lobby", ChatRoom.Settings.defaults()), "lobby");
+                    ActorRef<ChatRoom.SessionEvent> gabbler = context.spawn(Gabbler.create(), "gabbler");
+                    chatRoom.tell(new ChatRoom.GetSession(screenName, gabbler));
+                    return Behaviors.empty();
+                });
+    }
+
+    private static void startup(int port) {
+        Config config = ConfigFactory.parseMap(Collections.singletonMap("akka.remote.artery.canonical.port", port))
+                .withFallback(ConfigFactory.load("akka-cluster"));
+        ActorSystem.create(create("gabbler-" + port), "ClusterSystem", config);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            startup(25251);
+            startup(25252);
+        } else {
+            startup(Integer.parseInt(args[0]));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.*;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 可扩展聊天室的客户端：获得会话后发一条帖子，收到第一批帖子后逐条打印并结束。
+ */
+public class Gabbler extends AbstractBehavior<ChatRoom.SessionEvent> {
+    public static Behavior<ChatRoom.SessionEvent> create() {
+        return Behaviors.setup(Gabbler::new);
+    }
+
+    private Gabbler(ActorContext<ChatRoom.SessionEvent> context) {
+        super(context);
+    }
+
+    @Override
+    public Receive<ChatRoom.SessionEvent> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(ChatRoom.SessionDenied.class, this::onSessionDenied)
+                .onMessage(ChatRoom.SessionGranted.class, this::onSessionGranted)
+                .onMessage(ChatRoom.MessagesPosted.class, this::onMessagesPosted)
+                .build();
+    }
+
+    private Behavior<ChatRoom.SessionEvent> onSessionDenied(ChatRoom.SessionDenied message) {
+        getContext().getLog().info("cannot start chat room session: {}", message.reason);
+        return Behaviors.stopped();
+    }
+
+    private Behavior<ChatRoom.SessionEvent> onSessionGranted(ChatRoom.SessionGranted message) {
+        getContext().getLog().info("joined with {} earlier messages", message.history.size());
+        message.handle.tell(new ChatRoom.PostMessage("Hello World!"));
+        return Behaviors.same();
+    }
+
+    private Behavior<ChatRoom.SessionEvent> onMessagesPosted(ChatRoom.MessagesPosted batch) {
+        for (ChatRoom.MessagePosted message : batch.messages) {
+            getContext()
+                    .getLog()
+                    .info("message has been posted by '{}': {}", message.screenName, message.message);
+        }
+        return Behaviors.stopped();
+    }
+}
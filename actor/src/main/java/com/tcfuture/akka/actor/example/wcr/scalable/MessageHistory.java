@@ -0,0 +1,159 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 聊天室最近的帖子，只由聊天室 Actor 访问，同时受条数（maxMessages）和字节数（maxBytes）限制，超出时丢弃最早的。
+ *
+ * 帖子正文以 UTF-8 依次写入一个容量为 maxBytes 的环形字节区，每条帖子只占用几个 int 槽位，不保留 String 对象；
+ * 屏幕名称按引用计数驻留，同一个人的所有帖子只保存一个编号，不再被任何帖子引用时释放。
+ * 最近 n 条帖子解码后缓存，直到下一次 add，连续加入的会话共用同一个列表。
+ */
+final class MessageHistory {
+
+    private final int maxMessages;
+    private final byte[] data;
+    // 环形槽位：屏幕名称编号、正文在 data 中的起点和长度
+    private final int[] nameIds;
+    private final int[] offsets;
+    private final int[] lengths;
+    private int head;
+    private int size;
+    // data 中最早一条正文的起点和所有正文占用的字节数
+    private int byteStart;
+    private int usedBytes;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int[] refCounts = new int[16];
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+
+    private List<ChatRoom.MessagePosted> recent;
+    private int recentCount = -1;
+
+    /**
+     * @param maxMessages 最多保留的帖子数，0 表示不保留
+     * @param maxBytes 所有正文合计的最大 UTF-8 字节数，超过此大小的单条帖子不保留，0 表示不保留
+     */
+    MessageHistory(int maxMessages, int maxBytes) {
+        if (maxMessages < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("maxMessages and maxBytes must not be negative");
+        }
+        this.maxMessages = maxMessages;
+        this.data = new byte[maxBytes];
+        this.nameIds = new int[maxMessages];
+        this.offsets = new int[maxMessages];
+        this.lengths = new int[maxMessages];
+    }
+
+    void add(ChatRoom.MessagePosted posted) {
+        byte[] text = posted.message.getBytes(StandardCharsets.UTF_8);
+        if (maxMessages == 0 || data.length == 0 || text.length > data.length) {
+            return;
+        }
+        while (size == maxMessages || usedBytes + text.length > data.length) {
+            evictOldest();
+        }
+        int offset = (byteStart + usedBytes) % data.length;
+        int first = Math.min(text.length, data.length - offset);
+        System.arraycopy(text, 0, data, offset, first);
+        System.arraycopy(text, first, data, 0, text.length - first);
+        usedBytes += text.length;
+
+        int slot = (head + size) % maxMessages;
+        nameIds[slot] = intern(posted.screenName);
+        offsets[slot] = offset;
+        lengths[slot] = text.length;
+        size++;
+        recent = null;
+    }
+
+    /**
+     * @return 最近的 n 条帖子，从早到晚，不可修改
+     */
+    List<ChatRoom.MessagePosted> recent(int n) {
+        int count = Math.min(n, size);
+        if (recent != null && recentCount == count) {
+            return recent;
+        }
+        List<ChatRoom.MessagePosted> result = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            int slot = (head + i) % maxMessages;
+            result.add(new ChatRoom.MessagePosted(names.get(nameIds[slot]), decode(offsets[slot], lengths[slot])));
+        }
+        recent = Collections.unmodifiableList(result);
+        recentCount = count;
+        return recent;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return 当前驻留的屏幕名称数
+     */
+    int internedNames() {
+        return ids.size();
+    }
+
+    private void evictOldest() {
+        release(nameIds[head]);
+        byteStart = (byteStart + lengths[head]) % data.length;
+        usedBytes -= lengths[head];
+        head = (head + 1) % maxMessages;
+        size--;
+        recent = null;
+    }
+
+    private String decode(int offset, int length) {
+        if (offset + length <= data.length) {
+            return new String(data, offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] text = new byte[length];
+        int first = data.length - offset;
+        System.arraycopy(data, offset, text, 0, first);
+        System.arraycopy(data, 0, text, first, length - first);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = freeIds.isEmpty() ? names.size() : freeIds.pollFirst();
+            if (id == names.size()) {
+                names.add(name);
+            } else {
+                names.set(id, name);
+            }
+            if (id == refCounts.length) {
+                refCounts = Arrays.copyOf(refCounts, refCounts.length * 2);
+            }
+            ids.put(name, id);
+        }
+        refCounts[id]++;
+        return id;
+    }
+
+    private void release(int id) {
+        if (--refCounts[id] == 0) {
+            ids.remove(names.get(id));
+            names.set(id, null);
+            freeIds.addLast(id);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 聊天室的一个会话，按客户端的信用向客户端投递帖子。
+ *
+ * 客户端每收到多少条帖子就通过 Request 归还多少信用，信用用完后新的帖子进入容量为 bufferSize 的缓冲区，
+ * 缓冲区满时按 OverflowPolicy 处理，慢客户端不会让自己的邮箱无限增长。缓冲区为空且信用足够时直接转发聊天室
+ * 共享的批次，不复制。
+ */
+final class Session extends AbstractBehavior<ChatRoom.SessionCommand> {
+
+    /**
+     * 会话的投递指标，只由会话写入，聊天室查询时读取
+     */
+    static final class Metrics {
+        final String screenName;
+        volatile long buffered;
+        volatile long dropped;
+        volatile long delivered;
+        volatile long credit;
+
+        Metrics(String screenName) {
+            this.screenName = screenName;
+        }
+
+        ChatRoom.Lag snapshot() {
+            return new ChatRoom.Lag(screenName, buffered, dropped, delivered, credit);
+        }
+    }
+
+    static Behavior<ChatRoom.SessionCommand> create(ActorRef<ChatRoom.RoomCommand> room, String screenName,
+                                                    ActorRef<ChatRoom.SessionEvent> client,
+                                                    ChatRoom.DeliverySettings settings, int maxBatch,
+                                                    Metrics metrics) {
+        return Behaviors.setup(context -> new Session(context, room, screenName, client, settings, maxBatch,
+                metrics));
+    }
+
+    private final ActorRef<ChatRoom.RoomCommand> room;
+    private final String screenName;
+    private final ActorRef<ChatRoom.SessionEvent> client;
+    private final ChatRoom.DeliverySettings settings;
+    // 发给客户端的一条消息最多携带的帖子数
+    private final int maxBatch;
+    private final Metrics metrics;
+    private final ArrayDeque<ChatRoom.MessagePosted> buffer;
+    private long credit;
+    // 上次投递之后丢弃的帖子数，随下一次投递告知客户端
+    private long skipped;
+    private long dropped;
+    private long delivered;
+
+    private Session(ActorContext<ChatRoom.SessionCommand> context, ActorRef<ChatRoom.RoomCommand> room,
+                    String screenName, ActorRef<ChatRoom.SessionEvent> client, ChatRoom.DeliverySettings settings,
+                    int maxBatch, Metrics metrics) {
+        super(context);
+        this.room = room;
+        this.screenName = screenName;
+        this.client = client;
+        this.settings = settings;
+        this.maxBatch = maxBatch;
+        this.metrics = metrics;
+        this.buffer = new ArrayDeque<>(Math.min(settings.bufferSize, 64));
+        this.credit = settings.initialCredit;
+        updateMetrics();
+    }
+
+    @Override
+    public Receive<ChatRoom.SessionCommand> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(ChatRoom.PostMessage.class, this::onPostMessage)
+                .onMessage(ChatRoom.Request.class, this::onRequest)
+                .onMessage(ChatRoom.NotifyClients.class, this::onNotifyClients)
+                .build();
+    }
+
+    private Behavior<ChatRoom.SessionCommand> onPostMessage(ChatRoom.PostMessage post) {
+        room.tell(new ChatRoom.PublishSessionMessage(screenName, post.message));
+        return this;
+    }
+
+    private Behavior<ChatRoom.SessionCommand> onRequest(ChatRoom.Request request) {
+        credit = credit + request.n < 0 ? Long.MAX_VALUE : credit + request.n;
+        drain();
+        updateMetrics();
+        return this;
+    }
+
+    private Behavior<ChatRoom.SessionCommand> onNotifyClients(ChatRoom.NotifyClients notification) {
+        List<ChatRoom.MessagePosted> posts = notification.batch.messages;
+        if (buffer.isEmpty() && skipped == 0 && credit >= posts.size()) {
+            client.tell(notification.batch);
+            credit -= posts.size();
+            delivered += posts.size();
+        } else {
+            for (ChatRoom.MessagePosted post : posts) {
+                if (buffer.size() == settings.bufferSize && !overflow()) {
+                    client.tell(new ChatRoom.SessionClosed(
+                            "outbound buffer of " + settings.bufferSize + " messages overflowed"));
+                    return Behaviors.stopped();
+                }
+                buffer.addLast(post);
+            }
+            drain();
+        }
+        updateMetrics();
+        return this;
+    }
+
+    /**
+     * 缓冲区已满，按策略腾出空间
+     *
+     * @return false 表示应断开会话
+     */
+    private boolean overflow() {
+        switch (settings.overflow) {
+            case DROP_OLDEST:
+                buffer.pollFirst();
+                skipped++;
+                dropped++;
+                return true;
+            case CONFLATE:
+                skipped += buffer.size();
+                dropped += buffer.size();
+                buffer.clear();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void drain() {
+        while (credit > 0 && !buffer.isEmpty()) {
+            int n = (int) Math.min(Math.min(credit, buffer.size()), maxBatch);
+            List<ChatRoom.MessagePosted> posts = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                posts.add(buffer.pollFirst());
+            }
+            client.tell(new ChatRoom.MessagesPosted(posts, skipped));
+            skipped = 0;
+            credit -= n;
+            delivered += n;
+        }
+    }
+
+    private void updateMetrics() {
+        metrics.buffered = buffer.size();
+        metrics.dropped = dropped;
+        metrics.delivered = delivered;
+        metrics.credit = credit;
+    }
+}
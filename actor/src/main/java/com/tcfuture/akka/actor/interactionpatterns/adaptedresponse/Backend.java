@@ -1,13 +1,83 @@
 package com.tcfuture.akka.actor.interactionpatterns.adaptedresponse;
 
+import akka.NotUsed;
 import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Source;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.function.DoubleConsumer;
 
 /**
  * @author liulv
+ *
+ * 翻译任务后端的协议。create 创建执行任务的 TranslationEngine，progress 把一个任务的进度作为 Source 提供给
+ * HTTP 等流式消费者。
  */
 public class Backend {
+
+    /**
+     * 翻译一个站点的实际工作，在阻塞 IO dispatcher 上运行
+     */
+    @FunctionalInterface
+    public interface TranslationWork {
+        /**
+         * @param progress 报告 0 到 1 之间的进度，可以频繁调用，发出的频率由 Settings 限制
+         * @return 翻译结果
+         */
+        URI translate(URI site, DoubleConsumer progress) throws Exception;
+    }
+
+    /**
+     * 任务并发和进度限流的配置
+     */
+    public static final class Settings {
+        public final int maxConcurrentJobs;
+        // 等待开始的任务数上限
+        public final int maxQueuedJobs;
+        // 两次 JobProgress 的最小间隔
+        public final Duration progressInterval;
+        // 两次 JobProgress 的最小进度变化
+        public final double progressStep;
+
+        public Settings(int maxConcurrentJobs, int maxQueuedJobs, Duration progressInterval, double progressStep) {
+            if (maxConcurrentJobs < 1 || maxQueuedJobs < 0 || progressInterval.isNegative() || progressStep < 0) {
+                throw new IllegalArgumentException(
+                        "maxConcurrentJobs must be positive and the other settings must not be negative");
+            }
+            this.maxConcurrentJobs = maxConcurrentJobs;
+            this.maxQueuedJobs = maxQueuedJobs;
+            this.progressInterval = progressInterval;
+            this.progressStep = progressStep;
+        }
+
+        public static Settings defaults() {
+            return new Settings(4, 100, Duration.ofMillis(100), 0.01);
+        }
+    }
+
+    public static Behavior<Request> create(TranslationWork work) {
+        return create(work, Settings.defaults());
+    }
+
+    public static Behavior<Request> create(TranslationWork work, Settings settings) {
+        return TranslationEngine.create(work, settings);
+    }
+
+    /**
+     * 订阅一个进行中任务的响应：先收到最近一次响应，以 JobCompleted 或 JobFailed 结束；任务不存在时失败。
+     * 下游慢于进度时丢弃最早的进度，只保留最近 bufferSize 个响应。
+     */
+    public static Source<Response, NotUsed> progress(ActorRef<Request> backend, int taskId, int bufferSize) {
+        return Source.<Response>queue(bufferSize, OverflowStrategy.dropHead())
+                .mapMaterializedValue(queue -> {
+                    backend.tell(new TranslationEngine.SubscribeProgress(taskId, queue));
+                    return NotUsed.getInstance();
+                });
+    }
+
     public interface Request {}
 
     /**
@@ -51,6 +121,19 @@ public class Backend {
         }
     }
 
+    /**
+     * job失败或被拒绝
+     */
+    public static class JobFailed implements Response {
+        public final int taskId;
+        public final String reason;
+
+        public JobFailed(int taskId, String reason) {
+            this.taskId = taskId;
+            this.reason = reason;
+        }
+    }
+
     /**
      * job完成
      */
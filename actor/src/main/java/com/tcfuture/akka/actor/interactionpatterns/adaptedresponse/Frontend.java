@@ -21,15 +21,17 @@ public class Frontend {
     public interface Command {}
 
     /**
-     * 转换
+     * 转换，成功时向 replyTo 回复结果，失败时向 failedReplyTo 回复 JobFailed
      */
     public static class Translate implements Command {
         public final URI site;
         public final ActorRef<URI> replyTo;
+        public final ActorRef<Backend.JobFailed> failedReplyTo;
 
-        public Translate(URI site, ActorRef<URI> replyTo) {
+        public Translate(URI site, ActorRef<URI> replyTo, ActorRef<Backend.JobFailed> failedReplyTo) {
             this.site = site;
             this.replyTo = replyTo;
+            this.failedReplyTo = failedReplyTo;
         }
     }
 
@@ -55,7 +57,7 @@ public class Frontend {
         private final ActorRef<Backend.Response> backendResponseAdapter;
 
         private int taskIdCounter = 0;
-        private Map<Integer, ActorRef<URI>> inProgress = new HashMap<>();
+        private Map<Integer, Translate> inProgress = new HashMap<>();
 
         public Translator(ActorContext<Command> context, ActorRef<Backend.Request> backend) {
             super(context);
@@ -82,7 +84,7 @@ public class Frontend {
 
         private Behavior<Command> onTranslate(Translate cmd) {
             taskIdCounter += 1;
-            inProgress.put(taskIdCounter, cmd.replyTo);
+            inProgress.put(taskIdCounter, cmd);
             backend.tell(
                     new Backend.StartTranslationJob(taskIdCounter, cmd.site, backendResponseAdapter));
             return this;
@@ -99,8 +101,11 @@ public class Frontend {
             } else if (response instanceof Backend.JobCompleted) {
                 Backend.JobCompleted rsp = (Backend.JobCompleted) response;
                 getContext().getLog().info("Completed {}", rsp.taskId);
-                inProgress.get(rsp.taskId).tell(rsp.result);
-                inProgress.remove(rsp.taskId);
+                inProgress.remove(rsp.taskId).replyTo.tell(rsp.result);
+            } else if (response instanceof Backend.JobFailed) {
+                Backend.JobFailed rsp = (Backend.JobFailed) response;
+                getContext().getLog().warn("Failed {}: {}", rsp.taskId, rsp.reason);
+                inProgress.remove(rsp.taskId).failedReplyTo.tell(rsp);
             } else {
                 return Behaviors.unhandled();
             }
@@ -55,7 +55,8 @@ public class MainActor {
         }
 
         private Behavior<Backend.Request> onRequest(Backend.Request cmd) {
-            Frontend.Translate translate = new Frontend.Translate(URI.create("123"), uriActorRef);
+            Frontend.Translate translate = new Frontend.Translate(URI.create("123"), uriActorRef,
+                    getContext().getSystem().ignoreRef());
             translatorActorRef.tell(translate);
             return this;
         }
@@ -0,0 +1,255 @@
+package com.tcfuture.akka.actor.interactionpatterns.adaptedresponse;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.stream.javadsl.SourceQueueWithComplete;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.DoubleConsumer;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 执行 StartTranslationJob 的后端 actor。
+ *
+ * 任务在 Akka 默认的阻塞 IO dispatcher 上运行，同时运行的任务不超过 maxConcurrentJobs，其余进入容量为
+ * maxQueuedJobs 的等待队列，有任务完成时按到达顺序开始，队列也满时回复 JobFailed。
+ *
+ * 任务通过 DoubleConsumer 报告进度，在任务线程中先经过 ProgressThrottle：距上次发出已满 progressInterval
+ * 或进度变化达到 progressStep 时才发出，其余直接丢弃，不进入本 actor 和请求者的邮箱。为 0 的条件不生效，
+ * 两个都为 0 时每次变化都发出；进度没有变化时不发出。因此每个任务最多发出
+ * 1 / progressStep + 运行时长 / progressInterval 个 JobProgress。
+ * 通过 Backend.progress 订阅的 Source 收到同样的 JobStarted、JobProgress，以 JobCompleted 或 JobFailed 结束；
+ * 下游取消的 Source 从任务的订阅者中移除。
+ */
+final class TranslationEngine extends AbstractBehavior<Backend.Request> {
+
+    static final class SubscribeProgress implements Backend.Request {
+        final int taskId;
+        final SourceQueueWithComplete<Backend.Response> queue;
+
+        SubscribeProgress(int taskId, SourceQueueWithComplete<Backend.Response> queue) {
+            this.taskId = taskId;
+            this.queue = queue;
+        }
+    }
+
+    private static final class ProgressUpdate implements Backend.Request {
+        final int taskId;
+        final double progress;
+
+        ProgressUpdate(int taskId, double progress) {
+            this.taskId = taskId;
+            this.progress = progress;
+        }
+    }
+
+    private static final class SubscriberDone implements Backend.Request {
+        final int taskId;
+        final SourceQueueWithComplete<Backend.Response> queue;
+
+        SubscriberDone(int taskId, SourceQueueWithComplete<Backend.Response> queue) {
+            this.taskId = taskId;
+            this.queue = queue;
+        }
+    }
+
+    private static final class JobFinished implements Backend.Request {
+        final int taskId;
+        // 失败时为 null
+        final URI result;
+        final Throwable error;
+
+        JobFinished(int taskId, URI result, Throwable error) {
+            this.taskId = taskId;
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 一个已开始或排队的任务
+     */
+    private static final class Job {
+        final Backend.StartTranslationJob request;
+        final List<SourceQueueWithComplete<Backend.Response>> subscribers = new ArrayList<>(1);
+        // 最近发给请求者的响应，新订阅者先收到它
+        Backend.Response last;
+
+        Job(Backend.StartTranslationJob request) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * 按时间间隔或进度变化限制发出的进度，只由运行任务的线程访问
+     */
+    static final class ProgressThrottle implements DoubleConsumer {
+        private final long intervalNanos;
+        private final double step;
+        private final DoubleConsumer downstream;
+        private long lastNanos;
+        private double lastProgress;
+
+        ProgressThrottle(long intervalNanos, double step, DoubleConsumer downstream) {
+            this.intervalNanos = intervalNanos;
+            this.step = step;
+            this.downstream = downstream;
+            this.lastNanos = System.nanoTime();
+        }
+
+        @Override
+        public void accept(double progress) {
+            long now = System.nanoTime();
+            if (progress == lastProgress) {
+                return;
+            }
+            boolean intervalPassed = intervalNanos > 0 && now - lastNanos >= intervalNanos;
+            boolean stepReached = step > 0 && Math.abs(progress - lastProgress) >= step;
+            if (intervalPassed || stepReached || intervalNanos == 0 && step == 0) {
+                lastNanos = now;
+                lastProgress = progress;
+                downstream.accept(progress);
+            }
+        }
+    }
+
+    static Behavior<Backend.Request> create(Backend.TranslationWork work, Backend.Settings settings) {
+        return Behaviors.setup(context -> new TranslationEngine(context, work, settings));
+    }
+
+    private final Backend.TranslationWork work;
+    private final Backend.Settings settings;
+    private final Executor executor;
+    private final Map<Integer, Job> jobs = new HashMap<>();
+    private final ArrayDeque<Job> queue = new ArrayDeque<>();
+    private int running;
+
+    private TranslationEngine(ActorContext<Backend.Request> context, Backend.TranslationWork work,
+                              Backend.Settings settings) {
+        super(context);
+        this.work = work;
+        this.settings = settings;
+        this.executor = context.getSystem().dispatchers().lookup(DispatcherSelector.blocking());
+    }
+
+    @Override
+    public Receive<Backend.Request> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(Backend.StartTranslationJob.class, this::onStart)
+                .onMessage(ProgressUpdate.class, this::onProgress)
+                .onMessage(JobFinished.class, this::onFinished)
+                .onMessage(SubscribeProgress.class, this::onSubscribe)
+                .onMessage(SubscriberDone.class, this::onSubscriberDone)
+                .build();
+    }
+
+    private Behavior<Backend.Request> onStart(Backend.StartTranslationJob request) {
+        if (jobs.containsKey(request.taskId)) {
+            request.replyTo.tell(new Backend.JobFailed(request.taskId, "Task " + request.taskId + " already exists"));
+        } else if (running < settings.maxConcurrentJobs) {
+            Job job = new Job(request);
+            jobs.put(request.taskId, job);
+            run(job);
+        } else if (queue.size() < settings.maxQueuedJobs) {
+            Job job = new Job(request);
+            jobs.put(request.taskId, job);
+            queue.addLast(job);
+        } else {
+            request.replyTo.tell(new Backend.JobFailed(request.taskId,
+                    "Max " + settings.maxConcurrentJobs + " running and " + settings.maxQueuedJobs
+                            + " queued jobs supported"));
+        }
+        return this;
+    }
+
+    private void run(Job job) {
+        running++;
+        int taskId = job.request.taskId;
+        URI site = job.request.site;
+        ActorRef<Backend.Request> self = getContext().getSelf();
+        ProgressThrottle throttle = new ProgressThrottle(settings.progressInterval.toNanos(), settings.progressStep,
+                progress -> self.tell(new ProgressUpdate(taskId, progress)));
+        emit(job, new Backend.JobStarted(taskId));
+        CompletableFuture<URI> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return work.translate(site, throttle);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+        getContext().pipeToSelf(result, (uri, exc) -> new JobFinished(taskId, uri, exc));
+    }
+
+    private Behavior<Backend.Request> onProgress(ProgressUpdate update) {
+        Job job = jobs.get(update.taskId);
+        if (job != null) {
+            emit(job, new Backend.JobProgress(update.taskId, update.progress));
+        }
+        return this;
+    }
+
+    private Behavior<Backend.Request> onFinished(JobFinished finished) {
+        running--;
+        Job job = jobs.remove(finished.taskId);
+        if (finished.error == null) {
+            emit(job, new Backend.JobCompleted(finished.taskId, finished.result));
+        } else {
+            Throwable cause = finished.error instanceof CompletionException && finished.error.getCause() != null
+                    ? finished.error.getCause() : finished.error;
+            emit(job, new Backend.JobFailed(finished.taskId, String.valueOf(cause.getMessage())));
+        }
+        job.subscribers.forEach(SourceQueueWithComplete::complete);
+        while (!queue.isEmpty() && running < settings.maxConcurrentJobs) {
+            run(queue.pollFirst());
+        }
+        return this;
+    }
+
+    private Behavior<Backend.Request> onSubscribe(SubscribeProgress subscribe) {
+        Job job = jobs.get(subscribe.taskId);
+        if (job == null) {
+            subscribe.queue.fail(new NoSuchElementException("Task " + subscribe.taskId + " is not running"));
+            return this;
+        }
+        if (job.last != null) {
+            subscribe.queue.offer(job.last);
+        }
+        job.subscribers.add(subscribe.queue);
+        // 下游取消或任务结束后 complete 时完成
+        getContext().pipeToSelf(subscribe.queue.watchCompletion(),
+                (done, exc) -> new SubscriberDone(subscribe.taskId, subscribe.queue));
+        return this;
+    }
+
+    private Behavior<Backend.Request> onSubscriberDone(SubscriberDone done) {
+        Job job = jobs.get(done.taskId);
+        if (job != null) {
+            job.subscribers.remove(done.queue);
+        }
+        return this;
+    }
+
+    private void emit(Job job, Backend.Response response) {
+        job.last = response;
+        job.request.replyTo.tell(response);
+        for (SourceQueueWithComplete<Backend.Response> subscriber : job.subscribers) {
+            subscriber.offer(response);
+        }
+    }
+}
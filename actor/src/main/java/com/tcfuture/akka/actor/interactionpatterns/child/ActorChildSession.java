@@ -2,12 +2,11 @@ package com.tcfuture.akka.actor.interactionpatterns.child;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
-import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
-import akka.actor.typed.javadsl.Receive;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.Arrays;
 
 /**
  * @author liulv
@@ -34,6 +33,8 @@ import java.util.Optional;
  * 7. perpareToLeaveHome --readyToLeaveHome-->
  * 8. perpareToLeaveHome --stop
  *
+ * 会话 actor 由 ScatterGather.session 创建：同时发出 GetKeys 和 GetWallet，3 秒内未收齐时以已收到的部分回复。
+ * 高频的组合请求可以改用 ScatterGather.pooled，见 ScatterGatherBenchmark。
  */
 public class ActorChildSession {
 }
@@ -101,6 +102,9 @@ class Home {
         }
     }
 
+    /**
+     * 期限内未取到的 keys 或 wallet 为 null
+     */
     public static class ReadyToLeaveHome {
         public final String who;
         public final Keys keys;
@@ -113,6 +117,9 @@ class Home {
         }
     }
 
+    // 收集 keys 和 wallet 的期限
+    private static final Duration DEADLINE = Duration.ofSeconds(3);
+
     private final ActorContext<Command> context;
 
     private final ActorRef<KeyCabinet.GetKeys> keyCabinet;
@@ -131,8 +138,15 @@ class Home {
     }
 
     private Behavior<Command> onLeaveHome(LeaveHome message) {
+        ScatterGather.Part<KeyCabinet.GetKeys, Keys> keys = ScatterGather.Part.of("keys", keyCabinet, Keys.class,
+                replyTo -> new KeyCabinet.GetKeys(message.who, replyTo));
+        ScatterGather.Part<Drawer.GetWallet, Wallet> wallet = ScatterGather.Part.of("wallet", drawer, Wallet.class,
+                replyTo -> new Drawer.GetWallet(message.who, replyTo));
         context.spawn(
-                PrepareToLeaveHome.create(message.who, message.respondTo, keyCabinet, drawer),
+                ScatterGather.session(Arrays.asList(keys, wallet), DEADLINE,
+                        result -> new ReadyToLeaveHome(message.who, result.get(keys).orElse(null),
+                                result.get(wallet).orElse(null)),
+                        message.respondTo),
                 "leaving" + message.who);
         return Behaviors.same();
     }
@@ -142,62 +156,3 @@ class Home {
         return Behaviors.setup(context -> new Home(context).behavior());
     }
 }
-
-// per session actor behavior
-class PrepareToLeaveHome extends AbstractBehavior<Object> {
-    static Behavior<Object> create(
-            String whoIsLeaving,
-            ActorRef<Home.ReadyToLeaveHome> replyTo,
-            ActorRef<KeyCabinet.GetKeys> keyCabinet,
-            ActorRef<Drawer.GetWallet> drawer) {
-        return Behaviors.setup(
-                context -> new PrepareToLeaveHome(context, whoIsLeaving, replyTo, keyCabinet, drawer));
-    }
-
-    private final String whoIsLeaving;
-    private final ActorRef<Home.ReadyToLeaveHome> replyTo;
-    private final ActorRef<KeyCabinet.GetKeys> keyCabinet;
-    private final ActorRef<Drawer.GetWallet> drawer;
-    private Optional<Wallet> wallet = Optional.empty();
-    private Optional<Keys> keys = Optional.empty();
-
-    private PrepareToLeaveHome(
-            ActorContext<Object> context,
-            String whoIsLeaving,
-            ActorRef<Home.ReadyToLeaveHome> replyTo,
-            ActorRef<KeyCabinet.GetKeys> keyCabinet,
-            ActorRef<Drawer.GetWallet> drawer) {
-        super(context);
-        this.whoIsLeaving = whoIsLeaving;
-        this.replyTo = replyTo;
-        this.keyCabinet = keyCabinet;
-        this.drawer = drawer;
-    }
-
-    @Override
-    public Receive<Object> createReceive() {
-        return newReceiveBuilder()
-                .onMessage(Wallet.class, this::onWallet)
-                .onMessage(Keys.class, this::onKeys)
-                .build();
-    }
-
-    private Behavior<Object> onWallet(Wallet wallet) {
-        this.wallet = Optional.of(wallet);
-        return completeOrContinue();
-    }
-
-    private Behavior<Object> onKeys(Keys keys) {
-        this.keys = Optional.of(keys);
-        return completeOrContinue();
-    }
-
-    private Behavior<Object> completeOrContinue() {
-        if (wallet.isPresent() && keys.isPresent()) {
-            replyTo.tell(new Home.ReadyToLeaveHome(whoIsLeaving, keys.get(), wallet.get()));
-            return Behaviors.stopped();
-        } else {
-            return this;
-        }
-    }
-}
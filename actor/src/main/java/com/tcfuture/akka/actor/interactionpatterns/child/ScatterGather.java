@@ -0,0 +1,388 @@
+package com.tcfuture.akka.actor.interactionpatterns.child;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.SupervisorStrategy;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 通用的分散-聚合（scatter-gather）：同时向 N 个 actor 发出各自类型的子请求，在全局期限内收集回复，
+ * 期限到达时以已收到的部分结果回复，每个子请求带有 OK 或 TIMED_OUT 状态。
+ *
+ * 两种用法：
+ * 1. session：每个请求创建一个会话子 actor（即 PrepareToLeaveHome 的做法），收齐或期限到达时回复并立即停止。
+ *    回复按类型匹配子请求，因此用 Part.of 创建的子请求回复类型不能相同。
+ * 2. pooled：一个常驻 actor 同时处理所有 Gather，不为每个请求创建 actor 和定时器。子请求必须用 Part.correlated
+ *    创建（创建 Gather 时检查），请求和回复都携带 long id；期限按 tick 检查。aggregate 抛出异常时只记录日志、
+ *    不回复这个 Gather，其他调用方传入的函数抛出异常时聚合器继续运行，不影响其他进行中的 Gather。
+ */
+public final class ScatterGather {
+
+    public enum Status {
+        OK,
+        TIMED_OUT
+    }
+
+    /**
+     * 一个子请求：目标 actor、回复类型和创建请求消息的方法
+     */
+    public static final class Part<Req, Res> {
+        final String name;
+        final ActorRef<Req> target;
+        final Class<Res> replyClass;
+        final BiFunction<ActorRef<Res>, Long, Req> requestFactory;
+        // 为 null 时按回复类型匹配
+        final ToLongFunction<Res> correlationId;
+
+        private Part(String name, ActorRef<Req> target, Class<Res> replyClass,
+                     BiFunction<ActorRef<Res>, Long, Req> requestFactory, ToLongFunction<Res> correlationId) {
+            this.name = name;
+            this.target = target;
+            this.replyClass = replyClass;
+            this.requestFactory = requestFactory;
+            this.correlationId = correlationId;
+        }
+
+        /**
+         * 回复不携带 id 的子请求，只能用于 session
+         */
+        public static <Req, Res> Part<Req, Res> of(String name, ActorRef<Req> target, Class<Res> replyClass,
+                                                   Function<ActorRef<Res>, Req> requestFactory) {
+            return new Part<>(name, target, replyClass, (replyTo, id) -> requestFactory.apply(replyTo), null);
+        }
+
+        /**
+         * 请求和回复都携带 id 的子请求，可用于 session 和 pooled
+         */
+        public static <Req, Res> Part<Req, Res> correlated(String name, ActorRef<Req> target, Class<Res> replyClass,
+                                                           BiFunction<ActorRef<Res>, Long, Req> requestFactory,
+                                                           ToLongFunction<Res> correlationId) {
+            return new Part<>(name, target, replyClass, requestFactory, correlationId);
+        }
+
+        boolean matches(Object reply, long id) {
+            return replyClass.isInstance(reply)
+                    && (correlationId == null || correlationId.applyAsLong(replyClass.cast(reply)) == id);
+        }
+    }
+
+    /**
+     * 聚合结果，子请求未在期限内回复时没有值
+     */
+    public static final class Result {
+        private final List<Part<?, ?>> parts;
+        private final Object[] replies;
+
+        Result(List<Part<?, ?>> parts, Object[] replies) {
+            this.parts = parts;
+            this.replies = replies;
+        }
+
+        public <Res> Optional<Res> get(Part<?, Res> part) {
+            return Optional.ofNullable(part.replyClass.cast(replies[indexOf(part)]));
+        }
+
+        public Status status(Part<?, ?> part) {
+            return replies[indexOf(part)] != null ? Status.OK : Status.TIMED_OUT;
+        }
+
+        /**
+         * @return 按子请求顺序的名称和状态
+         */
+        public Map<String, Status> statuses() {
+            Map<String, Status> statuses = new LinkedHashMap<>();
+            for (int i = 0; i < replies.length; i++) {
+                statuses.put(parts.get(i).name, replies[i] != null ? Status.OK : Status.TIMED_OUT);
+            }
+            return statuses;
+        }
+
+        public boolean isComplete() {
+            for (Object reply : replies) {
+                if (reply == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOf(Part<?, ?> part) {
+            for (int i = 0; i < parts.size(); i++) {
+                if (parts.get(i) == part) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("part " + part.name + " is not part of this result");
+        }
+    }
+
+    /**
+     * 发给 pooled 聚合器的请求
+     *
+     * @param <R> 由 Result 得到的回复类型
+     * @throws IllegalArgumentException 子请求不是用 Part.correlated 创建的
+     */
+    public static final class Gather<R> {
+        final List<Part<?, ?>> parts;
+        final Duration deadline;
+        final Function<Result, R> aggregate;
+        final ActorRef<R> replyTo;
+
+        public Gather(List<Part<?, ?>> parts, Duration deadline, Function<Result, R> aggregate, ActorRef<R> replyTo) {
+            for (Part<?, ?> part : parts) {
+                if (part.correlationId == null) {
+                    throw new IllegalArgumentException("part " + part.name + " must be created with Part.correlated");
+                }
+            }
+            this.parts = parts;
+            this.deadline = deadline;
+            this.aggregate = aggregate;
+            this.replyTo = replyTo;
+        }
+    }
+
+    private enum Timeout {
+        INSTANCE
+    }
+
+    private enum Tick {
+        INSTANCE
+    }
+
+    private ScatterGather() {
+    }
+
+    /**
+     * 处理一个请求的会话 actor
+     */
+    public static <R> Behavior<Object> session(List<Part<?, ?>> parts, Duration deadline,
+                                               Function<Result, R> aggregate, ActorRef<R> replyTo) {
+        for (int i = 0; i < parts.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                if (parts.get(i).correlationId == null && parts.get(j).correlationId == null
+                        && parts.get(i).replyClass == parts.get(j).replyClass) {
+                    throw new IllegalArgumentException("parts " + parts.get(j).name + " and " + parts.get(i).name
+                            + " reply with the same type, use Part.correlated");
+                }
+            }
+        }
+        return Behaviors.setup(context -> Behaviors.withTimers(
+                timers -> new Session<>(context, timers, parts, deadline, aggregate, replyTo)));
+    }
+
+    /**
+     * 同时处理所有 Gather 的常驻聚合器，期限的精度为 tick
+     */
+    public static Behavior<Object> pooled(Duration tick) {
+        // correlationId、requestFactory 抛出的异常不应丢掉其他 Gather 的状态
+        return Behaviors.supervise(Behaviors.<Object>setup(context -> Behaviors.withTimers(timers -> {
+            timers.startTimerWithFixedDelay(Tick.INSTANCE, Tick.INSTANCE, tick);
+            return new Pooled(context);
+        }))).onFailure(SupervisorStrategy.resume());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void send(Part<?, ?> part, ActorRef<Object> self, long id) {
+        Part<Object, Object> p = (Part<Object, Object>) part;
+        p.target.tell(p.requestFactory.apply(self.narrow(), id));
+    }
+
+    private static final class Session<R> extends AbstractBehavior<Object> {
+        private final List<Part<?, ?>> parts;
+        private final Function<Result, R> aggregate;
+        private final ActorRef<R> replyTo;
+        private final Object[] replies;
+        private int remaining;
+
+        private Session(ActorContext<Object> context, TimerScheduler<Object> timers, List<Part<?, ?>> parts,
+                        Duration deadline, Function<Result, R> aggregate, ActorRef<R> replyTo) {
+            super(context);
+            this.parts = parts;
+            this.aggregate = aggregate;
+            this.replyTo = replyTo;
+            this.replies = new Object[parts.size()];
+            this.remaining = parts.size();
+            timers.startSingleTimer(Timeout.INSTANCE, deadline);
+            for (int i = 0; i < parts.size(); i++) {
+                send(parts.get(i), context.getSelf(), i);
+            }
+        }
+
+        @Override
+        public Receive<Object> createReceive() {
+            return newReceiveBuilder()
+                    .onMessageEquals(Timeout.INSTANCE, this::reply)
+                    .onAnyMessage(this::onReply)
+                    .build();
+        }
+
+        private Behavior<Object> onReply(Object reply) {
+            for (int i = 0; i < replies.length; i++) {
+                if (replies[i] == null && parts.get(i).matches(reply, i)) {
+                    replies[i] = reply;
+                    return --remaining == 0 ? reply() : this;
+                }
+            }
+            return this;
+        }
+
+        private Behavior<Object> reply() {
+            replyTo.tell(aggregate.apply(new Result(parts, replies)));
+            return Behaviors.stopped();
+        }
+    }
+
+    /**
+     * pooled 聚合器中一个进行中的 Gather，子请求的 id 为 firstId 到 firstId + parts.size() - 1。
+     * 完成后 gather 和 replies 置为 null，到期前留在 deadlines 中的只有这个小对象
+     */
+    private static final class InFlight {
+        Gather<Object> gather;
+        final long firstId;
+        final long deadlineNanos;
+        Object[] replies;
+        int remaining;
+
+        InFlight(Gather<Object> gather, long firstId, long deadlineNanos) {
+            this.gather = gather;
+            this.firstId = firstId;
+            this.deadlineNanos = deadlineNanos;
+            this.replies = new Object[gather.parts.size()];
+            this.remaining = replies.length;
+        }
+    }
+
+    private static final class Pooled extends AbstractBehavior<Object> {
+        // 子请求 id 到所属 Gather
+        private final Map<Long, InFlight> inFlight = new HashMap<>();
+        // 按期限排序；已完成的 Gather 到期时再移除，此前不再引用 Gather 和回复
+        private final PriorityQueue<InFlight> deadlines =
+                new PriorityQueue<>((a, b) -> Long.compare(a.deadlineNanos, b.deadlineNanos));
+        // 回复类型到取 id 的方法，回复类型相同的子请求应使用相同的 correlationId
+        private final Map<Class<?>, ToLongFunction<Object>> correlationIds = new HashMap<>();
+        private long nextId;
+
+        private Pooled(ActorContext<Object> context) {
+            super(context);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Receive<Object> createReceive() {
+            return newReceiveBuilder()
+                    .onMessage(Gather.class, gather -> onGather((Gather<Object>) gather))
+                    .onMessageEquals(Tick.INSTANCE, this::onTick)
+                    .onAnyMessage(this::onReply)
+                    .build();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Behavior<Object> onGather(Gather<Object> gather) {
+            for (Part<?, ?> part : gather.parts) {
+                correlationIds.putIfAbsent(part.replyClass, (ToLongFunction<Object>) part.correlationId);
+            }
+            InFlight state = new InFlight(gather, nextId, System.nanoTime() + gather.deadline.toNanos());
+            nextId += gather.parts.size();
+            if (state.remaining == 0) {
+                finish(state);
+                return this;
+            }
+            deadlines.add(state);
+            for (int i = 0; i < gather.parts.size(); i++) {
+                long id = state.firstId + i;
+                inFlight.put(id, state);
+                send(gather.parts.get(i), getContext().getSelf(), id);
+            }
+            return this;
+        }
+
+        private Behavior<Object> onReply(Object reply) {
+            ToLongFunction<Object> correlationId = correlationIdOf(reply.getClass());
+            if (correlationId == null) {
+                return this;
+            }
+            long id = correlationId.applyAsLong(reply);
+            InFlight state = inFlight.get(id);
+            // 超时后到达的回复找不到所属 Gather，直接丢弃
+            if (state == null) {
+                return this;
+            }
+            int index = (int) (id - state.firstId);
+            if (!state.gather.parts.get(index).replyClass.isInstance(reply)) {
+                return this;
+            }
+            inFlight.remove(id);
+            state.replies[index] = reply;
+            if (--state.remaining == 0) {
+                finish(state);
+            }
+            return this;
+        }
+
+        private ToLongFunction<Object> correlationIdOf(Class<?> replyClass) {
+            ToLongFunction<Object> correlationId = correlationIds.get(replyClass);
+            if (correlationId == null) {
+                // 回复是子请求回复类型的子类
+                for (Map.Entry<Class<?>, ToLongFunction<Object>> entry : new ArrayList<>(correlationIds.entrySet())) {
+                    if (entry.getKey().isAssignableFrom(replyClass)) {
+                        correlationId = entry.getValue();
+                        correlationIds.put(replyClass, correlationId);
+                        break;
+                    }
+                }
+            }
+            return correlationId;
+        }
+
+        private Behavior<Object> onTick() {
+            long now = System.nanoTime();
+            while (!deadlines.isEmpty() && deadlines.peek().deadlineNanos <= now) {
+                InFlight state = deadlines.poll();
+                if (state.remaining > 0) {
+                    for (int i = 0; i < state.replies.length; i++) {
+                        if (state.replies[i] == null) {
+                            inFlight.remove(state.firstId + i);
+                        }
+                    }
+                    state.remaining = 0;
+                    finish(state);
+                }
+            }
+            return this;
+        }
+
+        private void finish(InFlight state) {
+            Gather<Object> gather = state.gather;
+            Object[] replies = state.replies;
+            state.gather = null;
+            state.replies = null;
+            Object reply;
+            try {
+                reply = gather.aggregate.apply(new Result(gather.parts, replies));
+            } catch (RuntimeException e) {
+                getContext().getLog().error("Aggregating gather for " + gather.replyTo + " failed", e);
+                return;
+            }
+            gather.replyTo.tell(reply);
+        }
+    }
+}
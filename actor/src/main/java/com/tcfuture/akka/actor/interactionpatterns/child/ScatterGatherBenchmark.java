@@ -0,0 +1,170 @@
+package com.tcfuture.akka.actor.interactionpatterns.child;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.ConfigFactory;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 每个请求创建会话 actor（ScatterGather.session）与常驻聚合器（ScatterGather.pooled）的对比。
+ *
+ * 每个请求向两个 actor 各发一个子请求，期限 1 秒。按固定速率发出请求（每毫秒一批），统计实际完成速率、
+ * 从发出到收到聚合结果的平均和 p99 延迟、超时的请求数，以及每个请求分配的字节数
+ * （所有线程 ThreadMXBean.getThreadAllocatedBytes 之和的增量）。达不到目标速率时发送端会落后，实际速率低于目标。
+ * 参数：每秒请求数（默认 100000）、持续秒数（默认 3）。
+ */
+public class ScatterGatherBenchmark {
+
+    static final class Lookup {
+        final long id;
+        final ActorRef<Found> replyTo;
+
+        Lookup(long id, ActorRef<Found> replyTo) {
+            this.id = id;
+            this.replyTo = replyTo;
+        }
+    }
+
+    static final class Found {
+        final long id;
+
+        Found(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 每个 Gather 创建一个会话 actor
+     */
+    private static Behavior<ScatterGather.Gather<Long>> sessions() {
+        return Behaviors.receive((context, gather) -> {
+            context.spawnAnonymous(ScatterGather.session(gather.parts, gather.deadline, gather.aggregate,
+                    gather.replyTo));
+            return Behaviors.same();
+        });
+    }
+
+    /**
+     * 按发出时间记录延迟
+     */
+    private static final class Latencies {
+        final long[] nanos;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        int count;
+        int timedOut;
+
+        Latencies(int requests) {
+            this.nanos = new long[requests];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        System.out.printf(Locale.ROOT, "%-8s %10s %10s %10s %10s %10s %10s%n",
+                "mode", "target/s", "actual/s", "mean ms", "p99 ms", "timed out", "bytes/req");
+        // 第一轮预热
+        run("session", rate, 1, false);
+        run("pooled", rate, 1, false);
+        run("session", rate, seconds, true);
+        run("pooled", rate, seconds, true);
+    }
+
+    private static void run(String mode, int rate, int seconds, boolean print) throws Exception {
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "ScatterGatherBenchmark",
+                ConfigFactory.parseString("akka.loglevel = INFO\nakka.actor.provider = local")
+                        .withFallback(ConfigFactory.load()));
+        try {
+            Behavior<Lookup> service = Behaviors.receiveMessage(lookup -> {
+                lookup.replyTo.tell(new Found(lookup.id));
+                return Behaviors.same();
+            });
+            ActorRef<Lookup> keys = system.systemActorOf(service, "keys", Props.empty());
+            ActorRef<Lookup> wallet = system.systemActorOf(service, "wallet", Props.empty());
+            List<ScatterGather.Part<?, ?>> parts = Arrays.asList(
+                    ScatterGather.Part.correlated("keys", keys, Found.class, (replyTo, id) -> new Lookup(id, replyTo),
+                            found -> found.id),
+                    ScatterGather.Part.correlated("wallet", wallet, Found.class,
+                            (replyTo, id) -> new Lookup(id, replyTo), found -> found.id));
+
+            ActorRef<ScatterGather.Gather<Long>> aggregator = "pooled".equals(mode)
+                    ? system.systemActorOf(ScatterGather.pooled(Duration.ofMillis(10)), "pooled", Props.empty())
+                    .narrow()
+                    : system.systemActorOf(sessions(), "sessions", Props.empty());
+
+            int requests = rate * seconds;
+            Latencies latencies = new Latencies(requests);
+            ActorRef<Long> replies = system.systemActorOf(Behaviors.receiveMessage(startNanos -> {
+                long latency = System.nanoTime() - Math.abs(startNanos);
+                if (startNanos < 0) {
+                    latencies.timedOut++;
+                }
+                latencies.nanos[latencies.count++] = latency;
+                if (latencies.count == requests) {
+                    latencies.done.complete(null);
+                }
+                return Behaviors.same();
+            }), "replies", Props.empty());
+
+            Duration deadline = Duration.ofSeconds(1);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            int perMilli = Math.max(1, rate / 1000);
+            int sent = 0;
+            for (long slot = 0; sent < requests; slot++) {
+                long due = start + TimeUnit.MILLISECONDS.toNanos(slot);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                for (int i = 0; i < perMilli && sent < requests; i++, sent++) {
+                    long startNanos = System.nanoTime();
+                    // 超时的请求以负数标记
+                    aggregator.tell(new ScatterGather.Gather<>(parts, deadline,
+                            result -> result.isComplete() ? startNanos : -startNanos, replies));
+                }
+            }
+            latencies.done.get(5, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            if (print) {
+                long[] sorted = latencies.nanos.clone();
+                Arrays.sort(sorted);
+                double mean = Arrays.stream(sorted).average().orElse(0) / 1e6;
+                System.out.printf(Locale.ROOT, "%-8s %10d %10.0f %10.2f %10.2f %10d %10.0f%n", mode, rate,
+                        requests / (elapsed / 1e9), mean, sorted[(int) (sorted.length * 0.99)] / 1e6,
+                        latencies.timedOut, allocated / (double) requests);
+            }
+        } finally {
+            system.terminate();
+            system.getWhenTerminated().toCompletableFuture().join();
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
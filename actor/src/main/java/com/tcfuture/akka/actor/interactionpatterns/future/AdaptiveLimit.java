@@ -0,0 +1,75 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 按下游延迟调整的并发上限（AIMD），只由 CustomerRepository actor 访问。
+ *
+ * 以最近两个窗口（每窗口 probeInterval 个样本）中的最小延迟作为无负载延迟；某次操作的延迟超过它的 tolerance 倍
+ * 或操作失败时，认为下游开始排队，上限乘以 backoffRatio；否则在上限被用到一半以上时每个样本增加 1/limit，即大约每轮（limit 个样本）加 1。
+ * 一次下调之后，在下调前就已发出的操作不再触发下调，避免同一轮的多个慢样本连续下调。
+ * 只看最近两个窗口，使下游本身变慢或变快后基准能跟着变化；而上限在下调后延迟会回落，
+ * 每个窗口内通常都有接近无负载的样本，持续过载不会把基准抬高。
+ */
+final class AdaptiveLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    private final int probeInterval;
+    private double limit;
+    // 当前窗口和上一个窗口的最小延迟
+    private long windowMin = Long.MAX_VALUE;
+    private long previousWindowMin = Long.MAX_VALUE;
+    private long lastDecrease = Long.MIN_VALUE;
+    private int samples;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double tolerance,
+                  int probeInterval) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("require 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1 || tolerance < 1 || probeInterval < 1) {
+            throw new IllegalArgumentException("require 0 < backoffRatio < 1, tolerance >= 1, probeInterval >= 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+        this.probeInterval = probeInterval;
+        this.limit = initialLimit;
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * 记录一次完成的操作
+     *
+     * @param startNanos 操作发出时的 System.nanoTime
+     * @param latencyNanos 操作耗时
+     * @param inFlight 该操作完成前进行中的操作数（包括它自己）
+     * @param failed 操作是否失败
+     */
+    void onSample(long startNanos, long latencyNanos, int inFlight, boolean failed) {
+        if (!failed) {
+            windowMin = Math.min(windowMin, latencyNanos);
+        }
+        long baseline = Math.min(windowMin, previousWindowMin);
+        if (++samples % probeInterval == 0) {
+            previousWindowMin = windowMin;
+            windowMin = Long.MAX_VALUE;
+        }
+        if (failed || latencyNanos > tolerance * baseline) {
+            if (startNanos > lastDecrease) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = System.nanoTime();
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
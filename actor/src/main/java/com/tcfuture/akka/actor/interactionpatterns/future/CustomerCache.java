@@ -0,0 +1,79 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 按 version 更新的有界客户缓存，只由 CustomerRepository actor 访问。
+ *
+ * 超过 maxEntries 时淘汰最久未访问的客户。读取的结果只在 version 比缓存中的新时生效，因此先发出、后返回的读取
+ * 不会用旧数据覆盖已经写入的新版本；写入成功的客户在 version 不小于缓存中的时生效，同一 version 的再次写入
+ * 以最后成功的为准，与存储一致。
+ */
+final class CustomerCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Customer> entries;
+
+    CustomerCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Customer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Customer> eldest) {
+                return size() > CustomerCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return 缓存的客户，没有时为 null
+     */
+    Customer get(String id) {
+        return entries.get(id);
+    }
+
+    /**
+     * 从存储读取到的客户：缓存中没有该客户或已有的 version 较旧时写入
+     *
+     * @return 写入后缓存中的客户（可能是已有的同一或较新版本）；缓存容量为 0 时为传入的客户
+     */
+    Customer putIfNewer(Customer customer) {
+        return put(customer, false);
+    }
+
+    /**
+     * 已成功写入存储的客户：缓存中没有该客户或已有的 version 不比它新时写入
+     *
+     * @return 写入后缓存中的客户（可能是已有的较新版本）；缓存容量为 0 时为传入的客户
+     */
+    Customer putWritten(Customer customer) {
+        return put(customer, true);
+    }
+
+    private Customer put(Customer customer, boolean replaceSameVersion) {
+        if (maxEntries == 0) {
+            return customer;
+        }
+        Customer cached = entries.get(customer.id);
+        if (cached != null && (cached.version > customer.version
+                || cached.version == customer.version && !replaceSameVersion)) {
+            return cached;
+        }
+        entries.put(customer.id, customer);
+        return customer;
+    }
+
+    void invalidate(String id) {
+        entries.remove(id);
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -2,11 +2,43 @@ package com.tcfuture.akka.actor.interactionpatterns.future;
 
 import akka.Done;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author liulv
  */
 public interface CustomerDataAccess {
     CompletionStage<Done> update(Customer customer);
+
+    /**
+     * 读取一个客户，不存在时为 Optional.empty()；CustomerRepository 的 Get 缓存未命中时调用
+     */
+    CompletionStage<Optional<Customer>> get(String id);
+
+    /**
+     * 批量写入，每个客户最多出现一次
+     *
+     * 默认实现逐个调用 update；支持批量写入的存储应覆盖此方法，一次写入整批。
+     *
+     * @return 写入失败的客户 id 及原因，全部成功时为空；整批失败时返回失败的 CompletionStage
+     */
+    default CompletionStage<Map<String, Throwable>> updateAll(List<Customer> customers) {
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] updates = new CompletableFuture<?>[customers.size()];
+        for (int i = 0; i < updates.length; i++) {
+            Customer customer = customers.get(i);
+            updates[i] = update(customer).toCompletableFuture().handle((done, e) -> {
+                if (e != null) {
+                    failures.put(customer.id, e);
+                }
+                return done;
+            });
+        }
+        return CompletableFuture.allOf(updates).thenApply(v -> failures);
+    }
 }
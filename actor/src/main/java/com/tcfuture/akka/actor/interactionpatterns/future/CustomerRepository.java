@@ -7,7 +7,16 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -31,10 +40,91 @@ import java.util.concurrent.CompletionStage;
  * 访问从Actor返回CompletionStage的api，例如数据库或外部服务
  * 当CompletionStage完成时，actor需要继续处理
  * 保持上下文与原始请求的关系，并在CompletionStage完成时使用它，例如replyTo actor引用
+ *
+ * 并发数不再固定为 10，而是由 AdaptiveLimit 按 CustomerDataAccess.update 的延迟调整；超过上限的更新进入容量为
+ * maxQueued 的等待队列，有操作完成时按到达顺序发出，只有队列也满时才返回 UpdateFailure。GetStats 查询当前上限、
+ * 进行中和排队的操作数以及拒绝次数。
+ *
+ * 设置 flushWindow 后进入合并写入模式：更新先放入 PendingWrites，同一客户合并为 version 最大的一次，
+ * 窗口结束或攒够 maxBatch 个客户时通过 CustomerDataAccess.updateAll 写入一批，一批计为一个进行中的操作；
+ * 并发已达上限时继续在窗口中合并，直到有操作完成。每个请求者都收到自己所更新客户的写入结果。
+ * 同一客户的两批可能同时在途，存储应按 version 忽略较旧的写入。
+ *
+ * Get 先查 CustomerCache（按 version 更新的 LRU 缓存，容量为 cacheSize），未命中时通过 CustomerDataAccess.get
+ * 读取；同一客户同时未命中的 Get 共用一次读取，读取完成后一起回复。写入成功后缓存在 version 不比缓存中旧时
+ * 替换为写入的客户（同一 version 的再次写入也替换），写入失败时移除该客户。version 比缓存中旧的更新直接返回
+ * UpdateFailure，不再写入存储；这只是缓存命中时的提前拒绝，客户不在缓存中（包括 cacheSize 为 0）时更新照常
+ * 发给存储，version 的先后仍由存储保证。读取不占用并发上限。默认不缓存，每次 Get 都读取存储。
+ * GetCacheStats 查询命中率和读取延迟。
  */
 public class CustomerRepository extends AbstractBehavior<CustomerRepository.Command> {
 
-    private static final int MAX_OPERATIONS_IN_PROGRESS = 10;
+    /**
+     * 并发上限和等待队列的配置
+     */
+    public static final class Settings {
+        public final int initialLimit;
+        public final int minLimit;
+        public final int maxLimit;
+        // 延迟变高时上限乘以的系数
+        public final double backoffRatio;
+        // 延迟超过最小延迟的多少倍时认为下游已过载
+        public final double tolerance;
+        // 等待队列的容量；合并写入模式下为窗口中最多的客户数
+        public final int maxQueued;
+        // 合并写入的窗口，为 0 时逐个写入
+        public final Duration flushWindow;
+        // 合并写入时一批最多的客户数
+        public final int maxBatch;
+        // 缓存的最多客户数，0 表示不缓存（默认）
+        public final int cacheSize;
+
+        public Settings(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double tolerance,
+                        int maxQueued) {
+            this(initialLimit, minLimit, maxLimit, backoffRatio, tolerance, maxQueued, Duration.ZERO, 1, 0);
+        }
+
+        private Settings(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double tolerance,
+                         int maxQueued, Duration flushWindow, int maxBatch, int cacheSize) {
+            if (maxQueued < 0 || maxBatch < 1 || cacheSize < 0) {
+                throw new IllegalArgumentException(
+                        "maxQueued and cacheSize must not be negative and maxBatch must be positive");
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.backoffRatio = backoffRatio;
+            this.tolerance = tolerance;
+            this.maxQueued = maxQueued;
+            this.flushWindow = flushWindow;
+            this.maxBatch = maxBatch;
+            this.cacheSize = cacheSize;
+        }
+
+        /**
+         * @return 使用合并写入模式的副本
+         */
+        public Settings withCoalescing(Duration flushWindow, int maxBatch) {
+            return new Settings(initialLimit, minLimit, maxLimit, backoffRatio, tolerance, maxQueued, flushWindow,
+                    maxBatch, cacheSize);
+        }
+
+        /**
+         * @return 缓存最多 cacheSize 个客户的副本
+         */
+        public Settings withCacheSize(int cacheSize) {
+            return new Settings(initialLimit, minLimit, maxLimit, backoffRatio, tolerance, maxQueued, flushWindow,
+                    maxBatch, cacheSize);
+        }
+
+        boolean coalescing() {
+            return !flushWindow.isZero();
+        }
+
+        public static Settings defaults() {
+            return new Settings(10, 1, 200, 0.9, 2.0, 1000);
+        }
+    }
 
     interface Command {}
 
@@ -48,6 +138,16 @@ public class CustomerRepository extends AbstractBehavior<CustomerRepository.Comm
         }
     }
 
+    public static class Get implements Command {
+        public final String id;
+        public final ActorRef<GetResult> replyTo;
+
+        public Get(String id, ActorRef<GetResult> replyTo) {
+            this.id = id;
+            this.replyTo = replyTo;
+        }
+    }
+
     interface OperationResult {}
 
     public static class UpdateSuccess implements OperationResult {
@@ -68,26 +168,196 @@ public class CustomerRepository extends AbstractBehavior<CustomerRepository.Comm
         }
     }
 
+    interface GetResult {}
+
+    public static class CustomerFound implements GetResult {
+        public final Customer customer;
+
+        public CustomerFound(Customer customer) {
+            this.customer = customer;
+        }
+    }
+
+    public static class CustomerNotFound implements GetResult {
+        public final String id;
+
+        public CustomerNotFound(String id) {
+            this.id = id;
+        }
+    }
+
+    public static class GetFailure implements GetResult {
+        public final String id;
+        public final String reason;
+
+        public GetFailure(String id, String reason) {
+            this.id = id;
+            this.reason = reason;
+        }
+    }
+
     private static class WrappedUpdateResult implements Command {
+        public final Customer customer;
         public final OperationResult result;
         public final ActorRef<OperationResult> replyTo;
+        // 调用 CustomerDataAccess.update 时的 System.nanoTime
+        public final long startNanos;
 
-        private WrappedUpdateResult(OperationResult result, ActorRef<OperationResult> replyTo) {
+        private WrappedUpdateResult(Customer customer, OperationResult result, ActorRef<OperationResult> replyTo,
+                                    long startNanos) {
+            this.customer = customer;
             this.result = result;
             this.replyTo = replyTo;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static class WrappedLoadResult implements Command {
+        public final String id;
+        // 读取失败时为 null
+        public final Optional<Customer> customer;
+        public final Throwable error;
+        public final long startNanos;
+
+        private WrappedLoadResult(String id, Optional<Customer> customer, Throwable error, long startNanos) {
+            this.id = id;
+            this.customer = customer;
+            this.error = error;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static class WrappedBatchResult implements Command {
+        public final Map<String, PendingWrites.Write> writes;
+        // 写入失败的客户 id 及原因
+        public final Map<String, Throwable> failures;
+        // 整批失败的原因，否则为 null
+        public final Throwable error;
+        public final long startNanos;
+
+        private WrappedBatchResult(Map<String, PendingWrites.Write> writes, Map<String, Throwable> failures,
+                                   Throwable error, long startNanos) {
+            this.writes = writes;
+            this.failures = failures;
+            this.error = error;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private enum Flush implements Command {
+        INSTANCE
+    }
+
+    public static class GetStats implements Command {
+        public final ActorRef<Stats> replyTo;
+
+        public GetStats(ActorRef<Stats> replyTo) {
+            this.replyTo = replyTo;
+        }
+    }
+
+    public static class Stats {
+        // 当前并发上限
+        public final int limit;
+        public final int inProgress;
+        // 等待队列中的更新数
+        public final int queued;
+        // 因等待队列已满被拒绝的更新数
+        public final long rejected;
+        // 合并写入模式下被同一客户的其他更新合并的更新数
+        public final long coalesced;
+        // 合并写入模式下写入的批数
+        public final long batches;
+
+        public Stats(int limit, int inProgress, int queued, long rejected, long coalesced, long batches) {
+            this.limit = limit;
+            this.inProgress = inProgress;
+            this.queued = queued;
+            this.rejected = rejected;
+            this.coalesced = coalesced;
+            this.batches = batches;
+        }
+    }
+
+    public static class GetCacheStats implements Command {
+        public final ActorRef<CacheStats> replyTo;
+
+        public GetCacheStats(ActorRef<CacheStats> replyTo) {
+            this.replyTo = replyTo;
+        }
+    }
+
+    public static class CacheStats {
+        public final long hits;
+        public final long misses;
+        // 由缓存直接回复的 Get 所占比例
+        public final double hitRate;
+        // 调用 CustomerDataAccess.get 的次数
+        public final long loads;
+        // 加入进行中读取、未单独读取的未命中数
+        public final long sharedLoads;
+        public final long loadFailures;
+        public final double meanLoadMillis;
+        public final double maxLoadMillis;
+        // 因 version 比缓存中旧而拒绝的更新数
+        public final long staleUpdates;
+        public final int size;
+
+        public CacheStats(long hits, long misses, long loads, long sharedLoads, long loadFailures,
+                          double meanLoadMillis, double maxLoadMillis, long staleUpdates, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.hitRate = hits + misses == 0 ? 0.0 : hits / (double) (hits + misses);
+            this.loads = loads;
+            this.sharedLoads = sharedLoads;
+            this.loadFailures = loadFailures;
+            this.meanLoadMillis = meanLoadMillis;
+            this.maxLoadMillis = maxLoadMillis;
+            this.staleUpdates = staleUpdates;
+            this.size = size;
         }
     }
 
     public static Behavior<Command> create(CustomerDataAccess dataAccess) {
-        return Behaviors.setup(context -> new CustomerRepository(context, dataAccess));
+        return create(dataAccess, Settings.defaults());
+    }
+
+    public static Behavior<Command> create(CustomerDataAccess dataAccess, Settings settings) {
+        return Behaviors.setup(context -> Behaviors.withTimers(
+                timers -> new CustomerRepository(context, timers, dataAccess, settings)));
     }
 
+    private final TimerScheduler<Command> timers;
     private final CustomerDataAccess dataAccess;
+    private final Settings settings;
+    private final AdaptiveLimit limit;
+    private final ArrayDeque<Update> queue = new ArrayDeque<>();
+    private final PendingWrites pending = new PendingWrites();
     private int operationsInProgress = 0;
+    private long rejected;
+    private long coalesced;
+    private long batches;
+    private final CustomerCache cache;
+    // 进行中的读取及等待其结果的请求者
+    private final Map<String, List<ActorRef<GetResult>>> loading = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long loads;
+    private long sharedLoads;
+    private long loadFailures;
+    private long loadNanos;
+    private long maxLoadNanos;
+    private long staleUpdates;
 
-    private CustomerRepository(ActorContext<Command> context, CustomerDataAccess dataAccess) {
+    private CustomerRepository(ActorContext<Command> context, TimerScheduler<Command> timers,
+                               CustomerDataAccess dataAccess, Settings settings) {
         super(context);
+        this.timers = timers;
         this.dataAccess = dataAccess;
+        this.settings = settings;
+        this.limit = new AdaptiveLimit(settings.initialLimit, settings.minLimit, settings.maxLimit,
+                settings.backoffRatio, settings.tolerance, 1000);
+        this.cache = new CustomerCache(settings.cacheSize);
     }
 
     @Override
@@ -95,43 +365,216 @@ public class CustomerRepository extends AbstractBehavior<CustomerRepository.Comm
         return newReceiveBuilder()
                 .onMessage(Update.class, this::onUpdate)
                 .onMessage(WrappedUpdateResult.class, this::onUpdateResult)
+                .onMessage(WrappedBatchResult.class, this::onBatchResult)
+                .onMessageEquals(Flush.INSTANCE, this::onFlush)
+                .onMessage(GetStats.class, this::onGetStats)
+                .onMessage(Get.class, this::onGet)
+                .onMessage(WrappedLoadResult.class, this::onLoadResult)
+                .onMessage(GetCacheStats.class, this::onGetCacheStats)
                 .build();
     }
 
     private Behavior<Command> onUpdate(Update command) {
-        if (operationsInProgress == MAX_OPERATIONS_IN_PROGRESS) {
+        Customer cached = cache.get(command.customer.id);
+        if (cached != null && cached.version > command.customer.version) {
+            staleUpdates++;
             command.replyTo.tell(
                     new UpdateFailure(
                             command.customer.id,
-                            "Max " + MAX_OPERATIONS_IN_PROGRESS + " concurrent operations supported"));
+                            "Version " + command.customer.version + " is older than current version "
+                                    + cached.version));
+            return this;
+        }
+        if (settings.coalescing()) {
+            return onCoalescedUpdate(command);
+        }
+        if (operationsInProgress < limit.limit()) {
+            startUpdate(command);
+        } else if (queue.size() < settings.maxQueued) {
+            queue.addLast(command);
         } else {
-            // increase operationsInProgress counter
-            operationsInProgress++;
-            /**
-             * 核心代码 Done类型，ActorContext.pipeToSelf
-             */
-            CompletionStage<Done> futureResult = dataAccess.update(command.customer);
-            getContext()
-                    .pipeToSelf(
-                            futureResult,
-                            (ok, exc) -> {
-                                if (exc == null)
-                                    return new WrappedUpdateResult(
-                                            new UpdateSuccess(command.customer.id), command.replyTo);
-                                else
-                                    return new WrappedUpdateResult(
-                                            new UpdateFailure(command.customer.id, exc.getMessage()),
-                                            command.replyTo);
-                            });
+            rejected++;
+            command.replyTo.tell(
+                    new UpdateFailure(
+                            command.customer.id,
+                            "Max " + limit.limit() + " concurrent operations and " + settings.maxQueued
+                                    + " queued updates supported"));
         }
         return this;
     }
 
+    private void startUpdate(Update command) {
+        // increase operationsInProgress counter
+        operationsInProgress++;
+        long startNanos = System.nanoTime();
+        /**
+         * 核心代码 Done类型，ActorContext.pipeToSelf
+         */
+        CompletionStage<Done> futureResult = dataAccess.update(command.customer);
+        getContext()
+                .pipeToSelf(
+                        futureResult,
+                        (ok, exc) -> {
+                            if (exc == null)
+                                return new WrappedUpdateResult(command.customer,
+                                        new UpdateSuccess(command.customer.id), command.replyTo, startNanos);
+                            else
+                                return new WrappedUpdateResult(command.customer,
+                                        new UpdateFailure(command.customer.id, exc.getMessage()),
+                                        command.replyTo, startNanos);
+                        });
+    }
+
     private Behavior<Command> onUpdateResult(WrappedUpdateResult wrapped) {
+        limit.onSample(wrapped.startNanos, System.nanoTime() - wrapped.startNanos, operationsInProgress,
+                wrapped.result instanceof UpdateFailure);
         // decrease operationsInProgress counter
         operationsInProgress--;
+        updateCache(wrapped.customer, wrapped.result instanceof UpdateSuccess);
         // send result to original requestor
         wrapped.replyTo.tell(wrapped.result);
+        // 上限可能已经变化，按新的上限发出排队的更新
+        while (!queue.isEmpty() && operationsInProgress < limit.limit()) {
+            startUpdate(queue.pollFirst());
+        }
+        return this;
+    }
+
+    private Behavior<Command> onCoalescedUpdate(Update command) {
+        if (pending.size() >= settings.maxQueued && !pending.contains(command.customer.id)) {
+            rejected++;
+            command.replyTo.tell(
+                    new UpdateFailure(
+                            command.customer.id,
+                            "Max " + settings.maxQueued + " customers pending in the flush window supported"));
+            return this;
+        }
+        if (pending.add(command)) {
+            coalesced++;
+        } else if (pending.size() == 1) {
+            timers.startSingleTimer(Flush.INSTANCE, Flush.INSTANCE, settings.flushWindow);
+        }
+        if (pending.size() >= settings.maxBatch) {
+            flush();
+        }
+        return this;
+    }
+
+    private Behavior<Command> onFlush() {
+        flush();
+        return this;
+    }
+
+    /**
+     * 并发已达上限时不写入，待写入的更新留在窗口中继续合并，有操作完成时再写入
+     */
+    private void flush() {
+        if (pending.size() == 0 || operationsInProgress >= limit.limit()) {
+            return;
+        }
+        timers.cancel(Flush.INSTANCE);
+        operationsInProgress++;
+        batches++;
+        Map<String, PendingWrites.Write> writes = pending.drain();
+        long startNanos = System.nanoTime();
+        CompletionStage<Map<String, Throwable>> futureResult = dataAccess.updateAll(PendingWrites.customers(writes));
+        getContext()
+                .pipeToSelf(
+                        futureResult,
+                        (failures, exc) -> new WrappedBatchResult(writes, failures, exc, startNanos));
+    }
+
+    private Behavior<Command> onBatchResult(WrappedBatchResult wrapped) {
+        boolean failed = wrapped.error != null || !wrapped.failures.isEmpty();
+        limit.onSample(wrapped.startNanos, System.nanoTime() - wrapped.startNanos, operationsInProgress, failed);
+        operationsInProgress--;
+        for (Map.Entry<String, PendingWrites.Write> entry : wrapped.writes.entrySet()) {
+            String id = entry.getKey();
+            Throwable cause = wrapped.error != null ? wrapped.error : wrapped.failures.get(id);
+            OperationResult result = cause == null ? new UpdateSuccess(id) : new UpdateFailure(id, reason(cause));
+            updateCache(entry.getValue().customer, cause == null);
+            entry.getValue().replyTos.forEach(replyTo -> replyTo.tell(result));
+        }
+        // 窗口已结束但因并发已满未写入的更新
+        if (pending.size() >= settings.maxBatch || !timers.isTimerActive(Flush.INSTANCE)) {
+            flush();
+        }
+        return this;
+    }
+
+    /**
+     * 写入成功时按 version 更新缓存，同一 version 以这次写入为准；失败时存储中的版本不确定，移除该客户
+     */
+    private void updateCache(Customer customer, boolean succeeded) {
+        if (succeeded) {
+            cache.putWritten(customer);
+        } else {
+            cache.invalidate(customer.id);
+        }
+    }
+
+    private Behavior<Command> onGet(Get command) {
+        Customer cached = cache.get(command.id);
+        if (cached != null) {
+            hits++;
+            command.replyTo.tell(new CustomerFound(cached));
+            return this;
+        }
+        misses++;
+        List<ActorRef<GetResult>> waiting = loading.get(command.id);
+        if (waiting != null) {
+            sharedLoads++;
+            waiting.add(command.replyTo);
+            return this;
+        }
+        waiting = new ArrayList<>(2);
+        waiting.add(command.replyTo);
+        loading.put(command.id, waiting);
+        loads++;
+        long startNanos = System.nanoTime();
+        getContext()
+                .pipeToSelf(
+                        dataAccess.get(command.id),
+                        (customer, exc) -> new WrappedLoadResult(command.id, customer, exc, startNanos));
+        return this;
+    }
+
+    private Behavior<Command> onLoadResult(WrappedLoadResult wrapped) {
+        long latency = System.nanoTime() - wrapped.startNanos;
+        loadNanos += latency;
+        maxLoadNanos = Math.max(maxLoadNanos, latency);
+        GetResult result;
+        if (wrapped.error != null) {
+            loadFailures++;
+            result = new GetFailure(wrapped.id, reason(wrapped.error));
+        } else if (wrapped.customer.isPresent()) {
+            // 读取期间可能已经写入了更新的版本
+            result = new CustomerFound(cache.putIfNewer(wrapped.customer.get()));
+        } else {
+            Customer cached = cache.get(wrapped.id);
+            result = cached != null ? new CustomerFound(cached) : new CustomerNotFound(wrapped.id);
+        }
+        loading.remove(wrapped.id).forEach(replyTo -> replyTo.tell(result));
+        return this;
+    }
+
+    private Behavior<Command> onGetCacheStats(GetCacheStats query) {
+        double meanLoadMillis = loads == 0 ? 0.0 : loadNanos / 1e6 / loads;
+        query.replyTo.tell(new CacheStats(hits, misses, loads, sharedLoads, loadFailures, meanLoadMillis,
+                maxLoadNanos / 1e6, staleUpdates, cache.size()));
+        return this;
+    }
+
+    private static String reason(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private Behavior<Command> onGetStats(GetStats query) {
+        int queued = settings.coalescing() ? pending.size() : queue.size();
+        query.replyTo.tell(new Stats(limit.limit(), operationsInProgress, queued, rejected, coalesced, batches));
         return this;
     }
 }
@@ -0,0 +1,151 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+import akka.Done;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 固定并发上限与自适应上限在模拟存储上的吞吐对比。
+ *
+ * 模拟存储在并发不超过 capacity 时每次更新耗时 base，超过后耗时按 (并发 / capacity)^2 增长，即过载时总吞吐下降。
+ * 一次性提交 updates 个更新（等待队列足够大，不拒绝），更新分布在 1000 个客户上，统计全部完成的耗时、
+ * 存储的平均延迟、存储写入的客户数和结束时的上限。合并写入模式下一批的耗时为 base * (1 + 客户数 / 100)，
+ * 一批按一个并发计算。
+ * 参数：更新数（默认 20000）、存储容量（默认 16）、基础耗时毫秒（默认 2）。
+ */
+public class CustomerRepositoryBenchmark {
+
+    /**
+     * 过载后变慢的模拟存储
+     */
+    private static final class SimulatedStore implements CustomerDataAccess {
+        private final ScheduledExecutorService timer;
+        private final int capacity;
+        private final long baseMicros;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder totalMicros = new LongAdder();
+        final LongAdder operations = new LongAdder();
+        final LongAdder writes = new LongAdder();
+
+        SimulatedStore(ScheduledExecutorService timer, int capacity, long baseMicros) {
+            this.timer = timer;
+            this.capacity = capacity;
+            this.baseMicros = baseMicros;
+        }
+
+        @Override
+        public CompletableFuture<Done> update(Customer customer) {
+            return write(1, baseMicros).thenApply(v -> Done.getInstance());
+        }
+
+        /**
+         * 基准只压测写入，不保存客户，也不发送 Get
+         */
+        @Override
+        public CompletionStage<Optional<Customer>> get(String id) {
+            CompletableFuture<Optional<Customer>> result = new CompletableFuture<>();
+            result.completeExceptionally(new UnsupportedOperationException("SimulatedStore does not support get"));
+            return result;
+        }
+
+        @Override
+        public CompletionStage<Map<String, Throwable>> updateAll(List<Customer> customers) {
+            return write(customers.size(), baseMicros + baseMicros * customers.size() / 100)
+                    .thenApply(v -> Collections.emptyMap());
+        }
+
+        private CompletableFuture<Void> write(int customers, long micros) {
+            int concurrency = inFlight.incrementAndGet();
+            double overload = Math.max(1.0, concurrency / (double) capacity);
+            long latency = (long) (micros * overload * overload);
+            totalMicros.add(latency);
+            operations.increment();
+            writes.add(customers);
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            timer.schedule(() -> {
+                inFlight.decrementAndGet();
+                result.complete(null);
+            }, latency, TimeUnit.MICROSECONDS);
+            return result;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int updates = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        long baseMicros = (args.length > 2 ? Long.parseLong(args[2]) : 2) * 1000;
+
+        System.out.printf(Locale.ROOT, "%-10s %12s %14s %12s %10s %8s%n",
+                "limit", "updates/s", "mean lat ms", "total ms", "writes", "final");
+        run("fixed-10", updates, capacity, baseMicros, new CustomerRepository.Settings(10, 10, 10, 0.9, 2.0, updates));
+        run("fixed-100", updates, capacity, baseMicros,
+                new CustomerRepository.Settings(100, 100, 100, 0.9, 2.0, updates));
+        run("adaptive", updates, capacity, baseMicros, new CustomerRepository.Settings(10, 1, 200, 0.9, 2.0, updates));
+        run("coalescing", updates, capacity, baseMicros, new CustomerRepository.Settings(10, 1, 200, 0.9, 2.0, updates)
+                .withCoalescing(Duration.ofMillis(5), 200));
+    }
+
+    private static void run(String label, int updates, int capacity, long baseMicros,
+                            CustomerRepository.Settings settings) throws Exception {
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "CustomerRepositoryBenchmark",
+                ConfigFactory.parseString("akka.loglevel = INFO\nakka.actor.provider = local")
+                        .withFallback(ConfigFactory.load()));
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+        try {
+            SimulatedStore store = new SimulatedStore(timer, capacity, baseMicros);
+            ActorRef<CustomerRepository.Command> repository = system.systemActorOf(
+                    CustomerRepository.create(store, settings), "repository", Props.empty());
+            LongAdder done = new LongAdder();
+            CompletableFuture<Void> all = new CompletableFuture<>();
+            ActorRef<CustomerRepository.OperationResult> replyTo = system.systemActorOf(
+                    Behaviors.receive(CustomerRepository.OperationResult.class)
+                            .onAnyMessage(result -> {
+                                done.increment();
+                                if (done.sum() == updates) {
+                                    all.complete(null);
+                                }
+                                return Behaviors.same();
+                            })
+                            .build(), "replies", Props.empty());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                repository.tell(new CustomerRepository.Update(
+                        new Customer("customer-" + (i % 1000), i, "name", "address"), replyTo));
+            }
+            all.get(5, TimeUnit.MINUTES);
+            long elapsed = System.nanoTime() - start;
+            CustomerRepository.Stats stats = AskPattern.<CustomerRepository.Command, CustomerRepository.Stats>ask(
+                    repository, CustomerRepository.GetStats::new, Duration.ofSeconds(3), system.scheduler())
+                    .toCompletableFuture().get();
+            System.out.printf(Locale.ROOT, "%-10s %12.0f %14.2f %12.1f %10d %8d%n", label, updates / (elapsed / 1e9),
+                    store.totalMicros.sum() / 1000.0 / store.operations.sum(), elapsed / 1e6, store.writes.sum(),
+                    stats.limit);
+        } finally {
+            timer.shutdownNow();
+            system.terminate();
+            system.getWhenTerminated().toCompletableFuture().join();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+import akka.actor.typed.ActorRef;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 一个刷新窗口内待写入的更新，只由 CustomerRepository actor 访问。
+ *
+ * 同一客户的多次更新合并为 version 最大的一次（version 相同时取后到的），所有请求者都记录下来，
+ * 写入结果回复给每一个请求者。客户按第一次出现的顺序写入。
+ */
+final class PendingWrites {
+
+    /**
+     * 一个客户待写入的最新数据和等待结果的请求者
+     */
+    static final class Write {
+        Customer customer;
+        final List<ActorRef<CustomerRepository.OperationResult>> replyTos = new ArrayList<>(1);
+
+        Write(Customer customer) {
+            this.customer = customer;
+        }
+    }
+
+    private LinkedHashMap<String, Write> writes = new LinkedHashMap<>();
+
+    /**
+     * @return true 表示该客户已有待写入的更新，这次更新被合并
+     */
+    boolean add(CustomerRepository.Update update) {
+        Write write = writes.get(update.customer.id);
+        boolean coalesced = write != null;
+        if (write == null) {
+            write = new Write(update.customer);
+            writes.put(update.customer.id, write);
+        } else if (update.customer.version >= write.customer.version) {
+            write.customer = update.customer;
+        }
+        write.replyTos.add(update.replyTo);
+        return coalesced;
+    }
+
+    boolean contains(String customerId) {
+        return writes.containsKey(customerId);
+    }
+
+    /**
+     * @return 待写入的客户数
+     */
+    int size() {
+        return writes.size();
+    }
+
+    /**
+     * 取出所有待写入的更新，之后本对象为空
+     */
+    Map<String, Write> drain() {
+        Map<String, Write> drained = writes;
+        writes = new LinkedHashMap<>();
+        return drained;
+    }
+
+    static List<Customer> customers(Map<String, Write> writes) {
+        List<Customer> customers = new ArrayList<>(writes.size());
+        for (Write write : writes.values()) {
+            customers.add(write.customer);
+        }
+        return customers;
+    }
+}
@@ -0,0 +1,237 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author liulv
+ */
+public class ChatRoomTest {
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 攒够 maxBatch 条帖子后一次发出，各分片的会话收到同一个批次对象；重复的屏幕名称被拒绝
+     */
+    @Test
+    public void testBatchedFanOutAcrossShards() {
+        ActorRef<ChatRoom.RoomCommand> room = testKit.spawn(
+                ChatRoom.create(new ChatRoom.Settings(4, 3, Duration.ofSeconds(10))));
+        TestProbe<ChatRoom.SessionEvent> alice = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        TestProbe<ChatRoom.SessionEvent> bob = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("alice", alice.getRef()));
+        room.tell(new ChatRoom.GetSession("bob", bob.getRef()));
+        ActorRef<ChatRoom.ClientCommand> handle =
+                alice.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+        bob.expectMessageClass(ChatRoom.SessionGranted.class);
+
+        TestProbe<ChatRoom.SessionEvent> other = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("alice", other.getRef()));
+        other.expectMessageClass(ChatRoom.SessionDenied.class);
+
+        handle.tell(new ChatRoom.PostMessage("one"));
+        handle.tell(new ChatRoom.PostMessage("two"));
+        handle.tell(new ChatRoom.PostMessage("three"));
+        ChatRoom.MessagesPosted toAlice = alice.expectMessageClass(ChatRoom.MessagesPosted.class);
+        ChatRoom.MessagesPosted toBob = bob.expectMessageClass(ChatRoom.MessagesPosted.class);
+        assertSame(toAlice, toBob);
+        assertEquals(Arrays.asList("one", "two", "three"),
+                toAlice.messages.stream().map(m -> m.message).collect(Collectors.toList()));
+    }
+
+    /**
+     * 不足一批的帖子在 flushInterval 后发出
+     */
+    @Test
+    public void testFlushAfterInterval() {
+        ActorRef<ChatRoom.RoomCommand> room = testKit.spawn(
+                ChatRoom.create(new ChatRoom.Settings(2, 64, Duration.ofMillis(50))));
+        TestProbe<ChatRoom.SessionEvent> client = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("carol", client.getRef()));
+        ActorRef<ChatRoom.ClientCommand> handle =
+                client.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+
+        handle.tell(new ChatRoom.PostMessage("hi"));
+        ChatRoom.MessagesPosted batch = client.expectMessageClass(ChatRoom.MessagesPosted.class);
+        assertEquals(1, batch.messages.size());
+        assertEquals("carol", batch.messages.get(0).screenName);
+    }
+
+    /**
+     * 信用用完后帖子进入缓冲区，缓冲区满时丢弃最早的；归还信用后一次收到缓冲的帖子和丢弃数
+     */
+    @Test
+    public void testDropOldestUntilCreditReturned() {
+        ActorRef<ChatRoom.RoomCommand> room = testKit.spawn(ChatRoom.create(new ChatRoom.Settings(1, 1,
+                Duration.ofSeconds(10), new ChatRoom.DeliverySettings(2, ChatRoom.OverflowPolicy.DROP_OLDEST, 1))));
+        TestProbe<ChatRoom.SessionEvent> client = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("dave", client.getRef()));
+        ActorRef<ChatRoom.ClientCommand> handle =
+                client.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+
+        for (String message : Arrays.asList("one", "two", "three", "four")) {
+            handle.tell(new ChatRoom.PostMessage(message));
+        }
+        assertEquals("one", client.expectMessageClass(ChatRoom.MessagesPosted.class).messages.get(0).message);
+        client.expectNoMessage(Duration.ofMillis(100));
+
+        TestProbe<List<ChatRoom.Lag>> lagProbe = testKit.createTestProbe();
+        room.tell(new ChatRoom.GetLaggingSessions(10, lagProbe.getRef()));
+        List<ChatRoom.Lag> lagging = lagProbe.receiveMessage();
+        assertEquals(1, lagging.size());
+        assertEquals(2, lagging.get(0).buffered);
+        assertEquals(1, lagging.get(0).dropped);
+        assertEquals(0, lagging.get(0).credit);
+
+        handle.tell(new ChatRoom.Request(5));
+        ChatRoom.MessagesPosted first = client.expectMessageClass(ChatRoom.MessagesPosted.class);
+        assertEquals("three", first.messages.get(0).message);
+        assertEquals(1, first.skipped);
+        assertEquals("four", client.expectMessageClass(ChatRoom.MessagesPosted.class).messages.get(0).message);
+    }
+
+    /**
+     * 会话指标属于各自的聊天室：两个聊天室中同名的会话互不影响，查询只返回本聊天室的会话
+     */
+    @Test
+    public void testLaggingSessionsArePerRoom() {
+        ChatRoom.Settings settings = new ChatRoom.Settings(2, 1, Duration.ofSeconds(10),
+                new ChatRoom.DeliverySettings(4, ChatRoom.OverflowPolicy.DROP_OLDEST, 1));
+        ActorRef<ChatRoom.RoomCommand> busy = testKit.spawn(ChatRoom.create(settings));
+        ActorRef<ChatRoom.RoomCommand> quiet = testKit.spawn(ChatRoom.create(settings));
+        TestProbe<ChatRoom.SessionEvent> busyClient = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        TestProbe<ChatRoom.SessionEvent> quietClient = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        busy.tell(new ChatRoom.GetSession("grace", busyClient.getRef()));
+        quiet.tell(new ChatRoom.GetSession("grace", quietClient.getRef()));
+        ActorRef<ChatRoom.ClientCommand> handle =
+                busyClient.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+        quietClient.expectMessageClass(ChatRoom.SessionGranted.class);
+
+        handle.tell(new ChatRoom.PostMessage("one"));
+        handle.tell(new ChatRoom.PostMessage("two"));
+        busyClient.expectMessageClass(ChatRoom.MessagesPosted.class);
+
+        TestProbe<List<ChatRoom.Lag>> lagProbe = testKit.createTestProbe();
+        lagProbe.awaitAssert(() -> {
+            busy.tell(new ChatRoom.GetLaggingSessions(10, lagProbe.getRef()));
+            List<ChatRoom.Lag> lagging = lagProbe.receiveMessage();
+            assertEquals(1, lagging.size());
+            assertEquals(1, lagging.get(0).buffered);
+            return null;
+        });
+        quiet.tell(new ChatRoom.GetLaggingSessions(10, lagProbe.getRef()));
+        assertTrue(lagProbe.receiveMessage().isEmpty());
+    }
+
+    /**
+     * 合并策略只保留最新的帖子；断开策略在缓冲区溢出时关闭会话
+     */
+    @Test
+    public void testConflateAndDisconnect() {
+        ActorRef<ChatRoom.RoomCommand> conflating = testKit.spawn(ChatRoom.create(new ChatRoom.Settings(1, 8,
+                Duration.ofMillis(20), new ChatRoom.DeliverySettings(2, ChatRoom.OverflowPolicy.CONFLATE, 0))));
+        TestProbe<ChatRoom.SessionEvent> slow = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        conflating.tell(new ChatRoom.GetSession("erin", slow.getRef()));
+        ActorRef<ChatRoom.ClientCommand> handle = slow.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+        for (String message : Arrays.asList("one", "two", "three")) {
+            handle.tell(new ChatRoom.PostMessage(message));
+        }
+        slow.expectNoMessage(Duration.ofMillis(100));
+        handle.tell(new ChatRoom.Request(10));
+        ChatRoom.MessagesPosted latest = slow.expectMessageClass(ChatRoom.MessagesPosted.class);
+        assertEquals(1, latest.messages.size());
+        assertEquals("three", latest.messages.get(0).message);
+        assertEquals(2, latest.skipped);
+
+        ActorRef<ChatRoom.RoomCommand> strict = testKit.spawn(ChatRoom.create(new ChatRoom.Settings(1, 8,
+                Duration.ofMillis(20), new ChatRoom.DeliverySettings(1, ChatRoom.OverflowPolicy.DISCONNECT, 0))));
+        TestProbe<ChatRoom.SessionEvent> dropped = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        strict.tell(new ChatRoom.GetSession("frank", dropped.getRef()));
+        ActorRef<ChatRoom.ClientCommand> closed = dropped.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+        closed.tell(new ChatRoom.PostMessage("one"));
+        closed.tell(new ChatRoom.PostMessage("two"));
+        dropped.expectMessageClass(ChatRoom.SessionClosed.class);
+        dropped.expectTerminated(closed);
+
+        TestProbe<List<ChatRoom.Lag>> lagProbe = testKit.createTestProbe();
+        // 分片处理会话终止后不再报告该会话
+        lagProbe.awaitAssert(() -> {
+            strict.tell(new ChatRoom.GetLaggingSessions(10, lagProbe.getRef()));
+            assertTrue(lagProbe.receiveMessage().isEmpty());
+            return null;
+        });
+    }
+
+    /**
+     * 会话被断开后同名用户重新加入，查询报告新会话的积压
+     */
+    @Test
+    public void testRejoinWithSameNameKeepsMetrics() {
+        ActorRef<ChatRoom.RoomCommand> room = testKit.spawn(ChatRoom.create(new ChatRoom.Settings(1, 1,
+                Duration.ofSeconds(10), new ChatRoom.DeliverySettings(2, ChatRoom.OverflowPolicy.DISCONNECT, 0))));
+        TestProbe<ChatRoom.SessionEvent> first = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("heidi", first.getRef()));
+        ActorRef<ChatRoom.ClientCommand> closed = first.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+        for (String message : Arrays.asList("one", "two", "three")) {
+            closed.tell(new ChatRoom.PostMessage(message));
+        }
+        first.expectMessageClass(ChatRoom.SessionClosed.class);
+        first.expectTerminated(closed);
+
+        TestProbe<ChatRoom.SessionEvent> second = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        ActorRef<ChatRoom.ClientCommand> handle = second.awaitAssert(() -> {
+            room.tell(new ChatRoom.GetSession("heidi", second.getRef()));
+            return second.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+        });
+        handle.tell(new ChatRoom.PostMessage("again"));
+
+        TestProbe<List<ChatRoom.Lag>> lagProbe = testKit.createTestProbe();
+        lagProbe.awaitAssert(() -> {
+            room.tell(new ChatRoom.GetLaggingSessions(10, lagProbe.getRef()));
+            List<ChatRoom.Lag> lagging = lagProbe.receiveMessage();
+            assertEquals(1, lagging.size());
+            assertEquals("heidi", lagging.get(0).screenName);
+            assertEquals(1, lagging.get(0).buffered);
+            return null;
+        });
+    }
+
+    /**
+     * 新会话在 SessionGranted 中收到加入前最近的帖子，之后的帖子照常投递
+     */
+    @Test
+    public void testCatchUpOnJoin() {
+        ActorRef<ChatRoom.RoomCommand> room = testKit.spawn(ChatRoom.create(new ChatRoom.Settings(2, 1,
+                Duration.ofSeconds(10), ChatRoom.DeliverySettings.defaults(),
+                new ChatRoom.HistorySettings(10, 1024, 2))));
+        TestProbe<ChatRoom.SessionEvent> first = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("gina", first.getRef()));
+        ChatRoom.SessionGranted granted = first.expectMessageClass(ChatRoom.SessionGranted.class);
+        assertTrue(granted.history.isEmpty());
+        for (String message : Arrays.asList("one", "two", "three")) {
+            granted.handle.tell(new ChatRoom.PostMessage(message));
+            first.expectMessageClass(ChatRoom.MessagesPosted.class);
+        }
+
+        TestProbe<ChatRoom.SessionEvent> late = testKit.createTestProbe(ChatRoom.SessionEvent.class);
+        room.tell(new ChatRoom.GetSession("hank", late.getRef()));
+        ChatRoom.SessionGranted lateGranted = late.expectMessageClass(ChatRoom.SessionGranted.class);
+        assertEquals(Arrays.asList("two", "three"),
+                lateGranted.history.stream().map(m -> m.message).collect(Collectors.toList()));
+
+        granted.handle.tell(new ChatRoom.PostMessage("four"));
+        assertEquals("four", late.expectMessageClass(ChatRoom.MessagesPosted.class).messages.get(0).message);
+    }
+}
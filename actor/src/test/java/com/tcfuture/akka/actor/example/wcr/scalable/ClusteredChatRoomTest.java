@@ -0,0 +1,166 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.cluster.MemberStatus;
+import akka.cluster.typed.Cluster;
+import akka.cluster.typed.Join;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author liulv
+ *
+ * 同一 JVM 中的三个集群节点共享聊天室 lobby：节点 A 发帖，节点 B、C 各有多个会话。
+ * 检查每个远程节点每批只收到一次 RoomBatch，并打印投递延迟和跨节点字节数。
+ */
+public class ClusteredChatRoomTest {
+
+    private static final int SESSIONS_PER_NODE = 50;
+    private static final int POSTS = 200;
+
+    private static List<ActorTestKit> nodes;
+
+    @BeforeClass
+    public static void setup() {
+        Config config = ConfigFactory.parseString(
+                "akka.loglevel = INFO\n"
+                        + "akka.remote.artery.canonical.port = 0\n"
+                        + "akka.cluster.seed-nodes = []\n"
+                        + "akka.cluster.jmx.multi-mbeans-in-same-jvm = on\n")
+                .withFallback(ConfigFactory.load("akka-cluster"));
+        nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodes.add(ActorTestKit.create("ClusteredChatRoomTest", config));
+        }
+        Cluster first = Cluster.get(nodes.get(0).system());
+        for (ActorTestKit node : nodes) {
+            Cluster.get(node.system()).manager().tell(Join.create(first.selfMember().address()));
+        }
+        TestProbe<Object> probe = nodes.get(0).createTestProbe();
+        probe.awaitAssert(Duration.ofSeconds(20), () -> {
+            for (ActorTestKit node : nodes) {
+                assertEquals(3, StreamSupport.stream(Cluster.get(node.system()).state().getMembers().spliterator(),
+                        false).filter(m -> m.status() == MemberStatus.up()).count());
+            }
+            return null;
+        });
+    }
+
+    @AfterClass
+    public static void teardown() {
+        nodes.forEach(ActorTestKit::shutdownTestKit);
+    }
+
+    /**
+     * 客户端：统计收到的测试帖子数和发帖到收到的延迟，帖子内容为 "t:" + 发帖时的 nanoTime
+     */
+    private static Behavior<ChatRoom.SessionEvent> client(LongAdder received, AtomicLong maxLatency,
+                                                          LongAdder totalLatency) {
+        return Behaviors.receive(ChatRoom.SessionEvent.class)
+                .onMessage(ChatRoom.MessagesPosted.class, batch -> {
+                    long now = System.nanoTime();
+                    for (ChatRoom.MessagePosted posted : batch.messages) {
+                        if (posted.message.startsWith("t:")) {
+                            long latency = now - Long.parseLong(posted.message.substring(2));
+                            received.increment();
+                            totalLatency.add(latency);
+                            maxLatency.accumulateAndGet(latency, Math::max);
+                        }
+                    }
+                    return Behaviors.same();
+                })
+                .onAnyMessage(message -> Behaviors.same())
+                .build();
+    }
+
+    @Test
+    public void testEachBatchCrossesTheNetworkOncePerNode() {
+        ChatRoom.Settings settings = new ChatRoom.Settings(2, 16, Duration.ofMillis(5));
+        List<ActorRef<ChatRoom.RoomCommand>> rooms = new ArrayList<>();
+        for (ActorTestKit node : nodes) {
+            rooms.add(node.spawn(ChatRoom.createClustered("lobby", settings), "lobby"));
+        }
+
+        LongAdder received = new LongAdder();
+        AtomicLong maxLatency = new AtomicLong();
+        LongAdder totalLatency = new LongAdder();
+        for (int n = 1; n < nodes.size(); n++) {
+            ActorRef<ChatRoom.SessionEvent> client = nodes.get(n).spawn(client(received, maxLatency, totalLatency));
+            for (int i = 0; i < SESSIONS_PER_NODE; i++) {
+                rooms.get(n).tell(new ChatRoom.GetSession("node" + n + "-user" + i, client));
+            }
+        }
+        TestProbe<ChatRoom.SessionEvent> poster = nodes.get(0).createTestProbe();
+        rooms.get(0).tell(new ChatRoom.GetSession("poster", poster.getRef()));
+        ActorRef<ChatRoom.ClientCommand> handle = poster.expectMessageClass(ChatRoom.SessionGranted.class).handle;
+
+        // 等待各节点的 Topic 通过 receptionist 发现彼此
+        TestProbe<ChatRoom.RoomStats> stats = nodes.get(0).createTestProbe();
+        stats.awaitAssert(Duration.ofSeconds(20), Duration.ofMillis(200), () -> {
+            handle.tell(new ChatRoom.PostMessage("warm-up"));
+            for (int n = 1; n < nodes.size(); n++) {
+                rooms.get(n).tell(new ChatRoom.GetRoomStats(stats.getRef()));
+                assertTrue(stats.receiveMessage().received > 0);
+            }
+            return null;
+        });
+        // 让预热的批次全部送达后再取基线
+        stats.expectNoMessage(Duration.ofMillis(300));
+        long[] before = new long[nodes.size()];
+        for (int n = 0; n < nodes.size(); n++) {
+            rooms.get(n).tell(new ChatRoom.GetRoomStats(stats.getRef()));
+            ChatRoom.RoomStats s = stats.receiveMessage();
+            before[n] = n == 0 ? s.published : s.received;
+        }
+
+        List<ChatRoom.MessagePosted> sent = new ArrayList<>(POSTS);
+        long start = System.nanoTime();
+        for (int i = 0; i < POSTS; i++) {
+            String message = "t:" + System.nanoTime();
+            sent.add(new ChatRoom.MessagePosted("poster", message));
+            handle.tell(new ChatRoom.PostMessage(message));
+        }
+        long expected = (long) POSTS * SESSIONS_PER_NODE * (nodes.size() - 1);
+        stats.awaitAssert(Duration.ofSeconds(20), () -> {
+            assertEquals(expected, received.sum());
+            return null;
+        });
+        long elapsed = System.nanoTime() - start;
+
+        rooms.get(0).tell(new ChatRoom.GetRoomStats(stats.getRef()));
+        long batches = stats.receiveMessage().published - before[0];
+        for (int n = 1; n < nodes.size(); n++) {
+            rooms.get(n).tell(new ChatRoom.GetRoomStats(stats.getRef()));
+            assertEquals(batches, stats.receiveMessage().received - before[n]);
+        }
+
+        Serialization serialization = SerializationExtension.get(nodes.get(0).system().classicSystem());
+        int batchBytes = serialization.serialize(new ChatRoom.RoomBatch(sent)).get().length;
+        int postBytes = serialization.serialize(new ChatRoom.RoomBatch(sent.subList(0, 1))).get().length;
+        System.out.printf("clustered chat room: %d posts, %d batches, %d remote sessions, %.1f ms total, "
+                        + "mean latency %.2f ms, max latency %.2f ms%n",
+                POSTS, batches, SESSIONS_PER_NODE * (nodes.size() - 1), elapsed / 1e6,
+                totalLatency.sum() / 1e6 / expected, maxLatency.get() / 1e6);
+        System.out.printf("payload bytes per remote node: ~%d batched, ~%d if sent once per remote session%n",
+                batchBytes, (long) postBytes * POSTS * SESSIONS_PER_NODE);
+    }
+}
@@ -0,0 +1,55 @@
+package com.tcfuture.akka.actor.example.wcr.scalable;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author liulv
+ */
+public class MessageHistoryTest {
+
+    private static List<String> texts(List<ChatRoom.MessagePosted> posts) {
+        return posts.stream().map(p -> p.screenName + ":" + p.message).collect(Collectors.toList());
+    }
+
+    /**
+     * 超过条数限制时丢弃最早的帖子，不再被引用的屏幕名称被释放
+     */
+    @Test
+    public void testCountLimitReleasesNames() {
+        MessageHistory history = new MessageHistory(3, 1024);
+        history.add(new ChatRoom.MessagePosted("alice", "a1"));
+        history.add(new ChatRoom.MessagePosted("bob", "b1"));
+        history.add(new ChatRoom.MessagePosted("alice", "a2"));
+        history.add(new ChatRoom.MessagePosted("carol", "c1"));
+        history.add(new ChatRoom.MessagePosted("alice", "a3"));
+
+        assertEquals(3, history.size());
+        assertEquals(2, history.internedNames());
+        assertEquals(Arrays.asList("alice:a2", "carol:c1", "alice:a3"), texts(history.recent(10)));
+        assertEquals(Arrays.asList("carol:c1", "alice:a3"), texts(history.recent(2)));
+        assertSame(history.recent(2), history.recent(2));
+    }
+
+    /**
+     * 超过字节限制时丢弃最早的帖子，正文跨越环形字节区末尾时仍能完整读出
+     */
+    @Test
+    public void testByteLimitWrapsAround() {
+        MessageHistory history = new MessageHistory(100, 10);
+        history.add(new ChatRoom.MessagePosted("alice", "1234"));
+        history.add(new ChatRoom.MessagePosted("alice", "5678"));
+        history.add(new ChatRoom.MessagePosted("bob", "中文"));
+        history.add(new ChatRoom.MessagePosted("bob", "this message is too long"));
+
+        assertEquals(2, history.size());
+        assertEquals(10, history.usedBytes());
+        assertEquals(Arrays.asList("alice:5678", "bob:中文"), texts(history.recent(5)));
+    }
+}
@@ -0,0 +1,142 @@
+package com.tcfuture.akka.actor.interactionpatterns.adaptedresponse;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.stream.javadsl.Sink;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author liulv
+ */
+public class BackendTest {
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 每次报告很小的进度变化，发出的 JobProgress 不超过 1 / progressStep 个
+     */
+    @Test
+    public void testThrottleProgress() {
+        ActorRef<Backend.Request> backend = testKit.spawn(Backend.create((site, progress) -> {
+            for (int i = 1; i <= 100_000; i++) {
+                progress.accept(i / 100_000.0);
+            }
+            return site.resolve("translated");
+        }, new Backend.Settings(4, 10, Duration.ZERO, 0.01)));
+        TestProbe<Backend.Response> probe = testKit.createTestProbe(Backend.Response.class);
+        backend.tell(new Backend.StartTranslationJob(1, URI.create("http://example.com/"), probe.getRef()));
+
+        probe.expectMessageClass(Backend.JobStarted.class);
+        int progressMessages = 0;
+        Backend.Response response = probe.receiveMessage();
+        while (response instanceof Backend.JobProgress) {
+            progressMessages++;
+            response = probe.receiveMessage();
+        }
+        assertTrue("progress messages: " + progressMessages, progressMessages > 0 && progressMessages <= 100);
+        assertEquals(URI.create("http://example.com/translated"), ((Backend.JobCompleted) response).result);
+    }
+
+    /**
+     * 距上次发出满 progressInterval 或进度变化达到 progressStep 时发出，进度不变时不发出
+     */
+    @Test
+    public void testThrottleProgressByIntervalOrStep() {
+        ActorRef<Backend.Request> backend = testKit.spawn(Backend.create((site, progress) -> {
+            Thread.sleep(150);
+            // 满 100 毫秒
+            progress.accept(0.2);
+            progress.accept(0.3);
+            // 变化达到 0.5
+            progress.accept(0.9);
+            Thread.sleep(150);
+            progress.accept(0.9);
+            return site;
+        }, new Backend.Settings(1, 0, Duration.ofMillis(100), 0.5)));
+        TestProbe<Backend.Response> probe = testKit.createTestProbe(Backend.Response.class);
+        backend.tell(new Backend.StartTranslationJob(1, URI.create("http://example.com/"), probe.getRef()));
+
+        probe.expectMessageClass(Backend.JobStarted.class);
+        assertEquals(0.2, probe.expectMessageClass(Backend.JobProgress.class).progress, 0.0);
+        assertEquals(0.9, probe.expectMessageClass(Backend.JobProgress.class).progress, 0.0);
+        probe.expectMessageClass(Backend.JobCompleted.class);
+    }
+
+    /**
+     * 同时运行的任务不超过 maxConcurrentJobs，排队的任务在有任务完成后开始，队列满时拒绝
+     */
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ActorRef<Backend.Request> backend = testKit.spawn(Backend.create((site, progress) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            release.await(3, TimeUnit.SECONDS);
+            running.decrementAndGet();
+            return site;
+        }, new Backend.Settings(2, 2, Duration.ofMillis(100), 0.01)));
+        TestProbe<Backend.Response> probe = testKit.createTestProbe(Backend.Response.class);
+        for (int i = 1; i <= 4; i++) {
+            backend.tell(new Backend.StartTranslationJob(i, URI.create("http://example.com/" + i), probe.getRef()));
+        }
+        TestProbe<Backend.Response> rejected = testKit.createTestProbe(Backend.Response.class);
+        backend.tell(new Backend.StartTranslationJob(5, URI.create("http://example.com/5"), rejected.getRef()));
+        assertEquals(5, rejected.expectMessageClass(Backend.JobFailed.class).taskId);
+        probe.awaitAssert(() -> {
+            assertEquals(2, running.get());
+            return null;
+        });
+        release.countDown();
+        int completed = 0;
+        while (completed < 4) {
+            if (probe.receiveMessage() instanceof Backend.JobCompleted) {
+                completed++;
+            }
+        }
+        assertEquals(2, maxRunning.get());
+    }
+
+    /**
+     * 进度 Source 先收到最近一次响应，以 JobCompleted 结束
+     */
+    @Test
+    public void testProgressSource() throws Exception {
+        CountDownLatch subscribed = new CountDownLatch(1);
+        ActorRef<Backend.Request> backend = testKit.spawn(Backend.create((site, progress) -> {
+            subscribed.await(3, TimeUnit.SECONDS);
+            progress.accept(0.5);
+            return site;
+        }, new Backend.Settings(1, 0, Duration.ZERO, 0.01)));
+        TestProbe<Backend.Response> probe = testKit.createTestProbe(Backend.Response.class);
+        backend.tell(new Backend.StartTranslationJob(7, URI.create("http://example.com/"), probe.getRef()));
+        probe.expectMessageClass(Backend.JobStarted.class);
+
+        CompletionStage<List<Backend.Response>> responses =
+                Backend.progress(backend, 7, 16).runWith(Sink.seq(), testKit.system());
+        // 订阅在任务报告进度之前完成
+        TestProbe<Backend.Response> second = testKit.createTestProbe(Backend.Response.class);
+        backend.tell(new Backend.StartTranslationJob(7, URI.create("http://example.com/"), second.getRef()));
+        second.expectMessageClass(Backend.JobFailed.class);
+        subscribed.countDown();
+
+        List<Backend.Response> received = responses.toCompletableFuture().get(3, TimeUnit.SECONDS);
+        assertEquals(3, received.size());
+        assertTrue(received.get(0) instanceof Backend.JobStarted);
+        assertEquals(0.5, ((Backend.JobProgress) received.get(1)).progress, 0.0);
+        assertEquals(7, ((Backend.JobCompleted) received.get(2)).taskId);
+    }
+}
@@ -0,0 +1,45 @@
+package com.tcfuture.akka.actor.interactionpatterns.adaptedresponse;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author liulv
+ */
+public class FrontendTest {
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 成功时回复结果，失败时回复 JobFailed
+     */
+    @Test
+    public void testRepliesOnCompletionAndFailure() {
+        ActorRef<Backend.Request> backend = testKit.spawn(Backend.create((site, progress) -> {
+            if (site.getPath().endsWith("broken")) {
+                throw new IllegalStateException("cannot translate " + site);
+            }
+            return site.resolve("translated");
+        }, new Backend.Settings(1, 10, Duration.ZERO, 0.01)));
+        ActorRef<Frontend.Command> translator = testKit.spawn(Frontend.Translator.create(backend));
+        TestProbe<URI> results = testKit.createTestProbe(URI.class);
+        TestProbe<Backend.JobFailed> failures = testKit.createTestProbe(Backend.JobFailed.class);
+
+        translator.tell(new Frontend.Translate(URI.create("http://example.com/"), results.getRef(),
+                failures.getRef()));
+        assertEquals(URI.create("http://example.com/translated"), results.receiveMessage());
+
+        translator.tell(new Frontend.Translate(URI.create("http://example.com/broken"), results.getRef(),
+                failures.getRef()));
+        assertEquals("cannot translate http://example.com/broken", failures.receiveMessage().reason);
+        results.expectNoMessage();
+    }
+}
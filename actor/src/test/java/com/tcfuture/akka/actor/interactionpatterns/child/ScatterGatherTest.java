@@ -0,0 +1,168 @@
+package com.tcfuture.akka.actor.interactionpatterns.child;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author liulv
+ */
+public class ScatterGatherTest {
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    static final class Lookup {
+        final long id;
+        final ActorRef<Found> replyTo;
+
+        Lookup(long id, ActorRef<Found> replyTo) {
+            this.id = id;
+            this.replyTo = replyTo;
+        }
+    }
+
+    static final class Found {
+        final long id;
+
+        Found(long id) {
+            this.id = id;
+        }
+    }
+
+    private static Behavior<Lookup> service() {
+        return Behaviors.receiveMessage(lookup -> {
+            lookup.replyTo.tell(new Found(lookup.id));
+            return Behaviors.same();
+        });
+    }
+
+    private static ScatterGather.Part<Lookup, Found> part(String name, ActorRef<Lookup> target) {
+        return ScatterGather.Part.correlated(name, target, Found.class, (replyTo, id) -> new Lookup(id, replyTo),
+                found -> found.id);
+    }
+
+    /**
+     * 会话 actor 收齐回复后回复并停止
+     */
+    @Test
+    public void testSessionCompletes() {
+        ActorRef<Home.Command> home = testKit.spawn(Home.create());
+        TestProbe<Home.ReadyToLeaveHome> probe = testKit.createTestProbe(Home.ReadyToLeaveHome.class);
+        home.tell(new Home.LeaveHome("Bobby", probe.getRef()));
+        Home.ReadyToLeaveHome ready = probe.receiveMessage();
+        assertEquals("Bobby", ready.who);
+        assertNotNull(ready.keys);
+        assertNotNull(ready.wallet);
+    }
+
+    /**
+     * 期限到达时以部分结果回复，未回复的子请求为 TIMED_OUT
+     */
+    @Test
+    public void testSessionPartialResult() {
+        ActorRef<Lookup> answering = testKit.spawn(service());
+        TestProbe<Lookup> silent = testKit.createTestProbe(Lookup.class);
+        ScatterGather.Part<Lookup, Found> first = part("first", answering);
+        ScatterGather.Part<Lookup, Found> second = part("second", silent.getRef());
+        TestProbe<ScatterGather.Result> probe = testKit.createTestProbe(ScatterGather.Result.class);
+        ActorRef<Object> session = testKit.spawn(ScatterGather.session(Arrays.asList(first, second),
+                Duration.ofMillis(200), result -> result, probe.getRef()));
+
+        silent.expectMessageClass(Lookup.class);
+        ScatterGather.Result result = probe.receiveMessage();
+        assertFalse(result.isComplete());
+        assertEquals(ScatterGather.Status.OK, result.status(first));
+        assertEquals(ScatterGather.Status.TIMED_OUT, result.status(second));
+        assertFalse(result.get(second).isPresent());
+        assertEquals("[first, second]", result.statuses().keySet().toString());
+        probe.expectTerminated(session);
+    }
+
+    /**
+     * 常驻聚合器同时处理多个 Gather，回复按 id 对应到各自的 Gather，超时后到达的回复被丢弃
+     */
+    @Test
+    public void testPooled() {
+        ActorRef<Lookup> answering = testKit.spawn(service());
+        TestProbe<Lookup> silent = testKit.createTestProbe(Lookup.class);
+        List<ScatterGather.Part<?, ?>> complete = Arrays.asList(part("a", answering), part("b", answering));
+        ScatterGather.Part<Lookup, Found> late = part("late", silent.getRef());
+        List<ScatterGather.Part<?, ?>> partial = Arrays.asList(part("a", answering), late);
+        ActorRef<Object> pooled = testKit.spawn(ScatterGather.pooled(Duration.ofMillis(10)));
+        TestProbe<ScatterGather.Result> probe = testKit.createTestProbe(ScatterGather.Result.class);
+
+        pooled.tell(new ScatterGather.Gather<>(partial, Duration.ofMillis(200), result -> result, probe.getRef()));
+        for (int i = 0; i < 3; i++) {
+            pooled.tell(new ScatterGather.Gather<>(complete, Duration.ofSeconds(3), result -> result,
+                    probe.getRef()));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertTrue(probe.receiveMessage().isComplete());
+        }
+        Lookup lookup = silent.receiveMessage();
+        ScatterGather.Result result = probe.receiveMessage();
+        assertEquals(ScatterGather.Status.TIMED_OUT, result.status(late));
+        assertEquals(ScatterGather.Status.OK, result.statuses().get("a"));
+
+        lookup.replyTo.tell(new Found(lookup.id));
+        probe.expectNoMessage(Duration.ofMillis(100));
+    }
+
+    /**
+     * 回复不携带 id 的子请求不能用于 pooled
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGatherRejectsUncorrelatedParts() {
+        ActorRef<Lookup> answering = testKit.spawn(service());
+        TestProbe<ScatterGather.Result> probe = testKit.createTestProbe(ScatterGather.Result.class);
+        List<ScatterGather.Part<?, ?>> parts = Arrays.asList(part("a", answering),
+                ScatterGather.Part.of("b", answering, Found.class, replyTo -> new Lookup(0, replyTo)));
+        new ScatterGather.Gather<>(parts, Duration.ofSeconds(1), result -> result, probe.getRef());
+    }
+
+    /**
+     * 一个 Gather 的 aggregate 或 correlationId 抛出异常时，其他进行中的 Gather 照常完成
+     */
+    @Test
+    public void testPooledSurvivesFailingCallbacks() {
+        ActorRef<Lookup> answering = testKit.spawn(service());
+        TestProbe<Lookup> held = testKit.createTestProbe(Lookup.class);
+        ScatterGather.Part<Lookup, Found> slow = part("slow", held.getRef());
+        ActorRef<Object> pooled = testKit.spawn(ScatterGather.pooled(Duration.ofMillis(10)));
+        TestProbe<ScatterGather.Result> probe = testKit.createTestProbe(ScatterGather.Result.class);
+
+        pooled.tell(new ScatterGather.Gather<>(Arrays.asList(part("a", answering), slow), Duration.ofSeconds(3),
+                result -> result, probe.getRef()));
+        Lookup lookup = held.receiveMessage();
+        pooled.tell(new ScatterGather.Gather<ScatterGather.Result>(Arrays.asList(part("a", answering)),
+                Duration.ofSeconds(3), result -> {
+                    throw new IllegalStateException("aggregate failed");
+                }, probe.getRef()));
+        ScatterGather.Part<Lookup, String> broken = ScatterGather.Part.correlated("broken", answering, String.class,
+                (replyTo, id) -> new Lookup(id, testKit.system().ignoreRef()), reply -> {
+                    throw new IllegalStateException("correlationId failed");
+                });
+        pooled.tell(new ScatterGather.Gather<>(Arrays.asList(broken), Duration.ofMillis(100), result -> result,
+                probe.getRef()));
+        pooled.tell("unexpected reply");
+        assertEquals(ScatterGather.Status.TIMED_OUT, probe.receiveMessage().status(broken));
+
+        lookup.replyTo.tell(new Found(lookup.id));
+        ScatterGather.Result result = probe.receiveMessage();
+        assertTrue(result.isComplete());
+        assertEquals(ScatterGather.Status.OK, result.status(slow));
+    }
+}
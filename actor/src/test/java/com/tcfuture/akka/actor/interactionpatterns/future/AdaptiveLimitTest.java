@@ -0,0 +1,51 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author liulv
+ */
+public class AdaptiveLimitTest {
+
+    /**
+     * 延迟稳定且上限被用满时逐步增加，延迟翻倍后下调，同一轮内只下调一次
+     */
+    @Test
+    public void testIncreaseThenBackOff() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 1, 100, 0.5, 2.0, 1000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(start, 1_000_000, limit.limit(), false);
+        }
+        int grown = limit.limit();
+        assertTrue("limit should grow, was " + grown, grown > 10);
+
+        long before = System.nanoTime();
+        limit.onSample(before, 5_000_000, grown, false);
+        assertEquals(grown / 2, limit.limit(), 1);
+        // 下调前发出的操作不再触发下调
+        limit.onSample(before, 5_000_000, grown, false);
+        assertEquals(grown / 2, limit.limit(), 1);
+        limit.onSample(System.nanoTime(), 5_000_000, grown, true);
+        assertEquals(grown / 4, limit.limit(), 1);
+    }
+
+    /**
+     * 上限未被用到一半时不增加，也不低于 minLimit
+     */
+    @Test
+    public void testBounds() {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 2, 8, 0.5, 2.0, 1000);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(System.nanoTime(), 1_000_000, 1, false);
+        }
+        assertEquals(4, limit.limit());
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(System.nanoTime(), 1_000_000, 4, true);
+        }
+        assertEquals(2, limit.limit());
+    }
+}
@@ -0,0 +1,60 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author liulv
+ */
+public class CustomerCacheTest {
+
+    /**
+     * 只有更新的 version 才覆盖缓存中的客户
+     */
+    @Test
+    public void testPutIfNewer() {
+        CustomerCache cache = new CustomerCache(10);
+        Customer v2 = new Customer("c1", 2, "v2", "address");
+        assertSame(v2, cache.putIfNewer(v2));
+        assertSame(v2, cache.putIfNewer(new Customer("c1", 1, "v1", "address")));
+        assertSame(v2, cache.putIfNewer(new Customer("c1", 2, "other", "address")));
+        Customer v3 = new Customer("c1", 3, "v3", "address");
+        assertSame(v3, cache.putIfNewer(v3));
+        assertSame(v3, cache.get("c1"));
+        cache.invalidate("c1");
+        assertNull(cache.get("c1"));
+    }
+
+    /**
+     * 写入成功的客户替换同一 version 的缓存，不替换较新的
+     */
+    @Test
+    public void testPutWritten() {
+        CustomerCache cache = new CustomerCache(10);
+        Customer v2 = new Customer("c1", 2, "v2", "address");
+        assertSame(v2, cache.putIfNewer(v2));
+        Customer rewritten = new Customer("c1", 2, "other", "address");
+        assertSame(rewritten, cache.putWritten(rewritten));
+        assertSame(rewritten, cache.get("c1"));
+        assertSame(rewritten, cache.putWritten(new Customer("c1", 1, "v1", "address")));
+    }
+
+    /**
+     * 超过容量时淘汰最久未访问的客户
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        CustomerCache cache = new CustomerCache(2);
+        cache.putIfNewer(new Customer("c1", 1, "name", "address"));
+        cache.putIfNewer(new Customer("c2", 1, "name", "address"));
+        cache.get("c1");
+        cache.putIfNewer(new Customer("c3", 1, "name", "address"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("c2"));
+        assertEquals("c1", cache.get("c1").id);
+        assertEquals("c3", cache.get("c3").id);
+    }
+}
@@ -0,0 +1,243 @@
+package com.tcfuture.akka.actor.interactionpatterns.future;
+
+import akka.Done;
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author liulv
+ */
+public class CustomerRepositoryTest {
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 只完成手动完成的更新的数据访问
+     */
+    private static final class ManualDataAccess implements CustomerDataAccess {
+        final List<CompletableFuture<Done>> pending = new CopyOnWriteArrayList<>();
+        final List<List<Customer>> batches = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<Optional<Customer>>> loads = new CopyOnWriteArrayList<>();
+        volatile String failingId;
+
+        @Override
+        public CompletableFuture<Done> update(Customer customer) {
+            CompletableFuture<Done> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        }
+
+        @Override
+        public CompletionStage<Optional<Customer>> get(String id) {
+            CompletableFuture<Optional<Customer>> future = new CompletableFuture<>();
+            loads.add(future);
+            return future;
+        }
+
+        @Override
+        public CompletionStage<Map<String, Throwable>> updateAll(List<Customer> customers) {
+            batches.add(customers);
+            Map<String, Throwable> failures = customers.stream().anyMatch(c -> c.id.equals(failingId))
+                    ? Collections.singletonMap(failingId, new IllegalStateException("version conflict"))
+                    : Collections.emptyMap();
+            return CompletableFuture.completedFuture(failures);
+        }
+    }
+
+    /**
+     * 超过并发上限的更新进入等待队列，队列满时才拒绝；有更新完成后按顺序发出排队的更新
+     */
+    @Test
+    public void testQueueBeyondLimit() {
+        ManualDataAccess dataAccess = new ManualDataAccess();
+        ActorRef<CustomerRepository.Command> repository = testKit.spawn(CustomerRepository.create(dataAccess,
+                new CustomerRepository.Settings(2, 2, 2, 0.9, 2.0, 2)));
+        TestProbe<CustomerRepository.OperationResult> probe =
+                testKit.createTestProbe(CustomerRepository.OperationResult.class);
+        for (int i = 0; i < 5; i++) {
+            repository.tell(new CustomerRepository.Update(new Customer("c" + i, 1, "name", "address"),
+                    probe.getRef()));
+        }
+        CustomerRepository.UpdateFailure failure = probe.expectMessageClass(CustomerRepository.UpdateFailure.class);
+        assertEquals("c4", failure.id);
+
+        TestProbe<CustomerRepository.Stats> stats = testKit.createTestProbe(CustomerRepository.Stats.class);
+        repository.tell(new CustomerRepository.GetStats(stats.getRef()));
+        CustomerRepository.Stats before = stats.receiveMessage();
+        assertEquals(2, before.limit);
+        assertEquals(2, before.inProgress);
+        assertEquals(2, before.queued);
+        assertEquals(1, before.rejected);
+
+        for (int i = 0; i < 4; i++) {
+            dataAccess.pending.get(i).complete(Done.getInstance());
+            assertEquals("c" + i, probe.expectMessageClass(CustomerRepository.UpdateSuccess.class).id);
+        }
+        repository.tell(new CustomerRepository.GetStats(stats.getRef()));
+        CustomerRepository.Stats after = stats.receiveMessage();
+        assertEquals(0, after.inProgress);
+        assertEquals(0, after.queued);
+    }
+
+    /**
+     * 窗口内同一客户的更新合并为 version 最大的一次，整批一次写入，每个请求者收到自己客户的结果
+     */
+    @Test
+    public void testCoalesceWithinFlushWindow() {
+        ManualDataAccess dataAccess = new ManualDataAccess();
+        dataAccess.failingId = "c2";
+        ActorRef<CustomerRepository.Command> repository = testKit.spawn(CustomerRepository.create(dataAccess,
+                CustomerRepository.Settings.defaults().withCoalescing(Duration.ofMillis(100), 100)));
+        List<TestProbe<CustomerRepository.OperationResult>> probes = new ArrayList<>();
+        long[] versions = {1, 3, 2};
+        for (long version : versions) {
+            TestProbe<CustomerRepository.OperationResult> probe =
+                    testKit.createTestProbe(CustomerRepository.OperationResult.class);
+            repository.tell(new CustomerRepository.Update(new Customer("c1", version, "v" + version, "address"),
+                    probe.getRef()));
+            probes.add(probe);
+        }
+        TestProbe<CustomerRepository.OperationResult> other =
+                testKit.createTestProbe(CustomerRepository.OperationResult.class);
+        repository.tell(new CustomerRepository.Update(new Customer("c2", 1, "name", "address"), other.getRef()));
+
+        for (TestProbe<CustomerRepository.OperationResult> probe : probes) {
+            assertEquals("c1", probe.expectMessageClass(CustomerRepository.UpdateSuccess.class).id);
+        }
+        CustomerRepository.UpdateFailure failure = other.expectMessageClass(CustomerRepository.UpdateFailure.class);
+        assertEquals("c2", failure.id);
+        assertEquals("version conflict", failure.reason);
+
+        assertEquals(1, dataAccess.batches.size());
+        assertEquals(Arrays.asList("c1:3", "c2:1"), dataAccess.batches.get(0).stream()
+                .map(c -> c.id + ":" + c.version).collect(Collectors.toList()));
+        assertEquals(0, dataAccess.pending.size());
+
+        TestProbe<CustomerRepository.Stats> stats = testKit.createTestProbe(CustomerRepository.Stats.class);
+        repository.tell(new CustomerRepository.GetStats(stats.getRef()));
+        CustomerRepository.Stats after = stats.receiveMessage();
+        assertEquals(2, after.coalesced);
+        assertEquals(1, after.batches);
+    }
+
+    /**
+     * 同一客户同时未命中的读取只读取一次；读取期间写入的新版本不会被读取到的旧版本覆盖，之后的读取命中缓存，
+     * 比缓存中旧的更新被拒绝
+     */
+    @Test
+    public void testReadThroughCache() {
+        ManualDataAccess dataAccess = new ManualDataAccess();
+        ActorRef<CustomerRepository.Command> repository = testKit.spawn(CustomerRepository.create(dataAccess,
+                CustomerRepository.Settings.defaults().withCacheSize(100)));
+        TestProbe<CustomerRepository.GetResult> first = testKit.createTestProbe(CustomerRepository.GetResult.class);
+        TestProbe<CustomerRepository.GetResult> second = testKit.createTestProbe(CustomerRepository.GetResult.class);
+        repository.tell(new CustomerRepository.Get("c1", first.getRef()));
+        repository.tell(new CustomerRepository.Get("c1", second.getRef()));
+
+        TestProbe<CustomerRepository.OperationResult> updates =
+                testKit.createTestProbe(CustomerRepository.OperationResult.class);
+        Customer newer = new Customer("c1", 2, "new", "address");
+        repository.tell(new CustomerRepository.Update(newer, updates.getRef()));
+        updates.awaitAssert(() -> {
+            assertEquals(1, dataAccess.pending.size());
+            return null;
+        });
+        dataAccess.pending.get(0).complete(Done.getInstance());
+        updates.expectMessageClass(CustomerRepository.UpdateSuccess.class);
+
+        assertEquals(1, dataAccess.loads.size());
+        dataAccess.loads.get(0).complete(Optional.of(new Customer("c1", 1, "old", "address")));
+        assertSame(newer, first.expectMessageClass(CustomerRepository.CustomerFound.class).customer);
+        assertSame(newer, second.expectMessageClass(CustomerRepository.CustomerFound.class).customer);
+
+        repository.tell(new CustomerRepository.Get("c1", first.getRef()));
+        assertSame(newer, first.expectMessageClass(CustomerRepository.CustomerFound.class).customer);
+        repository.tell(new CustomerRepository.Update(new Customer("c1", 1, "old", "address"), updates.getRef()));
+        assertEquals("c1", updates.expectMessageClass(CustomerRepository.UpdateFailure.class).id);
+        assertEquals(1, dataAccess.pending.size());
+
+        TestProbe<CustomerRepository.CacheStats> stats = testKit.createTestProbe(CustomerRepository.CacheStats.class);
+        repository.tell(new CustomerRepository.GetCacheStats(stats.getRef()));
+        CustomerRepository.CacheStats cacheStats = stats.receiveMessage();
+        assertEquals(1, cacheStats.hits);
+        assertEquals(2, cacheStats.misses);
+        assertEquals(1, cacheStats.loads);
+        assertEquals(1, cacheStats.sharedLoads);
+        assertEquals(1, cacheStats.staleUpdates);
+        assertEquals(1, cacheStats.size);
+    }
+
+    /**
+     * 同一 version 的更新成功后，缓存中是这次写入的客户
+     */
+    @Test
+    public void testSameVersionUpdateReplacesCachedCustomer() {
+        ManualDataAccess dataAccess = new ManualDataAccess();
+        ActorRef<CustomerRepository.Command> repository = testKit.spawn(CustomerRepository.create(dataAccess,
+                CustomerRepository.Settings.defaults().withCacheSize(100)));
+        TestProbe<CustomerRepository.GetResult> gets = testKit.createTestProbe(CustomerRepository.GetResult.class);
+        TestProbe<CustomerRepository.OperationResult> updates =
+                testKit.createTestProbe(CustomerRepository.OperationResult.class);
+        repository.tell(new CustomerRepository.Get("c1", gets.getRef()));
+        gets.awaitAssert(() -> {
+            assertEquals(1, dataAccess.loads.size());
+            return null;
+        });
+        dataAccess.loads.get(0).complete(Optional.of(new Customer("c1", 1, "old", "address")));
+        gets.expectMessageClass(CustomerRepository.CustomerFound.class);
+
+        Customer rewritten = new Customer("c1", 1, "new", "address");
+        repository.tell(new CustomerRepository.Update(rewritten, updates.getRef()));
+        updates.awaitAssert(() -> {
+            assertEquals(1, dataAccess.pending.size());
+            return null;
+        });
+        dataAccess.pending.get(0).complete(Done.getInstance());
+        updates.expectMessageClass(CustomerRepository.UpdateSuccess.class);
+
+        repository.tell(new CustomerRepository.Get("c1", gets.getRef()));
+        assertSame(rewritten, gets.expectMessageClass(CustomerRepository.CustomerFound.class).customer);
+        assertEquals(1, dataAccess.loads.size());
+    }
+
+    /**
+     * 默认不缓存，每次 Get 都读取存储
+     */
+    @Test
+    public void testDefaultSettingsDoNotCache() {
+        ManualDataAccess dataAccess = new ManualDataAccess();
+        ActorRef<CustomerRepository.Command> repository = testKit.spawn(CustomerRepository.create(dataAccess));
+        TestProbe<CustomerRepository.GetResult> gets = testKit.createTestProbe(CustomerRepository.GetResult.class);
+        repository.tell(new CustomerRepository.Get("c1", gets.getRef()));
+        gets.awaitAssert(() -> {
+            assertEquals(1, dataAccess.loads.size());
+            return null;
+        });
+        dataAccess.loads.get(0).complete(Optional.of(new Customer("c1", 1, "name", "address")));
+        gets.expectMessageClass(CustomerRepository.CustomerFound.class);
+
+        repository.tell(new CustomerRepository.Get("c1", gets.getRef()));
+        gets.awaitAssert(() -> {
+            assertEquals(2, dataAccess.loads.size());
+            return null;
+        });
+    }
+}
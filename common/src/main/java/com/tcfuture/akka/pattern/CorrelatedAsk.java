@@ -0,0 +1,312 @@
+package com.tcfuture.akka.pattern;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.pattern.AskTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 高频请求-响应时代替 AskPattern.ask 的关联请求。
+ *
+ * AskPattern.ask 和 ActorContext.ask 每次请求都创建一个临时的回复 ActorRef，并向 Scheduler 注册一个超时任务。
+ * CorrelatedAsk 由一个调用方持有，所有请求共用一个常驻的回复 actor：每个请求分配一个递增的 long id，
+ * 请求消息和回复消息都携带这个 id，回复 actor 按 id 找到对应的 CompletionStage 并完成它。
+ * 超时由回复 actor 中的时间轮处理，每个 tick 只检查一个槽位，注册和取消都是 O(1)，不再为每个请求注册定时任务。
+ *
+ * 与 AskPattern.ask 一样返回 CompletionStage，超时以 AskTimeoutException 失败；超时后到达的回复被丢弃。
+ * 超时精度为一个 tick。CompletionStage 在回复 actor 中完成，其非 Async 的回调也在回复 actor 中执行，
+ * 耗时的处理应使用 thenApplyAsync 等方法。
+ *
+ * 请求先发给回复 actor 登记后再由它转发给目标，保证回复不会早于登记到达。未完成的请求在发出前就记录在调用方
+ * 与回复 actor 共享的 ConcurrentHashMap 中，close() 或回复 actor 停止（包括随父 actor 停止）时，尚在邮箱中
+ * 未登记的请求也会以 IllegalStateException 失败；之后的 ask 直接返回失败的 CompletionStage。
+ *
+ * @param <Res> 回复消息的类型，必须能从中取出请求的 id
+ */
+public final class CorrelatedAsk<Res> {
+
+    private static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final ActorRef<Object> replyActor;
+    private final ActorRef<Res> replyTo;
+    private final long startNanos;
+    private final long tickNanos;
+    private final AtomicLong ids = new AtomicLong();
+    // 已发出未完成的请求，与回复 actor 共享
+    private final ConcurrentHashMap<Long, Pending<Res>> pending;
+    // close() 或回复 actor 停止后为 true
+    private final AtomicBoolean closed;
+
+    private CorrelatedAsk(ActorRef<Object> replyActor, long startNanos, long tickNanos,
+                          ConcurrentHashMap<Long, Pending<Res>> pending, AtomicBoolean closed) {
+        this.replyActor = replyActor;
+        this.replyTo = replyActor.narrow();
+        this.startNanos = startNanos;
+        this.tickNanos = tickNanos;
+        this.pending = pending;
+        this.closed = closed;
+    }
+
+    /**
+     * 在 ActorSystem 中创建回复 actor，供 actor 系统外的调用方使用
+     *
+     * @param replyClass 回复消息的类型，其他类型的消息被忽略
+     * @param correlationId 从回复中取出请求 id
+     */
+    public static <Res> CorrelatedAsk<Res> create(ActorSystem<?> system, String name, Class<Res> replyClass,
+                                                  ToLongFunction<Res> correlationId) {
+        return create(system, name, replyClass, correlationId, DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tick 时间轮一格的时长，即超时的精度
+     * @param wheelSize 时间轮的槽位数，必须是 2 的幂；超时超过 tick * wheelSize 的请求会被多次检查
+     */
+    public static <Res> CorrelatedAsk<Res> create(ActorSystem<?> system, String name, Class<Res> replyClass,
+                                                  ToLongFunction<Res> correlationId, Duration tick, int wheelSize) {
+        long startNanos = System.nanoTime();
+        ConcurrentHashMap<Long, Pending<Res>> pending = new ConcurrentHashMap<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        ActorRef<Object> replyActor = system.systemActorOf(
+                behavior(replyClass, correlationId, startNanos, tick, wheelSize, pending, closed), name,
+                Props.empty());
+        return new CorrelatedAsk<>(replyActor, startNanos, tick.toNanos(), pending, closed);
+    }
+
+    /**
+     * 创建调用方 actor 的子 actor 作为回复 actor，随调用方一起停止
+     */
+    public static <Res> CorrelatedAsk<Res> create(ActorContext<?> context, String name, Class<Res> replyClass,
+                                                  ToLongFunction<Res> correlationId) {
+        long startNanos = System.nanoTime();
+        ConcurrentHashMap<Long, Pending<Res>> pending = new ConcurrentHashMap<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        ActorRef<Object> replyActor = context.spawn(behavior(replyClass, correlationId, startNanos, DEFAULT_TICK,
+                DEFAULT_WHEEL_SIZE, pending, closed), name);
+        return new CorrelatedAsk<>(replyActor, startNanos, DEFAULT_TICK.toNanos(), pending, closed);
+    }
+
+    private static <Res> Behavior<Object> behavior(Class<Res> replyClass, ToLongFunction<Res> correlationId,
+                                                   long startNanos, Duration tick, int wheelSize,
+                                                   ConcurrentHashMap<Long, Pending<Res>> pending,
+                                                   AtomicBoolean closed) {
+        if (tick.isNegative() || tick.isZero() || wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("tick must be positive and wheelSize must be a power of two");
+        }
+        return Behaviors.setup(context -> Behaviors.withTimers(timers -> {
+            timers.startTimerWithFixedDelay(Tick.INSTANCE, Tick.INSTANCE, tick);
+            return new ReplyActor<>(context, replyClass, correlationId, startNanos, tick.toNanos(), wheelSize,
+                    pending, closed);
+        }));
+    }
+
+    /**
+     * 向目标发送一个请求
+     *
+     * @param messageFactory 由回复地址和请求 id 创建请求消息，回复必须带回这个 id
+     * @param timeout 超过此时间没有回复时 CompletionStage 以 AskTimeoutException 失败
+     * @return close() 或回复 actor 停止后为以 IllegalStateException 失败的 CompletionStage
+     */
+    public <Req> CompletionStage<Res> ask(ActorRef<Req> target,
+                                          BiFunction<ActorRef<Res>, Long, Req> messageFactory,
+                                          Duration timeout) {
+        long id = ids.incrementAndGet();
+        Req request = messageFactory.apply(replyTo, id);
+        long deadlineNanos = System.nanoTime() + timeout.toNanos() - startNanos;
+        // 向上取整，不早于 timeout 超时
+        long deadlineTick = (deadlineNanos + tickNanos - 1) / tickNanos;
+        Pending<Res> p = new Pending<>(id, deadlineTick, target.unsafeUpcast(), request);
+        pending.put(id, p);
+        // 回复 actor 先置 closed 再清空 pending，这里先登记再检查，两者至少有一方让请求失败
+        if (closed.get()) {
+            pending.remove(id);
+            p.future.completeExceptionally(stopped());
+        } else {
+            replyActor.tell(p);
+        }
+        return p.future;
+    }
+
+    /**
+     * 停止回复 actor，未完成的请求以 IllegalStateException 失败
+     */
+    public void close() {
+        closed.set(true);
+        replyActor.tell(Stop.INSTANCE);
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Correlated ask reply actor stopped");
+    }
+
+    private enum Tick {
+        INSTANCE
+    }
+
+    private enum Stop {
+        INSTANCE
+    }
+
+    /**
+     * 一个未完成的请求，同时是登记消息和时间轮槽位中双向链表的节点
+     */
+    private static final class Pending<Res> {
+        final long id;
+        final long deadlineTick;
+        final CompletableFuture<Res> future = new CompletableFuture<>();
+        ActorRef<Object> target;
+        Object request;
+        // 所在的时间轮槽位
+        int slot;
+        Pending<Res> prev;
+        Pending<Res> next;
+
+        Pending(long id, long deadlineTick, ActorRef<Object> target, Object request) {
+            this.id = id;
+            this.deadlineTick = deadlineTick;
+            this.target = target;
+            this.request = request;
+        }
+    }
+
+    private static final class ReplyActor<Res> extends AbstractBehavior<Object> {
+        private final Class<Res> replyClass;
+        private final ToLongFunction<Res> correlationId;
+        private final long startNanos;
+        private final long tickNanos;
+        private final Pending<Res>[] wheel;
+        private final int mask;
+        private final ConcurrentHashMap<Long, Pending<Res>> pending;
+        private final AtomicBoolean closed;
+        private long currentTick;
+
+        @SuppressWarnings("unchecked")
+        ReplyActor(ActorContext<Object> context, Class<Res> replyClass, ToLongFunction<Res> correlationId,
+                   long startNanos, long tickNanos, int wheelSize, ConcurrentHashMap<Long, Pending<Res>> pending,
+                   AtomicBoolean closed) {
+            super(context);
+            this.pending = pending;
+            this.closed = closed;
+            this.replyClass = replyClass;
+            this.correlationId = correlationId;
+            this.startNanos = startNanos;
+            this.tickNanos = tickNanos;
+            this.wheel = new Pending[wheelSize];
+            this.mask = wheelSize - 1;
+            this.currentTick = (System.nanoTime() - startNanos) / tickNanos;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Receive<Object> createReceive() {
+            return newReceiveBuilder()
+                    .onMessage(Pending.class, p -> onRegister((Pending<Res>) p))
+                    .onMessageEquals(Tick.INSTANCE, this::onTick)
+                    .onMessageEquals(Stop.INSTANCE, Behaviors::stopped)
+                    .onMessage(replyClass, this::onReply)
+                    .onSignal(PostStop.class, signal -> onPostStop())
+                    .build();
+        }
+
+        private Behavior<Object> onRegister(Pending<Res> p) {
+            // 调用方已登记到 pending
+            link(p);
+            ActorRef<Object> target = p.target;
+            Object request = p.request;
+            p.target = null;
+            p.request = null;
+            target.tell(request);
+            return this;
+        }
+
+        private Behavior<Object> onReply(Res reply) {
+            long id = correlationId.applyAsLong(reply);
+            Pending<Res> p = pending.get(id);
+            // 已超时的请求的回复；target 不为 null 的请求还没有登记和转发，不会是它的回复
+            if (p != null && p.target == null) {
+                pending.remove(id);
+                unlink(p);
+                p.future.complete(reply);
+            }
+            return this;
+        }
+
+        private Behavior<Object> onTick() {
+            long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+            while (currentTick < nowTick) {
+                currentTick++;
+                int slot = (int) (currentTick & mask);
+                Pending<Res> p = wheel[slot];
+                while (p != null) {
+                    Pending<Res> next = p.next;
+                    // 超时超过一圈的请求留在槽位中，下一圈再检查
+                    if (p.deadlineTick <= currentTick) {
+                        pending.remove(p.id);
+                        unlink(p);
+                        p.future.completeExceptionally(new AskTimeoutException(
+                                "Correlated ask " + p.id + " on [" + getContext().getSelf() + "] timed out"));
+                    }
+                    p = next;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 包括邮箱中尚未登记的请求，它们已在调用方记录到 pending
+         */
+        private Behavior<Object> onPostStop() {
+            closed.set(true);
+            IllegalStateException stopped = stopped();
+            for (Long id : pending.keySet()) {
+                Pending<Res> p = pending.remove(id);
+                if (p != null) {
+                    p.future.completeExceptionally(stopped);
+                }
+            }
+            return this;
+        }
+
+        private void link(Pending<Res> p) {
+            // 已过期的请求放入下一格，在下一个 tick 超时
+            p.slot = (int) (Math.max(p.deadlineTick, currentTick + 1) & mask);
+            p.next = wheel[p.slot];
+            if (p.next != null) {
+                p.next.prev = p;
+            }
+            wheel[p.slot] = p;
+        }
+
+        private void unlink(Pending<Res> p) {
+            if (p.prev != null) {
+                p.prev.next = p.next;
+            } else {
+                wheel[p.slot] = p.next;
+            }
+            if (p.next != null) {
+                p.next.prev = p.prev;
+            }
+            p.prev = null;
+            p.next = null;
+        }
+    }
+}
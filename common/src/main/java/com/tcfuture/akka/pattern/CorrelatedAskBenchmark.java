@@ -0,0 +1,130 @@
+package com.tcfuture.akka.pattern;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.ConfigFactory;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * AskPattern.ask 与 CorrelatedAsk 的吞吐和每次请求分配的内存对比。
+ *
+ * 目标 actor 原样回复请求；parallelism 条请求链各自在上一个请求完成后发出下一个，共发出 asks 个请求。
+ * 每种方式先预热一轮再计时。分配量为所有线程的 ThreadMXBean.getThreadAllocatedBytes 之和的增量除以请求数，
+ * 包括目标 actor 和调度器线程上的分配。
+ * 参数：请求数（默认 1000000）、并行的请求链数（默认 64）。
+ */
+public class CorrelatedAskBenchmark {
+
+    static final class Ping {
+        final long id;
+        final ActorRef<Pong> replyTo;
+
+        Ping(long id, ActorRef<Pong> replyTo) {
+            this.id = id;
+            this.replyTo = replyTo;
+        }
+    }
+
+    static final class Pong {
+        final long id;
+
+        Pong(long id) {
+            this.id = id;
+        }
+    }
+
+    private interface Asker {
+        CompletionStage<Pong> ask();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int asks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "CorrelatedAskBenchmark",
+                ConfigFactory.parseString("akka.loglevel = INFO\nakka.actor.provider = local")
+                        .withFallback(ConfigFactory.load()));
+        try {
+            ActorRef<Ping> echo = system.systemActorOf(Behaviors.receiveMessage(ping -> {
+                ping.replyTo.tell(new Pong(ping.id));
+                return Behaviors.same();
+            }), "echo", Props.empty());
+            Duration timeout = Duration.ofSeconds(5);
+            CorrelatedAsk<Pong> correlated = CorrelatedAsk.create(system, "correlated", Pong.class, pong -> pong.id);
+
+            Asker askPattern = () -> AskPattern.ask(echo, replyTo -> new Ping(0, replyTo), timeout,
+                    system.scheduler());
+            Asker correlatedAsk = () -> correlated.ask(echo, (replyTo, id) -> new Ping(id, replyTo), timeout);
+
+            System.out.printf(Locale.ROOT, "%-12s %12s %14s%n", "ask", "asks/s", "bytes/ask");
+            run("warmup", askPattern, asks, parallelism, false);
+            run("AskPattern", askPattern, asks, parallelism, true);
+            run("warmup", correlatedAsk, asks, parallelism, false);
+            run("Correlated", correlatedAsk, asks, parallelism, true);
+            correlated.close();
+        } finally {
+            system.terminate();
+            system.getWhenTerminated().toCompletableFuture().join();
+        }
+    }
+
+    private static void run(String label, Asker asker, int asks, int parallelism, boolean print) throws Exception {
+        AtomicInteger remaining = new AtomicInteger(asks);
+        AtomicInteger finishedChains = new AtomicInteger();
+        CompletableFuture<Void> all = new CompletableFuture<>();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < parallelism; i++) {
+            next(asker, remaining, finishedChains, parallelism, all);
+        }
+        all.get(5, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        if (print) {
+            System.out.printf(Locale.ROOT, "%-12s %12.0f %14.0f%n", label, asks / (elapsed / 1e9),
+                    allocated / (double) asks);
+        }
+    }
+
+    private static void next(Asker asker, AtomicInteger remaining, AtomicInteger finishedChains, int parallelism,
+                             CompletableFuture<Void> all) {
+        if (remaining.getAndDecrement() <= 0) {
+            if (finishedChains.incrementAndGet() == parallelism) {
+                all.complete(null);
+            }
+            return;
+        }
+        asker.ask().whenComplete((pong, failure) -> {
+            if (failure != null) {
+                all.completeExceptionally(failure);
+            } else {
+                next(asker, remaining, finishedChains, parallelism, all);
+            }
+        });
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
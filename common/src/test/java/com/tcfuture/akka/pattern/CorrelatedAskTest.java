@@ -0,0 +1,180 @@
+package com.tcfuture.akka.pattern;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.pattern.AskTimeoutException;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author liulv
+ */
+public class CorrelatedAskTest {
+
+    private static final ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "CorrelatedAskTest");
+
+    static final class Ping {
+        final long id;
+        final int value;
+        final ActorRef<Pong> replyTo;
+
+        Ping(long id, int value, ActorRef<Pong> replyTo) {
+            this.id = id;
+            this.value = value;
+            this.replyTo = replyTo;
+        }
+    }
+
+    static final class Pong {
+        final long id;
+        final int value;
+
+        Pong(long id, int value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 只回复 value 为正数的请求
+     */
+    private static Behavior<Ping> echo() {
+        return Behaviors.receiveMessage(ping -> {
+            if (ping.value > 0) {
+                ping.replyTo.tell(new Pong(ping.id, ping.value));
+            }
+            return Behaviors.same();
+        });
+    }
+
+    @AfterClass
+    public static void teardown() {
+        system.terminate();
+    }
+
+    /**
+     * 多个并发请求共用一个回复 actor，各自收到自己的回复
+     */
+    @Test
+    public void testRepliesAreCorrelated() throws Exception {
+        CorrelatedAsk<Pong> asks = CorrelatedAsk.create(system, "correlated", Pong.class, pong -> pong.id);
+        ActorRef<Ping> echo = system.systemActorOf(echo(), "echo", Props.empty());
+        List<CompletionStage<Pong>> results = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            int value = i;
+            results.add(asks.ask(echo, (replyTo, id) -> new Ping(id, value, replyTo), Duration.ofSeconds(3)));
+        }
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(i, results.get(i - 1).toCompletableFuture().get(3, TimeUnit.SECONDS).value);
+        }
+        asks.close();
+    }
+
+    /**
+     * 没有回复的请求按时间轮超时，不影响其他请求；停止后未完成的请求失败
+     */
+    @Test
+    public void testTimeoutAndClose() throws Exception {
+        CorrelatedAsk<Pong> asks = CorrelatedAsk.create(system, "correlated-timeout", Pong.class, pong -> pong.id,
+                Duration.ofMillis(5), 8);
+        ActorRef<Ping> echo = system.systemActorOf(echo(), "echo-timeout", Props.empty());
+        long start = System.nanoTime();
+        CompletableFuture<Pong> silent =
+                asks.ask(echo, (replyTo, id) -> new Ping(id, 0, replyTo), Duration.ofMillis(100)).toCompletableFuture();
+        CompletableFuture<Pong> answered =
+                asks.ask(echo, (replyTo, id) -> new Ping(id, 1, replyTo), Duration.ofMillis(100)).toCompletableFuture();
+        assertEquals(1, answered.get(3, TimeUnit.SECONDS).value);
+        try {
+            silent.get(3, TimeUnit.SECONDS);
+            fail("expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AskTimeoutException);
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        CompletableFuture<Pong> pending =
+                asks.ask(echo, (replyTo, id) -> new Ping(id, 0, replyTo), Duration.ofSeconds(30)).toCompletableFuture();
+        asks.close();
+        try {
+            pending.get(3, TimeUnit.SECONDS);
+            fail("expected failure on close");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * close() 前发出、尚未登记的请求和 close() 后发出的请求都以 IllegalStateException 失败
+     */
+    @Test
+    public void testAskAroundClose() throws Exception {
+        CorrelatedAsk<Pong> asks = CorrelatedAsk.create(system, "correlated-close", Pong.class, pong -> pong.id);
+        ActorRef<Ping> silent = system.systemActorOf(echo(), "echo-close", Props.empty());
+        List<CompletableFuture<Pong>> before = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            before.add(asks.ask(silent, (replyTo, id) -> new Ping(id, 0, replyTo), Duration.ofSeconds(30))
+                    .toCompletableFuture());
+        }
+        asks.close();
+        CompletableFuture<Pong> after =
+                asks.ask(silent, (replyTo, id) -> new Ping(id, 0, replyTo), Duration.ofSeconds(30)).toCompletableFuture();
+        assertTrue(after.isCompletedExceptionally());
+        before.add(after);
+        for (CompletableFuture<Pong> result : before) {
+            try {
+                result.get(3, TimeUnit.SECONDS);
+                fail("expected failure on close");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    /**
+     * 随父 actor 停止时，邮箱中尚未登记的请求也失败
+     */
+    @Test
+    public void testAskWhenParentStops() throws Exception {
+        CompletableFuture<CorrelatedAsk<Pong>> created = new CompletableFuture<>();
+        ActorRef<String> parent = system.systemActorOf(Behaviors.setup(context -> {
+            created.complete(CorrelatedAsk.create(context, "replies", Pong.class, pong -> pong.id));
+            return Behaviors.receiveMessage(message -> Behaviors.stopped());
+        }), "correlated-parent", Props.empty());
+        CorrelatedAsk<Pong> asks = created.get(3, TimeUnit.SECONDS);
+        ActorRef<Ping> silent = system.systemActorOf(echo(), "echo-parent", Props.empty());
+        List<CompletableFuture<Pong>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(asks.ask(silent, (replyTo, id) -> new Ping(id, 0, replyTo), Duration.ofSeconds(30))
+                    .toCompletableFuture());
+            if (i == 50) {
+                parent.tell("stop");
+            }
+        }
+        for (CompletableFuture<Pong> result : results) {
+            try {
+                result.get(3, TimeUnit.SECONDS);
+                fail("expected failure on stop");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        CompletableFuture<Pong> after =
+                asks.ask(silent, (replyTo, id) -> new Ping(id, 0, replyTo), Duration.ofSeconds(30)).toCompletableFuture();
+        assertTrue(after.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,119 @@
+package com.tcfuture.akk.http.actoritrt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 拍卖的出价簿，只由 Auction actor 访问。
+ *
+ * 每个用户只保留最近一次出价（按用户索引），所有用户的当前出价按金额从高到低放在有序集合中，金额相同时先出价者
+ * 在前；出价、撤换旧出价都是 O(log n)，最高出价 O(log n)，前 K 名 O(log n + K)，都不复制整个出价簿。
+ * 可选保留最近 historySize 次出价的历史，超出时丢弃最早的。
+ */
+final class BidBook {
+
+    /**
+     * 出价簿中的一项，seq 为到达顺序，用于金额相同时排序
+     */
+    private static final class Entry {
+        final HttpServerActorInteractionExample.Auction.Bid bid;
+        final long seq;
+
+        Entry(HttpServerActorInteractionExample.Auction.Bid bid, long seq) {
+            this.bid = bid;
+            this.seq = seq;
+        }
+    }
+
+    private static final Comparator<Entry> BY_OFFER_DESC =
+            Comparator.comparingInt((Entry e) -> e.bid.offer).reversed().thenComparingLong(e -> e.seq);
+
+    // 用户 -> 最近一次出价
+    private final Map<String, Entry> latest = new HashMap<>();
+    // 各用户当前的出价，金额从高到低
+    private final TreeSet<Entry> ranked = new TreeSet<>(BY_OFFER_DESC);
+    // 最近的出价历史，historySize 为 0 时不保留
+    private final int historySize;
+    private final ArrayDeque<HttpServerActorInteractionExample.Auction.Bid> history;
+    private long seq;
+
+    /**
+     * @param historySize 保留的出价历史条数，0 表示不保留
+     */
+    BidBook(int historySize) {
+        if (historySize < 0) {
+            throw new IllegalArgumentException("historySize must not be negative");
+        }
+        this.historySize = historySize;
+        this.history = new ArrayDeque<>(Math.min(historySize, 1024));
+    }
+
+    /**
+     * 记录一次出价，同一用户之前的出价被替换
+     */
+    public void add(HttpServerActorInteractionExample.Auction.Bid bid) {
+        Entry entry = new Entry(bid, seq++);
+        Entry previous = latest.put(bid.userId, entry);
+        if (previous != null) {
+            ranked.remove(previous);
+        }
+        ranked.add(entry);
+        if (historySize > 0) {
+            if (history.size() == historySize) {
+                history.pollFirst();
+            }
+            history.addLast(bid);
+        }
+    }
+
+    /**
+     * @return 当前最高的出价，没有出价时为 null
+     */
+    public HttpServerActorInteractionExample.Auction.Bid winner() {
+        return ranked.isEmpty() ? null : ranked.first().bid;
+    }
+
+    /**
+     * @return 金额最高的 k 个当前出价（每个用户一个），从高到低
+     */
+    public List<HttpServerActorInteractionExample.Auction.Bid> top(int k) {
+        List<HttpServerActorInteractionExample.Auction.Bid> result = new ArrayList<>(Math.min(k, ranked.size()));
+        Iterator<Entry> it = ranked.iterator();
+        while (result.size() < k && it.hasNext()) {
+            result.add(it.next().bid);
+        }
+        return result;
+    }
+
+    /**
+     * @return 用户最近一次出价，没有时为 null
+     */
+    public HttpServerActorInteractionExample.Auction.Bid latestOf(String userId) {
+        Entry entry = latest.get(userId);
+        return entry == null ? null : entry.bid;
+    }
+
+    /**
+     * @return 最近的出价历史（副本），从早到晚，最多 historySize 条
+     */
+    public List<HttpServerActorInteractionExample.Auction.Bid> history() {
+        return history.isEmpty() ? Collections.emptyList() : new ArrayList<>(history);
+    }
+
+    /**
+     * @return 出过价的用户数
+     */
+    public int bidders() {
+        return latest.size();
+    }
+}
@@ -0,0 +1,103 @@
+package com.tcfuture.akk.http.actoritrt;
+
+import akka.Done;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.stream.OverflowStrategy;
+import akka.stream.QueueOfferResult;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 出价的有界接收入口。
+ *
+ * PUT /auction 的出价先放入一个容量为 bufferSize 的流队列，队列满时直接拒绝（路由返回 429），不再无限制地
+ * 堆积到 Auction 的邮箱中。队列中的出价每 batchInterval 或攒够 maxBatch 个合并为一条 BidBatch 发给 Auction，
+ * 同一时刻只有一批在途，Auction 确认后才发送下一批，因此 Auction 处理不过来时由队列承受并拒绝多余的出价。
+ */
+final class BidIngest {
+
+    /**
+     * 接收统计
+     */
+    @AllArgsConstructor
+    static final class Stats {
+        // 已进入队列的出价数
+        @JsonProperty("accepted")
+        final long accepted;
+        // 因队列已满被拒绝的出价数
+        @JsonProperty("rejected")
+        final long rejected;
+        // 已发送给 Auction 的批次数
+        @JsonProperty("batches")
+        final long batches;
+    }
+
+    private final SourceQueueWithComplete<HttpServerActorInteractionExample.Auction.Bid> queue;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param bufferSize 队列容量
+     * @param maxBatch 每批最多的出价数
+     * @param batchInterval 攒批的最长等待时间
+     */
+    BidIngest(ActorRef<HttpServerActorInteractionExample.Auction.Message> auction, ActorSystem<?> system,
+              int bufferSize, int maxBatch, Duration batchInterval) {
+        Duration ackTimeout = Duration.ofSeconds(5);
+        this.queue = Source.<HttpServerActorInteractionExample.Auction.Bid>queue(bufferSize, OverflowStrategy.dropNew())
+                .groupedWithin(maxBatch, batchInterval)
+                .mapAsync(1, bids -> {
+                    batches.increment();
+                    CompletionStage<Done> ack = AskPattern.ask(auction,
+                            replyTo -> new HttpServerActorInteractionExample.Auction.BidBatch(bids, replyTo),
+                            ackTimeout, system.scheduler());
+                    return ack.exceptionally(e -> {
+                        // Auction 未及时确认时不中断接收，这一批可能已经处理，也可能已经丢失
+                        system.log().warn("出价批次未确认，{} 个出价: {}", bids.size(), e.toString());
+                        return Done.getInstance();
+                    });
+                })
+                .toMat(Sink.ignore(), Keep.left())
+                .run(system);
+    }
+
+    /**
+     * 放入一次出价
+     *
+     * @return true 已进入队列；false 队列已满，被拒绝
+     */
+    CompletionStage<Boolean> offer(HttpServerActorInteractionExample.Auction.Bid bid) {
+        return queue.offer(bid).thenApply(result -> {
+            if (result == QueueOfferResult.enqueued()) {
+                accepted.increment();
+                return true;
+            }
+            if (result == QueueOfferResult.dropped()) {
+                rejected.increment();
+                return false;
+            }
+            if (result instanceof QueueOfferResult.Failure) {
+                throw new IllegalStateException("出价队列已失败", ((QueueOfferResult.Failure) result).cause());
+            }
+            throw new IllegalStateException("出价队列已关闭");
+        });
+    }
+
+    Stats stats() {
+        return new Stats(accepted.sum(), rejected.sum(), batches.sum());
+    }
+}
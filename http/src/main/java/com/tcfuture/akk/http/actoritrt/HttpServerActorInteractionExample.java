@@ -1,23 +1,24 @@
 package com.tcfuture.akk.http.actoritrt;
 
+import akka.Done;
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.ActorSystem;
 import akka.actor.typed.Behavior;
 import akka.actor.typed.javadsl.*;
 import akka.http.javadsl.Http;
 import akka.http.javadsl.ServerBinding;
-import akka.http.javadsl.marshallers.jackson.Jackson;
 import akka.http.javadsl.model.StatusCodes;
 import akka.http.javadsl.server.AllDirectives;
 import akka.http.javadsl.server.Route;
 import akka.http.javadsl.unmarshalling.StringUnmarshallers;
+import com.tcfuture.akk.http.codec.Codec;
+import com.tcfuture.akk.http.codec.Codecs;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
@@ -31,20 +32,32 @@ import java.util.concurrent.CompletionStage;
  */
 public class HttpServerActorInteractionExample extends AllDirectives {
 
+    // 预先构建的编解码器，路由中复用
+    private static final Codec<Auction.Bids> BIDS_CODEC = Codecs.of(Auction.Bids.class);
+    private static final Codec<Auction.Bid> BID_CODEC = Codecs.of(Auction.Bid.class);
+    private static final Codec<BidIngest.Stats> STATS_CODEC = Codecs.of(BidIngest.Stats.class);
+    // GET /auction/top 默认和最大的 k
+    private static final int DEFAULT_TOP_K = 10;
+    private static final int MAX_TOP_K = 100;
+
     //ActorSystem属性
     private final ActorSystem<Auction.Message> system;
     //ActorRef 拍卖
     private final ActorRef<Auction.Message> auction;
+    //有界的出价接收队列，按批发送给 auction
+    private final BidIngest ingest;
 
     public static void main(String[] args) throws Exception {
         Config config = ConfigFactory.load("http_test");
         // boot up server using the route as defined below
-        ActorSystem<Auction.Message> system = ActorSystem.create(Auction.create(), "routes", config);
+        ActorSystem<Auction.Message> system = ActorSystem.create(
+                Auction.create(config.getInt("auction.history-size")), "routes", config);
 
         final Http http = Http.get(system);
 
         //In order to access all directives we need an instance where the routes are define.
-        HttpServerActorInteractionExample app = new HttpServerActorInteractionExample(system);
+        HttpServerActorInteractionExample app = new HttpServerActorInteractionExample(system,
+                config.getConfig("auction.ingest"));
 
         final CompletionStage<ServerBinding> binding =
                 http.newServerAt("localhost", 8080)
@@ -58,26 +71,35 @@ public class HttpServerActorInteractionExample extends AllDirectives {
                 .thenAccept(unbound -> system.terminate()); // 当binding 挡掉后结束actor
     }
 
-    private HttpServerActorInteractionExample(final ActorSystem<Auction.Message> system) {
+    private HttpServerActorInteractionExample(final ActorSystem<Auction.Message> system, Config ingestConfig) {
         this.system = system;
         this.auction = system;
+        this.ingest = new BidIngest(auction, system,
+                ingestConfig.getInt("buffer-size"),
+                ingestConfig.getInt("max-batch"),
+                ingestConfig.getDuration("batch-interval"));
     }
 
     private Route createRoute() {
-        return concat(
-                path("auction", () -> concat(
+        return pathPrefix("auction", () -> concat(
+                path("top", () -> get(this::topBids)),
+                path("winner", () -> get(this::winningBid)),
+                //出价接收统计
+                path("stats", () -> get(() -> complete(StatusCodes.OK, ingest.stats(), STATS_CODEC.marshaller()))),
+                pathEnd(() -> concat(
                         put(() ->
                             parameter(StringUnmarshallers.INTEGER, "bid", bid ->
-                                    parameter("user", user -> {
-                                        //竞标，发完即丢弃，不用等待响应
-                                        auction.tell(new Auction.Bid(user, bid));
-                                        return complete(StatusCodes.ACCEPTED, "bid placed");
-                                    })
+                                    parameter("user", user ->
+                                        //竞标，放入有界队列后即返回，不等待 auction 处理；队列已满时返回 429
+                                        onSuccess(ingest.offer(new Auction.Bid(user, bid)), accepted -> accepted
+                                                ? complete(StatusCodes.ACCEPTED, "bid placed")
+                                                : complete(StatusCodes.TOO_MANY_REQUESTS, "出价过多，请稍后重试"))
+                                    )
                             )),
                         //向actor查询当前拍卖状态
                         get(() ->
                             //CompletionStage<Optional<Auction.Bids>> bids =AskPattern.ask(auction,Auction.GetBids::new, Duration.ofSeconds(5),system.scheduler());
-                            //return completeOKWithFuture(bids, Jackson.marshaller());
+                            //return completeOKWithFuture(bids, BIDS_CODEC.marshaller());
                             onSuccess(getBids(), opt -> {
                                 if (opt.isPresent()) {
                                     //return complete(StatusCodes.NOT_FOUND,"bids" +"为空");
@@ -87,7 +109,7 @@ public class HttpServerActorInteractionExample extends AllDirectives {
                                     if(bids.getBids().size() == 0){
                                         return complete(StatusCodes.NOT_FOUND, "bids为空");
                                     }else {
-                                        return complete(StatusCodes.OK, bids, Jackson.<Auction.Bids>marshaller());
+                                        return complete(StatusCodes.OK, bids, BIDS_CODEC.marshaller());
                                        /* String bidsJson =
                                                 JSON.toJSONString(bids.getBids().get(0));
                                         System.out.println(bids.getBids().get(0).userId);
@@ -98,7 +120,37 @@ public class HttpServerActorInteractionExample extends AllDirectives {
                                 }
                             })
                         )
-                )));
+                ))));
+    }
+
+    /**
+     * GET /auction/top?k=：金额最高的 k 个当前出价（每个用户最近一次），只序列化这 k 个
+     *
+     * @return Route
+     */
+    private Route topBids() {
+        return parameterOptional(StringUnmarshallers.INTEGER, "k", k -> {
+            int size = k.orElse(DEFAULT_TOP_K);
+            if (size < 1 || size > MAX_TOP_K) {
+                return complete(StatusCodes.BAD_REQUEST, "k 必须在 1~" + MAX_TOP_K + " 之间");
+            }
+            CompletionStage<Auction.Bids> top = AskPattern.ask(auction,
+                    replyTo -> new Auction.GetTopBids(size, replyTo), Duration.ofSeconds(5), system.scheduler());
+            return onSuccess(top, bids -> complete(StatusCodes.OK, bids, BIDS_CODEC.marshaller()));
+        });
+    }
+
+    /**
+     * GET /auction/winner：当前最高出价，没有出价时 404
+     *
+     * @return Route
+     */
+    private Route winningBid() {
+        CompletionStage<Optional<Auction.Bid>> winner = AskPattern.ask(auction,
+                Auction.GetWinner::new, Duration.ofSeconds(5), system.scheduler());
+        return onSuccess(winner, opt -> opt
+                .map(bid -> complete(StatusCodes.OK, bid, BID_CODEC.marshaller()))
+                .orElseGet(() -> complete(StatusCodes.NOT_FOUND, "bids为空")));
     }
 
     private CompletionStage<Optional<Auction.Bids>> getBids(){
@@ -107,8 +159,10 @@ public class HttpServerActorInteractionExample extends AllDirectives {
 
     static class Auction extends AbstractBehavior<Auction.Message> {
 
-        //竞标列表
-        private final List<Bid> bids = new ArrayList<>();
+        private static final int DEFAULT_HISTORY_SIZE = 1000;
+
+        //出价簿：每个用户最近的出价按金额排序，以及有界的出价历史
+        private final BidBook book;
 
         interface Message  {}
 
@@ -126,12 +180,32 @@ public class HttpServerActorInteractionExample extends AllDirectives {
             }*/
         }
 
-        //获取竞标信息
+        //一批出价，由 BidIngest 攒批发送，处理完后确认
+        @AllArgsConstructor
+        static final class BidBatch implements Message {
+            final List<Bid> bids;
+            final ActorRef<Done> replyTo;
+        }
+
+        //获取竞标历史（有界）
         @AllArgsConstructor
         static final class GetBids implements Message {
             final ActorRef<Optional<Bids>> replyTo;
         }
 
+        //获取金额最高的 k 个当前出价
+        @AllArgsConstructor
+        static final class GetTopBids implements Message {
+            final int k;
+            final ActorRef<Bids> replyTo;
+        }
+
+        //获取当前最高出价
+        @AllArgsConstructor
+        static final class GetWinner implements Message {
+            final ActorRef<Optional<Bid>> replyTo;
+        }
+
         //全部竞标信息
         @Getter
         @AllArgsConstructor
@@ -139,43 +213,66 @@ public class HttpServerActorInteractionExample extends AllDirectives {
             public final List<Bid> bids;
         }
 
-        public Auction(ActorContext<Message> context) {
+        public Auction(ActorContext<Message> context, int historySize) {
             super(context);
+            this.book = new BidBook(historySize);
         }
 
         public static Behavior<Message> create() {
-            return Behaviors.setup(Auction::new);
+            return create(DEFAULT_HISTORY_SIZE);
+        }
+
+        /**
+         * @param historySize GET /auction 返回的出价历史条数上限，0 表示不保留历史
+         */
+        public static Behavior<Message> create(int historySize) {
+            return Behaviors.setup(context -> new Auction(context, historySize));
         }
 
         @Override
         public Receive<Message> createReceive() {
             return newReceiveBuilder()
                     .onMessage(Bid.class, this::onBid)
+                    .onMessage(BidBatch.class, this::onBidBatch)
                     .onMessage(GetBids.class, this::onGetBids)
+                    .onMessage(GetTopBids.class, this::onGetTopBids)
+                    .onMessage(GetWinner.class, this::onGetWinner)
                     .build();
         }
 
         /**
-         * 开始竞标消息回复，将竞标信息添加到竞标集合中
+         * 开始竞标消息回复，将竞标信息记入出价簿，替换该用户之前的出价
          *
          * @param bid Bid
          * @return
          */
         private Behavior<Message> onBid(Bid bid) {
-            bids.add(bid);
+            book.add(bid);
             getContext().getLog().info("Bid complete: {}, {}", bid.userId, bid.offer);
             return this;
         }
 
         /**
-         * 获取当前全部的竞标信息
+         * 处理一批出价，按到达顺序记入出价簿后确认，整批只打一条日志
+         */
+        private Behavior<Message> onBidBatch(BidBatch batch) {
+            for (Bid bid : batch.bids) {
+                book.add(bid);
+            }
+            getContext().getLog().debug("Bid batch complete: {} bids", batch.bids.size());
+            batch.replyTo.tell(Done.getInstance());
+            return this;
+        }
+
+        /**
+         * 获取最近的竞标历史，最多 historySize 条
          *
          * @param getBids GetBids
-         * @return Bids-示例中存储的竞标集合构建Bids实例返回
+         * @return Bids-出价历史的副本构建Bids实例返回
          */
         private Behavior<Message> onGetBids(GetBids getBids) {
-            Bids rBids = new Bids(bids);
-            getContext().getLog().info("获取全部的Bids，size: {}, {}",  bids.size(), rBids.toString());
+            Bids rBids = new Bids(book.history());
+            getContext().getLog().info("获取Bids历史，size: {}", rBids.bids.size());
             if(rBids.getBids().size() > 0){
                 getBids.replyTo.tell(Optional.of(rBids));
             }else {
@@ -183,5 +280,21 @@ public class HttpServerActorInteractionExample extends AllDirectives {
             }
             return this;
         }
+
+        /**
+         * 获取金额最高的 k 个当前出价，每个用户只计最近一次
+         */
+        private Behavior<Message> onGetTopBids(GetTopBids msg) {
+            msg.replyTo.tell(new Bids(book.top(msg.k)));
+            return this;
+        }
+
+        /**
+         * 获取当前最高出价
+         */
+        private Behavior<Message> onGetWinner(GetWinner msg) {
+            msg.replyTo.tell(Optional.ofNullable(book.winner()));
+            return this;
+        }
     }
 }
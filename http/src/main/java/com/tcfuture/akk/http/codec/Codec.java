@@ -0,0 +1,146 @@
+package com.tcfuture.akk.http.codec;
+
+import akka.http.javadsl.marshalling.Marshaller;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpEntity;
+import akka.http.javadsl.model.MediaTypes;
+import akka.http.javadsl.model.RequestEntity;
+import akka.http.javadsl.unmarshalling.Unmarshaller;
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 一个类型的 JSON/CBOR 编解码器，通过 Codecs.of(Class) 获取。
+ *
+ * 序列化时写入当前线程复用的字节缓冲区，再一次性复制为 ByteString，不经过 String，也不在缓冲区增长时反复复制。
+ * marshaller() 按请求的 Accept 在 JSON（默认）和 CBOR 之间协商，unmarshaller() 按请求的 Content-Type 选择。
+ */
+public final class Codec<T> {
+
+    // 超过此大小的缓冲区用完后不保留，避免个别大响应长期占用内存
+    private static final int MAX_POOLED_BYTES = 1 << 20;
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(Output::new);
+
+    private final Class<T> type;
+    private final ObjectReader jsonReader;
+    private final ObjectReader cborReader;
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter cborWriter;
+    private final Marshaller<T, RequestEntity> marshaller;
+    private final Unmarshaller<HttpEntity, T> unmarshaller;
+
+    Codec(Class<T> type) {
+        this.type = type;
+        this.jsonReader = Codecs.JSON_MAPPER.readerFor(type);
+        this.cborReader = Codecs.CBOR_MAPPER.readerFor(type);
+        this.jsonWriter = Codecs.JSON_MAPPER.writerFor(type);
+        this.cborWriter = Codecs.CBOR_MAPPER.writerFor(type);
+        this.marshaller = Marshaller.oneOf(
+                Marshaller.<T, RequestEntity>withFixedContentType(ContentTypes.APPLICATION_JSON,
+                        value -> HttpEntities.create(ContentTypes.APPLICATION_JSON, toJson(value))),
+                Marshaller.<T, RequestEntity>withFixedContentType(Codecs.CBOR,
+                        value -> HttpEntities.create(Codecs.CBOR, toCbor(value))));
+        this.unmarshaller = Unmarshaller.firstOf(
+                Unmarshaller.forMediaType(MediaTypes.APPLICATION_JSON,
+                        Unmarshaller.entityToByteString().thenApply(this::fromJson)),
+                Unmarshaller.forMediaType(Codecs.APPLICATION_CBOR,
+                        Unmarshaller.entityToByteString().thenApply(this::fromCbor)));
+    }
+
+    /**
+     * @return 按 Accept 协商 JSON 或 CBOR 的 Marshaller，没有 Accept 时为 JSON
+     */
+    public Marshaller<T, RequestEntity> marshaller() {
+        return marshaller;
+    }
+
+    /**
+     * @return 按 Content-Type 解析 JSON 或 CBOR 的 Unmarshaller，其他类型返回 415
+     */
+    public Unmarshaller<HttpEntity, T> unmarshaller() {
+        return unmarshaller;
+    }
+
+    public ByteString toJson(T value) {
+        return write(jsonWriter, value);
+    }
+
+    public ByteString toCbor(T value) {
+        return write(cborWriter, value);
+    }
+
+    /**
+     * @throws IllegalArgumentException 内容不是合法的 JSON 或与类型不符，路由中表现为 400
+     */
+    public T fromJson(ByteString bytes) {
+        return read(jsonReader, bytes);
+    }
+
+    public T fromCbor(ByteString bytes) {
+        return read(cborReader, bytes);
+    }
+
+    private ByteString write(ObjectWriter writer, T value) {
+        Output out = OUTPUT.get();
+        try {
+            writer.writeValue(out, value);
+            return out.toByteString();
+        } catch (IOException e) {
+            throw new IllegalStateException(type.getSimpleName() + " 序列化失败", e);
+        } finally {
+            if (out.buf.length > MAX_POOLED_BYTES) {
+                OUTPUT.remove();
+            } else {
+                out.count = 0;
+            }
+        }
+    }
+
+    private T read(ObjectReader reader, ByteString bytes) {
+        try {
+            return reader.readValue(bytes.toArray());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " 解析失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 可复用的字节输出，close 不释放缓冲区（ObjectWriter 写完会调用 close）
+     */
+    private static final class Output extends OutputStream {
+        byte[] buf = new byte[4096];
+        int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        ByteString toByteString() {
+            return ByteString.fromArray(buf, 0, count);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+            }
+        }
+    }
+}
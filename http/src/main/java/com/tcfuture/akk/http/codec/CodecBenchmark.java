@@ -0,0 +1,102 @@
+package com.tcfuture.akk.http.codec;
+
+import akka.util.ByteString;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * Codec 与 akka-http-jackson 默认编解码路径的对比。
+ *
+ * 载荷为一页 50 个 job。akka-http 的 Jackson.marshaller() 通过 ObjectMapper.writeValueAsString 得到 String
+ * 再编码为 UTF-8 的 ByteString，Jackson.unmarshaller 先把实体解码为 String 再解析；这里直接调用同样的步骤，
+ * 与 Codec 的 JSON、CBOR 编解码比较每次操作的耗时和输出大小。
+ * 参数：每轮次数，默认 200000。
+ */
+public class CodecBenchmark {
+
+    public static final class Item {
+        @JsonProperty("id")
+        public long id;
+        @JsonProperty("project-name")
+        public String projectName;
+        @JsonProperty("status")
+        public String status;
+        @JsonProperty("duration")
+        public long duration;
+    }
+
+    public static final class Page {
+        @JsonProperty("jobs")
+        public List<Item> jobs = new ArrayList<>();
+        @JsonProperty("next")
+        public Long next;
+    }
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Page page = new Page();
+        for (int i = 0; i < 50; i++) {
+            Item item = new Item();
+            item.id = 1_000_000 - i;
+            item.projectName = "project-" + (i % 7);
+            item.status = i % 10 == 0 ? "Failed" : "Success";
+            item.duration = 1000L + i;
+            page.jobs.add(item);
+        }
+        page.next = page.jobs.get(49).id;
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
+        Codec<Page> codec = Codecs.of(Page.class);
+        ByteString json = codec.toJson(page);
+        ByteString cbor = codec.toCbor(page);
+
+        System.out.printf(Locale.ROOT, "%-24s %12s %10s%n", "method", "ns/op", "bytes");
+        run("akka jackson encode", iterations, json.size(), () -> {
+            try {
+                return ByteString.fromString(mapper.writeValueAsString(page), StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        run("codec json encode", iterations, json.size(), () -> codec.toJson(page));
+        run("codec cbor encode", iterations, cbor.size(), () -> codec.toCbor(page));
+        run("akka jackson decode", iterations, json.size(), () -> {
+            try {
+                return mapper.readValue(json.decodeString(StandardCharsets.UTF_8), Page.class);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        run("codec json decode", iterations, json.size(), () -> codec.fromJson(json));
+        run("codec cbor decode", iterations, cbor.size(), () -> codec.fromCbor(cbor));
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+    }
+
+    private static void run(String label, int iterations, int bytes, Supplier<Object> op) {
+        // 预热一轮后测量
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += op.get().hashCode();
+            }
+            if (round == 1) {
+                System.out.printf(Locale.ROOT, "%-24s %12.1f %10d%n", label,
+                        (System.nanoTime() - start) / (double) iterations, bytes);
+            }
+        }
+    }
+}
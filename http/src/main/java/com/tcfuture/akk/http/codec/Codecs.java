@@ -0,0 +1,55 @@
+package com.tcfuture.akk.http.codec;
+
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.MediaType;
+import akka.http.javadsl.model.MediaTypes;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * http 模块共用的编解码器注册表。
+ *
+ * 每个类型只创建一次 Codec，其中的 ObjectReader/ObjectWriter 和 akka-http 的 Marshaller/Unmarshaller 都是预先构建、
+ * 线程安全的，路由中直接复用，不再在每次请求时调用 Jackson.marshaller()/unmarshaller(...)。
+ * JSON 与 akka-http-jackson 默认的 ObjectMapper 配置相同；内部客户端可以用 Accept/Content-Type: application/cbor
+ * 改用 CBOR。
+ */
+public final class Codecs {
+
+    /**
+     * CBOR 的媒体类型，用于内部客户端的内容协商
+     */
+    public static final MediaType.Binary APPLICATION_CBOR =
+            MediaTypes.applicationBinary("cbor", false);
+    public static final ContentType.Binary CBOR = ContentTypes.create(APPLICATION_CBOR);
+
+    // 与 akka.http.javadsl.marshallers.jackson.Jackson 默认的 ObjectMapper 配置相同
+    static final ObjectMapper JSON_MAPPER =
+            new ObjectMapper().enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
+    static final ObjectMapper CBOR_MAPPER =
+            new ObjectMapper(new CBORFactory()).enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
+
+    private static final ConcurrentMap<Class<?>, Codec<?>> CODECS = new ConcurrentHashMap<>();
+
+    private Codecs() {}
+
+    /**
+     * @return type 的编解码器，第一次调用时创建，之后返回同一个实例
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> of(Class<T> type) {
+        Codec<?> codec = CODECS.get(type);
+        if (codec == null) {
+            codec = CODECS.computeIfAbsent(type, t -> new Codec<>(t));
+        }
+        return (Codec<T>) codec;
+    }
+}
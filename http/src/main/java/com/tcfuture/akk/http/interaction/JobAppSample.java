@@ -1,6 +1,5 @@
 package com.tcfuture.akk.http.interaction;
 
-import akka.actor.typed.ActorRef;
 import akka.actor.typed.ActorSystem;
 import akka.actor.typed.Behavior;
 import akka.actor.typed.PostStop;
@@ -12,9 +11,16 @@ import akka.http.javadsl.server.Route;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.IntFunction;
 
 /**
  * 依赖JobRoutes、JobRepository
@@ -62,8 +68,18 @@ public class JobAppSample {
     public static Behavior<Message> create(String host, Integer port) {
         return Behaviors.setup(context -> {
             ActorSystem<Void> system = context.getSystem();
-            ActorRef<JobRepository.Command> buildJobRepository = context.spawn(JobRepository.create(), "JobRepository");
-            Route routes = new JobRoutes(buildJobRepository, context.getSystem()).jobRoutes();
+            // 写操作按 job id 路由到所在分区的 JobRepository，每个分区有各自的 store，
+            // GET /jobs/{id} 通过 PartitionedJobStore 直接无锁读取 job 所在分区的 store
+            int partitions = system.settings().config().getInt("job-app.repository-partitions");
+            if (partitions <= 0) {
+                partitions = Runtime.getRuntime().availableProcessors();
+            }
+            PartitionedJobStore store = new PartitionedJobStore(partitions, StripedJobStore::new);
+            JobPartitions buildJobRepository = JobPartitions.spawn(context, "JobRepository", partitions,
+                    repositories(system.settings().config().getConfig("job-app.persistence"), store));
+            JobResponseCache responseCache =
+                    new JobResponseCache(system.settings().config().getInt("job-app.response-cache-capacity"));
+            Route routes = new JobRoutes(buildJobRepository, context.getSystem(), store, responseCache).jobRoutes();
 
             CompletionStage<ServerBinding> serverBinding =
                     Http.get(system).newServerAt(host, port).bind(routes);
@@ -78,6 +94,36 @@ public class JobAppSample {
         });
     }
 
+    /**
+     * 按 job-app.persistence 配置创建各分区的 Behavior，每个分区使用 store 中各自的 JobStore：dir 为空时只保存在
+     * 内存中，否则每个分区在 dir/partition-序号 下有各自的 JobLog，所有分区共用一个后台线程池刷盘和压缩
+     */
+    private static IntFunction<Behavior<JobRepository.Command>> repositories(Config config,
+                                                                            PartitionedJobStore store) {
+        String dir = config.getString("dir");
+        if (dir.isEmpty()) {
+            return partition -> JobRepository.create(store.partition(partition));
+        }
+        JobLog.Settings settings = new JobLog.Settings(
+                (int) config.getBytes("segment-size").longValue(),
+                config.getDuration("flush-interval"),
+                config.getDuration("compaction-interval"));
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "job-log");
+            t.setDaemon(true);
+            return t;
+        });
+        Path root = Paths.get(dir);
+        return partition -> {
+            try {
+                return JobRepository.create(store.partition(partition),
+                        JobLog.open(root.resolve("partition-" + partition), settings, scheduler));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
     /**
      * 启动Actor方法，接收各种消息并最终调用自己或running方法创建Behavior，其最终都是调用running方法创建
      * Behavior
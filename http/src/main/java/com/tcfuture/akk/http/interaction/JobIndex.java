@@ -0,0 +1,105 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * Job 在 projectName 和 status 上的二级索引，只在 JobRepository actor 内部使用，非线程安全。
+ *
+ * 索引保存有序的 job id：status -> ids，以及 projectName -> status -> ids。按 id 从大到小（新到旧）分页查询，
+ * 游标为上一页最后一个 job 的 id；同时按项目和状态查询时直接使用组合索引，只按项目或都不指定时对该项目或所有
+ * 状态的少量有序列表做多路归并。每次查询只访问 O(log n + limit) 个元素，不扫描全部 job。
+ * 写入按递增 id 时为 O(1)，乱序 id 为 O(log n + SortedLongList.BLOCK_SIZE)。
+ */
+final class JobIndex {
+
+    private final Map<String, SortedLongList> byStatus = new HashMap<>();
+    private final Map<String, Map<String, SortedLongList>> byProjectStatus = new HashMap<>();
+
+    void add(JobRepository.Job job) {
+        long id = job.id;
+        byStatus.computeIfAbsent(job.status, s -> new SortedLongList()).add(id);
+        byProjectStatus.computeIfAbsent(job.projectName, p -> new HashMap<>())
+                .computeIfAbsent(job.status, s -> new SortedLongList()).add(id);
+    }
+
+    void clear() {
+        byStatus.clear();
+        byProjectStatus.clear();
+    }
+
+    /**
+     * 查询 id 小于 after 的 job id，按 id 从大到小排列
+     *
+     * @param project 项目名，为 null 时不限
+     * @param status  状态，为 null 时不限
+     * @param after   游标，只返回小于它的 id，第一页传 Long.MAX_VALUE
+     * @param limit   最多返回的数量
+     * @return job id 数组
+     */
+    long[] query(String project, String status, long after, int limit) {
+        List<SortedLongList> lists = new ArrayList<>();
+        if (project == null) {
+            if (status == null) {
+                lists.addAll(byStatus.values());
+            } else {
+                addIfPresent(lists, byStatus.get(status));
+            }
+        } else {
+            Map<String, SortedLongList> statuses = byProjectStatus.get(project);
+            if (statuses != null) {
+                if (status == null) {
+                    lists.addAll(statuses.values());
+                } else {
+                    addIfPresent(lists, statuses.get(status));
+                }
+            }
+        }
+        return mergeDescending(lists, after, limit);
+    }
+
+    private static void addIfPresent(Collection<SortedLongList> lists, SortedLongList list) {
+        if (list != null) {
+            lists.add(list);
+        }
+    }
+
+    /**
+     * 多个升序列表从 after 向前做多路归并，列表数为状态数，很小，每步线性选择最大值即可
+     */
+    private static long[] mergeDescending(List<SortedLongList> lists, long after, int limit) {
+        int k = lists.size();
+        SortedLongList.Cursor[] cursors = new SortedLongList.Cursor[k];
+        for (int i = 0; i < k; i++) {
+            cursors[i] = lists.get(i).descendingBelow(after);
+        }
+        long[] result = new long[limit];
+        int count = 0;
+        while (count < limit) {
+            int best = -1;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < k; i++) {
+                if (cursors[i].hasValue()) {
+                    long value = cursors[i].value();
+                    if (best < 0 || value > max) {
+                        best = i;
+                        max = value;
+                    }
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            result[count++] = max;
+            cursors[best].previous();
+        }
+        return count == limit ? result : Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,114 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * JobIndex 分页查询与线性扫描的对比。
+ *
+ * 生成 jobCount 个 job（1000 个项目，状态中 Failed 约占 10%），分别用 JobIndex 和遍历整个 HashMap 的方式查询
+ * “项目 X 中状态为 Failed 的 job，新到旧，每页 50 个”的前 3 页，输出每次查询的平均耗时。
+ * 参数：job数，默认 10000000，需要约 3G 堆内存（-Xmx3g）。
+ */
+public class JobIndexBenchmark {
+
+    private static final int PROJECTS = 1000;
+    private static final int LIMIT = 50;
+    private static final int PAGES = 3;
+    private static final String[] STATUSES = {"Success", "Success", "Success", "Success", "Success", "Success",
+            "Success", "Running", "Cancelled", "Failed"};
+
+    public static void main(String[] args) {
+        int jobCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String[] projects = new String[PROJECTS];
+        for (int i = 0; i < PROJECTS; i++) {
+            projects[i] = "project-" + i;
+        }
+
+        Random random = new Random(42);
+        Map<Long, JobRepository.Job> map = new HashMap<>(jobCount * 2);
+        JobStore store = new MapJobStore(map);
+        JobIndex index = new JobIndex();
+        long start = System.nanoTime();
+        for (long id = 1; id <= jobCount; id++) {
+            JobRepository.Job job = new JobRepository.Job(id, projects[random.nextInt(PROJECTS)],
+                    STATUSES[random.nextInt(STATUSES.length)], 1L);
+            store.putIfAbsent(job);
+            index.add(job);
+        }
+        System.out.printf(Locale.ROOT, "loaded %d jobs in %d ms%n",
+                jobCount, (System.nanoTime() - start) / 1_000_000);
+
+        // 预热后测量
+        runIndex(index, store, projects, random, 3_000);
+        double indexMicros = runIndex(index, store, projects, random, 30_000);
+        runScan(map, projects, random, 1);
+        double scanMicros = runScan(map, projects, random, 4);
+        System.out.printf(Locale.ROOT, "%-12s %14s%n", "method", "us/query");
+        System.out.printf(Locale.ROOT, "%-12s %14.2f%n", "index", indexMicros);
+        System.out.printf(Locale.ROOT, "%-12s %14.2f%n", "linear scan", scanMicros);
+    }
+
+    /**
+     * 每轮随机选一个项目连续查询 PAGES 页
+     *
+     * @return 每次查询（一页）的平均耗时，微秒
+     */
+    private static double runIndex(JobIndex index, JobStore store, String[] projects, Random random, int rounds) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < rounds; q++) {
+            String project = projects[random.nextInt(PROJECTS)];
+            long after = Long.MAX_VALUE;
+            for (int page = 0; page < PAGES; page++) {
+                long[] ids = index.query(project, "Failed", after, LIMIT);
+                for (long id : ids) {
+                    sink += store.get(id).duration;
+                }
+                after = ids[ids.length - 1];
+            }
+        }
+        consume(sink);
+        return (System.nanoTime() - start) / 1000.0 / (rounds * PAGES);
+    }
+
+    private static double runScan(Map<Long, JobRepository.Job> map, String[] projects, Random random, int rounds) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < rounds; q++) {
+            String project = projects[random.nextInt(PROJECTS)];
+            long after = Long.MAX_VALUE;
+            for (int page = 0; page < PAGES; page++) {
+                // 保留 id 最大的 LIMIT 个，堆顶为其中最小的
+                PriorityQueue<JobRepository.Job> top = new PriorityQueue<>(LIMIT + 1,
+                        (a, b) -> Long.compare(a.id, b.id));
+                for (JobRepository.Job job : map.values()) {
+                    if (job.id < after && project.equals(job.projectName) && "Failed".equals(job.status)) {
+                        top.add(job);
+                        if (top.size() > LIMIT) {
+                            top.poll();
+                        }
+                    }
+                }
+                after = top.peek().id;
+                for (JobRepository.Job job : top) {
+                    sink += job.duration;
+                }
+            }
+        }
+        consume(sink);
+        return (System.nanoTime() - start) / 1000.0 / (rounds * PAGES);
+    }
+
+    private static void consume(long sink) {
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
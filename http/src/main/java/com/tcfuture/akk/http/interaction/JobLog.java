@@ -0,0 +1,660 @@
+package com.tcfuture.akk.http.interaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 一个 JobRepository 分区的持久化日志：内存映射、长度前缀的追加日志，加上定期压缩生成的快照。
+ *
+ * 目录下的文件按代（generation）编号：jobs-N.log 为第 N 代的追加日志，snapshot-N 为第 N 代日志开始之前的全部 job。
+ * 恢复时取编号最大的快照，再依次回放此后各代的日志；日志中的 CLEAR 记录使它之前的所有 job 失效。
+ * 压缩生成 snapshot-(N+1) 时合并上一个快照和第 N 代及之前所有剩余的日志，之后删除它们。
+ *
+ * 每条记录为 [长度 int][CRC32 int][内容]，日志文件按 segment-size 分段映射，记录不跨段；段尾放不下时写入 -1
+ * 跳到下一段，长度为 0 表示数据结束，长度或 CRC 不对的记录视为崩溃时写了一半，从这里截断。
+ *
+ * 追加只是写入映射内存，不等待刷盘，由后台每隔 flush-interval 对映射区 force 一次（组提交）。进程崩溃不丢数据
+ * （页缓存仍在），操作系统崩溃或断电最多丢失最近一个 flush-interval 内已响应的写入。
+ *
+ * append/appendClear 由所属的 JobRepository actor 调用；flush 和 compact 在后台线程执行，二者与追加之间只在
+ * 切换新一代日志时短暂加锁。
+ */
+public final class JobLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(JobLog.class);
+
+    private static final String LOG_PREFIX = "jobs-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final byte ADD = 1;
+    private static final byte CLEAR = 2;
+    // 记录头：长度 + CRC32
+    private static final int HEADER_BYTES = 8;
+    // 段尾放不下下一条记录时写入的长度，表示跳到下一段
+    private static final int SKIP = -1;
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final String DEFAULT_STATUS = "Success";
+
+    /**
+     * 日志配置
+     */
+    public static final class Settings {
+        // 每个映射段的字节数，单条记录不能超过它
+        final int segmentSize;
+        // 组提交的刷盘间隔
+        final Duration flushInterval;
+        // 压缩间隔，期间有新写入时才压缩
+        final Duration compactionInterval;
+
+        public Settings(int segmentSize, Duration flushInterval, Duration compactionInterval) {
+            if (segmentSize < 4096) {
+                throw new IllegalArgumentException("segment-size must be at least 4096 bytes");
+            }
+            this.segmentSize = segmentSize;
+            this.flushInterval = flushInterval;
+            this.compactionInterval = compactionInterval;
+        }
+
+        public static Settings defaults() {
+            return new Settings(DEFAULT_SEGMENT_SIZE, Duration.ofMillis(10), Duration.ofMinutes(5));
+        }
+    }
+
+    private final Path dir;
+    private final Settings settings;
+    // 追加时编码记录的缓冲区，只在持有锁时使用
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch = new byte[256];
+
+    // 当前代的编号、文件、映射段及段号，只在持有锁时修改
+    private long generation;
+    private FileChannel channel;
+    private volatile MappedByteBuffer segment;
+    private int segmentIndex;
+    // 已经切换出去、还未 force 的映射段
+    private final Queue<MappedByteBuffer> retired = new ConcurrentLinkedQueue<>();
+    // 刷盘可能同时由后台线程和 close 发起，串行执行以免 durable 回退
+    private final Object flushLock = new Object();
+
+    // 已追加和已刷盘的记录数
+    private volatile long appended;
+    private volatile long durable;
+    // 当前代写入的记录数，压缩时据此判断是否有新数据
+    private long appendedInGeneration;
+    // 打开时是否发现了写了一半的记录
+    private final boolean tornTail;
+
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>(2);
+    private boolean closed;
+
+    private JobLog(Path dir, Settings settings) throws IOException {
+        this.dir = dir;
+        this.settings = settings;
+        Files.createDirectories(dir);
+        deleteTemporaryFiles();
+        TreeSet<Long> logs = generations(LOG_PREFIX, LOG_SUFFIX);
+        long snapshot = latestSnapshot();
+        if (logs.isEmpty() || logs.last() < snapshot) {
+            // 新目录，或者上次压缩在删除旧日志之后、新一代日志创建之前退出
+            this.tornTail = false;
+            openGeneration(Math.max(snapshot, 0));
+            return;
+        }
+        long last = logs.last();
+        Position end = scan(logFile(last), settings.segmentSize, null);
+        this.tornTail = end.torn;
+        if (end.torn) {
+            // 截断点之后可能还有残缺的字节，后续写入放到新的一代，不与之混在一起
+            openGeneration(last + 1);
+        } else {
+            this.generation = last;
+            this.channel = FileChannel.open(logFile(last), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapSegment(end.segment);
+            segment.position(end.offset);
+        }
+    }
+
+    /**
+     * 打开（不存在时创建）dir 下的日志，并在 scheduler 上定期刷盘和压缩
+     *
+     * @param scheduler 执行刷盘和压缩的线程池，为 null 时不自动执行，由调用方调用 flush/compact
+     */
+    public static JobLog open(Path dir, Settings settings, ScheduledExecutorService scheduler) throws IOException {
+        JobLog jobLog = new JobLog(dir, settings);
+        if (scheduler != null) {
+            long flushNanos = settings.flushInterval.toNanos();
+            long compactNanos = settings.compactionInterval.toNanos();
+            jobLog.tasks.add(scheduler.scheduleWithFixedDelay(jobLog::flushQuietly,
+                    flushNanos, flushNanos, TimeUnit.NANOSECONDS));
+            jobLog.tasks.add(scheduler.scheduleWithFixedDelay(jobLog::compactQuietly,
+                    compactNanos, compactNanos, TimeUnit.NANOSECONDS));
+        }
+        return jobLog;
+    }
+
+    /**
+     * 回放快照和日志，把最后一次 CLEAR 之后添加的 job 依次交给 consumer
+     *
+     * @return 回放的 job 数
+     */
+    public long recover(Consumer<JobRepository.Job> consumer) throws IOException {
+        JobDecoder decoder = new JobDecoder(consumer);
+        replay(replayFiles(latestSnapshot(), Long.MAX_VALUE), decoder);
+        return decoder.count;
+    }
+
+    /**
+     * 追加一条 ADD 记录，只写入映射内存
+     */
+    public synchronized void append(JobRepository.Job job) {
+        int length = encode(job);
+        write(length);
+    }
+
+    /**
+     * 追加一条 CLEAR 记录，回放时它之前的 job 都被丢弃
+     */
+    public synchronized void appendClear() {
+        scratch[0] = CLEAR;
+        write(1);
+    }
+
+    /**
+     * 把已追加的记录刷到磁盘（组提交），返回时此前追加的记录都已持久化
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            long upTo = appended;
+            if (upTo == durable) {
+                return;
+            }
+            // 先读取当前段再处理已切换的段：切换时先放入 retired 再发布新段
+            MappedByteBuffer current = segment;
+            MappedByteBuffer old;
+            while ((old = retired.poll()) != null) {
+                old.force();
+            }
+            current.force();
+            durable = upTo;
+        }
+    }
+
+    /**
+     * 切换到新一代日志，把上一个快照和它之后到当前为止的各代日志合并为新快照，然后删除这些旧文件。
+     * 合并的日志不只是刚切换出去的一代：打开时末尾残缺的一代（已被截断，写入转到下一代）和上次压缩中途退出
+     * 留下的日志也在其中，否则恢复时会因为新快照的编号更大而忽略它们。没有新写入时什么也不做。
+     */
+    public void compact() throws IOException {
+        long compacted;
+        synchronized (this) {
+            if (closed || appendedInGeneration == 0) {
+                return;
+            }
+            compacted = generation;
+            retireSegment();
+            channel.close();
+            openGeneration(compacted + 1);
+        }
+        Path tmp = dir.resolve(SNAPSHOT_PREFIX + (compacted + 1) + TMP_SUFFIX);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter writer = new SnapshotWriter(Channels.newOutputStream(out), settings.segmentSize);
+            replay(replayFiles(latestSnapshot(), compacted), writer);
+            writer.out.flush();
+            out.force(true);
+        }
+        Files.move(tmp, snapshotFile(compacted + 1), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        // 新快照已包含此前所有的快照和日志
+        for (long g : generations(SNAPSHOT_PREFIX, "")) {
+            if (g <= compacted) {
+                Files.deleteIfExists(snapshotFile(g));
+            }
+        }
+        for (long g : generations(LOG_PREFIX, LOG_SUFFIX)) {
+            if (g <= compacted) {
+                Files.deleteIfExists(logFile(g));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ScheduledFuture<?> task : tasks) {
+            task.cancel(false);
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return 已追加的记录数
+     */
+    public long appended() {
+        return appended;
+    }
+
+    /**
+     * @return 已刷盘的记录数
+     */
+    public long durable() {
+        return durable;
+    }
+
+    /**
+     * @return 打开时日志末尾是否有写了一半的记录（已被截断）
+     */
+    public boolean hadTornTail() {
+        return tornTail;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("job 日志 {} 刷盘失败", dir, e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("job 日志 {} 压缩失败", dir, e);
+        }
+    }
+
+    private void write(int length) {
+        if (closed) {
+            throw new IllegalStateException("job log " + dir + " is closed");
+        }
+        int recordBytes = HEADER_BYTES + length;
+        if (recordBytes > settings.segmentSize) {
+            throw new IllegalArgumentException("job record of " + recordBytes + " bytes exceeds segment-size");
+        }
+        MappedByteBuffer buf = segment;
+        if (buf.remaining() < recordBytes) {
+            if (buf.remaining() >= 4) {
+                buf.putInt(SKIP);
+            }
+            retireSegment();
+            mapSegment(segmentIndex + 1);
+            buf = segment;
+        }
+        crc.reset();
+        crc.update(scratch, 0, length);
+        buf.putInt(length);
+        buf.putInt((int) crc.getValue());
+        buf.put(scratch, 0, length);
+        appendedInGeneration++;
+        appended = appended + 1;
+    }
+
+    /**
+     * 把 job 编码到 scratch：类型、id、duration 是否存在、duration、projectName、status
+     *
+     * @return 编码后的字节数
+     */
+    private int encode(JobRepository.Job job) {
+        byte[] project = job.projectName == null ? null : job.projectName.getBytes(StandardCharsets.UTF_8);
+        byte[] status = job.status == null ? null : job.status.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 8 + 1 + 8 + stringSize(project) + stringSize(status);
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        ByteBuffer buf = ByteBuffer.wrap(scratch);
+        buf.put(ADD);
+        buf.putLong(job.id);
+        buf.put(job.duration == null ? (byte) 0 : (byte) 1);
+        buf.putLong(job.duration == null ? 0 : job.duration);
+        putString(buf, project);
+        putString(buf, status);
+        return length;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+    }
+
+    private void openGeneration(long g) throws IOException {
+        this.generation = g;
+        this.appendedInGeneration = 0;
+        this.channel = FileChannel.open(logFile(g), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        mapSegment(0);
+    }
+
+    private void mapSegment(int index) {
+        try {
+            // READ_WRITE 映射超出文件末尾时文件自动扩展，新的部分为 0
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * settings.segmentSize,
+                    settings.segmentSize);
+            segmentIndex = index;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void retireSegment() {
+        retired.add(segment);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            // 部分平台不支持对目录 fsync
+        }
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + TMP_SUFFIX)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * @return 编号为 snapshot 的快照（小于 0 时没有快照），以及第 snapshot 到 lastGeneration 代的日志，按回放顺序排列
+     */
+    private List<Path> replayFiles(long snapshot, long lastGeneration) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (snapshot >= 0) {
+            files.add(snapshotFile(snapshot));
+        }
+        for (long g : generations(LOG_PREFIX, LOG_SUFFIX)) {
+            if (g >= snapshot && g <= lastGeneration) {
+                files.add(logFile(g));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 第一遍找到 files 中最后一次 CLEAR，第二遍只把它之后的记录交给 visitor
+     */
+    private void replay(List<Path> files, AfterClearVisitor visitor) throws IOException {
+        ClearFinder finder = new ClearFinder();
+        for (int i = 0; i < files.size(); i++) {
+            finder.file = i;
+            finder.record = 0;
+            scan(files.get(i), settings.segmentSize, finder);
+        }
+        for (int i = Math.max(finder.lastClearFile, 0); i < files.size(); i++) {
+            visitor.skipUntil = i == finder.lastClearFile ? finder.lastClearRecord : -1;
+            visitor.record = 0;
+            scan(files.get(i), settings.segmentSize, visitor);
+        }
+    }
+
+    private long latestSnapshot() throws IOException {
+        TreeSet<Long> snapshots = generations(SNAPSHOT_PREFIX, "");
+        return snapshots.isEmpty() ? -1 : snapshots.last();
+    }
+
+    private TreeSet<Long> generations(String prefix, String suffix) throws IOException {
+        TreeSet<Long> result = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length(), name.length() - suffix.length());
+                try {
+                    result.add(Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    // 不是本日志的文件（如 .tmp），忽略
+                }
+            }
+        }
+        return result;
+    }
+
+    private Path logFile(long g) {
+        return dir.resolve(LOG_PREFIX + g + LOG_SUFFIX);
+    }
+
+    private Path snapshotFile(long g) {
+        return dir.resolve(SNAPSHOT_PREFIX + g);
+    }
+
+    /**
+     * 读取位置：段号、段内偏移，以及是否因为残缺记录而结束
+     */
+    private static final class Position {
+        final int segment;
+        final int offset;
+        final boolean torn;
+
+        Position(int segment, int offset, boolean torn) {
+            this.segment = segment;
+            this.offset = offset;
+            this.torn = torn;
+        }
+    }
+
+    /**
+     * 扫描时对每条有效记录的回调，body 的 position 到 limit 为记录内容
+     */
+    private interface RecordVisitor {
+        void visit(ByteBuffer body) throws IOException;
+    }
+
+    /**
+     * 按段只读映射 file，依次校验并访问每条记录，返回数据结束的位置
+     */
+    private static Position scan(Path file, int segmentSize, RecordVisitor visitor) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int index = 0;
+            while ((long) index * segmentSize < size) {
+                long start = (long) index * segmentSize;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+                while (true) {
+                    if (buf.remaining() < 4) {
+                        break;
+                    }
+                    int pos = buf.position();
+                    int length = buf.getInt();
+                    if (length == SKIP) {
+                        break;
+                    }
+                    if (length == 0) {
+                        return new Position(index, pos, false);
+                    }
+                    if (length < 0 || length > buf.remaining() - 4) {
+                        return new Position(index, pos, true);
+                    }
+                    int expected = buf.getInt();
+                    ByteBuffer body = buf.slice();
+                    body.limit(length);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != expected) {
+                        return new Position(index, pos, true);
+                    }
+                    body.rewind();
+                    if (visitor != null) {
+                        visitor.visit(body);
+                    }
+                    buf.position(buf.position() + length);
+                }
+                index++;
+            }
+            return new Position(index, 0, false);
+        }
+    }
+
+    /**
+     * 记录最后一次 CLEAR 所在的文件和记录序号
+     */
+    private static final class ClearFinder implements RecordVisitor {
+        int file;
+        int record;
+        int lastClearFile = -1;
+        int lastClearRecord = -1;
+
+        @Override
+        public void visit(ByteBuffer body) {
+            if (body.get(0) == CLEAR) {
+                lastClearFile = file;
+                lastClearRecord = record;
+            }
+            record++;
+        }
+    }
+
+    /**
+     * 按文件回放时跳过本文件中序号不大于 skipUntil 的记录（最后一次 CLEAR 及之前）
+     */
+    private abstract static class AfterClearVisitor implements RecordVisitor {
+        int skipUntil = -1;
+        int record;
+    }
+
+    /**
+     * 解码序号大于 skipUntil 的 ADD 记录；项目名按值去重，常见的状态复用常量
+     */
+    private static final class JobDecoder extends AfterClearVisitor {
+        private final Consumer<JobRepository.Job> consumer;
+        private final Map<String, String> projects = new HashMap<>();
+        long count;
+
+        JobDecoder(Consumer<JobRepository.Job> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(ByteBuffer body) {
+            if (record++ <= skipUntil || body.get() != ADD) {
+                return;
+            }
+            long id = body.getLong();
+            boolean hasDuration = body.get() == 1;
+            long duration = body.getLong();
+            String project = getString(body);
+            if (project != null) {
+                String existing = projects.putIfAbsent(project, project);
+                if (existing != null) {
+                    project = existing;
+                }
+            }
+            String status = getString(body);
+            if (DEFAULT_STATUS.equals(status)) {
+                status = DEFAULT_STATUS;
+            }
+            consumer.accept(new JobRepository.Job(id, project, status, hasDuration ? duration : null));
+            count++;
+        }
+
+        private static String getString(ByteBuffer body) {
+            int length = body.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            body.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 把序号大于 skipUntil 的 ADD 记录原样写入快照，格式与日志相同：记录不跨段，段尾以 -1 和 0 填充
+     */
+    private static final class SnapshotWriter extends AfterClearVisitor {
+        private final OutputStream out;
+        private final int segmentSize;
+        private final CRC32 crc = new CRC32();
+        private final byte[] header = new byte[HEADER_BYTES];
+        private byte[] copy = new byte[256];
+        private long written;
+
+        SnapshotWriter(OutputStream out, int segmentSize) {
+            this.out = new BufferedOutputStream(out, 1 << 16);
+            this.segmentSize = segmentSize;
+        }
+
+        @Override
+        public void visit(ByteBuffer body) throws IOException {
+            if (record++ <= skipUntil || body.get(0) != ADD) {
+                return;
+            }
+            int length = body.remaining();
+            long remaining = segmentSize - written % segmentSize;
+            if (remaining < HEADER_BYTES + length) {
+                if (remaining >= 4) {
+                    ByteBuffer.wrap(header).putInt(SKIP);
+                    out.write(header, 0, 4);
+                    remaining -= 4;
+                }
+                for (long i = 0; i < remaining; i++) {
+                    out.write(0);
+                }
+                written += segmentSize - written % segmentSize;
+            }
+            if (copy.length < length) {
+                copy = new byte[Math.max(length, copy.length * 2)];
+            }
+            body.get(copy, 0, length);
+            crc.reset();
+            crc.update(copy, 0, length);
+            ByteBuffer.wrap(header).putInt(length).putInt((int) crc.getValue());
+            out.write(header);
+            out.write(copy, 0, length);
+            written += HEADER_BYTES + length;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * JobLog 追加和恢复的耗时。
+ *
+ * 向一个新目录追加 jobCount 个 job（1000 个项目），输出追加速率和 flush 耗时；然后分别测量从日志恢复、
+ * 压缩为快照后从快照恢复到 StripedJobStore + JobIndex（与 JobRepository 启动时相同）的耗时。
+ * 参数：job数（默认 10000000）、目录（默认临时目录，结束后删除）；需要约 3G 堆内存（-Xmx3g）。
+ */
+public class JobLogBenchmark {
+
+    private static final int PROJECTS = 1000;
+    private static final String[] STATUSES = {"Success", "Success", "Success", "Running", "Failed"};
+
+    public static void main(String[] args) throws IOException {
+        int jobCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        boolean temporary = args.length < 2;
+        Path dir = temporary ? Files.createTempDirectory("job-log") : Paths.get(args[1]);
+        JobLog.Settings settings = new JobLog.Settings(64 * 1024 * 1024, Duration.ofMillis(10), Duration.ofMinutes(5));
+        try {
+            String[] projects = new String[PROJECTS];
+            for (int i = 0; i < PROJECTS; i++) {
+                projects[i] = "project-" + i;
+            }
+            Random random = new Random(42);
+            try (JobLog log = JobLog.open(dir, settings, null)) {
+                long start = System.nanoTime();
+                for (long id = 1; id <= jobCount; id++) {
+                    log.append(new JobRepository.Job(id, projects[random.nextInt(PROJECTS)],
+                            STATUSES[random.nextInt(STATUSES.length)], id));
+                }
+                long appended = System.nanoTime() - start;
+                start = System.nanoTime();
+                log.flush();
+                long flushed = System.nanoTime() - start;
+                System.out.printf(Locale.ROOT, "appended %d jobs in %d ms (%.0f jobs/s), flush %d ms, log %d MB%n",
+                        jobCount, appended / 1_000_000, jobCount / (appended / 1e9), flushed / 1_000_000,
+                        directorySize(dir) / (1024 * 1024));
+            }
+
+            recover(dir, settings, "recover from log");
+            try (JobLog log = JobLog.open(dir, settings, null)) {
+                // 压缩只在有新写入时进行
+                log.append(new JobRepository.Job(jobCount + 1L, projects[0], STATUSES[0], 0L));
+                long start = System.nanoTime();
+                log.compact();
+                System.out.printf(Locale.ROOT, "compacted in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            }
+            recover(dir, settings, "recover from snapshot");
+        } finally {
+            if (temporary) {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static void recover(Path dir, JobLog.Settings settings, String label) throws IOException {
+        System.gc();
+        StripedJobStore store = new StripedJobStore();
+        JobIndex index = new JobIndex();
+        AtomicLong count = new AtomicLong();
+        long start = System.nanoTime();
+        try (JobLog log = JobLog.open(dir, settings, null)) {
+            log.recover(job -> {
+                if (store.putIfAbsent(job)) {
+                    index.add(job);
+                    count.incrementAndGet();
+                }
+            });
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf(Locale.ROOT, "%-22s %d jobs in %d ms (%.0f jobs/s)%n",
+                label, count.get(), elapsed / 1_000_000, count.get() / (elapsed / 1e9));
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.tcfuture.akk.http.interaction;
+
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.HttpCharsets;
+import akka.http.javadsl.model.MediaTypes;
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tcfuture.akk.http.codec.Codec;
+import com.tcfuture.akk.http.codec.Codecs;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * Job 的 NDJSON（每行一个 JSON 对象）编解码。
+ *
+ * 解析直接使用 Jackson 的流式 JsonParser 逐个 token 读取字段，不经过 ObjectMapper 的数据绑定；
+ * 编码使用共用的 Codec，多个 job 写入同一个 ByteString，减少 HTTP chunk 数。
+ */
+public final class JobNdjson {
+
+    public static final ContentType.WithFixedCharset CONTENT_TYPE =
+            MediaTypes.applicationWithFixedCharset("x-ndjson", HttpCharsets.UTF_8, "ndjson").toContentType();
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final Codec<JobRepository.Job> JOB_CODEC = Codecs.of(JobRepository.Job.class);
+    private static final byte NEW_LINE = '\n';
+
+    private JobNdjson() {}
+
+    /**
+     * 解析一行 JSON 为 Job，字段与 Job 的 @JsonProperty 一致，未知字段忽略，缺少 status 时为 "Success"
+     *
+     * @param line 一行 JSON 的字节
+     * @return Job
+     * @throws IllegalArgumentException JSON 格式错误或缺少 id
+     */
+    public static JobRepository.Job parse(ByteString line) {
+        try (JsonParser parser = FACTORY.createParser(line.toArray())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("job 必须是 JSON 对象: " + line.utf8String());
+            }
+            Long id = null;
+            String projectName = null;
+            String status = "Success";
+            Long duration = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = value == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+                        break;
+                    case "project-name":
+                        projectName = parser.getValueAsString();
+                        break;
+                    case "status":
+                        status = parser.getValueAsString();
+                        break;
+                    case "duration":
+                        duration = value == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            if (id == null) {
+                throw new IllegalArgumentException("job 缺少 id: " + line.utf8String());
+            }
+            return new JobRepository.Job(id, projectName, status, duration);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("job JSON 格式错误: " + line.utf8String(), e);
+        }
+    }
+
+    /**
+     * @return 行内是否只有空白字符（如 \r\n 换行留下的 \r）
+     */
+    public static boolean isBlank(ByteString line) {
+        for (int i = 0; i < line.size(); i++) {
+            byte b = line.apply(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把一个 job 编码为 JSON（不带换行），与 Jackson.marshaller() 的输出相同
+     */
+    public static ByteString toJson(JobRepository.Job job) {
+        return JOB_CODEC.toJson(job);
+    }
+
+    /**
+     * 把一组 job 编码为 NDJSON，每个 job 一行
+     */
+    public static ByteString render(List<JobRepository.Job> jobs) {
+        ByteStringBuilder builder = new ByteStringBuilder();
+        for (JobRepository.Job job : jobs) {
+            builder.append(JOB_CODEC.toJson(job));
+            builder.putByte(NEW_LINE);
+        }
+        return builder.result();
+    }
+}
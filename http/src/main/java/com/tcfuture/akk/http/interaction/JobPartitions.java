@@ -0,0 +1,87 @@
+package com.tcfuture.akk.http.interaction;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.ActorContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 按 job id 散列分区的一组 JobRepository actor。
+ *
+ * 同一个 id 总是路由到同一个分区，单个 id 的写入仍在一个邮箱中串行；不同分区的写入并行处理，
+ * 写吞吐随分区数（CPU 核数）增长，而不是受限于一个邮箱。
+ */
+public final class JobPartitions {
+
+    private final List<ActorRef<JobRepository.Command>> partitions;
+
+    public JobPartitions(List<ActorRef<JobRepository.Command>> partitions) {
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("partitions must not be empty");
+        }
+        this.partitions = Collections.unmodifiableList(new ArrayList<>(partitions));
+    }
+
+    /**
+     * 在 context 下创建 count 个 JobRepository 子actor，名称为 namePrefix-序号
+     *
+     * @param stores 为每个分区提供各自的 JobStore。ClearJobs 会清空分区的整个 JobStore，GetJobs 返回其中所有 job，
+     *               因此分区之间不能共用 JobStore；需要在 actor 之外读取时使用 PartitionedJobStore
+     */
+    public static JobPartitions spawn(ActorContext<?> context, String namePrefix, int count,
+                                      Supplier<JobStore> stores) {
+        return spawn(context, namePrefix, count, (IntFunction<Behavior<JobRepository.Command>>) i ->
+                JobRepository.create(stores.get()));
+    }
+
+    /**
+     * 在 context 下创建 count 个子actor，名称为 namePrefix-序号
+     *
+     * @param behaviors 按分区序号创建 JobRepository 的 Behavior，如为每个分区打开各自的 JobLog
+     */
+    public static JobPartitions spawn(ActorContext<?> context, String namePrefix, int count,
+                                      IntFunction<Behavior<JobRepository.Command>> behaviors) {
+        List<ActorRef<JobRepository.Command>> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(context.spawn(behaviors.apply(i), namePrefix + "-" + i));
+        }
+        return new JobPartitions(partitions);
+    }
+
+    /**
+     * @return 拥有该 job id 的分区
+     */
+    public ActorRef<JobRepository.Command> forJob(long jobId) {
+        return partitions.get(partitionOf(jobId, partitions.size()));
+    }
+
+    /**
+     * @return count 个分区时 job id 所在分区的序号，PartitionedJobStore 按同样的规则定位分区的 JobStore
+     */
+    public static int partitionOf(long jobId, int count) {
+        if (count == 1) {
+            return 0;
+        }
+        long h = jobId * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % count);
+    }
+
+    /**
+     * @return 所有分区，用于 ClearJobs 等需要广播的消息
+     */
+    public List<ActorRef<JobRepository.Command>> all() {
+        return partitions;
+    }
+
+    public int size() {
+        return partitions.size();
+    }
+}
@@ -3,17 +3,23 @@ package com.tcfuture.akk.http.interaction;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.ToString;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -77,6 +83,24 @@ public class JobRepository extends AbstractBehavior<JobRepository.Command> {
         final String reason;
     }
 
+    /**
+     * 批量添加的结果
+     */
+    @AllArgsConstructor
+    @ToString
+    public static final class AddJobsResult {
+        // 添加成功的job数
+        @JsonProperty("added")
+        final int added;
+        // id已经存在而未添加的job数
+        @JsonProperty("duplicates")
+        final int duplicates;
+        // 追加日志失败而未添加的job数，为 0 时不输出
+        @JsonProperty("failed")
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+        final int failed;
+    }
+
     // 可以发送到此行为的所有可能的消息接口
     interface Command {}
 
@@ -89,6 +113,15 @@ public class JobRepository extends AbstractBehavior<JobRepository.Command> {
         final ActorRef<Response> replyTo;
     }
 
+    /**
+     * 批量 Add job 消息实例，已经存在的 job 跳过并计入 duplicates
+     */
+    @AllArgsConstructor
+    public static final class AddJobs implements Command {
+        final List<Job> jobs;
+        final ActorRef<AddJobsResult> replyTo;
+    }
+
     /**
      * get job by id 消息实例
      */
@@ -98,6 +131,29 @@ public class JobRepository extends AbstractBehavior<JobRepository.Command> {
         final ActorRef<Optional<Job>> replyTo;
     }
 
+    /**
+     * 按项目和状态分页查询 job 消息实例，响应按 id 从大到小排列
+     */
+    @AllArgsConstructor
+    public static final class QueryJobs implements Command {
+        // 项目名，为 null 时不限
+        final String project;
+        // 状态，为 null 时不限
+        final String status;
+        // 游标，只返回 id 小于它的 job
+        final long after;
+        final int limit;
+        final ActorRef<List<Job>> replyTo;
+    }
+
+    /**
+     * 查询全部 job 消息实例，响应为 job 的副本列表（只复制引用）
+     */
+    @AllArgsConstructor
+    public static final class GetJobs implements Command {
+        final ActorRef<List<Job>> replyTo;
+    }
+
     /**
      * 创建 job 实例
      */
@@ -120,23 +176,72 @@ public class JobRepository extends AbstractBehavior<JobRepository.Command> {
      * @return Behavior<Command>
      */
     public static Behavior<Command> create(Map<Long, Job> jobs) {
-        return Behaviors.setup(context -> new JobRepository(context, jobs));
+        return create(new MapJobStore(jobs));
+    }
+
+    /**
+     * 创建Behavior 方法，写操作都经过此actor，store 为线程安全的实现（如 StripedJobStore）时可以在actor之外直接读取
+     * @param store JobStore
+     * @return Behavior<Command>
+     */
+    public static Behavior<Command> create(JobStore store) {
+        return create(store, null);
+    }
+
+    /**
+     * 创建持久化的Behavior：启动时先从 log 恢复 job，之后每个新 job 先追加到 log 再写入 store 和索引，
+     * 追加失败（记录超过 segment-size、log 已关闭、映射段失败）时不写入并回复 KO，actor 继续运行；
+     * actor 停止时关闭 log。追加不等待刷盘，响应时间与磁盘无关
+     *
+     * @param store JobStore
+     * @param log 本分区独占的 JobLog，为 null 时不持久化
+     * @return Behavior<Command>
+     */
+    public static Behavior<Command> create(JobStore store, JobLog log) {
+        return Behaviors.setup(context -> new JobRepository(context, store, log));
     }
 
     /**
      * 所有的job: <jobId, Job>
      */
-    private Map<Long, Job> jobs;
+    private final JobStore jobs;
+
+    /**
+     * 本actor写入的 job 在 projectName、status 上的索引
+     */
+    private final JobIndex index = new JobIndex();
+
+    /**
+     * 持久化日志，为 null 时不持久化
+     */
+    private final JobLog log;
 
     /**
      * Actor 构造函数
      *
      * @param context ActorContext<Command>
-     * @param jobs job的map集合
+     * @param jobs job的存储
+     * @param log 持久化日志，不为 null 时先回放其中的 job
      */
-    private JobRepository(ActorContext<Command> context, Map<Long, Job> jobs) {
+    private JobRepository(ActorContext<Command> context, JobStore jobs, JobLog log) {
         super(context);
         this.jobs = jobs;
+        this.log = log;
+        if (log != null) {
+            long start = System.nanoTime();
+            long recovered;
+            try {
+                recovered = log.recover(job -> {
+                    if (jobs.putIfAbsent(job)) {
+                        index.add(job);
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            context.getLog().info("actor 从日志恢复job {} 个，耗时 {} ms", recovered,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
     }
 
     // 该接收处理所有可能的传入消息并将状态job保留在actor中
@@ -144,8 +249,12 @@ public class JobRepository extends AbstractBehavior<JobRepository.Command> {
     public Receive<Command> createReceive() {
         return newReceiveBuilder()
                 .onMessage(AddJob.class, this::addJob)
+                .onMessage(AddJobs.class, this::addJobs)
                 .onMessage(GetJobById.class, this::getJobById)
+                .onMessage(GetJobs.class, this::getJobs)
+                .onMessage(QueryJobs.class, this::queryJobs)
                 .onMessage(ClearJobs.class, this::clearJobs)
+                .onSignal(PostStop.class, signal -> onPostStop())
                 .build();
     }
 
@@ -158,28 +267,108 @@ public class JobRepository extends AbstractBehavior<JobRepository.Command> {
     private Behavior<Command> addJob(AddJob msg) {
         long jobId = msg.job.id;
         getContext().getLog().info("actor 添加job {}", msg.job.toString());
-        if (jobs.containsKey(jobId))
+        if (jobs.get(jobId) != null) {
             msg.replyTo.tell(new KO("Job-" + jobId + " 已经存在"));
-        else {
-            jobs.put(jobId, msg.job);
+        } else if (!append(msg.job)) {
+            msg.replyTo.tell(new KO("Job-" + jobId + " 写入日志失败"));
+        } else {
+            jobs.putIfAbsent(msg.job);
+            index.add(msg.job);
             msg.replyTo.tell(OK.getInstance());
         }
         return Behaviors.same();
     }
 
+    /**
+     * 处理AddJobs消息，批量写入只打一条日志
+     */
+    private Behavior<Command> addJobs(AddJobs msg) {
+        int added = 0;
+        int failed = 0;
+        for (Job job : msg.jobs) {
+            if (jobs.get(job.id) != null) {
+                continue;
+            }
+            if (append(job)) {
+                jobs.putIfAbsent(job);
+                index.add(job);
+                added++;
+            } else {
+                failed++;
+            }
+        }
+        int duplicates = msg.jobs.size() - added - failed;
+        getContext().getLog().info("actor 批量添加job {} 个，重复 {} 个，失败 {} 个", added, duplicates, failed);
+        msg.replyTo.tell(new AddJobsResult(added, duplicates, failed));
+        return Behaviors.same();
+    }
+
+    /**
+     * 先于 store 追加到日志，store 只由本 actor 写入，因此检查 id 不存在后再追加不会与其他写入交错
+     *
+     * @return 没有日志或追加成功时为 true
+     */
+    private boolean append(Job job) {
+        if (log == null) {
+            return true;
+        }
+        try {
+            log.append(job);
+            return true;
+        } catch (RuntimeException e) {
+            getContext().getLog().error("job {} 追加日志失败", job.id, e);
+            return false;
+        }
+    }
+
+    private Behavior<Command> getJobs(GetJobs msg) {
+        List<Job> all = new ArrayList<>(jobs.size());
+        jobs.iterator().forEachRemaining(all::add);
+        msg.replyTo.tell(all);
+        return Behaviors.same();
+    }
+
+    /**
+     * 处理QueryJobs消息，通过索引定位 job id，只访问本页的 job。
+     * 索引与 store 都只由本actor修改，正常情况下一致；store 中找不到的 id 说明 store 被其他写入方修改过，
+     * 跳过并记录警告，响应中不会出现 null
+     */
+    private Behavior<Command> queryJobs(QueryJobs msg) {
+        long[] ids = index.query(msg.project, msg.status, msg.after, msg.limit);
+        List<Job> page = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Job job = jobs.get(id);
+            if (job != null) {
+                page.add(job);
+            } else {
+                getContext().getLog().warn("索引中的 job {} 在 store 中不存在，已跳过", id);
+            }
+        }
+        msg.replyTo.tell(page);
+        return Behaviors.same();
+    }
+
     private Behavior<Command> getJobById(GetJobById msg) {
         getContext().getLog().info("actor 根据id-{}查询job ", msg.id);
-        if (jobs.containsKey(msg.id)) {
-            msg.replyTo.tell(Optional.of(jobs.get(msg.id)));
-        } else {
-            msg.replyTo.tell(Optional.empty());
-        }
+        msg.replyTo.tell(Optional.ofNullable(jobs.get(msg.id)));
         return Behaviors.same();
     }
 
     private Behavior<Command> clearJobs(ClearJobs msg) {
-        msg.replyTo.tell(OK.getInstance());
+        // 先清空再响应，store 在actor之外被直接读取时，响应之后的读取不会再看到旧job
         jobs.clear();
+        index.clear();
+        if (log != null) {
+            log.appendClear();
+        }
+        msg.replyTo.tell(OK.getInstance());
         return Behaviors.same();
     }
+
+    private Behavior<Command> onPostStop() {
+        if (log != null) {
+            log.close();
+        }
+        return this;
+    }
 }
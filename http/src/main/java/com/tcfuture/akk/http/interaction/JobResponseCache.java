@@ -0,0 +1,110 @@
+package com.tcfuture.akk.http.interaction;
+
+import akka.http.javadsl.model.headers.EntityTag;
+import akka.util.ByteString;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * GET /jobs/{id} 响应的缓存：每个 job 缓存已经序列化好的 JSON ByteString 和根据内容计算的 ETag。
+ *
+ * job 写入后不会被修改，缓存项只会因 ClearJobs 失效。缓存为直接映射的定长表，id 散列到一个槽位，冲突时覆盖，
+ * 读写都无锁，内存有上限。invalidateAll 整体替换为新表；加载前先记下当时的表，加载完成后写回该表，
+ * 因此与 ClearJobs 并发的加载最多写入已经丢弃的旧表，不会把清空前的 job 放进新表。
+ */
+public final class JobResponseCache {
+
+    /**
+     * 缓存项
+     */
+    public static final class Entry {
+        final long id;
+        final ByteString json;
+        final EntityTag etag;
+
+        Entry(JobRepository.Job job) {
+            this.id = job.id;
+            this.json = JobNdjson.toJson(job);
+            CRC32 crc = new CRC32();
+            crc.update(json.toArray());
+            this.etag = EntityTag.create(id + "-" + Long.toHexString(crc.getValue()), false);
+        }
+
+        public ByteString getJson() {
+            return json;
+        }
+
+        public EntityTag getEtag() {
+            return etag;
+        }
+    }
+
+    private final int capacity;
+    private volatile AtomicReferenceArray<Entry> table;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity 槽位数，向上取整为2的幂
+     */
+    public JobResponseCache(int capacity) {
+        int n = 1;
+        while (n < capacity) {
+            n <<= 1;
+        }
+        this.capacity = n;
+        this.table = new AtomicReferenceArray<>(n);
+    }
+
+    /**
+     * 查询缓存，未命中时通过 loader 加载 job 并缓存
+     *
+     * @param id     job id
+     * @param loader 加载 job，不存在时返回 Optional.empty()
+     * @return 缓存项，job 不存在时为 Optional.empty()
+     */
+    public CompletionStage<Optional<Entry>> get(long id, LongFunction<CompletionStage<Optional<JobRepository.Job>>> loader) {
+        AtomicReferenceArray<Entry> current = table;
+        int slot = slot(id);
+        Entry entry = current.get(slot);
+        if (entry != null && entry.id == id) {
+            hits.increment();
+            return CompletableFuture.completedFuture(Optional.of(entry));
+        }
+        misses.increment();
+        return loader.apply(id).thenApply(job -> job.map(j -> {
+            Entry loaded = new Entry(j);
+            current.set(slot, loaded);
+            return loaded;
+        }));
+    }
+
+    /**
+     * 清空缓存，在 ClearJobs 完成后调用
+     */
+    public void invalidateAll() {
+        table = new AtomicReferenceArray<>(capacity);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private int slot(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (capacity - 1);
+    }
+}
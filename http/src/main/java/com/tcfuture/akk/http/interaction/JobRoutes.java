@@ -2,18 +2,38 @@ package com.tcfuture.akk.http.interaction;
 
 //#route
 
+import akka.NotUsed;
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.ActorSystem;
 import akka.actor.typed.javadsl.AskPattern;
-import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpResponse;
 import akka.http.javadsl.model.StatusCodes;
 import akka.http.javadsl.server.AllDirectives;
 import akka.http.javadsl.server.Route;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.Source;
+import akka.stream.scaladsl.Framing.FramingException;
+import akka.util.ByteString;
+import com.tcfuture.akk.http.codec.Codec;
+import com.tcfuture.akk.http.codec.Codecs;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 
+import static akka.http.javadsl.unmarshalling.StringUnmarshallers.INTEGER;
 import static akka.http.javadsl.unmarshalling.StringUnmarshallers.LONG;
 
 /**
@@ -23,25 +43,232 @@ import static akka.http.javadsl.unmarshalling.StringUnmarshallers.LONG;
  * 定义与先前定义的Actor行为进行通信并处理其所有可能响应的Route.
  */
 public class JobRoutes extends AllDirectives {
+    // NDJSON 单行最大字节数
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    // 批量导入时每批写入的 job 数
+    private static final int BULK_BATCH_SIZE = 1000;
+    // 批量导入时同时进行的批次数
+    private static final int BULK_PARALLELISM = 2;
+    // 流式导出时每个 HTTP chunk 包含的 job 数
+    private static final int EXPORT_CHUNK_JOBS = 256;
+    // 分页查询默认和最大的每页 job 数
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // 默认缓存的 job 响应数
+    private static final int DEFAULT_CACHE_CAPACITY = 1 << 16;
+
+    private static final Codec<JobRepository.Job> JOB_CODEC = Codecs.of(JobRepository.Job.class);
+    private static final Codec<JobPage> PAGE_CODEC = Codecs.of(JobPage.class);
+    private static final Codec<JobRepository.AddJobsResult> ADD_RESULT_CODEC =
+            Codecs.of(JobRepository.AddJobsResult.class);
+
+    /**
+     * 分页查询的响应，next 为下一页的游标（作为 after 参数），没有下一页时为 null
+     */
+    @AllArgsConstructor
+    public static final class JobPage {
+        @JsonProperty("jobs")
+        final List<JobRepository.Job> jobs;
+        @JsonProperty("next")
+        final Long next;
+    }
+
     private final ActorSystem<?> system;
-    private final ActorRef<JobRepository.Command> buildJobRepository;
+    // 按 job id 分区的 JobRepository，只有一个 actor 时分区数为1
+    private final JobPartitions buildJobRepository;
+    // 线程安全的 JobStore，不为 null 时 GET /jobs/{id} 直接读取，不经过 actor
+    private final JobStore readStore;
+    // GET /jobs/{id} 已序列化响应的缓存
+    private final JobResponseCache responseCache;
 
     public JobRoutes(ActorRef<JobRepository.Command> buildJobRepository, ActorSystem<?> system) {
+        this(buildJobRepository, system, null);
+    }
+
+    /**
+     * @param readStore buildJobRepository 使用的 JobStore，必须是线程安全的实现（如 StripedJobStore）
+     */
+    public JobRoutes(ActorRef<JobRepository.Command> buildJobRepository, ActorSystem<?> system, JobStore readStore) {
+        this(new JobPartitions(Collections.singletonList(buildJobRepository)), system, readStore);
+    }
+
+    /**
+     * @param partitions 按 job id 分区的 JobRepository
+     * @param readStore 由各分区的线程安全 JobStore 组成的 PartitionedJobStore，为 null 时读取经过 job 所在的分区
+     */
+    public JobRoutes(JobPartitions partitions, ActorSystem<?> system, JobStore readStore) {
+        this(partitions, system, readStore, new JobResponseCache(DEFAULT_CACHE_CAPACITY));
+    }
+
+    /**
+     * @param responseCache GET /jobs/{id} 响应的缓存，DELETE /jobs 完成后清空
+     */
+    public JobRoutes(JobPartitions partitions, ActorSystem<?> system, JobStore readStore,
+                     JobResponseCache responseCache) {
         this.system = system;
-        this.buildJobRepository = buildJobRepository;
+        this.buildJobRepository = partitions;
+        this.readStore = readStore;
+        this.responseCache = responseCache;
     }
 
     private Route addOrDelete() {
         return concat(
                 post(() ->
-                        entity(Jackson.unmarshaller(JobRepository.Job.class), job ->
+                        entity(JOB_CODEC.unmarshaller(), job ->
                                 onSuccess(add(job), r -> complete("Job added"))
                         )),
                 //删除
-                delete(() -> onSuccess(deleteAll(), r -> complete("Jobs cleared")))
+                delete(() -> onSuccess(deleteAll(), r -> complete("Jobs cleared"))),
+                //流式导出或分页查询
+                get(() -> parameterOptional("stream", stream -> !stream.isPresent()
+                        ? queryJobs()
+                        : "true".equals(stream.get())
+                        ? streamJobs()
+                        : complete(StatusCodes.BAD_REQUEST, "stream 只支持 true")))
         );
     }
 
+    /**
+     * GET /jobs?project=&status=&after=&limit=：按项目、状态过滤，按 id 从大到小（新到旧）分页，
+     * after 为上一页响应中的 next；各分区通过索引各自返回一页，再归并取前 limit 个
+     *
+     * @return Route
+     */
+    private Route queryJobs() {
+        return parameterOptional("project", project ->
+                parameterOptional("status", status ->
+                        parameterOptional(LONG, "after", after ->
+                                parameterOptional(INTEGER, "limit", limit -> {
+                                    int pageSize = limit.orElse(DEFAULT_PAGE_SIZE);
+                                    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                                        return complete(StatusCodes.BAD_REQUEST,
+                                                "limit 必须在 1~" + MAX_PAGE_SIZE + " 之间");
+                                    }
+                                    return onSuccess(query(project.orElse(null), status.orElse(null),
+                                            after.orElse(Long.MAX_VALUE), pageSize),
+                                            page -> complete(StatusCodes.OK, page, PAGE_CODEC.marshaller()));
+                                }))));
+    }
+
+    private CompletionStage<JobPage> query(String project, String status, long after, int limit) {
+        List<ActorRef<JobRepository.Command>> partitions = buildJobRepository.all();
+        List<CompletableFuture<List<JobRepository.Job>>> asks = new ArrayList<>(partitions.size());
+        for (ActorRef<JobRepository.Command> partition : partitions) {
+            asks.add(AskPattern.<JobRepository.Command, List<JobRepository.Job>>ask(
+                    partition,
+                    replyTo -> new JobRepository.QueryJobs(project, status, after, limit, replyTo),
+                    Duration.ofSeconds(3),
+                    system.scheduler()).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(asks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<JobRepository.Job> page = new ArrayList<>(limit);
+            if (asks.size() == 1) {
+                page.addAll(asks.get(0).join());
+            } else {
+                // 每个分区的结果都已按 id 降序排列，多路归并取前 limit 个
+                int[] cursors = new int[asks.size()];
+                while (page.size() < limit) {
+                    int best = -1;
+                    JobRepository.Job newest = null;
+                    for (int i = 0; i < asks.size(); i++) {
+                        List<JobRepository.Job> jobs = asks.get(i).join();
+                        if (cursors[i] < jobs.size() && (newest == null || jobs.get(cursors[i]).id > newest.id)) {
+                            best = i;
+                            newest = jobs.get(cursors[i]);
+                        }
+                    }
+                    if (best < 0) {
+                        break;
+                    }
+                    page.add(newest);
+                    cursors[best]++;
+                }
+            }
+            Long next = page.size() == limit ? page.get(page.size() - 1).id : null;
+            return new JobPage(page, next);
+        });
+    }
+
+    /**
+     * POST /jobs/bulk：请求体为 NDJSON，按行解析、按批写入，不把整个请求体读入内存，因此不受 max-content-length 限制。
+     * 响应为写入和重复的 job 数；某一行格式错误时返回 400，在此之前的批次已经写入。
+     *
+     * @return Route
+     */
+    private Route bulkAdd() {
+        return withoutSizeLimit(() ->
+                extractDataBytes(bytes ->
+                        onComplete(bulkInsert(bytes), result -> {
+                            if (result.isSuccess()) {
+                                return complete(StatusCodes.OK, result.get(), ADD_RESULT_CODEC.marshaller());
+                            }
+                            Throwable cause = result.failed().get();
+                            while (cause instanceof CompletionException && cause.getCause() != null) {
+                                cause = cause.getCause();
+                            }
+                            if (cause instanceof IllegalArgumentException || cause instanceof FramingException) {
+                                return complete(StatusCodes.BAD_REQUEST, cause.getMessage());
+                            }
+                            return failWith(cause);
+                        })));
+    }
+
+    private CompletionStage<JobRepository.AddJobsResult> bulkInsert(Source<ByteString, ?> bytes) {
+        return bytes
+                .via(Framing.delimiter(ByteString.fromString("\n"), MAX_LINE_BYTES, FramingTruncation.ALLOW))
+                .filter(line -> !JobNdjson.isBlank(line))
+                .map(JobNdjson::parse)
+                .grouped(BULK_BATCH_SIZE)
+                .mapAsync(BULK_PARALLELISM, this::addBatch)
+                .runFold(new JobRepository.AddJobsResult(0, 0, 0), (total, batch) ->
+                        new JobRepository.AddJobsResult(total.added + batch.added,
+                                total.duplicates + batch.duplicates, total.failed + batch.failed), system);
+    }
+
+    /**
+     * 把一批 job 按所在分区拆分，每个分区一次 AddJobs 请求
+     */
+    private CompletionStage<JobRepository.AddJobsResult> addBatch(List<JobRepository.Job> batch) {
+        Map<ActorRef<JobRepository.Command>, List<JobRepository.Job>> byPartition = new HashMap<>();
+        for (JobRepository.Job job : batch) {
+            byPartition.computeIfAbsent(buildJobRepository.forJob(job.id), p -> new ArrayList<>()).add(job);
+        }
+        List<CompletableFuture<JobRepository.AddJobsResult>> asks = new ArrayList<>(byPartition.size());
+        byPartition.forEach((partition, jobs) -> asks.add(AskPattern.<JobRepository.Command, JobRepository.AddJobsResult>ask(
+                partition,
+                replyTo -> new JobRepository.AddJobs(jobs, replyTo),
+                Duration.ofSeconds(10),
+                system.scheduler()).toCompletableFuture()));
+        return CompletableFuture.allOf(asks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            int added = 0;
+            int duplicates = 0;
+            int failed = 0;
+            for (CompletableFuture<JobRepository.AddJobsResult> ask : asks) {
+                added += ask.join().added;
+                duplicates += ask.join().duplicates;
+                failed += ask.join().failed;
+            }
+            return new JobRepository.AddJobsResult(added, duplicates, failed);
+        });
+    }
+
+    /**
+     * GET /jobs?stream=true：以 NDJSON 流式导出所有 job，由客户端的读取速度反压。
+     * 有线程安全的 readStore 时直接弱一致地遍历；否则逐个分区查询，同一时刻只持有一个分区的 job 列表。
+     *
+     * @return Route
+     */
+    private Route streamJobs() {
+        Source<JobRepository.Job, NotUsed> jobs = readStore != null
+                ? Source.fromIterator(readStore::iterator)
+                : Source.from(buildJobRepository.all())
+                .mapAsync(1, partition -> AskPattern.<JobRepository.Command, List<JobRepository.Job>>ask(
+                        partition, JobRepository.GetJobs::new, Duration.ofSeconds(10), system.scheduler()))
+                .mapConcat(list -> list);
+        Source<ByteString, NotUsed> bytes = jobs.grouped(EXPORT_CHUNK_JOBS).map(JobNdjson::render);
+        return complete(HttpResponse.create().withEntity(HttpEntities.create(JobNdjson.CONTENT_TYPE, bytes)));
+    }
+
     /**
      * 根据Job构建AddJob消息请求Ask, Ask响应通过handleKO方法处理后返回
      *
@@ -50,23 +277,31 @@ public class JobRoutes extends AllDirectives {
      */
     private CompletionStage<JobRepository.OK> add(JobRepository.Job job) {
         return handleKO(AskPattern.ask(
-                buildJobRepository,
+                buildJobRepository.forJob(job.id),
                 replyTo -> new JobRepository.AddJob(job, replyTo),
                 Duration.ofSeconds(3),
                 system.scheduler()));
     }
 
     /**
-     * 构建ClearJobs消息请求Ask, Ask响应通过handleKO方法处理后返回
+     * 向每个分区发送ClearJobs消息请求Ask, 所有分区都响应OK后返回，任一分区失败则整体失败
      *
      * @return CompletionStage CompletionStage<JobRepository.OK>
      */
     private CompletionStage<JobRepository.OK> deleteAll() {
-        return handleKO(AskPattern.ask(
-                buildJobRepository,
-                JobRepository.ClearJobs::new,
-                Duration.ofSeconds(3),
-                system.scheduler()));
+        List<ActorRef<JobRepository.Command>> partitions = buildJobRepository.all();
+        CompletableFuture<?>[] clears = new CompletableFuture<?>[partitions.size()];
+        for (int i = 0; i < clears.length; i++) {
+            clears[i] = handleKO(AskPattern.ask(
+                    partitions.get(i),
+                    JobRepository.ClearJobs::new,
+                    Duration.ofSeconds(3),
+                    system.scheduler())).toCompletableFuture();
+        }
+        return CompletableFuture.allOf(clears).thenApply(done -> {
+            responseCache.invalidateAll();
+            return JobRepository.OK.getInstance();
+        });
     }
 
     /**
@@ -78,22 +313,36 @@ public class JobRoutes extends AllDirectives {
         return pathPrefix("jobs", () ->
                         concat(
                         pathEnd(this::addOrDelete), //子路由
+                        path("bulk", () -> post(this::bulkAdd)), //批量导入
                         get(() ->     //jobs/long路由
                                 path(LONG, jobId ->
-                                        onSuccess(getJob(jobId), jobOption -> {
-                                            if (jobOption.isPresent()) {
-                                                return complete(StatusCodes.OK, jobOption.get(), Jackson.<JobRepository.Job>marshaller());
-                                            } else {
-                                                return complete(StatusCodes.NOT_FOUND, "job-" + jobId +
-                                                        "不存在");
-                                            }
-                                        })
+                                        onSuccess(responseCache.get(jobId, this::loadJob), cached -> cached.isPresent()
+                                                ? completeCached(cached.get())
+                                                : complete(StatusCodes.NOT_FOUND, "job-" + jobId + "不存在"))
                                 )
                         )
                 )
         );
     }
 
+    /**
+     * 响应缓存的 JSON，带 ETag；请求的 If-None-Match 匹配时返回 304，不再发送内容
+     */
+    private Route completeCached(JobResponseCache.Entry cached) {
+        return conditional(cached.getEtag(), () ->
+                complete(HttpResponse.create()
+                        .withEntity(HttpEntities.create(ContentTypes.APPLICATION_JSON, cached.getJson()))));
+    }
+
+    /**
+     * 缓存未命中时加载 job：有 readStore 时直接读取，否则 ask 所在分区
+     */
+    private CompletionStage<Optional<JobRepository.Job>> loadJob(long jobId) {
+        return readStore != null
+                ? CompletableFuture.completedFuture(Optional.ofNullable(readStore.get(jobId)))
+                : getJob(jobId);
+    }
+
     /**
      * 根据JobId构建Actor Ask的请求
      *
@@ -102,7 +351,7 @@ public class JobRoutes extends AllDirectives {
      */
     private CompletionStage<Optional<JobRepository.Job>> getJob(Long jobId) {
         return AskPattern.ask(
-                buildJobRepository,
+                buildJobRepository.forJob(jobId),
                 replyTo -> new JobRepository.GetJobById(jobId, replyTo),
                 Duration.ofSeconds(3),
                 system.scheduler());
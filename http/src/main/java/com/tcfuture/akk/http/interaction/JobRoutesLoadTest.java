@@ -0,0 +1,192 @@
+package com.tcfuture.akk.http.interaction;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpRequest;
+import akka.stream.Materializer;
+import ch.qos.logback.classic.Level;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * /jobs 的压测。
+ *
+ * GET /jobs/{id} 对比两种读取方式：
+ * actor —— 每个请求 ask JobRepository（HashMap），所有读写在同一个邮箱中串行；
+ * striped —— 路由直接无锁读取 StripedJobStore，写操作仍经过 JobRepository。
+ *
+ * POST /jobs 对比一个 JobRepository 和按 job id 分区的 JobPartitions，分区数默认为 CPU 核数。
+ *
+ * 同一个进程内用 akka-http 客户端以固定并发闭环请求（GET 随机的已存在 job，POST 递增的新 id），
+ * 预热后统计吞吐（req/s）和延迟分位数。
+ * 参数：job数 并发数 测量秒数 分区数，默认 10000 64 10 CPU核数。
+ */
+public class JobRoutesLoadTest {
+
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+
+    public static void main(String[] args) throws Exception {
+        int jobCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+        int partitions = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        // JobRepository 每个请求都打 info 日志，压测时关闭，避免测的是控制台输出
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("akka.loglevel", "WARNING");
+        overrides.put("akka.http.host-connection-pool.max-connections", concurrency);
+        // max-open-requests 必须是2的幂
+        overrides.put("akka.http.host-connection-pool.max-open-requests", Integer.highestOneBit(concurrency) << 1);
+        Config config = ConfigFactory.parseMap(overrides).withFallback(ConfigFactory.load());
+        // 用 classic ActorSystem 以便在外部创建顶层的 JobRepository
+        ActorSystem<Void> system = Adapter.toTyped(akka.actor.ActorSystem.create("JobRoutesLoadTest", config));
+        try {
+            System.out.printf("%-18s %10s %10s %10s %10s%n", "test", "req/s", "p50(us)", "p99(us)", "max(us)");
+            run(system, "get actor", 1, false, false, jobCount, concurrency, duration);
+            run(system, "get striped", 1, true, false, jobCount, concurrency, duration);
+            run(system, "post 1 partition", 1, false, true, jobCount, concurrency, duration);
+            run(system, "post " + partitions + " partitions", partitions, false, true, jobCount, concurrency, duration);
+        } finally {
+            system.terminate();
+        }
+    }
+
+    /**
+     * @param striped true 时每个分区使用各自的 StripedJobStore，GET 直接读取；否则每个分区使用自己的 HashMap
+     * @param post      true 压测 POST /jobs，否则压测 GET /jobs/{id}
+     */
+    private static void run(ActorSystem<Void> system, String test, int partitionCount, boolean striped,
+                            boolean post, int jobCount, int concurrency, Duration duration) throws Exception {
+        PartitionedJobStore readStore = striped ? new PartitionedJobStore(partitionCount, StripedJobStore::new) : null;
+        List<ActorRef<JobRepository.Command>> refs = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            JobStore store = striped ? readStore.partition(i) : new MapJobStore(new HashMap<>());
+            refs.add(Adapter.spawn(Adapter.toClassic(system), JobRepository.create(store),
+                    "JobRepository-" + test.replace(' ', '-') + "-" + i));
+        }
+        JobPartitions partitions = new JobPartitions(refs);
+        CompletableFuture<?>[] added = new CompletableFuture<?>[jobCount];
+        for (int i = 0; i < jobCount; i++) {
+            JobRepository.Job job = new JobRepository.Job((long) i, "project-" + i, "Success", 1000L + i);
+            added[i] = AskPattern.<JobRepository.Command, JobRepository.Response>ask(partitions.forJob(i),
+                    replyTo -> new JobRepository.AddJob(job, replyTo), Duration.ofSeconds(10), system.scheduler())
+                    .toCompletableFuture();
+        }
+        CompletableFuture.allOf(added).get();
+
+        ServerBinding binding = Http.get(system).newServerAt("127.0.0.1", 0)
+                .bind(new JobRoutes(partitions, system, readStore).jobRoutes())
+                .toCompletableFuture().get();
+        String baseUri = "http://127.0.0.1:" + binding.localAddress().getPort() + "/jobs";
+        AtomicLong nextId = new AtomicLong(jobCount);
+        Supplier<HttpRequest> requests = post
+                ? () -> HttpRequest.POST(baseUri).withEntity(ContentTypes.APPLICATION_JSON,
+                "{\"id\":" + nextId.getAndIncrement() + ",\"project-name\":\"load\",\"duration\":1}")
+                : () -> HttpRequest.GET(baseUri + "/" + ThreadLocalRandom.current().nextInt(jobCount));
+        try {
+            load(system, requests, concurrency, WARMUP);
+            long[][] latencies = load(system, requests, concurrency, duration);
+            report(test, latencies, duration);
+        } finally {
+            binding.unbind().toCompletableFuture().get();
+            for (ActorRef<JobRepository.Command> ref : refs) {
+                Adapter.toClassic(system).stop(Adapter.toClassic(ref));
+            }
+        }
+    }
+
+    /**
+     * concurrency 个客户端各自串行请求直到 duration 结束
+     *
+     * @return 每个客户端记录的延迟（纳秒），第一个元素为记录数
+     */
+    private static long[][] load(ActorSystem<Void> system, Supplier<HttpRequest> requests, int concurrency,
+                                 Duration duration) throws Exception {
+        Http http = Http.get(system);
+        Materializer materializer = Materializer.matFromSystem(system);
+        long deadline = System.nanoTime() + duration.toNanos();
+        long[][] latencies = new long[concurrency][];
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[concurrency];
+        for (int c = 0; c < concurrency; c++) {
+            long[] recorded = new long[1 << 16];
+            latencies[c] = recorded;
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            clients[c] = done;
+            next(http, materializer, requests, deadline, recorded, latencies, c, done);
+        }
+        CompletableFuture.allOf(clients).get();
+        return latencies;
+    }
+
+    private static void next(Http http, Materializer materializer, Supplier<HttpRequest> requests, long deadline,
+                             long[] recorded, long[][] latencies, int client, CompletableFuture<Void> done) {
+        long start = System.nanoTime();
+        if (start - deadline >= 0) {
+            done.complete(null);
+            return;
+        }
+        http.singleRequest(requests.get())
+                .thenCompose(response -> response.entity().toStrict(5000, materializer))
+                .whenComplete((entity, failure) -> {
+                    if (failure != null) {
+                        done.completeExceptionally(failure);
+                        return;
+                    }
+                    long[] buffer = recorded;
+                    int count = (int) buffer[0] + 1;
+                    if (count == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        latencies[client] = buffer;
+                    }
+                    buffer[count] = System.nanoTime() - start;
+                    buffer[0] = count;
+                    next(http, materializer, requests, deadline, buffer, latencies, client, done);
+                });
+    }
+
+    private static void report(String test, long[][] latencies, Duration duration) {
+        int total = 0;
+        for (long[] recorded : latencies) {
+            total += (int) recorded[0];
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] recorded : latencies) {
+            int count = (int) recorded[0];
+            System.arraycopy(recorded, 1, all, offset, count);
+            offset += count;
+        }
+        Arrays.sort(all);
+        System.out.printf(Locale.ROOT, "%-18s %10.0f %10d %10d %10d%n", test,
+                total * 1e9 / duration.toNanos(),
+                percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000, all[all.length - 1] / 1000);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
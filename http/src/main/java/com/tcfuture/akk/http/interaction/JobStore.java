@@ -0,0 +1,48 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.Iterator;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * Job 的存储，JobRepository 通过它保存 job。
+ *
+ * 实现是否线程安全见各实现类：MapJobStore 只能在 JobRepository actor 内部使用；StripedJobStore 的读操作
+ * 无锁，可以在路由中直接读取，而写操作仍然经过 JobRepository。
+ */
+public interface JobStore {
+
+    /**
+     * 根据id查询job
+     *
+     * @param id job id
+     * @return Job，不存在时返回 null
+     */
+    JobRepository.Job get(long id);
+
+    /**
+     * 添加job，id已经存在时不覆盖
+     *
+     * @param job Job
+     * @return 是否添加成功
+     */
+    boolean putIfAbsent(JobRepository.Job job);
+
+    /**
+     * 清空所有job
+     */
+    void clear();
+
+    /**
+     * @return job数量
+     */
+    int size();
+
+    /**
+     * 遍历所有job，顺序不确定
+     *
+     * @return Iterator<Job>
+     */
+    Iterator<JobRepository.Job> iterator();
+}
@@ -0,0 +1,44 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 基于 Map 的 JobStore，非线程安全，只能在 JobRepository actor 内部使用
+ */
+public class MapJobStore implements JobStore {
+
+    private final Map<Long, JobRepository.Job> jobs;
+
+    public MapJobStore(Map<Long, JobRepository.Job> jobs) {
+        this.jobs = jobs;
+    }
+
+    @Override
+    public JobRepository.Job get(long id) {
+        return jobs.get(id);
+    }
+
+    @Override
+    public boolean putIfAbsent(JobRepository.Job job) {
+        return jobs.putIfAbsent(job.id, job) == null;
+    }
+
+    @Override
+    public void clear() {
+        jobs.clear();
+    }
+
+    @Override
+    public int size() {
+        return jobs.size();
+    }
+
+    @Override
+    public Iterator<JobRepository.Job> iterator() {
+        return jobs.values().iterator();
+    }
+}
@@ -0,0 +1,105 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 每个 JobRepository 分区各有一个 JobStore，按 JobPartitions.partitionOf 的规则把读取路由到 job 所在分区的
+ * JobStore，供路由在 actor 之外直接读取。
+ *
+ * 各分区的 JobStore 只由本分区的 actor 写入和清空，ClearJobs 不会影响其他分区，GetJobs 也只遍历本分区的 job。
+ * 本类的读操作是否线程安全取决于各分区的实现，在路由中读取时应使用 StripedJobStore。
+ */
+public class PartitionedJobStore implements JobStore {
+
+    private final JobStore[] partitions;
+
+    /**
+     * @param count 分区数，与 JobPartitions 的分区数相同
+     * @param stores 为每个分区创建一个新的 JobStore
+     */
+    public PartitionedJobStore(int count, Supplier<? extends JobStore> stores) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        this.partitions = new JobStore[count];
+        for (int i = 0; i < count; i++) {
+            this.partitions[i] = stores.get();
+        }
+    }
+
+    /**
+     * @return 序号为 partition 的分区独占的 JobStore，传给该分区的 JobRepository
+     */
+    public JobStore partition(int partition) {
+        return partitions[partition];
+    }
+
+    public int partitionCount() {
+        return partitions.length;
+    }
+
+    @Override
+    public JobRepository.Job get(long id) {
+        return partitionFor(id).get(id);
+    }
+
+    @Override
+    public boolean putIfAbsent(JobRepository.Job job) {
+        return partitionFor(job.id).putIfAbsent(job);
+    }
+
+    @Override
+    public void clear() {
+        for (JobStore store : partitions) {
+            store.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (JobStore store : partitions) {
+            size += store.size();
+        }
+        return size;
+    }
+
+    /**
+     * 依次遍历各分区，一致性与各分区的 iterator 相同
+     */
+    @Override
+    public Iterator<JobRepository.Job> iterator() {
+        return new Iterator<JobRepository.Job>() {
+            private int partition = 0;
+            private Iterator<JobRepository.Job> current = partitions[0].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (++partition >= partitions.length) {
+                        return false;
+                    }
+                    current = partitions[partition].iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public JobRepository.Job next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private JobStore partitionFor(long id) {
+        return partitions[JobPartitions.partitionOf(id, partitions.length)];
+    }
+}
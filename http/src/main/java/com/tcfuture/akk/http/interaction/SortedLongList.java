@@ -0,0 +1,183 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.Arrays;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 升序、无重复的 long 列表，不装箱。
+ *
+ * 值分段保存在最多 BLOCK_SIZE 个元素的 long[] 块中（类似 B+ 树只有一层叶子），目录按顺序记录每块的大小和最大值。
+ * 大于末尾的值直接追加到最后一块，写满后开始新块，均摊 O(1)；乱序的值先在目录上二分找到所在块，再在块内二分插入，
+ * 只移动块内比它大的元素，块满时对半拆分，每次插入 O(log n + BLOCK_SIZE)，与列表总长度无关。
+ * 按值从大到小的遍历通过 Cursor 进行。
+ */
+final class SortedLongList {
+
+    // 每块最多的元素数，块内插入最多移动 8KB
+    static final int BLOCK_SIZE = 1024;
+    private static final int INITIAL_BLOCKS = 4;
+
+    private long[][] blocks = new long[INITIAL_BLOCKS][];
+    private int[] sizes = new int[INITIAL_BLOCKS];
+    // 每块的最大值，用于定位块
+    private long[] maxValues = new long[INITIAL_BLOCKS];
+    private int blockCount;
+    private int size;
+
+    /**
+     * 不小于末尾的值均摊 O(1)，否则 O(log n + BLOCK_SIZE)
+     *
+     * @return 是否添加成功，已存在时返回 false
+     */
+    boolean add(long value) {
+        if (size == 0 || value > maxValues[blockCount - 1]) {
+            append(value);
+            return true;
+        }
+        int block = blockOf(value);
+        long[] values = blocks[block];
+        int index = Arrays.binarySearch(values, 0, sizes[block], value);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (sizes[block] == BLOCK_SIZE) {
+            split(block);
+            if (insertAt > sizes[block]) {
+                insertAt -= sizes[block];
+                block++;
+            }
+        }
+        insert(block, insertAt, value);
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 从小于 bound 的最大值开始向小遍历的游标
+     */
+    Cursor descendingBelow(long bound) {
+        int block = blockOf(bound);
+        if (block == blockCount) {
+            // 所有值都小于 bound，从最后一块的末尾开始；列表为空时没有值
+            return block == 0 ? new Cursor(-1, -1) : new Cursor(block - 1, sizes[block - 1] - 1);
+        }
+        int index = Arrays.binarySearch(blocks[block], 0, sizes[block], bound);
+        int offset = index >= 0 ? index - 1 : -index - 2;
+        // offset 为 -1 时 Cursor 会退到前一块的末尾
+        return new Cursor(block, offset);
+    }
+
+    /**
+     * 按值从大到小的游标，遍历期间列表不能被修改
+     */
+    final class Cursor {
+        private int block;
+        private int offset;
+
+        private Cursor(int block, int offset) {
+            this.block = block;
+            this.offset = offset;
+            settle();
+        }
+
+        boolean hasValue() {
+            return block >= 0;
+        }
+
+        long value() {
+            return blocks[block][offset];
+        }
+
+        void previous() {
+            offset--;
+            settle();
+        }
+
+        private void settle() {
+            while (block >= 0 && offset < 0) {
+                block--;
+                if (block >= 0) {
+                    offset = sizes[block] - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 第一个最大值不小于 value 的块，都小于 value 时为 blockCount
+     */
+    private int blockOf(long value) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (maxValues[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void append(long value) {
+        int last = blockCount - 1;
+        if (blockCount == 0 || sizes[last] == BLOCK_SIZE) {
+            insertBlock(blockCount, new long[blockCount == 0 ? 8 : BLOCK_SIZE], 0);
+            last = blockCount - 1;
+        }
+        insert(last, sizes[last], value);
+    }
+
+    private void insert(int block, int insertAt, long value) {
+        long[] values = blocks[block];
+        int blockSize = sizes[block];
+        if (blockSize == values.length) {
+            values = blocks[block] = Arrays.copyOf(values, Math.min(BLOCK_SIZE, values.length * 2));
+        }
+        System.arraycopy(values, insertAt, values, insertAt + 1, blockSize - insertAt);
+        values[insertAt] = value;
+        sizes[block] = blockSize + 1;
+        if (insertAt == blockSize) {
+            maxValues[block] = value;
+        }
+        size++;
+    }
+
+    /**
+     * 把满的块对半拆成两块
+     */
+    private void split(int block) {
+        long[] values = blocks[block];
+        int half = BLOCK_SIZE / 2;
+        long[] upper = new long[BLOCK_SIZE];
+        System.arraycopy(values, half, upper, 0, BLOCK_SIZE - half);
+        sizes[block] = half;
+        long max = maxValues[block];
+        maxValues[block] = values[half - 1];
+        insertBlock(block + 1, upper, BLOCK_SIZE - half);
+        maxValues[block + 1] = max;
+    }
+
+    private void insertBlock(int at, long[] values, int blockSize) {
+        if (blockCount == blocks.length) {
+            int capacity = blocks.length * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            maxValues = Arrays.copyOf(maxValues, capacity);
+        }
+        int moved = blockCount - at;
+        System.arraycopy(blocks, at, blocks, at + 1, moved);
+        System.arraycopy(sizes, at, sizes, at + 1, moved);
+        System.arraycopy(maxValues, at, maxValues, at + 1, moved);
+        blocks[at] = values;
+        sizes[at] = blockSize;
+        blockCount++;
+    }
+}
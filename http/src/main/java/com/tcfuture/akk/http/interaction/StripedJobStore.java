@@ -0,0 +1,208 @@
+package com.tcfuture.akk.http.interaction;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 读多写少的分段 JobStore，读操作无锁。
+ *
+ * job id 经过散列后高位选择分段，每个分段是一个以 long id 为键的开放寻址表：槽位直接存放 Job（id 取自 job 本身，
+ * 不装箱 key），按线性探测查找。读操作只做一次 volatile 读取当前表，再对槽位做 volatile 读，不加锁；
+ * 写操作持有分段的锁，同一 id 的写入因此是串行的。表中的槽位只增不删，装载因子超过一半时在锁内复制到
+ * 两倍大小的新表再整体替换，clear 也是替换为空表，正在读旧表的读者看到的仍是一致的快照。
+ */
+public class StripedJobStore implements JobStore {
+
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile AtomicReferenceArray<JobRepository.Job> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        // 只在持有锁时修改
+        int size;
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    public StripedJobStore() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes 分段数，向上取整为2的幂
+     */
+    public StripedJobStore(int stripes) {
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(n);
+    }
+
+    @Override
+    public JobRepository.Job get(long id) {
+        long hash = hash(id);
+        AtomicReferenceArray<JobRepository.Job> table = stripeFor(hash).table;
+        int mask = table.length() - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            JobRepository.Job job = table.get(i);
+            if (job == null) {
+                return null;
+            }
+            if (job.id == id) {
+                return job;
+            }
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(JobRepository.Job job) {
+        long id = job.id;
+        long hash = hash(id);
+        Stripe stripe = stripeFor(hash);
+        stripe.lock.lock();
+        try {
+            AtomicReferenceArray<JobRepository.Job> table = stripe.table;
+            int mask = table.length() - 1;
+            int i = (int) hash & mask;
+            for (JobRepository.Job existing; (existing = table.get(i)) != null; i = (i + 1) & mask) {
+                if (existing.id == id) {
+                    return false;
+                }
+            }
+            if ((stripe.size + 1) * 2 > table.length()) {
+                table = resize(table);
+                mask = table.length() - 1;
+                i = (int) hash & mask;
+                while (table.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                table.set(i, job);
+                stripe.table = table;
+            } else {
+                table.set(i, job);
+            }
+            stripe.size++;
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+                stripe.size = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 弱一致的遍历：每个分段在遍历到时读取其当前的表，不加锁，不会抛出 ConcurrentModificationException；
+     * 遍历期间写入的 job 可能可见也可能不可见，clear 之前的表仍按旧快照遍历完
+     */
+    @Override
+    public Iterator<JobRepository.Job> iterator() {
+        return new Iterator<JobRepository.Job>() {
+            private int stripe = -1;
+            private AtomicReferenceArray<JobRepository.Job> table;
+            private int slot;
+            private JobRepository.Job next = advance();
+
+            private JobRepository.Job advance() {
+                while (true) {
+                    if (table != null) {
+                        while (slot < table.length()) {
+                            JobRepository.Job job = table.get(slot++);
+                            if (job != null) {
+                                return job;
+                            }
+                        }
+                    }
+                    if (++stripe >= stripes.length) {
+                        return null;
+                    }
+                    table = stripes[stripe].table;
+                    slot = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public JobRepository.Job next() {
+                JobRepository.Job job = next;
+                if (job == null) {
+                    throw new NoSuchElementException();
+                }
+                next = advance();
+                return job;
+            }
+        };
+    }
+
+    private Stripe stripeFor(long hash) {
+        // 分段只有一个时 shift 为 64，Java 中等同于不移位，需要单独处理
+        return stripes.length == 1 ? stripes[0] : stripes[(int) (hash >>> stripeShift)];
+    }
+
+    /**
+     * 复制到两倍大小的新表，新表在发布前只有当前线程可见
+     */
+    private static AtomicReferenceArray<JobRepository.Job> resize(AtomicReferenceArray<JobRepository.Job> old) {
+        AtomicReferenceArray<JobRepository.Job> table = new AtomicReferenceArray<>(old.length() * 2);
+        int mask = table.length() - 1;
+        for (int j = 0; j < old.length(); j++) {
+            JobRepository.Job job = old.get(j);
+            if (job != null) {
+                int i = (int) hash(job.id) & mask;
+                while (table.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                table.lazySet(i, job);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 连续的 id 散列后均匀分布到分段和槽位
+     */
+    private static long hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -5,12 +5,13 @@ import akka.actor.typed.ActorSystem;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.http.javadsl.Http;
 import akka.http.javadsl.ServerBinding;
-import akka.http.javadsl.marshallers.jackson.Jackson;
 import akka.http.javadsl.model.StatusCodes;
 import akka.http.javadsl.server.AllDirectives;
 import akka.http.javadsl.server.Route;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.tcfuture.akk.http.codec.Codec;
+import com.tcfuture.akk.http.codec.Codecs;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import lombok.Getter;
@@ -39,6 +40,10 @@ import static akka.http.javadsl.server.PathMatchers.longSegment;
  */
 public class JacksonExample extends AllDirectives {
 
+    // 预先构建的编解码器，路由中复用
+    private static final Codec<Item> ITEM_CODEC = Codecs.of(Item.class);
+    private static final Codec<Order> ORDER_CODEC = Codecs.of(Order.class);
+
     public static void main(String[] args) throws Exception {
         // boot up server using the route as defined below
         Map<String, Object> overrides = new HashMap<>();
@@ -81,14 +86,14 @@ public class JacksonExample extends AllDirectives {
                                 path(longSegment(), (Long id) -> {
                                     final CompletionStage<Optional<Item>> futureMaybeItem = fetchItem(id);
                                     return onSuccess(futureMaybeItem, maybeItem ->
-                                            maybeItem.map(item -> completeOK(item, Jackson.marshaller()))
+                                            maybeItem.map(item -> completeOK(item, ITEM_CODEC.marshaller()))
                                                     .orElseGet(() -> complete(StatusCodes.NOT_FOUND, "Not Found"))
                                     );
                                 }))
                 ),
                 post(() ->
                         path("create-order", () ->
-                                entity(Jackson.unmarshaller(Order.class), order -> {
+                                entity(ORDER_CODEC.unmarshaller(), order -> {
                                     CompletionStage<Done> futureSaved = saveOrder(order);
                                     return onSuccess(futureSaved, done ->
                                             complete("order created")
@@ -1,51 +1,53 @@
 package com.tcfuture.akk.http.streaming;
 
-import akka.NotUsed;
 import akka.actor.typed.ActorSystem;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.http.javadsl.Http;
 import akka.http.javadsl.ServerBinding;
 import akka.http.javadsl.model.ContentTypes;
 import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.StatusCodes;
 import akka.http.javadsl.server.AllDirectives;
 import akka.http.javadsl.server.Route;
-import akka.stream.javadsl.Source;
-import akka.util.ByteString;
+import akka.http.javadsl.unmarshalling.StringUnmarshallers;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
 import java.io.IOException;
-import java.util.Random;
 import java.util.concurrent.CompletionStage;
-import java.util.stream.Stream;
 
 /**
- *
+ * 以流的方式响应无限的随机整数，由客户端的读取速度反压
  *
  * @author liulv
  * @since 1.0.0
  */
 public class HttpServerStreamRandomNumbers extends AllDirectives {
 
+    // 每块默认和最大的整数个数
+    private static final int DEFAULT_CHUNK_NUMBERS = 8192;
+    private static final int MAX_CHUNK_NUMBERS = 1 << 16;
+
     /**
      * 创建路由Route
      *
+     * GET /random?chunk=：每行一个随机整数的文本流；GET /random/binary?chunk=：4 字节大端序整数的二进制流。
+     * 两者都以 chunk 个整数为一块输出，每个请求使用自己的随机数生成器
+     *
      * @return Route
      */
     private Route createRoute(){
-        //随机数
-        final Random rnd = new Random();
-        // 流是可重用的，所以我们可以在这里定义它
-        // 并对每个请求使用它
-        Source<Integer, NotUsed> numbers = Source.fromIterator(() -> Stream.generate(rnd::nextInt).iterator());
-
-        return concat(path("random", () ->
-                get(() ->
-                        complete(HttpEntities.create(ContentTypes.TEXT_PLAIN_UTF8,
-                                numbers.map(x -> ByteString.fromString(x + "\n"))
-                                ))
-                        )
-        ));
+        return pathPrefix("random", () -> get(() -> parameterOptional(StringUnmarshallers.INTEGER, "chunk", chunk -> {
+            int numbers = chunk.orElse(DEFAULT_CHUNK_NUMBERS);
+            if (numbers < 1 || numbers > MAX_CHUNK_NUMBERS) {
+                return complete(StatusCodes.BAD_REQUEST, "chunk 必须在 1~" + MAX_CHUNK_NUMBERS + " 之间");
+            }
+            return concat(
+                    pathEnd(() -> complete(HttpEntities.createChunked(ContentTypes.TEXT_PLAIN_UTF8,
+                            RandomNumberChunks.text(numbers)))),
+                    path("binary", () -> complete(HttpEntities.createChunked(ContentTypes.APPLICATION_OCTET_STREAM,
+                            RandomNumberChunks.binary(numbers)))));
+        })));
     }
 
     public static void main(String[] args) throws IOException {
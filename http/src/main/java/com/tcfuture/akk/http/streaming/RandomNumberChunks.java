@@ -0,0 +1,167 @@
+package com.tcfuture.akk.http.streaming;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * 无限随机整数流，按块输出。
+ *
+ * 每次物化（每个请求）使用自己的 SplittableRandom，种子取自 ThreadLocalRandom，各连接之间不共享随机数生成器。
+ * 一块中的多个整数先写入该次物化复用的字节数组，再一次复制为 ByteString，每块只分配一个 ByteString，
+ * 不再为每个整数拼接 String。
+ */
+public final class RandomNumberChunks {
+
+    // 一个 int 的十进制文本最多 11 个字符（含负号），加换行
+    private static final int MAX_TEXT_BYTES = 12;
+    private static final byte[] MIN_VALUE_TEXT = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    // 0~99 的十位和个位字符
+    private static final byte[] TENS = new byte[100];
+    private static final byte[] ONES = new byte[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            TENS[i] = (byte) ('0' + i / 10);
+            ONES[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private RandomNumberChunks() {}
+
+    /**
+     * 每行一个十进制整数的文本流
+     *
+     * @param numbersPerChunk 每块（每个 ByteString）包含的整数个数
+     */
+    public static Source<ByteString, NotUsed> text(int numbersPerChunk) {
+        checkChunk(numbersPerChunk);
+        return Source.fromIterator(() -> new TextChunks(newRandom(), numbersPerChunk));
+    }
+
+    /**
+     * 每个整数为 4 字节大端序的二进制流
+     *
+     * @param numbersPerChunk 每块（每个 ByteString）包含的整数个数
+     */
+    public static Source<ByteString, NotUsed> binary(int numbersPerChunk) {
+        checkChunk(numbersPerChunk);
+        return Source.fromIterator(() -> new BinaryChunks(newRandom(), numbersPerChunk));
+    }
+
+    private static SplittableRandom newRandom() {
+        return new SplittableRandom(ThreadLocalRandom.current().nextLong());
+    }
+
+    private static void checkChunk(int numbersPerChunk) {
+        if (numbersPerChunk < 1) {
+            throw new IllegalArgumentException("numbersPerChunk must be positive");
+        }
+    }
+
+    /**
+     * 把 value 的十进制文本写入 buf 的 pos 处，每次除法处理两位
+     *
+     * @return 写入后的位置
+     */
+    static int putDecimal(byte[] buf, int pos, int value) {
+        if (value == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_VALUE_TEXT, 0, buf, pos, MIN_VALUE_TEXT.length);
+            return pos + MIN_VALUE_TEXT.length;
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int end = pos + digits(value);
+        int i = end;
+        while (value >= 100) {
+            int q = value / 100;
+            int r = value - q * 100;
+            value = q;
+            buf[--i] = ONES[r];
+            buf[--i] = TENS[r];
+        }
+        if (value >= 10) {
+            buf[--i] = ONES[value];
+            buf[--i] = TENS[value];
+        } else {
+            buf[--i] = (byte) ('0' + value);
+        }
+        return end;
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        for (int threshold = 10; digits < 10 && value >= threshold; threshold *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static final class TextChunks implements Iterator<ByteString> {
+        private final SplittableRandom random;
+        private final int numbers;
+        private final byte[] buf;
+
+        TextChunks(SplittableRandom random, int numbers) {
+            this.random = random;
+            this.numbers = numbers;
+            this.buf = new byte[numbers * MAX_TEXT_BYTES];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public ByteString next() {
+            int pos = 0;
+            for (int i = 0; i < numbers; i++) {
+                pos = putDecimal(buf, pos, random.nextInt());
+                buf[pos++] = '\n';
+            }
+            return ByteString.fromArray(buf, 0, pos);
+        }
+    }
+
+    private static final class BinaryChunks implements Iterator<ByteString> {
+        private final SplittableRandom random;
+        private final byte[] buf;
+        // 包装 buf，putLong 一次写入两个整数
+        private final ByteBuffer out;
+
+        BinaryChunks(SplittableRandom random, int numbers) {
+            this.random = random;
+            this.buf = new byte[numbers * 4];
+            this.out = ByteBuffer.wrap(buf);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public ByteString next() {
+            out.clear();
+            while (out.remaining() >= 8) {
+                out.putLong(random.nextLong());
+            }
+            if (out.hasRemaining()) {
+                out.putInt(random.nextInt());
+            }
+            return ByteString.fromArray(buf, 0, buf.length);
+        }
+    }
+}
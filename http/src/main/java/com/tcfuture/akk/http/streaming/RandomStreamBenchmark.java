@@ -0,0 +1,62 @@
+package com.tcfuture.akk.http.streaming;
+
+import akka.NotUsed;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * @author liulv
+ * @since 1.0.0
+ *
+ * /random 响应流的生成速度，不经过网络。
+ *
+ * 分别运行原来的逐个整数 ByteString.fromString(x + "\n")、分块文本和分块二进制三种 Source，各生成 bytes 字节，
+ * 输出 MB/s 和每秒整数个数。参数：每种方式生成的字节数，默认 1073741824（1GB）；每块整数个数，默认 8192。
+ */
+public class RandomStreamBenchmark {
+
+    public static void main(String[] args) {
+        long bytes = args.length > 0 ? Long.parseLong(args[0]) : 1L << 30;
+        int chunk = args.length > 1 ? Integer.parseInt(args[1]) : 8192;
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "RandomStreamBenchmark");
+        try {
+            Random shared = new Random();
+            Source<ByteString, NotUsed> perNumber = Source.fromIterator(() -> Stream.generate(shared::nextInt).iterator())
+                    .map(x -> ByteString.fromString(x + "\n"));
+            System.out.printf(Locale.ROOT, "%-12s %10s %14s%n", "method", "MB/s", "numbers/s");
+            // 逐个整数的方式很慢，只生成 1/16 的数据量
+            run(system, "per-number", perNumber, bytes / 16, 11.5);
+            run(system, "text", RandomNumberChunks.text(chunk), bytes, 11.5);
+            run(system, "binary", RandomNumberChunks.binary(chunk), bytes, 4);
+        } finally {
+            system.terminate();
+        }
+    }
+
+    /**
+     * @param bytesPerNumber 每个整数的平均字节数，用于换算每秒整数个数
+     */
+    private static void run(ActorSystem<?> system, String label, Source<ByteString, NotUsed> source, long bytes,
+                            double bytesPerNumber) {
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long total = source
+                    .scan(0L, (sum, chunk) -> sum + chunk.size())
+                    .takeWhile(sum -> sum < bytes, true)
+                    .runWith(Sink.last(), system)
+                    .toCompletableFuture().join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (round == 1) {
+                System.out.printf(Locale.ROOT, "%-12s %10.1f %14.0f%n", label,
+                        total / seconds / (1024 * 1024), total / bytesPerNumber / seconds);
+            }
+        }
+    }
+}
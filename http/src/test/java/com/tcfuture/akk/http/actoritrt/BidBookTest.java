@@ -0,0 +1,64 @@
+package com.tcfuture.akk.http.actoritrt;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BidBook 测试
+ */
+public class BidBookTest {
+
+    private static HttpServerActorInteractionExample.Auction.Bid bid(String user, int offer) {
+        return new HttpServerActorInteractionExample.Auction.Bid(user, offer);
+    }
+
+    /**
+     * 测试用例：同一用户再次出价替换旧出价，前 K 名按金额从高到低、金额相同时先出价者在前
+     */
+    @Test
+    public void testTopAndWinner() {
+        BidBook book = new BidBook(0);
+        assertNull(book.winner());
+        book.add(bid("a", 10));
+        book.add(bid("b", 30));
+        book.add(bid("c", 20));
+        book.add(bid("d", 30));
+        assertEquals("b", book.winner().userId);
+
+        // b 降价，d 成为最高
+        book.add(bid("b", 5));
+        assertEquals("d", book.winner().userId);
+        assertEquals(4, book.bidders());
+        assertEquals(5, book.latestOf("b").offer);
+
+        List<HttpServerActorInteractionExample.Auction.Bid> top = book.top(3);
+        assertEquals(3, top.size());
+        assertEquals("d", top.get(0).userId);
+        assertEquals("c", top.get(1).userId);
+        assertEquals("a", top.get(2).userId);
+        assertEquals(4, book.top(100).size());
+        assertTrue(book.history().isEmpty());
+    }
+
+    /**
+     * 测试用例：历史只保留最近 historySize 条
+     */
+    @Test
+    public void testBoundedHistory() {
+        BidBook book = new BidBook(3);
+        for (int i = 0; i < 10; i++) {
+            book.add(bid("u" + i % 2, i));
+        }
+        List<HttpServerActorInteractionExample.Auction.Bid> history = book.history();
+        assertEquals(3, history.size());
+        assertEquals(7, history.get(0).offer);
+        assertEquals(9, history.get(2).offer);
+        assertEquals(2, book.bidders());
+        assertEquals("u1", book.winner().userId);
+    }
+}
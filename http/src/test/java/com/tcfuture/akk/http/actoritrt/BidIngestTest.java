@@ -0,0 +1,49 @@
+package com.tcfuture.akk.http.actoritrt;
+
+import akka.Done;
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BidIngest 测试
+ */
+public class BidIngestTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 测试用例：Auction 未确认时队列满后拒绝出价；确认后收到的出价数与接收数一致，每批不超过 maxBatch
+     */
+    @Test
+    public void testRejectWhenFullAndBatch() {
+        TestProbe<HttpServerActorInteractionExample.Auction.Message> auction = testKit.createTestProbe();
+        BidIngest ingest = new BidIngest(auction.getRef(), testKit.system(), 4, 2, Duration.ofMillis(20));
+
+        int offered = 50;
+        for (int i = 0; i < offered; i++) {
+            ingest.offer(new HttpServerActorInteractionExample.Auction.Bid("u" + i, i)).toCompletableFuture().join();
+        }
+        BidIngest.Stats stats = ingest.stats();
+        assertEquals(offered, stats.accepted + stats.rejected);
+        assertTrue("queue should reject while auction is not acking", stats.rejected > 0);
+
+        long received = 0;
+        while (received < stats.accepted) {
+            HttpServerActorInteractionExample.Auction.BidBatch batch =
+                    auction.expectMessageClass(HttpServerActorInteractionExample.Auction.BidBatch.class);
+            assertTrue(batch.bids.size() <= 2);
+            received += batch.bids.size();
+            batch.replyTo.tell(Done.getInstance());
+        }
+        assertEquals(stats.accepted, received);
+        auction.expectNoMessage(Duration.ofMillis(100));
+    }
+}
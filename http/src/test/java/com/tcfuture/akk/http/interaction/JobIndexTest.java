@@ -0,0 +1,38 @@
+package com.tcfuture.akk.http.interaction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * JobIndex 测试
+ */
+public class JobIndexTest {
+
+    private static JobRepository.Job job(long id, String project, String status) {
+        return new JobRepository.Job(id, project, status, 1L);
+    }
+
+    /**
+     * 测试用例：乱序写入后按 id 降序归并，游标之前的 id 不再返回
+     */
+    @Test
+    public void testQueryOrderAndCursor() {
+        JobIndex index = new JobIndex();
+        long[] ids = {5, 1, 9, 3, 7, 2, 8, 4, 6};
+        for (long id : ids) {
+            index.add(job(id, id < 5 ? "x" : "y", id % 2 == 0 ? "Failed" : "Success"));
+        }
+
+        assertArrayEquals(new long[]{9, 8, 7}, index.query(null, null, Long.MAX_VALUE, 3));
+        assertArrayEquals(new long[]{6, 5, 4, 3}, index.query(null, null, 7, 4));
+        assertArrayEquals(new long[]{8, 6, 4, 2}, index.query(null, "Failed", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{9, 8, 7}, index.query("y", null, Long.MAX_VALUE, 3));
+        assertArrayEquals(new long[]{3, 1}, index.query("x", "Success", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{1}, index.query("x", "Success", 3, 10));
+        assertArrayEquals(new long[0], index.query("z", null, Long.MAX_VALUE, 10));
+
+        index.clear();
+        assertArrayEquals(new long[0], index.query(null, null, Long.MAX_VALUE, 10));
+    }
+}
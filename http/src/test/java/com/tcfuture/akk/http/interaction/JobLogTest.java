@@ -0,0 +1,190 @@
+package com.tcfuture.akk.http.interaction;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JobLog 测试
+ */
+public class JobLogTest {
+
+    // 小段，让少量记录也会跨越多个映射段
+    private static final JobLog.Settings SETTINGS =
+            new JobLog.Settings(4096, Duration.ofMillis(10), Duration.ofMinutes(5));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JobRepository.Job job(long id) {
+        return new JobRepository.Job(id, "project-" + id % 3, id % 2 == 0 ? "Success" : "Failed", id);
+    }
+
+    private static List<JobRepository.Job> recover(Path dir) throws IOException {
+        List<JobRepository.Job> jobs = new ArrayList<>();
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            log.recover(jobs::add);
+        }
+        return jobs;
+    }
+
+    /**
+     * 测试用例：跨段追加、CLEAR 之前的 job 不再恢复、重新打开后继续追加、字段（包括 null）完整恢复
+     */
+    @Test
+    public void testAppendClearAndRecover() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            for (long id = 0; id < 500; id++) {
+                log.append(job(id));
+            }
+            log.appendClear();
+            for (long id = 1000; id < 1300; id++) {
+                log.append(job(id));
+            }
+            log.flush();
+            assertEquals(801, log.durable());
+        }
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            assertFalse(log.hadTornTail());
+            log.append(new JobRepository.Job(2000L, null, "Success", null));
+        }
+
+        List<JobRepository.Job> jobs = recover(dir);
+        assertEquals(301, jobs.size());
+        for (int i = 0; i < 300; i++) {
+            JobRepository.Job expected = job(1000 + i);
+            JobRepository.Job actual = jobs.get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.projectName, actual.projectName);
+            assertEquals(expected.status, actual.status);
+            assertEquals(expected.duration, actual.duration);
+        }
+        assertNull(jobs.get(300).projectName);
+        assertNull(jobs.get(300).duration);
+    }
+
+    /**
+     * 测试用例：压缩后只剩快照和新一代日志，恢复结果与压缩前相同；压缩之后的 CLEAR 使快照失效
+     */
+    @Test
+    public void testCompaction() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            for (long id = 0; id < 200; id++) {
+                log.append(job(id));
+            }
+            log.appendClear();
+            for (long id = 200; id < 400; id++) {
+                log.append(job(id));
+            }
+            log.compact();
+            for (long id = 400; id < 450; id++) {
+                log.append(job(id));
+            }
+            log.compact();
+            // 没有新写入时不压缩
+            log.compact();
+        }
+        assertEquals(files(dir), Stream.of("jobs-2.log", "snapshot-2").collect(Collectors.toList()));
+        List<JobRepository.Job> jobs = recover(dir);
+        assertEquals(250, jobs.size());
+        assertEquals(Long.valueOf(200), jobs.get(0).id);
+        assertEquals(Long.valueOf(449), jobs.get(249).id);
+
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            log.appendClear();
+            log.append(job(7));
+        }
+        jobs = recover(dir);
+        assertEquals(1, jobs.size());
+        assertEquals(Long.valueOf(7), jobs.get(0).id);
+    }
+
+    /**
+     * 测试用例：末尾写了一半的记录被截断，之后的写入进入新一代日志
+     */
+    @Test
+    public void testTornTail() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            for (long id = 0; id < 10; id++) {
+                log.append(job(id));
+            }
+        }
+        tearLastRecord(dir.resolve("jobs-0.log"), 10);
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            assertTrue(log.hadTornTail());
+            log.append(job(10));
+        }
+        List<JobRepository.Job> jobs = recover(dir);
+        assertEquals(10, jobs.size());
+        assertEquals(Long.valueOf(10), jobs.get(9).id);
+        assertTrue(Files.exists(dir.resolve("jobs-1.log")));
+    }
+
+    /**
+     * 测试用例：末尾残缺的一代日志在之后的压缩中并入快照，压缩后重新打开仍能恢复全部 job，旧日志被删除
+     */
+    @Test
+    public void testTornTailThenCompaction() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            for (long id = 0; id < 6; id++) {
+                log.append(job(id));
+            }
+        }
+        tearLastRecord(dir.resolve("jobs-0.log"), 6);
+        try (JobLog log = JobLog.open(dir, SETTINGS, null)) {
+            assertTrue(log.hadTornTail());
+            List<JobRepository.Job> recovered = new ArrayList<>();
+            log.recover(recovered::add);
+            assertEquals(5, recovered.size());
+            log.append(job(6));
+            log.compact();
+        }
+        assertEquals(Stream.of("jobs-2.log", "snapshot-2").collect(Collectors.toList()), files(dir));
+        List<JobRepository.Job> jobs = recover(dir);
+        assertEquals(6, jobs.size());
+        assertEquals(Long.valueOf(0), jobs.get(0).id);
+        assertEquals(Long.valueOf(6), jobs.get(5).id);
+    }
+
+    /**
+     * 模拟崩溃：file 中第 records 条（最后一条）记录的内容只写了一部分
+     */
+    private static void tearLastRecord(Path file, int records) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long end = 0;
+            raf.seek(0);
+            for (int i = 0; i < records; i++) {
+                int length = raf.readInt();
+                end = raf.getFilePointer() + 4 + length;
+                raf.seek(end);
+            }
+            raf.seek(end - 3);
+            raf.write(new byte[]{1, 2, 3});
+        }
+    }
+
+    private static List<String> files(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.tcfuture.akk.http.interaction;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.javadsl.Adapter;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.Accept;
+import akka.http.javadsl.model.headers.ETag;
+import akka.http.javadsl.model.headers.EntityTagRange;
+import akka.http.javadsl.model.headers.IfNoneMatch;
+import akka.http.javadsl.testkit.JUnitRouteTest;
+import akka.http.javadsl.testkit.TestRoute;
+import akka.http.javadsl.testkit.TestRouteResult;
+import akka.util.ByteString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.tcfuture.akk.http.codec.Codecs;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JobRoutes 按分区路由的测试
+ */
+public class JobRoutesTest extends JUnitRouteTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+    private static final int PARTITIONS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JobPartitions partitions() {
+        List<ActorRef<JobRepository.Command>> refs = new ArrayList<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            refs.add(Adapter.spawnAnonymous(system(), JobRepository.create(new HashMap<>())));
+        }
+        return new JobPartitions(refs);
+    }
+
+    /**
+     * 每个分区使用 store 中各自的 JobStore
+     */
+    private JobPartitions partitions(PartitionedJobStore store) {
+        List<ActorRef<JobRepository.Command>> refs = new ArrayList<>();
+        for (int i = 0; i < store.partitionCount(); i++) {
+            refs.add(Adapter.spawnAnonymous(system(), JobRepository.create(store.partition(i))));
+        }
+        return new JobPartitions(refs);
+    }
+
+    private static HttpRequest postJob(long id) {
+        return HttpRequest.POST("/jobs").withEntity(ContentTypes.APPLICATION_JSON,
+                "{\"id\":" + id + ",\"project-name\":\"p-" + id + "\",\"duration\":1}");
+    }
+
+    /**
+     * 测试用例：同一个 id 总是路由到同一个分区，不同 id 分布到多个分区
+     */
+    @Test
+    public void testForJob() {
+        JobPartitions partitions = partitions();
+        assertSame(partitions.forJob(42), partitions.forJob(42));
+        boolean spread = false;
+        for (long id = 1; id < 100; id++) {
+            spread |= partitions.forJob(id) != partitions.forJob(0);
+        }
+        assertTrue(spread);
+    }
+
+    /**
+     * 测试用例：job 写入所在分区后可以查询到，DELETE 清空所有分区
+     */
+    @Test
+    public void testAddGetClearAcrossPartitions() {
+        TestRoute route = testRoute(new JobRoutes(partitions(), Adapter.toTyped(system()), null).jobRoutes());
+        for (long id = 1; id <= 20; id++) {
+            route.run(postJob(id)).assertStatusCode(StatusCodes.OK).assertEntity("Job added");
+        }
+        route.run(postJob(7)).assertStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+        for (long id = 1; id <= 20; id++) {
+            route.run(HttpRequest.GET("/jobs/" + id)).assertStatusCode(StatusCodes.OK);
+        }
+
+        route.run(HttpRequest.DELETE("/jobs")).assertStatusCode(StatusCodes.OK).assertEntity("Jobs cleared");
+        for (long id = 1; id <= 20; id++) {
+            route.run(HttpRequest.GET("/jobs/" + id)).assertStatusCode(StatusCodes.NOT_FOUND);
+        }
+    }
+
+    /**
+     * 测试用例：NDJSON 批量导入（含空行、\r\n 换行、重复 id），再流式导出全部 job
+     */
+    @Test
+    public void testBulkImportAndStreamExport() {
+        PartitionedJobStore store = new PartitionedJobStore(PARTITIONS, StripedJobStore::new);
+        TestRoute route = testRoute(new JobRoutes(partitions(store), Adapter.toTyped(system()), store).jobRoutes());
+
+        StringBuilder body = new StringBuilder();
+        for (long id = 1; id <= 2500; id++) {
+            body.append("{\"id\":").append(id).append(",\"project-name\":\"p-").append(id)
+                    .append("\",\"duration\":").append(id).append(id % 2 == 0 ? "}\r\n" : "}\n");
+        }
+        body.append("\n{\"id\":7,\"project-name\":\"again\",\"duration\":1}");
+        route.run(HttpRequest.POST("/jobs/bulk").withEntity(JobNdjson.CONTENT_TYPE, body.toString()))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"added\":2500,\"duplicates\":1}");
+        route.run(HttpRequest.GET("/jobs/2500")).assertStatusCode(StatusCodes.OK);
+
+        String exported = route.run(HttpRequest.GET("/jobs?stream=true"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertContentType(JobNdjson.CONTENT_TYPE)
+                .entityString();
+        String[] lines = exported.split("\n");
+        assertEquals(2500, lines.length);
+        Set<Long> ids = new HashSet<>();
+        for (String line : lines) {
+            ids.add(JobNdjson.parse(ByteString.fromString(line)).id);
+        }
+        assertEquals(2500, ids.size());
+    }
+
+    /**
+     * 测试用例：各分区的 JobStore 相互独立，逐个分区导出时没有重复的 job；DELETE 之后各分区的 store 与索引一致，
+     * 分页查询和直接读取都只看到清空后写入的 job
+     */
+    @Test
+    public void testPartitionStoresAreIndependent() {
+        PartitionedJobStore store = new PartitionedJobStore(PARTITIONS, StripedJobStore::new);
+        JobPartitions partitions = partitions(store);
+        TestRoute viaActors = testRoute(new JobRoutes(partitions, Adapter.toTyped(system()), null).jobRoutes());
+        TestRoute direct = testRoute(new JobRoutes(partitions, Adapter.toTyped(system()), store).jobRoutes());
+        for (long id = 1; id <= 100; id++) {
+            viaActors.run(postJob(id)).assertStatusCode(StatusCodes.OK);
+        }
+        for (int i = 0; i < PARTITIONS; i++) {
+            assertTrue(store.partition(i).size() < 100);
+        }
+        assertEquals(100, store.size());
+        String exported = viaActors.run(HttpRequest.GET("/jobs?stream=true")).entityString();
+        assertEquals(100, exported.split("\n").length);
+
+        viaActors.run(HttpRequest.DELETE("/jobs")).assertStatusCode(StatusCodes.OK);
+        assertEquals(0, store.size());
+        for (long id = 101; id <= 110; id++) {
+            viaActors.run(postJob(id)).assertStatusCode(StatusCodes.OK);
+        }
+        direct.run(HttpRequest.GET("/jobs/1")).assertStatusCode(StatusCodes.NOT_FOUND);
+        direct.run(HttpRequest.GET("/jobs/105")).assertStatusCode(StatusCodes.OK);
+        String page = viaActors.run(HttpRequest.GET("/jobs?limit=100")).assertStatusCode(StatusCodes.OK).entityString();
+        assertTrue(page, page.startsWith("{\"jobs\":[{\"id\":110,"));
+        assertTrue(page, page.endsWith("\"next\":null}"));
+    }
+
+    /**
+     * 测试用例：索引中的 id 在 store 中已不存在时（store 被 actor 之外修改）跳过，分页查询正常返回
+     */
+    @Test
+    public void testQuerySkipsIdsMissingFromStore() {
+        Map<Long, JobRepository.Job> map = new HashMap<>();
+        JobPartitions partitions = new JobPartitions(
+                Collections.singletonList(Adapter.spawnAnonymous(system(), JobRepository.create(map))));
+        TestRoute route = testRoute(new JobRoutes(partitions, Adapter.toTyped(system()), null).jobRoutes());
+        for (long id = 1; id <= 3; id++) {
+            route.run(postJob(id)).assertStatusCode(StatusCodes.OK);
+        }
+        map.remove(2L);
+        route.run(HttpRequest.GET("/jobs")).assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"jobs\":[{\"id\":3,\"project-name\":\"p-3\",\"duration\":1,\"status\":\"Success\"},"
+                        + "{\"id\":1,\"project-name\":\"p-1\",\"duration\":1,\"status\":\"Success\"}],"
+                        + "\"next\":null}");
+    }
+
+    /**
+     * 测试用例：追加日志失败（记录超过 segment-size、日志已关闭）的 job 不写入 store，回复失败，分区继续处理后续请求
+     */
+    @Test
+    public void testFailedAppendIsNotStored() throws Exception {
+        PartitionedJobStore store = new PartitionedJobStore(1, StripedJobStore::new);
+        JobLog log = JobLog.open(folder.getRoot().toPath(),
+                new JobLog.Settings(4096, Duration.ofMillis(10), Duration.ofMinutes(5)), null);
+        JobPartitions partitions = new JobPartitions(Collections.singletonList(
+                Adapter.spawnAnonymous(system(), JobRepository.create(store.partition(0), log))));
+        TestRoute route = testRoute(new JobRoutes(partitions, Adapter.toTyped(system()), store).jobRoutes());
+        String oversized = String.join("", Collections.nCopies(5000, "x"));
+
+        route.run(HttpRequest.POST("/jobs").withEntity(ContentTypes.APPLICATION_JSON,
+                "{\"id\":1,\"project-name\":\"" + oversized + "\",\"duration\":1}"))
+                .assertStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+        route.run(HttpRequest.GET("/jobs/1")).assertStatusCode(StatusCodes.NOT_FOUND);
+        route.run(HttpRequest.POST("/jobs/bulk").withEntity(JobNdjson.CONTENT_TYPE,
+                "{\"id\":2,\"project-name\":\"p\",\"duration\":1}\n"
+                        + "{\"id\":3,\"project-name\":\"" + oversized + "\",\"duration\":1}\n"))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"added\":1,\"duplicates\":0,\"failed\":1}");
+        route.run(HttpRequest.GET("/jobs/3")).assertStatusCode(StatusCodes.NOT_FOUND);
+        String page = route.run(HttpRequest.GET("/jobs")).assertStatusCode(StatusCodes.OK).entityString();
+        assertTrue(page, page.startsWith("{\"jobs\":[{\"id\":2,") && page.endsWith("],\"next\":null}"));
+
+        log.close();
+        route.run(postJob(4)).assertStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+        route.run(HttpRequest.GET("/jobs/4")).assertStatusCode(StatusCodes.NOT_FOUND);
+        route.run(HttpRequest.GET("/jobs/2")).assertStatusCode(StatusCodes.OK);
+    }
+
+    /**
+     * 测试用例：格式错误的行返回 400
+     */
+    @Test
+    public void testBulkImportRejectsMalformedLine() {
+        TestRoute route = testRoute(new JobRoutes(partitions(), Adapter.toTyped(system()), null).jobRoutes());
+        route.run(HttpRequest.POST("/jobs/bulk").withEntity(JobNdjson.CONTENT_TYPE,
+                "{\"id\":1,\"project-name\":\"p\",\"duration\":1}\n{\"project-name\":\"no id\"}\n"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+        route.run(HttpRequest.POST("/jobs/bulk").withEntity(JobNdjson.CONTENT_TYPE, "not json\n"))
+                .assertStatusCode(StatusCodes.BAD_REQUEST);
+    }
+
+    /**
+     * 测试用例：按项目和状态分页查询，新到旧排列，按 next 翻页直到结束，清空后为空
+     */
+    @Test
+    public void testPagedQueryAcrossPartitions() throws Exception {
+        TestRoute route = testRoute(new JobRoutes(partitions(), Adapter.toTyped(system()), null).jobRoutes());
+        StringBuilder body = new StringBuilder();
+        for (long id = 1; id <= 100; id++) {
+            body.append("{\"id\":").append(id).append(",\"project-name\":\"").append(id % 2 == 0 ? "a" : "b")
+                    .append("\",\"status\":\"").append(id % 3 == 0 ? "Failed" : "Success")
+                    .append("\",\"duration\":1}\n");
+        }
+        route.run(HttpRequest.POST("/jobs/bulk").withEntity(JobNdjson.CONTENT_TYPE, body.toString()))
+                .assertStatusCode(StatusCodes.OK);
+
+        // 项目 a 且 Failed：id 为 6 的倍数，共16个，从 96 开始递减
+        List<Long> ids = new ArrayList<>();
+        String after = "";
+        while (true) {
+            JsonNode page = MAPPER.readTree(route.run(HttpRequest.GET("/jobs?project=a&status=Failed&limit=5" + after))
+                    .assertStatusCode(StatusCodes.OK).entityString());
+            for (JsonNode job : page.get("jobs")) {
+                assertEquals("a", job.get("project-name").asText());
+                ids.add(job.get("id").asLong());
+            }
+            if (page.get("next").isNull()) {
+                break;
+            }
+            after = "&after=" + page.get("next").asLong();
+        }
+        List<Long> expected = new ArrayList<>();
+        for (long id = 96; id > 0; id -= 6) {
+            expected.add(id);
+        }
+        assertEquals(expected, ids);
+
+        // 不指定过滤条件时为所有 job 的前 limit 个
+        JsonNode newest = MAPPER.readTree(route.run(HttpRequest.GET("/jobs?limit=3")).entityString());
+        assertEquals(100, newest.get("jobs").get(0).get("id").asLong());
+        assertEquals(98, newest.get("next").asLong());
+        route.run(HttpRequest.GET("/jobs?limit=0")).assertStatusCode(StatusCodes.BAD_REQUEST);
+
+        route.run(HttpRequest.DELETE("/jobs")).assertStatusCode(StatusCodes.OK);
+        JsonNode empty = MAPPER.readTree(route.run(HttpRequest.GET("/jobs?project=a")).entityString());
+        assertEquals(0, empty.get("jobs").size());
+        assertTrue(empty.get("next").isNull());
+    }
+
+    /**
+     * 测试用例：GET /jobs/{id} 返回 ETag，If-None-Match 匹配时返回 304；DELETE 后重新添加内容不同的同一 id，
+     * 旧 ETag 不再匹配
+     */
+    @Test
+    public void testEtagAndInvalidationOnClear() {
+        JobResponseCache cache = new JobResponseCache(16);
+        TestRoute route = testRoute(new JobRoutes(partitions(), Adapter.toTyped(system()), null, cache).jobRoutes());
+        route.run(postJob(1)).assertStatusCode(StatusCodes.OK);
+
+        TestRouteResult first = route.run(HttpRequest.GET("/jobs/1")).assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"id\":1,\"project-name\":\"p-1\",\"duration\":1,\"status\":\"Success\"}");
+        ETag etag = first.header(ETag.class);
+        route.run(HttpRequest.GET("/jobs/1")).assertStatusCode(StatusCodes.OK).assertHeaderExists(etag);
+        route.run(HttpRequest.GET("/jobs/1").addHeader(IfNoneMatch.create(EntityTagRange.create(etag.etag()))))
+                .assertStatusCode(StatusCodes.NOT_MODIFIED);
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+
+        route.run(HttpRequest.DELETE("/jobs")).assertStatusCode(StatusCodes.OK);
+        route.run(HttpRequest.GET("/jobs/1")).assertStatusCode(StatusCodes.NOT_FOUND);
+        route.run(HttpRequest.POST("/jobs").withEntity(ContentTypes.APPLICATION_JSON,
+                "{\"id\":1,\"project-name\":\"changed\",\"duration\":2}")).assertStatusCode(StatusCodes.OK);
+        route.run(HttpRequest.GET("/jobs/1").addHeader(IfNoneMatch.create(EntityTagRange.create(etag.etag()))))
+                .assertStatusCode(StatusCodes.OK)
+                .assertEntity("{\"id\":1,\"project-name\":\"changed\",\"duration\":2,\"status\":\"Success\"}");
+    }
+
+    /**
+     * 测试用例：请求体和响应都可以用 CBOR，没有 Accept 时响应为 JSON，不支持的 Content-Type 返回 415
+     */
+    @Test
+    public void testCborNegotiation() throws Exception {
+        TestRoute route = testRoute(new JobRoutes(partitions(), Adapter.toTyped(system()), null).jobRoutes());
+        byte[] job = CBOR_MAPPER.writeValueAsBytes(MAPPER.readTree("{\"id\":5,\"project-name\":\"c\",\"duration\":3}"));
+        route.run(HttpRequest.POST("/jobs").withEntity(Codecs.CBOR, job)).assertStatusCode(StatusCodes.OK);
+        route.run(HttpRequest.POST("/jobs").withEntity(ContentTypes.TEXT_PLAIN_UTF8, "5"))
+                .assertStatusCode(StatusCodes.UNSUPPORTED_MEDIA_TYPE);
+
+        TestRouteResult cbor = route.run(HttpRequest.GET("/jobs?project=c")
+                .addHeader(Accept.create(Codecs.APPLICATION_CBOR.toRange())))
+                .assertStatusCode(StatusCodes.OK)
+                .assertContentType(Codecs.CBOR);
+        JsonNode page = CBOR_MAPPER.readTree(cbor.entityBytes().toArray());
+        assertEquals(5, page.get("jobs").get(0).get("id").asLong());
+        assertEquals("c", page.get("jobs").get(0).get("project-name").asText());
+
+        route.run(HttpRequest.GET("/jobs?project=c")).assertContentType(ContentTypes.APPLICATION_JSON);
+    }
+}
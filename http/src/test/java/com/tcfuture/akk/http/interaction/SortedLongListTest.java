@@ -0,0 +1,60 @@
+package com.tcfuture.akk.http.interaction;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SortedLongList 测试
+ */
+public class SortedLongListTest {
+
+    /**
+     * 测试用例：乱序写入跨越多次拆块，重复值被拒绝，从任意 bound 向小遍历的结果与 TreeSet 一致
+     */
+    @Test
+    public void testRandomInsertMatchesTreeSet() {
+        SortedLongList list = new SortedLongList();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(300_000);
+            assertEquals(expected.add(value), list.add(value));
+        }
+        assertEquals(expected.size(), list.size());
+
+        for (long bound : new long[]{Long.MAX_VALUE, 299_999, 150_000, expected.first(), expected.first() + 1, 0}) {
+            SortedLongList.Cursor cursor = list.descendingBelow(bound);
+            Iterator<Long> values = expected.headSet(bound, false).descendingIterator();
+            while (values.hasNext()) {
+                assertTrue(cursor.hasValue());
+                assertEquals(values.next().longValue(), cursor.value());
+                cursor.previous();
+            }
+            assertFalse(cursor.hasValue());
+        }
+    }
+
+    /**
+     * 测试用例：递增写入、空列表
+     */
+    @Test
+    public void testAppendAndEmpty() {
+        SortedLongList list = new SortedLongList();
+        assertFalse(list.descendingBelow(Long.MAX_VALUE).hasValue());
+        for (long value = 1; value <= 5 * SortedLongList.BLOCK_SIZE; value++) {
+            assertTrue(list.add(value));
+        }
+        assertFalse(list.add(3));
+        SortedLongList.Cursor cursor = list.descendingBelow(SortedLongList.BLOCK_SIZE + 1);
+        assertEquals(SortedLongList.BLOCK_SIZE, cursor.value());
+        cursor.previous();
+        assertEquals(SortedLongList.BLOCK_SIZE - 1, cursor.value());
+    }
+}
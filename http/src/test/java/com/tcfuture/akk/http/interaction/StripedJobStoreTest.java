@@ -0,0 +1,103 @@
+package com.tcfuture.akk.http.interaction;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * StripedJobStore 测试
+ */
+public class StripedJobStoreTest {
+
+    private static JobRepository.Job job(long id) {
+        return new JobRepository.Job(id, "project-" + id, "Success", id);
+    }
+
+    /**
+     * 测试用例：添加、重复添加、扩容后查询、清空
+     */
+    @Test
+    public void testPutGetClear() {
+        StripedJobStore store = new StripedJobStore(4);
+        for (long id = 0; id < 10000; id++) {
+            assertTrue(store.putIfAbsent(job(id)));
+        }
+        JobRepository.Job duplicate = job(42);
+        assertFalse(store.putIfAbsent(duplicate));
+        assertEquals(10000, store.size());
+        for (long id = 0; id < 10000; id++) {
+            assertEquals(Long.valueOf(id), store.get(id).id);
+        }
+        assertTrue(store.get(42) != duplicate);
+        assertNull(store.get(10000));
+        assertNull(store.get(-1));
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get(1));
+    }
+
+    /**
+     * 测试用例：并发写入同一批 id，每个 id 只有一个写入成功；写入期间的读取只会看到已写入的同一个 job
+     */
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        StripedJobStore store = new StripedJobStore();
+        int ids = 50000;
+        int writers = 4;
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger inconsistent = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[writers + 2];
+        for (int w = 0; w < writers; w++) {
+            threads[w] = new Thread(() -> {
+                await(start);
+                for (long id = 0; id < ids; id++) {
+                    if (store.putIfAbsent(job(id))) {
+                        added.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (int r = writers; r < threads.length; r++) {
+            threads[r] = new Thread(() -> {
+                await(start);
+                for (long id = 0; id < ids; id++) {
+                    JobRepository.Job first = store.get(id);
+                    JobRepository.Job second = store.get(id);
+                    if (first != null && (first.id != id || second != first)) {
+                        inconsistent.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(ids, added.get());
+        assertEquals(ids, store.size());
+        assertEquals(0, inconsistent.get());
+        JobRepository.Job job = store.get(123);
+        assertSame(job, store.get(123));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
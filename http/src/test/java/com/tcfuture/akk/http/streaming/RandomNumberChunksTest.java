@@ -0,0 +1,59 @@
+package com.tcfuture.akk.http.streaming;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.stream.javadsl.Sink;
+import akka.util.ByteString;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * RandomNumberChunks 测试
+ */
+public class RandomNumberChunksTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 测试用例：十进制编码与 Integer.toString 一致，包括边界值
+     */
+    @Test
+    public void testPutDecimal() {
+        byte[] buf = new byte[12];
+        for (int value : new int[]{0, 7, -7, 10, 99, 100, -100, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            int end = RandomNumberChunks.putDecimal(buf, 0, value);
+            assertEquals(Integer.toString(value), new String(buf, 0, end, StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * 测试用例：文本块每行一个整数，二进制块每个整数 4 字节；不同的物化得到不同的随机数
+     */
+    @Test
+    public void testChunks() {
+        List<ByteString> text = RandomNumberChunks.text(100).take(3).runWith(Sink.seq(), testKit.system())
+                .toCompletableFuture().join();
+        assertEquals(3, text.size());
+        for (ByteString chunk : text) {
+            String[] lines = chunk.utf8String().split("\n", -1);
+            assertEquals(101, lines.length);
+            assertEquals("", lines[100]);
+            for (int i = 0; i < 100; i++) {
+                Integer.parseInt(lines[i]);
+            }
+        }
+
+        ByteString first = RandomNumberChunks.binary(5).runWith(Sink.head(), testKit.system())
+                .toCompletableFuture().join();
+        ByteString second = RandomNumberChunks.binary(5).runWith(Sink.head(), testKit.system())
+                .toCompletableFuture().join();
+        assertEquals(20, first.size());
+        assertNotEquals(first, second);
+    }
+}
@@ -1,24 +1,441 @@
 package com.fcfutre.example.masterworker.master;
 
-import akka.actor.AbstractActor;
-import akka.actor.ActorSelection;
+import akka.actor.ActorIdentity;
+import akka.actor.Identify;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Adapter;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
+import com.fcfutre.example.masterworker.message.Message;
 
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class MasterActor extends AbstractActor {
+/**
+ * master actor
+ *
+ * 启动时通过 Identify 解析一次 remoteAddr 通配符匹配的 worker 并 watch，缓存其 ActorRef，之后按路由策略直接发送；
+ * 定时重新 Identify 以发现新加入的 worker。
+ *
+ * 提交的任务先进入 master 的队列，分配 id 后以 Job 发送给 worker，worker 的 JobResult 即为该任务的确认，
+ * master 收到后转发给原始请求者。每个 worker 最多有 maxUnacked 个未确认的任务，都满时任务留在队列中；
+ * 超过 ackTimeout 未确认的任务以原 id 重新入队投递，worker 终止时其未确认的任务也重新入队，
+ * 重新入队但还没有再次发出的任务收到原 worker 迟到的结果时直接完成并移出队列，
+ * 同一 id 的重复结果只转发第一个，因此请求者收到的是至少一次执行、恰好一次回复。
+ *
+ * worker 定时上报 LoadReport，LEAST_LOADED 据此选择 worker；WORK_PULLING 模式下任务由空闲 worker 通过
+ * WorkRequest 拉取。
+ */
+public class MasterActor extends AbstractBehavior<Message.MasterCommand> {
 
-    private String remoteAddr;
+    private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_ACK_TIMEOUT = Duration.ofSeconds(10);
+    private static final int DEFAULT_MAX_UNACKED = 32;
+    // 队列中最多缓存的新任务数，重新投递的任务不受此限制
+    private static final int MAX_QUEUED = 10000;
 
-    public MasterActor(String remoteAddr) {
+    /**
+     * Identify 的回复
+     */
+    private static final class WorkerIdentified implements Message.MasterCommand {
+        final ActorIdentity identity;
+
+        WorkerIdentified(ActorIdentity identity) {
+            this.identity = identity;
+        }
+    }
+
+    /**
+     * watch 的 worker 已终止
+     */
+    private static final class WorkerTerminated implements Message.MasterCommand {
+        final ActorRef<Message.WorkerCommand> worker;
+
+        WorkerTerminated(ActorRef<Message.WorkerCommand> worker) {
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * 定时刷新 worker 集合的消息
+     */
+    private enum Refresh implements Message.MasterCommand {
+        INSTANCE
+    }
+
+    /**
+     * 定时检查确认超时的消息
+     */
+    private enum CheckTimeouts implements Message.MasterCommand {
+        INSTANCE
+    }
+
+    private static final class WorkerState {
+        // 已发送未确认的任务数
+        int outstanding;
+        // 最近一次上报的负载，尚未上报时为 null
+        Message.LoadReport lastReport;
+    }
+
+    /**
+     * 排队或已发送未确认的任务
+     */
+    private static final class PendingJob {
+        // 首次发送时分配，重新投递时保持不变；广播任务在队列中为 0，发送时为每个 worker 的副本分别分配
+        long id;
+        final String payload;
+        final ActorRef<Message.JobResult> replyTo;
+        // 已发送的次数
+        int attempts;
+        ActorRef<Message.WorkerCommand> worker;
+        long deadlineNanos;
+
+        PendingJob(long id, String payload, ActorRef<Message.JobResult> replyTo) {
+            this.id = id;
+            this.payload = payload;
+            this.replyTo = replyTo;
+        }
+    }
+
+    public static Behavior<Message.MasterCommand> create(String remoteAddr, RoutingStrategy strategy) {
+        return create(remoteAddr, strategy, DEFAULT_REFRESH_INTERVAL);
+    }
+
+    public static Behavior<Message.MasterCommand> create(String remoteAddr, RoutingStrategy strategy,
+                                                         Duration refreshInterval) {
+        return create(remoteAddr, strategy, refreshInterval, DEFAULT_ACK_TIMEOUT, DEFAULT_MAX_UNACKED);
+    }
+
+    /**
+     * @param ackTimeout 任务发出后等待 JobResult 的时间，需要大于 worker 处理完 maxUnacked 个任务的耗时
+     * @param maxUnacked 每个 worker 最多未确认的任务数
+     */
+    public static Behavior<Message.MasterCommand> create(String remoteAddr, RoutingStrategy strategy,
+                                                         Duration refreshInterval, Duration ackTimeout,
+                                                         int maxUnacked) {
+        if (maxUnacked < 1) {
+            throw new IllegalArgumentException("maxUnacked must be positive, was " + maxUnacked);
+        }
+        return Behaviors.setup(context ->
+                Behaviors.withTimers(timers -> new MasterActor(context, timers, remoteAddr, strategy,
+                        refreshInterval, ackTimeout, maxUnacked)));
+    }
+
+    private final String remoteAddr;
+    private final RoutingStrategy strategy;
+    private final long ackTimeoutNanos;
+    private final int maxUnacked;
+    private final ActorRef<ActorIdentity> identityAdapter;
+
+    // 已解析的 worker 及其状态
+    private final Map<ActorRef<Message.WorkerCommand>, WorkerState> routees = new LinkedHashMap<>();
+    private List<ActorRef<Message.WorkerCommand>> routeeList = new ArrayList<>();
+    private int next = 0;
+    // 拉取模式下等待任务的 worker
+    private final Set<ActorRef<Message.WorkerCommand>> idleWorkers = new LinkedHashSet<>();
+    // 尚未发送给 worker 的任务，重新投递的任务放在队首
+    private final Deque<PendingJob> queued = new ArrayDeque<>();
+    // 任务 id -> 已发送未确认的任务
+    private final Map<Long, PendingJob> inFlight = new HashMap<>();
+    private long jobIdCounter = 0;
+
+    private MasterActor(ActorContext<Message.MasterCommand> context,
+                        TimerScheduler<Message.MasterCommand> timers,
+                        String remoteAddr,
+                        RoutingStrategy strategy,
+                        Duration refreshInterval,
+                        Duration ackTimeout,
+                        int maxUnacked) {
+        super(context);
         this.remoteAddr = remoteAddr;
+        this.strategy = strategy;
+        this.ackTimeoutNanos = ackTimeout.toNanos();
+        this.maxUnacked = maxUnacked;
+        this.identityAdapter = context.messageAdapter(ActorIdentity.class, WorkerIdentified::new);
+        identifyWorkers();
+        timers.startTimerWithFixedDelay(Refresh.INSTANCE, Refresh.INSTANCE, refreshInterval);
+        timers.startTimerWithFixedDelay(CheckTimeouts.INSTANCE, CheckTimeouts.INSTANCE, ackTimeout.dividedBy(2));
     }
 
     @Override
-    public Receive createReceive() {
-        return receiveBuilder()
-                .match(String.class, msg -> {
-                    ActorSelection sel = getContext().getSystem().actorSelection(remoteAddr);
-                    // 把printerActor传递给worker，tell
-                    sel.tell("master call '" + msg + "'", getSender());
-                }).build();
+    public Receive<Message.MasterCommand> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(Message.Submit.class, this::onSubmit)
+                .onMessage(Message.JobResult.class, this::onJobResult)
+                .onMessage(Message.LoadReport.class, this::onLoadReport)
+                .onMessage(Message.WorkRequest.class, this::onWorkRequest)
+                .onMessage(WorkerIdentified.class, this::onWorkerIdentified)
+                .onMessage(WorkerTerminated.class, this::onWorkerTerminated)
+                .onMessageEquals(Refresh.INSTANCE, this::identifyWorkers)
+                .onMessageEquals(CheckTimeouts.INSTANCE, this::onCheckTimeouts)
+                .build();
+    }
+
+    /**
+     * typed 没有 ActorSelection，通过 classic 的 actorSelection 发送 Identify，回复经 messageAdapter 转换
+     */
+    private Behavior<Message.MasterCommand> identifyWorkers() {
+        Adapter.toClassic(getContext().getSystem()).actorSelection(remoteAddr)
+                .tell(new Identify(remoteAddr), Adapter.toClassic(identityAdapter));
+        return this;
+    }
+
+    private Behavior<Message.MasterCommand> onWorkerIdentified(WorkerIdentified identified) {
+        identified.identity.getActorRef().ifPresent(classic -> {
+            ActorRef<Message.WorkerCommand> worker = Adapter.toTyped(classic);
+            if (!routees.containsKey(worker)) {
+                getContext().watchWith(worker, new WorkerTerminated(worker));
+                routees.put(worker, new WorkerState());
+                routeeList = new ArrayList<>(routees.keySet());
+                getContext().getLog().info("worker {} 已加入，当前 worker 数 {}", worker, routees.size());
+                worker.tell(new Message.Register(getContext().getSelf(), strategy == RoutingStrategy.WORK_PULLING));
+                dispatch();
+            }
+        });
+        return this;
+    }
+
+    private Behavior<Message.MasterCommand> onWorkerTerminated(WorkerTerminated terminated) {
+        WorkerState state = routees.remove(terminated.worker);
+        if (state != null) {
+            routeeList = new ArrayList<>(routees.keySet());
+            idleWorkers.remove(terminated.worker);
+            int redelivered = 0;
+            Iterator<PendingJob> it = inFlight.values().iterator();
+            while (it.hasNext()) {
+                PendingJob job = it.next();
+                if (job.worker.equals(terminated.worker)) {
+                    it.remove();
+                    queued.addFirst(job);
+                    redelivered++;
+                }
+            }
+            getContext().getLog().warn("worker {} 已终止，{} 个未确认的任务重新投递，当前 worker 数 {}",
+                    terminated.worker, redelivered, routees.size());
+            dispatch();
+        }
+        return this;
+    }
+
+    private Behavior<Message.MasterCommand> onSubmit(Message.Submit submit) {
+        String payload = "master call '" + submit.payload + "'";
+        if (queued.size() < MAX_QUEUED) {
+            queued.add(new PendingJob(0, payload, submit.replyTo));
+            dispatch();
+        } else {
+            getContext().getLog().warn("排队任务已满，丢弃任务 {}", payload);
+        }
+        return this;
+    }
+
+    private Behavior<Message.MasterCommand> onJobResult(Message.JobResult result) {
+        PendingJob job = inFlight.remove(result.id);
+        if (job == null) {
+            // 超时重新入队后原 worker 的结果迟到，任务还没有再次发出时直接完成
+            job = removeQueued(result.id);
+            if (job == null) {
+                // 重新投递后原 worker 的结果迟到，或 worker 对重复任务的再次确认
+                getContext().getLog().debug("忽略任务 [{}] 的重复结果", result.id);
+                return this;
+            }
+        } else {
+            WorkerState state = routees.get(job.worker);
+            if (state != null) {
+                state.outstanding--;
+            }
+        }
+        // 先用空出的窗口发出下一个任务再回复，请求者收到结果时后续任务已经发给 worker
+        dispatch();
+        job.replyTo.tell(result);
+        return this;
+    }
+
+    /**
+     * 从队列中移除已分配 id 的任务，重新入队的任务在队首，通常只需检查几个
+     */
+    private PendingJob removeQueued(long id) {
+        Iterator<PendingJob> it = queued.iterator();
+        while (it.hasNext()) {
+            PendingJob job = it.next();
+            if (job.id == 0) {
+                // 之后都是尚未发送过的新任务
+                return null;
+            }
+            if (job.id == id) {
+                it.remove();
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private Behavior<Message.MasterCommand> onLoadReport(Message.LoadReport report) {
+        WorkerState state = routees.get(report.worker);
+        if (state != null) {
+            state.lastReport = report;
+        }
+        return this;
+    }
+
+    private Behavior<Message.MasterCommand> onWorkRequest(Message.WorkRequest request) {
+        if (routees.containsKey(request.worker)) {
+            idleWorkers.add(request.worker);
+            dispatch();
+        }
+        return this;
+    }
+
+    /**
+     * 超时未确认的任务从原 worker 的窗口中移除，以原 id 放回队首
+     */
+    private Behavior<Message.MasterCommand> onCheckTimeouts() {
+        long now = System.nanoTime();
+        Iterator<PendingJob> it = inFlight.values().iterator();
+        while (it.hasNext()) {
+            PendingJob job = it.next();
+            if (now - job.deadlineNanos > 0) {
+                it.remove();
+                WorkerState state = routees.get(job.worker);
+                if (state != null) {
+                    state.outstanding--;
+                }
+                getContext().getLog().warn("任务 [{}] 在 worker {} 上确认超时，第 {} 次重新投递",
+                        job.id, job.worker, job.attempts);
+                queued.addFirst(job);
+            }
+        }
+        dispatch();
+        return this;
+    }
+
+    /**
+     * 按路由策略把队列中的任务发送给还有窗口的 worker，没有可用的 worker 时停止
+     */
+    private void dispatch() {
+        while (!queued.isEmpty()) {
+            PendingJob job = queued.peek();
+            if (strategy == RoutingStrategy.BROADCAST && job.id == 0) {
+                if (routeeList.isEmpty() || !allHaveCapacity()) {
+                    return;
+                }
+                queued.poll();
+                for (ActorRef<Message.WorkerCommand> worker : routeeList) {
+                    send(worker, new PendingJob(++jobIdCounter, job.payload, job.replyTo));
+                }
+            } else {
+                ActorRef<Message.WorkerCommand> worker = selectWorker();
+                if (worker == null) {
+                    return;
+                }
+                queued.poll();
+                if (job.id == 0) {
+                    job.id = ++jobIdCounter;
+                }
+                send(worker, job);
+            }
+        }
+    }
+
+    /**
+     * @return 按路由策略选出的还有窗口的 worker，没有时返回 null
+     */
+    private ActorRef<Message.WorkerCommand> selectWorker() {
+        if (routeeList.isEmpty()) {
+            return null;
+        }
+        switch (strategy) {
+            case WORK_PULLING:
+                Iterator<ActorRef<Message.WorkerCommand>> idle = idleWorkers.iterator();
+                if (!idle.hasNext()) {
+                    return null;
+                }
+                ActorRef<Message.WorkerCommand> worker = idle.next();
+                idle.remove();
+                return worker;
+            case LEAST_LOADED:
+                return leastLoaded();
+            case ROUND_ROBIN:
+            case BROADCAST:
+            default:
+                // 广播任务重新投递时只需要一个 worker，按轮询选择
+                return nextWithCapacity();
+        }
+    }
+
+    private boolean hasCapacity(WorkerState state) {
+        return state.outstanding < maxUnacked;
+    }
+
+    private boolean allHaveCapacity() {
+        for (WorkerState state : routees.values()) {
+            if (!hasCapacity(state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ActorRef<Message.WorkerCommand> nextWithCapacity() {
+        for (int i = 0; i < routeeList.size(); i++) {
+            ActorRef<Message.WorkerCommand> worker = routeeList.get(nextIndex());
+            if (hasCapacity(routees.get(worker))) {
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 用上报的处理速率估算每个 worker 处理完已分配任务加上新任务所需的时间，选择最小的；
+     * 尚未上报速率时按未完成任务数比较
+     */
+    private ActorRef<Message.WorkerCommand> leastLoaded() {
+        int size = routeeList.size();
+        int start = nextIndex();
+        ActorRef<Message.WorkerCommand> selected = null;
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ActorRef<Message.WorkerCommand> worker = routeeList.get((start + i) % size);
+            WorkerState state = routees.get(worker);
+            if (!hasCapacity(state)) {
+                continue;
+            }
+            double rate = state.lastReport != null && state.lastReport.processedRate > 0
+                    ? state.lastReport.processedRate : 1.0;
+            double cost = (state.outstanding + 1) / rate;
+            if (cost < min) {
+                min = cost;
+                selected = worker;
+            }
+        }
+        return selected;
+    }
+
+    private int nextIndex() {
+        int index = next % routeeList.size();
+        next = index + 1;
+        return index;
+    }
+
+    private void send(ActorRef<Message.WorkerCommand> worker, PendingJob job) {
+        job.worker = worker;
+        job.attempts++;
+        job.deadlineNanos = System.nanoTime() + ackTimeoutNanos;
+        routees.get(worker).outstanding++;
+        inFlight.put(job.id, job);
+        worker.tell(new Message.Job(job.id, job.payload));
     }
 }
@@ -1,8 +1,10 @@
 package com.fcfutre.example.masterworker.master;
 
-import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
-import akka.actor.Props;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import com.fcfutre.example.masterworker.message.Message;
 import com.fcfutre.example.masterworker.printer.PrinterActor;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
@@ -17,18 +19,28 @@ public class MasterApp {
 
     public static void main(String[] args) {
         Map<String, Object> overrideConfig = new TreeMap<>();
-        overrideConfig.put("akka.actor.provider", "akka.remote.RemoteActorRefProvider");
         overrideConfig.put("akka.remote.artery.canonical.hostname", "localhost");
         overrideConfig.put("akka.remote.artery.canonical.port", 8786);
-        Config conf = ConfigFactory.parseMap(overrideConfig);
+        Config conf = ConfigFactory.parseMap(overrideConfig)
+                .withFallback(ConfigFactory.load("masterworker"));
 
-        ActorSystem system = ActorSystem.create(master, conf);
-        Props masterProps = Props.create(MasterActor.class, remoteAddr);
-        // masterActor是发出消息的actor
-        ActorRef masterActor = system.actorOf(masterProps, "master-actor");
-        // printerActor是用于接收消息的actor
-        ActorRef printerActor = system.actorOf(Props.create(PrinterActor.class), "printer-actor");
-        // 把printerActor和消息一起发出去
-        masterActor.tell("I AM MASTER", printerActor);
+        // 路由策略，例如参数 ROUND_ROBIN、BROADCAST、LEAST_LOADED、WORK_PULLING，默认 ROUND_ROBIN
+        RoutingStrategy strategy = args.length > 0 ? RoutingStrategy.valueOf(args[0]) : RoutingStrategy.ROUND_ROBIN;
+        ActorSystem.create(create(strategy, conf), master, conf);
+    }
+
+    private static Behavior<Void> create(RoutingStrategy strategy, Config conf) {
+        return Behaviors.setup(context -> {
+            // masterActor是发出消息的actor
+            ActorRef<Message.MasterCommand> masterActor = context.spawn(MasterActor.create(remoteAddr, strategy,
+                    conf.getDuration("masterworker.refresh-interval"),
+                    conf.getDuration("masterworker.ack-timeout"),
+                    conf.getInt("masterworker.max-unacked-per-worker")), "master-actor");
+            // printerActor是用于接收消息的actor
+            ActorRef<Message.JobResult> printerActor = context.spawn(PrinterActor.create(), "printer-actor");
+            // 把printerActor和消息一起发出去
+            masterActor.tell(new Message.Submit("I AM MASTER", printerActor));
+            return Behaviors.empty();
+        });
     }
 }
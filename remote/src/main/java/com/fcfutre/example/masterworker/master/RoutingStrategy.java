@@ -0,0 +1,23 @@
+package com.fcfutre.example.masterworker.master;
+
+/**
+ * MasterActor 在已解析的 worker 集合上的路由策略
+ */
+public enum RoutingStrategy {
+    /**
+     * 轮询，依次发送给下一个 worker
+     */
+    ROUND_ROBIN,
+    /**
+     * 广播，每条消息发送给所有 worker
+     */
+    BROADCAST,
+    /**
+     * 最小负载，按 worker 上报的处理速率估算未完成任务的耗时，发送给最早能处理完的 worker
+     */
+    LEAST_LOADED,
+    /**
+     * 拉取，任务先在 master 排队，worker 空闲时主动请求
+     */
+    WORK_PULLING
+}
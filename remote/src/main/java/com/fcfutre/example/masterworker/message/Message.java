@@ -0,0 +1,127 @@
+package com.fcfutre.example.masterworker.message;
+
+import akka.actor.typed.ActorRef;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * master 与 worker 之间的 typed 协议
+ *
+ * 跨节点的消息都实现 WireMessage，由 MessageSerializer 编码为紧凑的二进制格式；
+ * 构造器上保留了 jackson 注解，需要时也可以在配置中把 WireMessage 绑定到 jackson-cbor。
+ */
+public class Message {
+
+    /**
+     * 需要跨节点发送的消息，绑定到 MessageSerializer
+     */
+    public interface WireMessage {}
+
+    /**
+     * master 可以接收的消息
+     */
+    public interface MasterCommand {}
+
+    /**
+     * worker 可以接收的消息
+     */
+    public interface WorkerCommand {}
+
+    /**
+     * 本地请求者 -> master：提交任务，结果发送给 replyTo
+     */
+    public static final class Submit implements MasterCommand {
+        public final String payload;
+        public final ActorRef<JobResult> replyTo;
+
+        public Submit(String payload, ActorRef<JobResult> replyTo) {
+            this.payload = payload;
+            this.replyTo = replyTo;
+        }
+    }
+
+    /**
+     * master -> worker：master 已解析到该 worker，之后 worker 把结果和负载发送给 master
+     */
+    public static final class Register implements WorkerCommand, WireMessage {
+        public final ActorRef<MasterCommand> master;
+        // 是否为拉取模式，拉取模式下 worker 空闲时主动发送 WorkRequest
+        public final boolean pull;
+
+        @JsonCreator
+        public Register(@JsonProperty("master") ActorRef<MasterCommand> master,
+                        @JsonProperty("pull") boolean pull) {
+            this.master = master;
+            this.pull = pull;
+        }
+    }
+
+    /**
+     * master -> worker：任务，结果发送给 Register 中的 master
+     */
+    public static final class Job implements WorkerCommand, WireMessage {
+        public final long id;
+        public final String payload;
+
+        @JsonCreator
+        public Job(@JsonProperty("id") long id, @JsonProperty("payload") String payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * worker -> master -> 请求者：任务结果，master 通过任务 id 找到执行的 worker 和请求者
+     */
+    public static final class JobResult implements MasterCommand, WireMessage {
+        public final long id;
+        public final String result;
+
+        @JsonCreator
+        public JobResult(@JsonProperty("id") long id, @JsonProperty("result") String result) {
+            this.id = id;
+            this.result = result;
+        }
+
+        @Override
+        public String toString() {
+            return "JobResult{id=" + id + ", result='" + result + "'}";
+        }
+    }
+
+    /**
+     * worker -> master：定时上报的负载，同时作为 worker 的心跳
+     */
+    public static final class LoadReport implements MasterCommand, WireMessage {
+        public final ActorRef<WorkerCommand> worker;
+        // 进程 CPU 负载 0~1，不可用时为 -1
+        public final float cpu;
+        // 已接收未完成的任务数
+        public final int queueLength;
+        // 处理速率：每秒繁忙时间内完成的任务数，本周期没有完成任务时沿用上一次的值
+        public final float processedRate;
+
+        @JsonCreator
+        public LoadReport(@JsonProperty("worker") ActorRef<WorkerCommand> worker,
+                          @JsonProperty("cpu") float cpu,
+                          @JsonProperty("queueLength") int queueLength,
+                          @JsonProperty("processedRate") float processedRate) {
+            this.worker = worker;
+            this.cpu = cpu;
+            this.queueLength = queueLength;
+            this.processedRate = processedRate;
+        }
+    }
+
+    /**
+     * worker -> master：拉取模式下 worker 空闲，请求一个任务
+     */
+    public static final class WorkRequest implements MasterCommand, WireMessage {
+        public final ActorRef<WorkerCommand> worker;
+
+        @JsonCreator
+        public WorkRequest(@JsonProperty("worker") ActorRef<WorkerCommand> worker) {
+            this.worker = worker;
+        }
+    }
+}
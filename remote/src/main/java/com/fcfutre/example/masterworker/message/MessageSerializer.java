@@ -0,0 +1,223 @@
+package com.fcfutre.example.masterworker.message;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorRefResolver;
+import akka.actor.typed.javadsl.Adapter;
+import akka.serialization.ByteBufferSerializer;
+import akka.serialization.SerializerWithStringManifest;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * master/worker 协议的二进制序列化器
+ *
+ * 每种消息用一个字符的 manifest 区分，字段按固定顺序写入：整数使用变长编码，字符串为变长长度 + UTF-8 字节，
+ * ActorRef 使用 ActorRefResolver 的字符串格式。实现了 ByteBufferSerializer，artery 可以直接写入其发送缓冲区。
+ */
+public class MessageSerializer extends SerializerWithStringManifest implements ByteBufferSerializer {
+
+    private static final String REGISTER_MANIFEST = "R";
+    private static final String JOB_MANIFEST = "J";
+    private static final String JOB_RESULT_MANIFEST = "S";
+    private static final String LOAD_REPORT_MANIFEST = "L";
+    private static final String WORK_REQUEST_MANIFEST = "W";
+
+    private final ExtendedActorSystem system;
+    // 序列化器在 ActorSystem 启动过程中创建，resolver 延迟获取
+    private volatile ActorRefResolver resolver;
+
+    public MessageSerializer(ExtendedActorSystem system) {
+        this.system = system;
+    }
+
+    @Override
+    public int identifier() {
+        return 7301;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        if (o instanceof Message.Job) return JOB_MANIFEST;
+        if (o instanceof Message.JobResult) return JOB_RESULT_MANIFEST;
+        if (o instanceof Message.WorkRequest) return WORK_REQUEST_MANIFEST;
+        if (o instanceof Message.LoadReport) return LOAD_REPORT_MANIFEST;
+        if (o instanceof Message.Register) return REGISTER_MANIFEST;
+        throw new IllegalArgumentException("Can't serialize object of type " + o.getClass());
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        byte[] bytes = new byte[size(o)];
+        toBinary(o, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    @Override
+    public void toBinary(Object o, ByteBuffer buf) {
+        if (o instanceof Message.Job) {
+            Message.Job job = (Message.Job) o;
+            putVarLong(buf, job.id);
+            putString(buf, job.payload);
+        } else if (o instanceof Message.JobResult) {
+            Message.JobResult result = (Message.JobResult) o;
+            putVarLong(buf, result.id);
+            putString(buf, result.result);
+        } else if (o instanceof Message.WorkRequest) {
+            putString(buf, toRef(((Message.WorkRequest) o).worker));
+        } else if (o instanceof Message.LoadReport) {
+            Message.LoadReport report = (Message.LoadReport) o;
+            putString(buf, toRef(report.worker));
+            buf.putFloat(report.cpu);
+            putVarLong(buf, report.queueLength);
+            buf.putFloat(report.processedRate);
+        } else if (o instanceof Message.Register) {
+            Message.Register register = (Message.Register) o;
+            putString(buf, toRef(register.master));
+            buf.put(register.pull ? (byte) 1 : (byte) 0);
+        } else {
+            throw new IllegalArgumentException("Can't serialize object of type " + o.getClass());
+        }
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        return fromBinary(ByteBuffer.wrap(bytes), manifest);
+    }
+
+    @Override
+    public Object fromBinary(ByteBuffer buf, String manifest) throws NotSerializableException {
+        switch (manifest) {
+            case JOB_MANIFEST:
+                return new Message.Job(getVarLong(buf), getString(buf));
+            case JOB_RESULT_MANIFEST:
+                return new Message.JobResult(getVarLong(buf), getString(buf));
+            case WORK_REQUEST_MANIFEST:
+                return new Message.WorkRequest(resolver().resolveActorRef(getString(buf)));
+            case LOAD_REPORT_MANIFEST:
+                return new Message.LoadReport(resolver().resolveActorRef(getString(buf)),
+                        buf.getFloat(), (int) getVarLong(buf), buf.getFloat());
+            case REGISTER_MANIFEST:
+                return new Message.Register(resolver().resolveActorRef(getString(buf)), buf.get() == 1);
+            default:
+                throw new NotSerializableException(
+                        "Unimplemented deserialization of message with manifest [" + manifest + "] in "
+                                + getClass().getName());
+        }
+    }
+
+    /**
+     * 计算序列化后的字节数，用于 toBinary(Object) 一次分配准确大小的数组
+     */
+    private int size(Object o) {
+        if (o instanceof Message.Job) {
+            Message.Job job = (Message.Job) o;
+            return varLongSize(job.id) + stringSize(job.payload);
+        } else if (o instanceof Message.JobResult) {
+            Message.JobResult result = (Message.JobResult) o;
+            return varLongSize(result.id) + stringSize(result.result);
+        } else if (o instanceof Message.WorkRequest) {
+            return stringSize(toRef(((Message.WorkRequest) o).worker));
+        } else if (o instanceof Message.LoadReport) {
+            Message.LoadReport report = (Message.LoadReport) o;
+            return stringSize(toRef(report.worker)) + 4 + varLongSize(report.queueLength) + 4;
+        } else if (o instanceof Message.Register) {
+            return stringSize(toRef(((Message.Register) o).master)) + 1;
+        }
+        throw new IllegalArgumentException("Can't serialize object of type " + o.getClass());
+    }
+
+    private ActorRefResolver resolver() {
+        ActorRefResolver r = resolver;
+        if (r == null) {
+            r = ActorRefResolver.get(Adapter.toTyped(system));
+            resolver = r;
+        }
+        return r;
+    }
+
+    private String toRef(ActorRef<?> ref) {
+        return resolver().toSerializationFormat(ref);
+    }
+
+    private static void putVarLong(ByteBuffer buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buf) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarLong(buf, bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = (int) getVarLong(buf);
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static int stringSize(String s) {
+        int length = utf8Length(s);
+        return varLongSize(length) + length;
+    }
+
+    /**
+     * 不分配数组计算 UTF-8 编码长度
+     */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符被 getBytes 替换为 '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,92 @@
+package com.fcfutre.example.masterworker.message;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.Serializers;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * master/worker 消息序列化的简单基准
+ *
+ * 对同样的 Job、JobResult、LoadReport 分别用 MessageSerializer 和 jackson-cbor 做序列化 + 反序列化往返，
+ * 输出每秒往返次数和单条消息字节数；另外给出迁移前 master 发给 worker 的 String 消息作为参照。
+ * 参数：每种消息的往返次数，默认 1000000。
+ */
+public class SerializationBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final String CBOR_BINDING = "jackson-cbor";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Map<String, Object> overrideConfig = new TreeMap<>();
+        overrideConfig.put("akka.remote.artery.canonical.hostname", "127.0.0.1");
+        overrideConfig.put("akka.remote.artery.canonical.port", 0);
+        // 消息没有绑定到 jackson，对比时需要允许 jackson-cbor 处理这些类
+        overrideConfig.put("akka.serialization.jackson.allowed-class-prefix",
+                java.util.Collections.singletonList("com.fcfutre.example.masterworker.message"));
+        Config conf = ConfigFactory.parseMap(overrideConfig)
+                .withFallback(ConfigFactory.load("masterworker"));
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "serialization-benchmark", conf);
+        try {
+            Serialization serialization = SerializationExtension.get(Adapter.toClassic(system));
+            // 序列化后的 ActorRef 必须带地址，用 remote provider 的 system 创建
+            ActorRef<Message.WorkerCommand> worker =
+                    Adapter.toTyped(Adapter.toClassic(system).deadLetters());
+            String payload = "master call 'job-12345'";
+
+            Object[] messages = {
+                    new Message.Job(12345, payload),
+                    new Message.JobResult(12345, "worker_0 done " + payload),
+                    new Message.LoadReport(worker, 0.42f, 3, 125.5f)
+            };
+            Serializer binary = serialization.serializerFor(Message.Job.class);
+            // 按配置中 jackson-cbor 绑定名对应的 identifier 取得已创建的序列化器
+            Serializer cbor = serialization.serializerByIdentity()
+                    .apply(system.settings().config().getInt("akka.actor.serialization-identifiers." + CBOR_BINDING));
+
+            System.out.printf("%-12s %-16s %12s %8s%n", "message", "serializer", "msgs/sec", "bytes");
+            // jackson 序列化 ActorRef 时需要当前线程上的 ActorSystem 信息，artery 发送时也是这样设置的
+            akka.serialization.Serialization$.MODULE$.withTransportInformation((ExtendedActorSystem) Adapter.toClassic(system), () -> {
+                for (Object message : messages) {
+                    run(serialization, binary, message, iterations);
+                    run(serialization, cbor, message, iterations);
+                }
+                String legacy = "master call 'I AM MASTER'";
+                run(serialization, serialization.findSerializerFor(legacy), legacy, iterations);
+                return null;
+            });
+        } finally {
+            system.terminate();
+        }
+    }
+
+    private static void run(Serialization serialization, Serializer serializer, Object message, int iterations) {
+        String manifest = Serializers.manifestFor(serializer, message);
+        int bytes = 0;
+        double rate = 0;
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                byte[] binary = serializer.toBinary(message);
+                bytes = binary.length;
+                serialization.deserialize(binary, serializer.identifier(), manifest).get();
+            }
+            rate = iterations * 1e9 / (System.nanoTime() - start);
+        }
+        System.out.printf(Locale.ROOT, "%-12s %-16s %12.0f %8d%n",
+                message.getClass().getSimpleName(), serializer.getClass().getSimpleName(), rate, bytes);
+    }
+}
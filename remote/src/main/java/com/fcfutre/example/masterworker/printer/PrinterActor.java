@@ -1,18 +1,15 @@
 package com.fcfutre.example.masterworker.printer;
 
-import akka.actor.AbstractActor;
-import akka.event.Logging;
-import akka.event.LoggingAdapter;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import com.fcfutre.example.masterworker.message.Message;
 
-public class PrinterActor extends AbstractActor {
+public class PrinterActor {
 
-    LoggingAdapter logger = Logging.getLogger(getContext().system(), this);
-
-    @Override
-    public Receive createReceive() {
-        return receiveBuilder()
-                .match(String.class, msg -> {
-                    logger.info(msg);
-                }).build();
+    public static Behavior<Message.JobResult> create() {
+        return Behaviors.receive((context, result) -> {
+            context.getLog().info(result.toString());
+            return Behaviors.same();
+        });
     }
 }
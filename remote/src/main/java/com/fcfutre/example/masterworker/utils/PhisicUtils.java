@@ -1,24 +1,151 @@
 package com.fcfutre.example.masterworker.utils;
 
-import lombok.Getter;
-
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 本机物理信息
+ *
+ * 后台守护线程按固定间隔（系统属性 phisic.sample.interval.ms，默认1000毫秒）采样进程/系统 CPU 负载、
+ * 堆内存、堆外内存（非堆 + direct/mapped 缓冲区）和 RSS（/proc/self/status），结果整体写入一个 volatile
+ * 快照，读取方只做一次 volatile 读，不加锁也不产生系统调用。本机 IP 只在类加载时解析一次。
+ */
 public class PhisicUtils {
 
-    private static String localIP = null;
-    @Getter
-    private static String cpuUsage = null;
-    @Getter
-    private static String memoryUsage = null;
+    private static final long SAMPLE_INTERVAL_MILLIS = Long.getLong("phisic.sample.interval.ms", 1000L);
+    private static final long MB = 1024 * 1024;
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    private static final String localIP = resolveLocalIP();
+    private static final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private static final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private static final List<BufferPoolMXBean> bufferPools =
+            ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+
+    private static volatile Snapshot snapshot = sample();
+
+    static {
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "phisic-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(() -> snapshot = sample(),
+                SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 一次采样的结果，不可变
+     */
+    public static final class Snapshot {
+        // 进程/系统 CPU 负载，0~1，不可用时为 -1
+        public final double processCpuLoad;
+        public final double systemCpuLoad;
+        // 字节，不可用时为 -1
+        public final long heapUsed;
+        public final long offHeapUsed;
+        public final long rss;
+        // 预先格式化好的描述，供 WorkerInfo 直接使用
+        public final String cpuUsage;
+        public final String memoryUsage;
+
+        Snapshot(double processCpuLoad, double systemCpuLoad, long heapUsed, long offHeapUsed, long rss) {
+            this.processCpuLoad = processCpuLoad;
+            this.systemCpuLoad = systemCpuLoad;
+            this.heapUsed = heapUsed;
+            this.offHeapUsed = offHeapUsed;
+            this.rss = rss;
+            this.cpuUsage = String.format(Locale.ROOT, "process=%s, system=%s",
+                    percent(processCpuLoad), percent(systemCpuLoad));
+            this.memoryUsage = String.format(Locale.ROOT, "heap=%dMB, offHeap=%dMB, rss=%s",
+                    heapUsed / MB, offHeapUsed / MB, rss < 0 ? "n/a" : rss / MB + "MB");
+        }
+    }
 
     public static String getLocalIP() {
+        return localIP;
+    }
+
+    public static String getCpuUsage() {
+        return snapshot.cpuUsage;
+    }
+
+    public static String getMemoryUsage() {
+        return snapshot.memoryUsage;
+    }
+
+    /**
+     * @return 最近一次采样的快照
+     */
+    public static Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private static String resolveLocalIP() {
         try {
-            localIP = InetAddress.getLocalHost().toString().split("/")[1];
+            return InetAddress.getLocalHost().getHostAddress();
         } catch (UnknownHostException e) {
             e.printStackTrace();
+            return null;
         }
-        return localIP;
+    }
+
+    /**
+     * 采样一次，后台线程按间隔调用
+     */
+    static Snapshot sample() {
+        double processCpu = -1;
+        double systemCpu = -1;
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) osBean;
+            processCpu = os.getProcessCpuLoad();
+            systemCpu = os.getSystemCpuLoad();
+        }
+        long offHeap = memoryBean.getNonHeapMemoryUsage().getUsed();
+        for (BufferPoolMXBean pool : bufferPools) {
+            offHeap += pool.getMemoryUsed();
+        }
+        return new Snapshot(processCpu, systemCpu, memoryBean.getHeapMemoryUsage().getUsed(), offHeap, readRss());
+    }
+
+    /**
+     * 从 /proc/self/status 的 VmRSS 行读取常驻内存，非 Linux 返回 -1
+     */
+    private static long readRss() {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return -1;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(PROC_STATUS, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    // 格式：VmRSS:	  123456 kB
+                    String kb = line.substring(6).trim().split("\\s+")[0];
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static String percent(double load) {
+        return load < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f%%", load * 100);
     }
 }
@@ -1,27 +1,179 @@
 package com.fcfutre.example.masterworker.worker;
 
-import akka.actor.AbstractActor;
-import akka.event.Logging;
-import akka.event.LoggingAdapter;import com.fcfutre.example.masterworker.utils.PhisicUtils;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
+import com.fcfutre.example.masterworker.message.Message;
+import com.fcfutre.example.masterworker.utils.PhisicUtils;
 
-public class WorkerActor extends AbstractActor {
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-    private LoggingAdapter logger = Logging.getLogger(getContext().system(), this);
+/**
+ * worker actor
+ *
+ * 收到 Job 时放入本地队列依次处理，完成后把 JobResult 发送给 master，jobDuration 用于模拟不同 worker 的处理速度。
+ * 收到 master 的 Register 后按 reportInterval 定时上报 LoadReport，拉取模式下队列空闲时发送 WorkRequest。
+ *
+ * master 会重新投递超时未确认的任务，worker 按任务 id 去重：最近 DEDUP_CAPACITY 个任务中，
+ * 还在队列中的重复任务直接忽略，已完成的重新发送缓存的结果而不再执行。
+ */
+public class WorkerActor extends AbstractBehavior<Message.WorkerCommand> {
+
+    private static final Duration DEFAULT_REPORT_INTERVAL = Duration.ofSeconds(1);
+    // 用于去重的最近任务数
+    private static final int DEDUP_CAPACITY = 4096;
+
+    /**
+     * 模拟的任务处理完成
+     */
+    private enum JobDone implements Message.WorkerCommand {
+        INSTANCE
+    }
+
+    /**
+     * 定时上报负载
+     */
+    private enum ReportLoad implements Message.WorkerCommand {
+        INSTANCE
+    }
+
+    public static Behavior<Message.WorkerCommand> create() {
+        return create(Duration.ZERO, DEFAULT_REPORT_INTERVAL);
+    }
+
+    public static Behavior<Message.WorkerCommand> create(Duration jobDuration, Duration reportInterval) {
+        return Behaviors.setup(context ->
+                Behaviors.withTimers(timers -> new WorkerActor(context, timers, jobDuration, reportInterval)));
+    }
+
+    private final TimerScheduler<Message.WorkerCommand> timers;
+    private final Duration jobDuration;
+    private final Duration reportInterval;
+
+    // 同一个采样快照内复用已生成的 WorkerInfo 文本
+    private PhisicUtils.Snapshot lastSnapshot;
+    private String lastWorkerInfo;
+
+    private ActorRef<Message.MasterCommand> master;
+    private boolean pull;
+    // 已接收未完成的任务，队首为正在处理的任务
+    private final Deque<Message.Job> queue = new ArrayDeque<>();
+    private long jobStartNanos;
+    // 最近收到的任务 id -> 结果，未完成时为 null，按插入顺序淘汰
+    private final Map<Long, Message.JobResult> recentJobs = new LinkedHashMap<Long, Message.JobResult>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Message.JobResult> eldest) {
+            return size() > DEDUP_CAPACITY;
+        }
+    };
+    // 本上报周期内完成的任务数和繁忙时间
+    private int processedInPeriod;
+    private long busyNanosInPeriod;
+    private float processedRate;
+
+    private WorkerActor(ActorContext<Message.WorkerCommand> context,
+                        TimerScheduler<Message.WorkerCommand> timers,
+                        Duration jobDuration,
+                        Duration reportInterval) {
+        super(context);
+        this.timers = timers;
+        this.jobDuration = jobDuration;
+        this.reportInterval = reportInterval;
+    }
 
     @Override
-    public Receive createReceive() {
-        return receiveBuilder()
-                .match(String.class, msg -> {
-                    logger.info("get msg [" + msg + "] from " + getSender() + " by " + getContext().getSelf());
-                    // 反馈结果给printerActor，即这里的getSender()
-                    getSender().tell(getWorkerInfo().toString(), getSelf());
-                }).build();
-    }
-
-    private WorkerInfo getWorkerInfo() {
-        return new WorkerInfo(
-                PhisicUtils.getLocalIP(),
-                PhisicUtils.getCpuUsage(),
-                PhisicUtils.getMemoryUsage());
+    public Receive<Message.WorkerCommand> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(Message.Register.class, this::onRegister)
+                .onMessage(Message.Job.class, this::onJob)
+                .onMessageEquals(JobDone.INSTANCE, this::onJobDone)
+                .onMessageEquals(ReportLoad.INSTANCE, this::reportLoad)
+                .build();
+    }
+
+    private Behavior<Message.WorkerCommand> onRegister(Message.Register register) {
+        master = register.master;
+        pull = register.pull;
+        timers.startTimerWithFixedDelay(ReportLoad.INSTANCE, ReportLoad.INSTANCE, reportInterval);
+        if (pull && queue.isEmpty()) {
+            master.tell(new Message.WorkRequest(getContext().getSelf()));
+        }
+        return this;
+    }
+
+    private Behavior<Message.WorkerCommand> onJob(Message.Job job) {
+        getContext().getLog().debug("get job [{}] {}", job.id, job.payload);
+        if (recentJobs.containsKey(job.id)) {
+            Message.JobResult result = recentJobs.get(job.id);
+            getContext().getLog().debug("duplicate job [{}], {}", job.id, result == null ? "in progress" : "resend result");
+            if (result != null && master != null) {
+                master.tell(result);
+                // 拉取模式下 master 因本 worker 的 WorkRequest 才发出这个任务，需要重新请求
+                if (pull && queue.isEmpty()) {
+                    master.tell(new Message.WorkRequest(getContext().getSelf()));
+                }
+            }
+            return this;
+        }
+        recentJobs.put(job.id, null);
+        queue.add(job);
+        if (queue.size() == 1) {
+            startJob();
+        }
+        return this;
+    }
+
+    private void startJob() {
+        jobStartNanos = System.nanoTime();
+        if (jobDuration.isZero()) {
+            onJobDone();
+        } else {
+            timers.startSingleTimer(JobDone.INSTANCE, JobDone.INSTANCE, jobDuration);
+        }
+    }
+
+    private Behavior<Message.WorkerCommand> onJobDone() {
+        Message.Job done = queue.poll();
+        processedInPeriod++;
+        busyNanosInPeriod += System.nanoTime() - jobStartNanos;
+        Message.JobResult result = new Message.JobResult(done.id, getWorkerInfo());
+        recentJobs.replace(done.id, result);
+        if (master != null) {
+            master.tell(result);
+        }
+        if (!queue.isEmpty()) {
+            startJob();
+        } else if (pull && master != null) {
+            master.tell(new Message.WorkRequest(getContext().getSelf()));
+        }
+        return this;
+    }
+
+    private Behavior<Message.WorkerCommand> reportLoad() {
+        if (processedInPeriod > 0 && busyNanosInPeriod > 0) {
+            processedRate = (float) (processedInPeriod * 1e9 / busyNanosInPeriod);
+        }
+        processedInPeriod = 0;
+        busyNanosInPeriod = 0;
+        master.tell(new Message.LoadReport(getContext().getSelf(),
+                (float) PhisicUtils.getSnapshot().processCpuLoad, queue.size(), processedRate));
+        return this;
+    }
+
+    private String getWorkerInfo() {
+        PhisicUtils.Snapshot snapshot = PhisicUtils.getSnapshot();
+        if (snapshot != lastSnapshot) {
+            lastSnapshot = snapshot;
+            lastWorkerInfo = WorkerInfo.of(PhisicUtils.getLocalIP(), snapshot).toString();
+        }
+        return lastWorkerInfo;
     }
 }
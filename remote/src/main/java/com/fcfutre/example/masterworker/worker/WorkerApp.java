@@ -1,46 +1,40 @@
 package com.fcfutre.example.masterworker.worker;
 
-import akka.actor.ActorRef;
-import akka.actor.ActorSelection;
-import akka.actor.ActorSystem;
-import akka.actor.Props;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.TreeMap;
 
 public class WorkerApp {
 
-    private static ActorSystem workerSystem;
-    private static Props props;
     private static Integer workerCount = 3;
     private static String workerSystemName = "worker-system";
-    private static String askStr = "hello";
 
     public static void main(String[] args) {
         Map<String, Object> overrideConfig = new TreeMap<>();
-        overrideConfig.put("akka.actor.provider", "akka.remote.RemoteActorRefProvider");
         overrideConfig.put("akka.remote.artery.canonical.hostname", "127.0.0.1");
         overrideConfig.put("akka.remote.artery.canonical.port", 8787);
-        Config conf = ConfigFactory.parseMap(overrideConfig);
+        Config conf = ConfigFactory.parseMap(overrideConfig)
+                .withFallback(ConfigFactory.load("masterworker"));
 
-        workerSystem = ActorSystem.create(workerSystemName, conf);
-        props = Props.create(WorkerActor.class);
-        genManyWorker(workerCount);
-        sendTest(askStr);
+        // 可选参数：每个任务模拟的处理耗时（毫秒）
+        Duration jobDuration = Duration.ofMillis(args.length > 0 ? Long.parseLong(args[0]) : 0);
+        Duration reportInterval = conf.getDuration("masterworker.report-interval");
+        ActorSystem.create(create(jobDuration, reportInterval), workerSystemName, conf);
     }
 
-    // 建多个actor，成一个组
-    private static void genManyWorker(int count) {
-        for (int i = 0; i < count; i++) {
-            workerSystem.actorOf(props, "worker_" + i);
-        }
-    }
-
-    // 向genManyWorker()生成的actor组发消息，测试
-    private static void sendTest(String msg) {
-        ActorSelection sel = workerSystem.actorSelection("akka://worker-system/user/worker_*");
-        sel.tell(msg, ActorRef.noSender());
+    // 建多个actor，成一个组，任务由 master 解析到 worker 后通过 Register、Job 下发
+    private static Behavior<Void> create(Duration jobDuration, Duration reportInterval) {
+        return Behaviors.setup(context -> {
+            for (int i = 0; i < workerCount; i++) {
+                context.spawn(WorkerActor.create(jobDuration, reportInterval), "worker_" + i);
+            }
+            return Behaviors.empty();
+        });
     }
 }
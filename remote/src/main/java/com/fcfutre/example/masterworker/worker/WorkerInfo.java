@@ -1,5 +1,7 @@
 package com.fcfutre.example.masterworker.worker;
 
+import com.fcfutre.example.masterworker.utils.PhisicUtils;
+
 public class WorkerInfo {
 
     String ip;
@@ -12,6 +14,13 @@ public class WorkerInfo {
         this.memoryUsage = memoryUsage;
     }
 
+    /**
+     * 由采样快照构建，不做任何系统调用
+     */
+    public static WorkerInfo of(String ip, PhisicUtils.Snapshot snapshot) {
+        return new WorkerInfo(ip, snapshot.cpuUsage, snapshot.memoryUsage);
+    }
+
     @Override
     public String toString() {
         return "WorkerInfo{" +
@@ -0,0 +1,366 @@
+package com.fcfutre.example.masterworker.master;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import com.fcfutre.example.masterworker.message.Message;
+import com.fcfutre.example.masterworker.worker.WorkerActor;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MasterActor 路由策略和可靠投递测试
+ *
+ * worker 由 TestProbe 扮演，负载和 WorkRequest 由测试直接发送给 master，不依赖实际的处理耗时；
+ * 比较各策略完成时间的用例使用按轮推进的模拟 worker，以轮数代替实际耗时
+ */
+public class MasterActorTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    // 模拟的 worker 处理一个任务所需的轮数
+    private static final int[] ROUNDS_PER_JOB = {1, 2, 6};
+    private static final int MAKESPAN_JOBS = 60;
+    private static final int MAKESPAN_MAX_UNACKED = 32;
+
+    /**
+     * 测试用例：LEAST_LOADED 按上报的处理速率分配，速率高 10 倍的 worker 在未确认任务达到 10 个之前优先
+     */
+    @Test
+    public void testLeastLoadedUsesReportedRate() {
+        TestProbe<Message.WorkerCommand> fast = testKit.createTestProbe("least_worker_fast");
+        TestProbe<Message.WorkerCommand> slow = testKit.createTestProbe("least_worker_slow");
+        ActorRef<Message.MasterCommand> master = spawnMaster(RoutingStrategy.LEAST_LOADED, "least_worker_", fast, slow);
+        TestProbe<Message.JobResult> probe = testKit.createTestProbe();
+
+        master.tell(new Message.LoadReport(fast.getRef(), 0.1f, 0, 10));
+        master.tell(new Message.LoadReport(slow.getRef(), 0.1f, 0, 1));
+        for (int i = 0; i < 6; i++) {
+            master.tell(new Message.Submit("job-" + i, probe.getRef()));
+        }
+        List<Message.Job> jobs = fast.receiveSeveralMessages(6).stream()
+                .map(Message.Job.class::cast).collect(Collectors.toList());
+        slow.expectNoMessage(Duration.ofMillis(100));
+
+        // 慢 worker 的速率上报为更高的值后，新任务改为发给它
+        master.tell(new Message.LoadReport(slow.getRef(), 0.1f, 0, 100));
+        master.tell(new Message.Submit("job-6", probe.getRef()));
+        slow.expectMessageClass(Message.Job.class);
+        fast.expectNoMessage(Duration.ofMillis(100));
+
+        master.tell(new Message.JobResult(jobs.get(0).id, "done"));
+        assertEquals(jobs.get(0).id, probe.receiveMessage().id);
+    }
+
+    /**
+     * 测试用例：WORK_PULLING 只把任务发给发送了 WorkRequest 的 worker，每个 WorkRequest 一个任务
+     */
+    @Test
+    public void testWorkPullingSendsOnlyOnRequest() {
+        TestProbe<Message.WorkerCommand> first = testKit.createTestProbe("pull_worker_a");
+        TestProbe<Message.WorkerCommand> second = testKit.createTestProbe("pull_worker_b");
+        ActorRef<Message.MasterCommand> master = spawnMaster(RoutingStrategy.WORK_PULLING, "pull_worker_",
+                first, second);
+        TestProbe<Message.JobResult> probe = testKit.createTestProbe();
+
+        for (int i = 0; i < 3; i++) {
+            master.tell(new Message.Submit("job-" + i, probe.getRef()));
+        }
+        first.expectNoMessage(Duration.ofMillis(100));
+        second.expectNoMessage(Duration.ofMillis(100));
+
+        master.tell(new Message.WorkRequest(second.getRef()));
+        Message.Job job0 = second.expectMessageClass(Message.Job.class);
+        master.tell(new Message.WorkRequest(first.getRef()));
+        Message.Job job1 = first.expectMessageClass(Message.Job.class);
+        first.expectNoMessage(Duration.ofMillis(100));
+
+        master.tell(new Message.JobResult(job1.id, "done"));
+        master.tell(new Message.WorkRequest(first.getRef()));
+        assertEquals(job1.id, probe.receiveMessage().id);
+        Message.Job job2 = first.expectMessageClass(Message.Job.class);
+        assertEquals("master call 'job-2'", job2.payload);
+        assertEquals("master call 'job-0'", job0.payload);
+    }
+
+    /**
+     * 测试用例：BROADCAST 把每个任务的副本发给所有 worker，请求者收到每个副本的结果
+     */
+    @Test
+    public void testBroadcastSendsToAllWorkers() {
+        TestProbe<Message.WorkerCommand> first = testKit.createTestProbe("broadcast_worker_a");
+        TestProbe<Message.WorkerCommand> second = testKit.createTestProbe("broadcast_worker_b");
+        ActorRef<Message.MasterCommand> master = spawnMaster(RoutingStrategy.BROADCAST, "broadcast_worker_",
+                first, second);
+        TestProbe<Message.JobResult> probe = testKit.createTestProbe();
+
+        master.tell(new Message.Submit("job", probe.getRef()));
+        Message.Job a = first.expectMessageClass(Message.Job.class);
+        Message.Job b = second.expectMessageClass(Message.Job.class);
+        assertEquals(a.payload, b.payload);
+        assertNotEquals(a.id, b.id);
+
+        master.tell(new Message.JobResult(a.id, "a"));
+        master.tell(new Message.JobResult(b.id, "b"));
+        assertEquals(2, probe.receiveSeveralMessages(2).size());
+    }
+
+    /**
+     * 测试用例：三个 worker 处理一个任务分别需要 1、2、6 轮，拉取和最小负载的完成轮数都少于广播和轮询
+     */
+    @Test
+    public void testLoadBasedStrategiesBeatBroadcast() {
+        int broadcast = makespan(RoutingStrategy.BROADCAST);
+        int roundRobin = makespan(RoutingStrategy.ROUND_ROBIN);
+        int leastLoaded = makespan(RoutingStrategy.LEAST_LOADED);
+        int pulling = makespan(RoutingStrategy.WORK_PULLING);
+        System.out.printf("makespan(rounds) broadcast=%d, round-robin=%d, least-loaded=%d, work-pulling=%d%n",
+                broadcast, roundRobin, leastLoaded, pulling);
+
+        assertTrue("work pulling " + pulling + " >= broadcast " + broadcast, pulling < broadcast);
+        assertTrue("least loaded " + leastLoaded + " >= broadcast " + broadcast, leastLoaded < broadcast);
+        assertTrue("work pulling " + pulling + " >= round robin " + roundRobin, pulling < roundRobin);
+        assertTrue("least loaded " + leastLoaded + " >= round robin " + roundRobin, leastLoaded < roundRobin);
+    }
+
+    /**
+     * 测试用例：每个任务的第一次投递都丢失，超时后重新投递，请求者对每个任务恰好收到一次结果
+     */
+    @Test
+    public void testRedeliversLostJobs() {
+        ActorRef<Message.WorkerCommand> lossy = testKit.spawn(lossyWorker(), "lossy_worker");
+        ActorRef<Message.MasterCommand> master = testKit.spawn(MasterActor.create(
+                lossy.path().toStringWithoutAddress(), RoutingStrategy.ROUND_ROBIN,
+                Duration.ofSeconds(10), Duration.ofMillis(300), 4), "lossy_master");
+        TestProbe<Message.JobResult> probe = testKit.createTestProbe();
+
+        for (int i = 0; i < 10; i++) {
+            master.tell(new Message.Submit("job-" + i, probe.getRef()));
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Message.JobResult result : probe.receiveSeveralMessages(10, Duration.ofSeconds(10))) {
+            ids.add(result.id);
+        }
+        assertEquals(10, ids.size());
+        probe.expectNoMessage(Duration.ofMillis(500));
+    }
+
+    /**
+     * 测试用例：worker 不返回结果时 master 最多发送 maxUnacked 个任务，收到一个确认后再发送一个
+     */
+    @Test
+    public void testMaxUnackedWindow() {
+        TestProbe<Message.WorkerCommand> worker = testKit.createTestProbe("window_worker");
+        ActorRef<Message.MasterCommand> master = testKit.spawn(MasterActor.create(
+                worker.getRef().path().toStringWithoutAddress(), RoutingStrategy.ROUND_ROBIN,
+                Duration.ofSeconds(10), Duration.ofSeconds(10), 3), "window_master");
+        TestProbe<Message.JobResult> probe = testKit.createTestProbe();
+        worker.expectMessageClass(Message.Register.class);
+
+        for (int i = 0; i < 10; i++) {
+            master.tell(new Message.Submit("job-" + i, probe.getRef()));
+        }
+        Message.Job first = worker.expectMessageClass(Message.Job.class);
+        worker.expectMessageClass(Message.Job.class);
+        worker.expectMessageClass(Message.Job.class);
+        worker.expectNoMessage(Duration.ofMillis(300));
+
+        master.tell(new Message.JobResult(first.id, "done"));
+        assertEquals(first.id, probe.receiveMessage().id);
+        worker.expectMessageClass(Message.Job.class);
+        worker.expectNoMessage(Duration.ofMillis(300));
+    }
+
+    /**
+     * 测试用例：拉取模式下任务确认超时后重新入队，没有空闲 worker 时仍在队列中；原 worker 迟到的结果完成该任务，
+     * 任务移出队列，不会再次发出
+     */
+    @Test
+    public void testLateResultCompletesRequeuedJob() {
+        TestProbe<Message.WorkerCommand> worker = testKit.createTestProbe("late_worker");
+        Duration ackTimeout = Duration.ofMillis(200);
+        ActorRef<Message.MasterCommand> master = testKit.spawn(MasterActor.create(
+                worker.getRef().path().toStringWithoutAddress(), RoutingStrategy.WORK_PULLING,
+                Duration.ofMinutes(1), ackTimeout, 4), "late_master");
+        TestProbe<Message.JobResult> probe = testKit.createTestProbe();
+        worker.expectMessageClass(Message.Register.class);
+
+        master.tell(new Message.Submit("job-0", probe.getRef()));
+        master.tell(new Message.WorkRequest(worker.getRef()));
+        Message.Job job = worker.expectMessageClass(Message.Job.class);
+        // 等待超过确认超时，任务重新入队；worker 没有再发送 WorkRequest，任务留在队列中
+        worker.expectNoMessage(ackTimeout.multipliedBy(3));
+
+        master.tell(new Message.JobResult(job.id, "late"));
+        Message.JobResult result = probe.receiveMessage();
+        assertEquals(job.id, result.id);
+        assertEquals("late", result.result);
+
+        master.tell(new Message.WorkRequest(worker.getRef()));
+        worker.expectNoMessage(Duration.ofMillis(100));
+        master.tell(new Message.Submit("job-1", probe.getRef()));
+        Message.Job next = worker.expectMessageClass(Message.Job.class);
+        assertEquals("master call 'job-1'", next.payload);
+        probe.expectNoMessage(Duration.ofMillis(100));
+    }
+
+    /**
+     * 模拟时间的一轮：每个 worker 推进一轮，回复本轮完成的任务数
+     */
+    private static final class Round implements Message.WorkerCommand {
+        final ActorRef<Integer> replyTo;
+
+        Round(ActorRef<Integer> replyTo) {
+            this.replyTo = replyTo;
+        }
+    }
+
+    /**
+     * 按模拟时间处理任务的 worker：每个任务需要 roundsPerJob 轮，收到 Round 时才推进。
+     * 注册后上报与速度成比例的速率；拉取模式下空闲时先发 WorkRequest 再发 JobResult，
+     * 因此请求者收到结果时 master 已经把下一个任务发给了 worker
+     */
+    private static Behavior<Message.WorkerCommand> simulatedWorker(int roundsPerJob, AtomicInteger received,
+                                                                  ActorRef<String> registered) {
+        return Behaviors.setup(context -> {
+            Deque<Long> jobs = new ArrayDeque<>();
+            int[] progress = new int[1];
+            List<Message.Register> register = new ArrayList<>(1);
+            return Behaviors.receive(Message.WorkerCommand.class)
+                    .onMessage(Message.Register.class, message -> {
+                        register.add(message);
+                        message.master.tell(new Message.LoadReport(context.getSelf(), 0.1f, 0, 6f / roundsPerJob));
+                        if (message.pull) {
+                            message.master.tell(new Message.WorkRequest(context.getSelf()));
+                        }
+                        registered.tell(context.getSelf().path().name());
+                        return Behaviors.same();
+                    })
+                    .onMessage(Message.Job.class, job -> {
+                        received.incrementAndGet();
+                        jobs.add(job.id);
+                        return Behaviors.same();
+                    })
+                    .onMessage(Round.class, round -> {
+                        int completed = 0;
+                        if (!jobs.isEmpty() && ++progress[0] == roundsPerJob) {
+                            progress[0] = 0;
+                            long id = jobs.poll();
+                            Message.Register master = register.get(0);
+                            if (master.pull && jobs.isEmpty()) {
+                                master.master.tell(new Message.WorkRequest(context.getSelf()));
+                            }
+                            master.master.tell(new Message.JobResult(id, "done"));
+                            completed = 1;
+                        }
+                        round.replyTo.tell(completed);
+                        return Behaviors.same();
+                    })
+                    .build();
+        });
+    }
+
+    /**
+     * 用模拟时间的 worker 处理 MAKESPAN_JOBS 个任务，返回全部结果到达所需的轮数。每轮等所有 worker 回复、
+     * 请求者收到本轮的全部结果后再开始下一轮
+     */
+    private static int makespan(RoutingStrategy strategy) {
+        String prefix = "makespan_" + strategy.name().toLowerCase() + "_";
+        AtomicInteger received = new AtomicInteger();
+        TestProbe<String> registered = testKit.createTestProbe();
+        List<ActorRef<Message.WorkerCommand>> workers = new ArrayList<>();
+        for (int i = 0; i < ROUNDS_PER_JOB.length; i++) {
+            workers.add(testKit.spawn(simulatedWorker(ROUNDS_PER_JOB[i], received, registered.getRef()),
+                    prefix + "worker_" + i));
+        }
+        String workerPath = workers.get(0).path().parent().toStringWithoutAddress() + "/" + prefix + "worker_*";
+        ActorRef<Message.MasterCommand> master = testKit.spawn(MasterActor.create(workerPath, strategy,
+                Duration.ofMinutes(1), Duration.ofMinutes(1), MAKESPAN_MAX_UNACKED), prefix + "master");
+        registered.receiveSeveralMessages(workers.size());
+
+        TestProbe<Message.JobResult> results = testKit.createTestProbe();
+        for (int i = 0; i < MAKESPAN_JOBS; i++) {
+            master.tell(new Message.Submit("job-" + i, results.getRef()));
+        }
+        // 等待提交时的首批任务全部到达 worker
+        int window = Math.min(MAKESPAN_JOBS, MAKESPAN_MAX_UNACKED);
+        int initial = strategy == RoutingStrategy.BROADCAST ? window * workers.size()
+                : strategy == RoutingStrategy.WORK_PULLING ? workers.size()
+                : Math.min(MAKESPAN_JOBS, MAKESPAN_MAX_UNACKED * workers.size());
+        results.awaitAssert(() -> {
+            assertEquals(initial, received.get());
+            return null;
+        });
+
+        int expected = strategy == RoutingStrategy.BROADCAST ? MAKESPAN_JOBS * workers.size() : MAKESPAN_JOBS;
+        TestProbe<Integer> rounds = testKit.createTestProbe();
+        int done = 0;
+        int round = 0;
+        while (done < expected) {
+            round++;
+            workers.forEach(worker -> worker.tell(new Round(rounds.getRef())));
+            int completed = rounds.receiveSeveralMessages(workers.size()).stream().mapToInt(Integer::intValue).sum();
+            if (completed > 0) {
+                results.receiveSeveralMessages(completed);
+            }
+            done += completed;
+        }
+        return round;
+    }
+
+    /**
+     * 丢弃每个任务第一次投递的 worker，其余消息转发给真正的 WorkerActor
+     */
+    private static Behavior<Message.WorkerCommand> lossyWorker() {
+        return Behaviors.setup(context -> {
+            ActorRef<Message.WorkerCommand> worker = context.spawn(WorkerActor.create(), "worker");
+            Set<Long> seen = new HashSet<>();
+            return Behaviors.receive(Message.WorkerCommand.class)
+                    .onMessage(Message.Job.class, job -> {
+                        if (seen.add(job.id)) {
+                            return Behaviors.same();
+                        }
+                        worker.tell(job);
+                        return Behaviors.same();
+                    })
+                    .onAnyMessage(message -> {
+                        worker.tell(message);
+                        return Behaviors.same();
+                    })
+                    .build();
+        });
+    }
+
+    /**
+     * 创建匹配 prefix 开头的 worker 的 master，等待每个 worker 收到 Register，即 master 已解析到全部 worker
+     */
+    @SafeVarargs
+    private static ActorRef<Message.MasterCommand> spawnMaster(RoutingStrategy strategy, String prefix,
+                                                               TestProbe<Message.WorkerCommand>... workers) {
+        String workerPath = workers[0].getRef().path().parent().toStringWithoutAddress() + "/" + prefix + "*";
+        ActorRef<Message.MasterCommand> master = testKit.spawn(MasterActor.create(workerPath, strategy,
+                Duration.ofMinutes(1), Duration.ofMinutes(1), 32), prefix + "master");
+        for (TestProbe<Message.WorkerCommand> worker : workers) {
+            Message.Register register = worker.expectMessageClass(Message.Register.class);
+            assertEquals(strategy == RoutingStrategy.WORK_PULLING, register.pull);
+        }
+        return master;
+    }
+}
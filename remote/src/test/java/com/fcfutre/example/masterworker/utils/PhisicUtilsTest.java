@@ -0,0 +1,55 @@
+package com.fcfutre.example.masterworker.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PhisicUtils 采样快照测试
+ */
+public class PhisicUtilsTest {
+
+    /**
+     * 测试用例：快照中的数值有效，预先格式化的描述与快照一致
+     */
+    @Test
+    public void testSnapshot() {
+        PhisicUtils.Snapshot snapshot = PhisicUtils.getSnapshot();
+        assertTrue(snapshot.heapUsed > 0);
+        assertTrue(snapshot.offHeapUsed > 0);
+        assertTrue(snapshot.processCpuLoad <= 1);
+        assertTrue(snapshot.systemCpuLoad <= 1);
+        assertTrue(snapshot.cpuUsage, snapshot.cpuUsage.startsWith("process="));
+        assertTrue(snapshot.memoryUsage, snapshot.memoryUsage.startsWith("heap="));
+    }
+
+    /**
+     * 测试用例：每次采样得到新的快照，描述由同一次采样的数值格式化
+     */
+    @Test
+    public void testSample() {
+        PhisicUtils.Snapshot first = PhisicUtils.sample();
+        PhisicUtils.Snapshot second = PhisicUtils.sample();
+        assertNotSame(first, second);
+        assertTrue(second.heapUsed > 0);
+        assertTrue(second.memoryUsage, second.memoryUsage.startsWith("heap=" + second.heapUsed / (1024 * 1024) + "MB"));
+        assertTrue(second.memoryUsage,
+                second.memoryUsage.contains("offHeap=" + second.offHeapUsed / (1024 * 1024) + "MB"));
+    }
+
+    /**
+     * 测试用例：后台线程按间隔替换快照
+     */
+    @Test
+    public void testSnapshotRefreshed() throws InterruptedException {
+        PhisicUtils.Snapshot first = PhisicUtils.getSnapshot();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (PhisicUtils.getSnapshot() == first && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertNotSame(first, PhisicUtils.getSnapshot());
+    }
+}
@@ -0,0 +1,89 @@
+package com.fcfutre.example.masterworker.worker;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import com.fcfutre.example.masterworker.message.Message;
+import com.fcfutre.example.masterworker.utils.PhisicUtils;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WorkerActor 去重、结果和负载上报测试
+ */
+public class WorkerActorTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource();
+
+    /**
+     * 测试用例：处理中的重复任务被忽略，已完成的重复任务重新发送缓存的结果
+     */
+    @Test
+    public void testDuplicateJobs() {
+        TestProbe<Message.MasterCommand> master = testKit.createTestProbe();
+        ActorRef<Message.WorkerCommand> worker =
+                testKit.spawn(WorkerActor.create(Duration.ofMillis(200), Duration.ofMinutes(1)));
+        worker.tell(new Message.Register(master.getRef(), false));
+
+        worker.tell(new Message.Job(1, "job-1"));
+        worker.tell(new Message.Job(1, "job-1"));
+        Message.JobResult result = master.expectMessageClass(Message.JobResult.class);
+        assertEquals(1, result.id);
+        master.expectNoMessage(Duration.ofMillis(400));
+
+        worker.tell(new Message.Job(1, "job-1"));
+        Message.JobResult resent = master.expectMessageClass(Message.JobResult.class, Duration.ofMillis(100));
+        assertEquals(result.result, resent.result);
+    }
+
+    /**
+     * 测试用例：拉取模式下重新发送已完成任务的结果后，空闲的 worker 再次发送 WorkRequest
+     */
+    @Test
+    public void testDuplicateJobRequestsWorkWhenPulling() {
+        TestProbe<Message.MasterCommand> master = testKit.createTestProbe();
+        ActorRef<Message.WorkerCommand> worker =
+                testKit.spawn(WorkerActor.create(Duration.ZERO, Duration.ofMinutes(1)));
+        worker.tell(new Message.Register(master.getRef(), true));
+        master.expectMessageClass(Message.WorkRequest.class);
+
+        worker.tell(new Message.Job(1, "job-1"));
+        master.expectMessageClass(Message.JobResult.class);
+        master.expectMessageClass(Message.WorkRequest.class);
+
+        worker.tell(new Message.Job(1, "job-1"));
+        assertEquals(1, master.expectMessageClass(Message.JobResult.class).id);
+        assertEquals(worker, master.expectMessageClass(Message.WorkRequest.class).worker);
+    }
+
+    /**
+     * 测试用例：结果中携带由采样快照生成的 WorkerInfo，负载上报携带快照中的 CPU 负载
+     */
+    @Test
+    public void testResultAndLoadReportFromSnapshot() {
+        TestProbe<Message.MasterCommand> master = testKit.createTestProbe();
+        ActorRef<Message.WorkerCommand> worker =
+                testKit.spawn(WorkerActor.create(Duration.ZERO, Duration.ofMillis(200)));
+        worker.tell(new Message.Register(master.getRef(), false));
+
+        worker.tell(new Message.Job(1, "job-1"));
+        worker.tell(new Message.Job(2, "job-2"));
+        Message.JobResult first = master.expectMessageClass(Message.JobResult.class);
+        Message.JobResult second = master.expectMessageClass(Message.JobResult.class);
+        assertTrue(first.result, first.result.startsWith("WorkerInfo{ip='" + PhisicUtils.getLocalIP() + "'"));
+        assertTrue(first.result, first.result.contains("memoryUsage='heap="));
+        assertTrue(second.result, second.result.startsWith("WorkerInfo{ip="));
+
+        Message.LoadReport report = master.expectMessageClass(Message.LoadReport.class);
+        assertEquals(worker, report.worker);
+        assertEquals(0, report.queueLength);
+        assertTrue(report.processedRate > 0);
+        assertTrue(report.cpu <= 1);
+    }
+}